@@ -24,6 +24,7 @@ public enum BackendErrorMessage {
     FOLDER_NAME_ERROR("backend.folder.name.error"),
     FOLDER_PATH_ERROR("backend.folder.path.error"),
     FOLDER_PATH_UNKNOWN_ERROR("backend.folder.path.unknown.error"),
+    FOLDER_REMOTE_URL_ERROR("backend.folder.remote.url.error"),
     FOLDER_UNKNOWN_ERROR("backend.folder.unknown.error"),
     FOLDER_DUPLICATED_ERROR("backend.folder.already.exist.error"),
     SETTINGS_SERVER_NAME_ERROR("backend.settings.server.name.error");
@@ -231,7 +231,7 @@ public class StreamingHandler {
      */
     private void addBrowseResult(final DeviceBrowseResult result, final Device device, final MediaNode node) {
         // Get child nodes
-        Collection<MediaNode> searchResult = mediaManager.searchChildNodes(new MediaSearchRequest(node, device.getSupportedMimeTypes()));
+        Collection<MediaNode> searchResult = mediaManager.searchChildNodes(new MediaSearchRequest(node, device.getMimeTypeProfile()));
         // Build browse result
         for (MediaNode mediaNode : searchResult) {
             if (mediaNode instanceof FolderNode) {
@@ -39,6 +39,7 @@ import static com.google.common.base.Strings.isNullOrEmpty;
 import static java.util.stream.Collectors.toList;
 import static net.holmes.core.backend.exception.BackendErrorMessage.*;
 import static net.holmes.core.common.ConfigurationParameter.UPNP_SERVER_NAME;
+import static net.holmes.core.common.FileUtils.isRemoteUrl;
 import static net.holmes.core.common.FileUtils.isValidDirectory;
 import static net.holmes.core.common.UniqueIdGenerator.newUniqueId;
 import static net.holmes.core.common.event.ConfigurationEvent.EventType.*;
@@ -90,10 +91,10 @@ public final class BackendManagerImpl implements BackendManager {
     @Override
     public void addFolder(final ConfigurationFolder folder, final RootNode rootNode) {
         // Validate
-        validateFolder(folder, rootNode, null);
+        validateFolder(folder, folder.isRemote(), rootNode, null);
 
         // Build new configuration node
-        ConfigurationNode node = new ConfigurationNode(newUniqueId(), folder.getName(), folder.getPath());
+        ConfigurationNode node = new ConfigurationNode(newUniqueId(), folder.getName(), folder.getPath(), folder.isRemote());
         try {
             // Save config
             if (configurationManager.addNode(rootNode, node)) {
@@ -111,10 +112,10 @@ public final class BackendManagerImpl implements BackendManager {
      */
     @Override
     public void editFolder(final String id, final ConfigurationFolder folder, final RootNode rootNode) {
-        // Check folder
-        validateFolder(folder, rootNode, id);
-
         try {
+            // Check folder, a folder can not be changed to a remote content nor the opposite
+            validateFolder(folder, configurationManager.getNode(rootNode, id).isRemote(), rootNode, id);
+
             // Edit node and post update folder event
             configurationManager.editNode(rootNode, id, folder.getName(), folder.getPath())
                     .ifPresent(node -> eventBus.post(new ConfigurationEvent(UPDATE_FOLDER, node, rootNode)));
@@ -175,16 +176,22 @@ public final class BackendManagerImpl implements BackendManager {
      * Validate folder.
      *
      * @param folder     folder to validate
+     * @param remote     whether folder is a remote content
      * @param rootNode   root configuration node
      * @param excludedId folder id excluded from duplication checking
      */
-    private void validateFolder(final ConfigurationFolder folder, final RootNode rootNode, final String excludedId) {
+    private void validateFolder(final ConfigurationFolder folder, final boolean remote, final RootNode rootNode, final String excludedId) {
         // Check folder's name and path are not empty
         checkNonEmpty(folder.getName(), FOLDER_NAME_ERROR);
         checkNonEmpty(folder.getPath(), FOLDER_PATH_ERROR);
 
-        // Check folder path exists
-        if (!isValidDirectory(new File(folder.getPath()))) {
+        if (remote) {
+            // Check remote content URL, content itself is checked when it is streamed
+            if (!isRemoteUrl(folder.getPath())) {
+                throw new BackendException(FOLDER_REMOTE_URL_ERROR);
+            }
+        } else if (!isValidDirectory(new File(folder.getPath()))) {
+            // Check folder path exists
             throw new BackendException(FOLDER_PATH_UNKNOWN_ERROR);
         }
 
@@ -228,7 +235,7 @@ public final class BackendManagerImpl implements BackendManager {
          */
         @Override
         public ConfigurationFolder apply(final ConfigurationNode node) {
-            return node == null ? null : new ConfigurationFolder(node.getId(), node.getLabel(), node.getPath());
+            return node == null ? null : new ConfigurationFolder(node.getId(), node.getLabel(), node.getPath(), node.isRemote());
         }
     }
 }
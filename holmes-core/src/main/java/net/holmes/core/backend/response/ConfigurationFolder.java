@@ -28,6 +28,7 @@ public final class ConfigurationFolder {
     private String id;
     private String name;
     private String path;
+    private boolean remote;
 
     /**
      * Instantiates a new configuration folder.
@@ -43,9 +44,22 @@ public final class ConfigurationFolder {
      * @param path folder path
      */
     public ConfigurationFolder(final String id, final String name, final String path) {
+        this(id, name, path, false);
+    }
+
+    /**
+     * Instantiates a new configuration folder.
+     *
+     * @param id     folder id
+     * @param name   folder name
+     * @param path   folder path, or content URL for a remote content
+     * @param remote whether folder is a remote content
+     */
+    public ConfigurationFolder(final String id, final String name, final String path, final boolean remote) {
         this.id = id;
         this.name = name;
         this.path = path;
+        this.remote = remote;
     }
 
     /**
@@ -102,12 +116,30 @@ public final class ConfigurationFolder {
         this.path = path;
     }
 
+    /**
+     * Whether folder is a remote content.
+     *
+     * @return true for a remote content
+     */
+    public boolean isRemote() {
+        return remote;
+    }
+
+    /**
+     * Set whether folder is a remote content.
+     *
+     * @param remote true for a remote content
+     */
+    public void setRemote(final boolean remote) {
+        this.remote = remote;
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public int hashCode() {
-        return Objects.hash(id, name, path);
+        return Objects.hash(id, name, path, remote);
     }
 
     /**
@@ -125,6 +157,7 @@ public final class ConfigurationFolder {
         final ConfigurationFolder other = (ConfigurationFolder) obj;
         return Objects.equals(this.id, other.id)
                 && Objects.equals(this.name, other.name)
-                && Objects.equals(this.path, other.path);
+                && Objects.equals(this.path, other.path)
+                && this.remote == other.remote;
     }
 }
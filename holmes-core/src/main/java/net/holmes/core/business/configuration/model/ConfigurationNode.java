@@ -22,25 +22,39 @@ import java.util.Objects;
 import static com.google.common.base.MoreObjects.toStringHelper;
 
 /**
- * Configuration node.
+ * Configuration node: a local folder, or a remote content when node path is a remote HTTP URL.
  */
 public final class ConfigurationNode {
 
     private final String id;
     private String label;
     private String path;
+    private boolean remote;
 
     /**
-     * Instantiates a new configuration node.
+     * Instantiates a new configuration node for a local folder.
      *
      * @param id    node id
      * @param label node label
      * @param path  node path
      */
     public ConfigurationNode(final String id, final String label, final String path) {
+        this(id, label, path, false);
+    }
+
+    /**
+     * Instantiates a new configuration node.
+     *
+     * @param id     node id
+     * @param label  node label
+     * @param path   node path: folder path, or content URL for a remote content
+     * @param remote whether node is a remote content
+     */
+    public ConfigurationNode(final String id, final String label, final String path, final boolean remote) {
         this.id = id;
         this.label = label;
         this.path = path;
+        this.remote = remote;
     }
 
     /**
@@ -88,12 +102,21 @@ public final class ConfigurationNode {
         this.path = path;
     }
 
+    /**
+     * Whether configuration node is a remote content, served through remote content proxy, instead of a local folder.
+     *
+     * @return true for a remote content
+     */
+    public boolean isRemote() {
+        return remote;
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public int hashCode() {
-        return Objects.hash(id, label, path);
+        return Objects.hash(id, label, path, remote);
     }
 
     /**
@@ -111,7 +134,8 @@ public final class ConfigurationNode {
         final ConfigurationNode other = (ConfigurationNode) obj;
         return Objects.equals(this.id, other.id)
                 && Objects.equals(this.label, other.label)
-                && Objects.equals(this.path, other.path);
+                && Objects.equals(this.path, other.path)
+                && this.remote == other.remote;
     }
 
     /**
@@ -123,6 +147,7 @@ public final class ConfigurationNode {
                 .add("id", id)
                 .add("label", label)
                 .add("path", path)
+                .add("remote", remote)
                 .toString();
     }
 }
@@ -22,6 +22,8 @@ import net.holmes.core.business.configuration.ConfigurationManager;
 import net.holmes.core.business.configuration.ConfigurationManagerImpl;
 import net.holmes.core.business.configuration.dao.ConfigurationDao;
 import net.holmes.core.business.configuration.dao.XmlConfigurationDaoImpl;
+import net.holmes.core.business.media.ContentPrefetcher;
+import net.holmes.core.business.media.ContentPrefetcherImpl;
 import net.holmes.core.business.media.MediaManager;
 import net.holmes.core.business.media.MediaManagerImpl;
 import net.holmes.core.business.media.dao.MediaDao;
@@ -65,6 +67,7 @@ public class BusinessInjector extends AbstractModule {
         bind(ConfigurationManager.class).to(ConfigurationManagerImpl.class);
         bind(MimeTypeManager.class).to(MimeTypeManagerImpl.class);
         bind(MediaManager.class).to(MediaManagerImpl.class);
+        bind(ContentPrefetcher.class).to(ContentPrefetcherImpl.class);
         bind(StreamingManager.class).to(StreamingManagerImpl.class);
         bind(VersionManager.class).to(VersionManagerImpl.class);
 
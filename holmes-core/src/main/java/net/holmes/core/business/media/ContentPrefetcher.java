@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) 2012-2015  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.business.media;
+
+import net.holmes.core.business.media.model.ContentNode;
+
+import java.io.File;
+
+/**
+ * Content prefetcher: warms up next content of a folder while current content is played,
+ * so that next content starts without waiting for a sleeping disk.
+ */
+public interface ContentPrefetcher {
+
+    /**
+     * Notify that a content is played on a device.
+     *
+     * @param node played content node
+     */
+    void contentPlayed(ContentNode node);
+
+    /**
+     * Notify that a content section has been streamed. Next content is warmed up when content is streamed
+     * sequentially up to its end.
+     *
+     * @param file   streamed file
+     * @param start  streamed section start
+     * @param end    streamed section end (exclusive)
+     * @param length file length
+     */
+    void contentStreamed(File file, long start, long end, long length);
+}
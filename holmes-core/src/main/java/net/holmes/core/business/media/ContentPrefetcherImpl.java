@@ -0,0 +1,401 @@
+/*
+ * Copyright (C) 2012-2015  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.business.media;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import net.holmes.core.business.configuration.ConfigurationManager;
+import net.holmes.core.business.media.model.ContentNode;
+import net.holmes.core.business.mimetype.MimeTypeManager;
+import net.holmes.core.business.mimetype.model.MimeType;
+import org.slf4j.Logger;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+import static java.nio.file.StandardOpenOption.READ;
+import static java.util.concurrent.Executors.newSingleThreadExecutor;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static net.holmes.core.common.ConfigurationParameter.CONTENT_PREFETCH_MAX_SIZE;
+import static net.holmes.core.common.ConfigurationParameter.CONTENT_PREFETCH_SIZE;
+import static net.holmes.core.common.FileUtils.isValidFile;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Content prefetcher implementation.
+ * <p>
+ * When a content is streamed sequentially up to its end, next content of the same media type in its folder (folder ordered by name,
+ * numbers compared by value so that "Episode 10" follows "Episode 9") is read in background: its first megabytes
+ * and its last megabyte, where some containers store their header, are then served from page cache. Folder orderings
+ * are cached until folder is modified. Total size warmed up within 10 minutes is capped, so that prefetch never
+ * evicts the page cache of streamed contents.
+ * </p>
+ * <p>
+ * Contiguous sections streamed from a content are merged into a streamed run: prefetch is triggered once a run reaches
+ * content tail after covering at least the tail size, so that renderers probing content tail (e.g. for duration or
+ * container index) do not trigger prefetch.
+ * </p>
+ */
+@Singleton
+public final class ContentPrefetcherImpl implements ContentPrefetcher {
+    private static final Logger LOGGER = getLogger(ContentPrefetcherImpl.class);
+    private static final int FOLDER_CACHE_SIZE = 64;
+    private static final int STREAMED_RUN_CACHE_SIZE = 256;
+    private static final long PREFETCH_PERIOD_MINUTES = 10;
+    private static final int TAIL_SIZE = 1024 * 1024;
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    private final MimeTypeManager mimeTypeManager;
+    private final long prefetchSize;
+    private final long maxPrefetchSize;
+    private final Executor executor;
+    private final Cache<String, FolderOrdering> folderOrderings;
+    private final Cache<String, Long> prefetchedFiles;
+    private final Cache<String, StreamedRun> streamedRuns;
+    private final Set<String> pendingPaths;
+
+    /**
+     * Instantiates a new content prefetcher implementation.
+     *
+     * @param configurationManager configuration manager
+     * @param mimeTypeManager      mime type manager
+     */
+    @Inject
+    public ContentPrefetcherImpl(final ConfigurationManager configurationManager, final MimeTypeManager mimeTypeManager) {
+        this(mimeTypeManager, configurationManager.getParameter(CONTENT_PREFETCH_SIZE) * 1024L * 1024L,
+                configurationManager.getParameter(CONTENT_PREFETCH_MAX_SIZE) * 1024L * 1024L,
+                newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat("holmes-prefetch-%d").setDaemon(true).setPriority(Thread.MIN_PRIORITY).build()));
+    }
+
+    /**
+     * Instantiates a new content prefetcher implementation.
+     *
+     * @param mimeTypeManager mime type manager
+     * @param prefetchSize    size of next content warmed up, in bytes (0 disables prefetch)
+     * @param maxPrefetchSize maximum size warmed up within prefetch period, in bytes
+     * @param executor        executor warming up contents
+     */
+    public ContentPrefetcherImpl(final MimeTypeManager mimeTypeManager, final long prefetchSize, final long maxPrefetchSize, final Executor executor) {
+        this.mimeTypeManager = mimeTypeManager;
+        this.prefetchSize = prefetchSize;
+        this.maxPrefetchSize = maxPrefetchSize;
+        this.executor = executor;
+        this.folderOrderings = CacheBuilder.newBuilder().maximumSize(FOLDER_CACHE_SIZE).build();
+        this.prefetchedFiles = CacheBuilder.newBuilder().expireAfterWrite(PREFETCH_PERIOD_MINUTES, MINUTES).build();
+        this.streamedRuns = CacheBuilder.newBuilder().maximumSize(STREAMED_RUN_CACHE_SIZE).expireAfterAccess(PREFETCH_PERIOD_MINUTES, MINUTES).build();
+        this.pendingPaths = ConcurrentHashMap.newKeySet();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void contentPlayed(final ContentNode node) {
+        if (prefetchSize > 0 && node.isLocalPath()) {
+            // Order folder while content starts, so that next content is known when it ends
+            final File file = new File(node.getPath());
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    getFolderOrdering(file.getParentFile());
+                }
+            });
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void contentStreamed(final File file, final long start, final long end, final long length) {
+        if (prefetchSize <= 0) {
+            return;
+        }
+
+        // Merge section into streamed run, prefetch only once run covers content tail
+        final String path = file.getAbsolutePath();
+        long tailSize = Math.max(length / 20, prefetchSize);
+        StreamedRun run = streamedRuns.asMap().compute(path, (key, previous) -> previous == null ? new StreamedRun(start, end) : previous.merge(start, end));
+        if (run.end < length - tailSize || run.end - run.start < tailSize) {
+            return;
+        }
+
+        // Warm up next content in background, once
+        if (pendingPaths.add(path)) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        File nextFile = getNextFile(file);
+                        if (nextFile != null) {
+                            prefetch(nextFile);
+                        }
+                    } finally {
+                        pendingPaths.remove(path);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Get size of contents warmed up within prefetch period.
+     *
+     * @return size in bytes
+     */
+    public long getPrefetchedSize() {
+        prefetchedFiles.cleanUp();
+        long size = 0;
+        for (Long fileSize : prefetchedFiles.asMap().values()) {
+            size += fileSize;
+        }
+        return size;
+    }
+
+    /**
+     * Get content following a file in its folder, with the same media type.
+     *
+     * @param file file
+     * @return next file, or null if file is the last content of its folder
+     */
+    File getNextFile(final File file) {
+        MimeType mimeType = mimeTypeManager.getMimeType(file.getName());
+        File folder = file.getAbsoluteFile().getParentFile();
+        if (mimeType == null || folder == null) {
+            return null;
+        }
+        List<File> files = getFolderOrdering(folder).files;
+        int index = files.indexOf(file.getAbsoluteFile());
+        for (int i = index + 1; index >= 0 && i < files.size(); i++) {
+            MimeType nextMimeType = mimeTypeManager.getMimeType(files.get(i).getName());
+            if (nextMimeType != null && nextMimeType.getType() == mimeType.getType()) {
+                return files.get(i);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get folder ordering from cache, folder is listed again if it has been modified.
+     *
+     * @param folder folder
+     * @return folder ordering
+     */
+    private FolderOrdering getFolderOrdering(final File folder) {
+        String path = folder.getAbsolutePath();
+        long lastModified = folder.lastModified();
+        FolderOrdering folderOrdering = folderOrderings.getIfPresent(path);
+        if (folderOrdering == null || folderOrdering.lastModified != lastModified) {
+            List<File> files = new ArrayList<>();
+            File[] children = folder.getAbsoluteFile().listFiles();
+            if (children != null) {
+                for (File child : children) {
+                    if (isValidFile(child)) {
+                        files.add(child);
+                    }
+                }
+            }
+            files.sort((first, second) -> compareNames(first.getName(), second.getName()));
+            folderOrdering = new FolderOrdering(lastModified, files);
+            folderOrderings.put(path, folderOrdering);
+        }
+        return folderOrdering;
+    }
+
+    /**
+     * Warm up file: read its first bytes and its last bytes, unless prefetch size limit is reached.
+     *
+     * @param file file
+     */
+    private void prefetch(final File file) {
+        String path = file.getAbsolutePath();
+        long length = file.length();
+        long headLength = Math.min(length, prefetchSize);
+        long tailStart = Math.max(headLength, length - TAIL_SIZE);
+        long size = headLength + length - tailStart;
+        if (prefetchedFiles.getIfPresent(path) != null) {
+            return;
+        } else if (getPrefetchedSize() + size > maxPrefetchSize) {
+            LOGGER.debug("Prefetch limit reached, {} is not prefetched", path);
+            return;
+        }
+
+        prefetchedFiles.put(path, size);
+        long start = System.currentTimeMillis();
+        try (FileChannel channel = FileChannel.open(file.toPath(), READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            read(channel, buffer, 0, headLength);
+            read(channel, buffer, tailStart, length);
+            LOGGER.debug("Prefetched {} bytes of {} in {} ms", size, path, System.currentTimeMillis() - start);
+        } catch (IOException e) {
+            LOGGER.debug("Failed to prefetch {}: {}", path, e.getMessage());
+        }
+    }
+
+    /**
+     * Read a file section, discarding read bytes.
+     *
+     * @param channel file channel
+     * @param buffer  read buffer
+     * @param start   section start
+     * @param end     section end (exclusive)
+     * @throws IOException indicates that file cannot be read
+     */
+    private static void read(final FileChannel channel, final ByteBuffer buffer, final long start, final long end) throws IOException {
+        long position = start;
+        while (position < end) {
+            buffer.clear().limit((int) Math.min(buffer.capacity(), end - position));
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                return;
+            }
+            position += read;
+        }
+    }
+
+    /**
+     * Compare file names: case insensitive, digit sequences compared by numeric value.
+     *
+     * @param first  first name
+     * @param second second name
+     * @return comparison result
+     */
+    static int compareNames(final String first, final String second) {
+        int i = 0;
+        int j = 0;
+        while (i < first.length() && j < second.length()) {
+            char firstChar = first.charAt(i);
+            char secondChar = second.charAt(j);
+            if (Character.isDigit(firstChar) && Character.isDigit(secondChar)) {
+                // Compare numbers: skip leading zeros, then longer number is greater
+                int firstEnd = skipDigits(first, i);
+                int secondEnd = skipDigits(second, j);
+                String firstNumber = first.substring(skipZeros(first, i, firstEnd), firstEnd);
+                String secondNumber = second.substring(skipZeros(second, j, secondEnd), secondEnd);
+                int result = firstNumber.length() != secondNumber.length() ? firstNumber.length() - secondNumber.length() : firstNumber.compareTo(secondNumber);
+                if (result != 0) {
+                    return result;
+                }
+                i = firstEnd;
+                j = secondEnd;
+            } else {
+                int result = Character.compare(Character.toLowerCase(firstChar), Character.toLowerCase(secondChar));
+                if (result != 0) {
+                    return result;
+                }
+                i++;
+                j++;
+            }
+        }
+        int result = (first.length() - i) - (second.length() - j);
+        return result != 0 ? result : first.compareTo(second);
+    }
+
+    /**
+     * Get end of digit sequence.
+     *
+     * @param value string
+     * @param start digit sequence start
+     * @return digit sequence end (exclusive)
+     */
+    private static int skipDigits(final String value, final int start) {
+        int end = start;
+        while (end < value.length() && Character.isDigit(value.charAt(end))) {
+            end++;
+        }
+        return end;
+    }
+
+    /**
+     * Get start of a number without its leading zeros.
+     *
+     * @param value string
+     * @param start digit sequence start
+     * @param end   digit sequence end (exclusive)
+     * @return position of first significant digit
+     */
+    private static int skipZeros(final String value, final int start, final int end) {
+        int position = start;
+        while (position < end - 1 && value.charAt(position) == '0') {
+            position++;
+        }
+        return position;
+    }
+
+    /**
+     * Contiguous section streamed from a content.
+     */
+    private static final class StreamedRun {
+        private final long start;
+        private final long end;
+
+        /**
+         * Instantiates a new streamed run.
+         *
+         * @param start run start
+         * @param end   run end (exclusive)
+         */
+        StreamedRun(final long start, final long end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        /**
+         * Merge streamed section into run. A section that does not continue run starts a new run.
+         *
+         * @param sectionStart section start
+         * @param sectionEnd   section end (exclusive)
+         * @return merged run
+         */
+        StreamedRun merge(final long sectionStart, final long sectionEnd) {
+            if (sectionStart >= start && sectionStart <= end) {
+                return new StreamedRun(start, Math.max(end, sectionEnd));
+            }
+            return new StreamedRun(sectionStart, sectionEnd);
+        }
+    }
+
+    /**
+     * Ordered files of a folder.
+     */
+    private static final class FolderOrdering {
+        private final long lastModified;
+        private final List<File> files;
+
+        /**
+         * Instantiates a new folder ordering.
+         *
+         * @param lastModified folder last modification date
+         * @param files        folder files, ordered by name
+         */
+        FolderOrdering(final long lastModified, final List<File> files) {
+            this.lastModified = lastModified;
+            this.files = files;
+        }
+    }
+}
@@ -40,6 +40,7 @@ import static net.holmes.core.business.media.model.RootNode.*;
 import static net.holmes.core.common.ConfigurationParameter.HTTP_SERVER_PORT;
 import static net.holmes.core.common.Constants.*;
 import static net.holmes.core.common.event.MediaEvent.MediaEventType.SCAN_NODE;
+import static net.holmes.core.common.event.MediaEvent.MediaEventType.UPDATE_CONTAINER;
 import static org.slf4j.LoggerFactory.getLogger;
 
 /**
@@ -126,7 +127,7 @@ public final class MediaManagerImpl implements MediaManager {
 
         // Filter child nodes according to available mime types
         Predicate<MediaNode> p = node -> !(node instanceof MimeTypeNode)
-                || mimeTypeManager.isMimeTypeCompliant(((MimeTypeNode) node).getMimeType(), request.getAvailableMimeTypes());
+                || mimeTypeManager.isMimeTypeSupported(((MimeTypeNode) node).getMimeType(), request.getMimeTypeProfile());
 
         return childNodes.stream().filter(p).collect(toList());
     }
@@ -139,6 +140,14 @@ public final class MediaManagerImpl implements MediaManager {
         mediaDao.cleanUpCache();
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getContainerUpdateId(final String nodeId) {
+        return mediaDao.getContainerUpdateId(nodeId);
+    }
+
     /**
      * Handle media event.
      *
@@ -148,7 +157,7 @@ public final class MediaManagerImpl implements MediaManager {
     public void handleMediaEvent(final MediaEvent mediaEvent) {
         if (mediaEvent.getType() == SCAN_NODE) {
             getNode(mediaEvent.getParameter()).ifPresent(this::scanNode);
-        } else {
+        } else if (mediaEvent.getType() != UPDATE_CONTAINER) {
             LOGGER.error("Unknown media event {}", mediaEvent);
         }
     }
@@ -18,25 +18,24 @@
 package net.holmes.core.business.media;
 
 import net.holmes.core.business.media.model.MediaNode;
-
-import java.util.Collection;
+import net.holmes.core.business.mimetype.model.MimeTypeProfile;
 
 /**
  * Media search request
  */
 public final class MediaSearchRequest {
     private final MediaNode parentNode;
-    private final Collection<String> availableMimeTypes;
+    private final MimeTypeProfile mimeTypeProfile;
 
     /**
      * Instantiates a new media search request.
      *
-     * @param parentNode         parent node
-     * @param availableMimeTypes available mime types.
+     * @param parentNode      parent node
+     * @param mimeTypeProfile available mime types profile, null profile accepts all mime types.
      */
-    public MediaSearchRequest(final MediaNode parentNode, final Collection<String> availableMimeTypes) {
+    public MediaSearchRequest(final MediaNode parentNode, final MimeTypeProfile mimeTypeProfile) {
         this.parentNode = parentNode;
-        this.availableMimeTypes = availableMimeTypes;
+        this.mimeTypeProfile = mimeTypeProfile;
     }
 
     /**
@@ -49,11 +48,11 @@ public final class MediaSearchRequest {
     }
 
     /**
-     * Get available mime types.
+     * Get available mime types profile.
      *
-     * @return available mime types
+     * @return available mime types profile
      */
-    public Collection<String> getAvailableMimeTypes() {
-        return availableMimeTypes;
+    public MimeTypeProfile getMimeTypeProfile() {
+        return mimeTypeProfile;
     }
 }
@@ -55,4 +55,12 @@ public interface MediaDao {
      * Clean up cache
      */
     void cleanUpCache();
+
+    /**
+     * Get container update id, changes each time container content changes.
+     *
+     * @param nodeId container node id
+     * @return container update id
+     */
+    long getContainerUpdateId(String nodeId);
 }
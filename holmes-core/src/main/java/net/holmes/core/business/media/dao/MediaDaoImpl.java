@@ -33,6 +33,7 @@ import org.slf4j.Logger;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 import java.io.File;
+import java.net.URI;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
@@ -118,7 +119,13 @@ public class MediaDaoImpl implements MediaDao {
         for (ConfigurationNode configNode : configNodes) {
             // Add node to mediaIndex
             mediaIndexDao.put(configNode.getId(), buildConfigMediaIndexElement(rootNode, configNode));
-            nodes.add(new FolderNode(configNode.getId(), rootNode.getId(), configNode.getLabel(), new File(configNode.getPath())));
+            if (configNode.isRemote()) {
+                // Remote content
+                buildRemoteContentNode(configNode.getId(), rootNode.getId(), configNode.getLabel(), configNode.getPath(), rootNode.getMediaType())
+                        .ifPresent(nodes::add);
+            } else {
+                nodes.add(new FolderNode(configNode.getId(), rootNode.getId(), configNode.getLabel(), new File(configNode.getPath())));
+            }
         }
         return nodes;
     }
@@ -132,7 +139,15 @@ public class MediaDaoImpl implements MediaDao {
     }
 
     /**
-     * Get file or folder node
+     * {@inheritDoc}
+     */
+    @Override
+    public long getContainerUpdateId(final String nodeId) {
+        return mediaIndexDao.getUpdateId(nodeId);
+    }
+
+    /**
+     * Get file, folder or remote content node
      *
      * @param nodeId       node id
      * @param indexElement index element
@@ -140,6 +155,10 @@ public class MediaDaoImpl implements MediaDao {
      * @return file or folder node
      */
     private Optional<MediaNode> getFileNode(final String nodeId, final MediaIndexElement indexElement, final MediaType mediaType) {
+        if (!indexElement.isLocalPath()) {
+            // Remote content node, indexed from a remote content configuration node
+            return buildRemoteContentNode(nodeId, indexElement.getParentId(), indexElement.getName(), indexElement.getPath(), mediaType);
+        }
         File nodeFile = new File(indexElement.getPath());
         if (isValidFile(nodeFile)) {
             // Content node
@@ -177,6 +196,7 @@ public class MediaDaoImpl implements MediaDao {
                 addContentNode(nodes, folderNodeId, child, mediaType);
             }
         }
+        mediaIndexDao.containerListed(folderNodeId);
         return nodes;
     }
 
@@ -210,4 +230,43 @@ public class MediaDaoImpl implements MediaDao {
         // Check mime type
         return Optional.ofNullable(mimeType.getType() == mediaType || mimeType.isSubTitle() ? new ContentNode(nodeId, parentId, file.getName(), file, mimeType) : null);
     }
+
+    /**
+     * Build remote content node. Mime type is read from URL file name.
+     *
+     * @param nodeId    node id
+     * @param parentId  parent id
+     * @param name      node name, URL file name is used when null
+     * @param url       content URL
+     * @param mediaType media type
+     * @return optional remote content node
+     */
+    private Optional<MediaNode> buildRemoteContentNode(final String nodeId, final String parentId, final String name, final String url,
+                                                       final MediaType mediaType) {
+        String fileName = getUrlFileName(url);
+        MimeType mimeType = mimeTypeManager.getMimeType(fileName);
+        if (mimeType == null || mimeType.getType() != mediaType) {
+            return Optional.empty();
+        }
+        return Optional.of(new ContentNode(nodeId, parentId, name != null ? name : fileName, url, mimeType));
+    }
+
+    /**
+     * Get file name of an URL: last segment of URL path.
+     *
+     * @param url URL
+     * @return file name
+     */
+    private static String getUrlFileName(final String url) {
+        String path;
+        try {
+            path = URI.create(url).getPath();
+        } catch (IllegalArgumentException e) {
+            path = null;
+        }
+        if (path == null) {
+            return url;
+        }
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
 }
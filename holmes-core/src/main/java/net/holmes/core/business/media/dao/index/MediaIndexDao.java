@@ -57,4 +57,20 @@ public interface MediaIndexDao {
      * Clean media index.
      */
     void clean();
+
+    /**
+     * Notify that children of a container have been listed and added to media index. Container update id is incremented
+     * when children were added since previous listing, not on first listing.
+     *
+     * @param uuid container uuid
+     */
+    void containerListed(String uuid);
+
+    /**
+     * Gets container update id, incremented when a child element appears in or is removed from container.
+     *
+     * @param uuid container uuid
+     * @return container update id
+     */
+    long getUpdateId(String uuid);
 }
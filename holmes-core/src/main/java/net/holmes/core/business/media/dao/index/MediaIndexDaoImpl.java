@@ -19,21 +19,25 @@ package net.holmes.core.business.media.dao.index;
 
 import com.google.common.collect.BiMap;
 import com.google.common.collect.HashBiMap;
+import com.google.common.eventbus.EventBus;
 import com.google.common.eventbus.Subscribe;
 import net.holmes.core.business.configuration.model.ConfigurationNode;
 import net.holmes.core.business.media.model.RootNode;
 import net.holmes.core.common.event.ConfigurationEvent;
+import net.holmes.core.common.event.MediaEvent;
 import org.slf4j.Logger;
 
+import javax.inject.Inject;
 import javax.inject.Singleton;
 import java.io.File;
-import java.util.ArrayList;
-import java.util.Collection;
+import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static com.google.common.collect.Maps.synchronizedBiMap;
 import static net.holmes.core.business.media.dao.index.MediaIndexElementFactory.buildConfigMediaIndexElement;
 import static net.holmes.core.common.UniqueIdGenerator.newUniqueId;
+import static net.holmes.core.common.event.MediaEvent.MediaEventType.UPDATE_CONTAINER;
 import static org.slf4j.LoggerFactory.getLogger;
 
 /**
@@ -43,13 +47,24 @@ import static org.slf4j.LoggerFactory.getLogger;
 public class MediaIndexDaoImpl implements MediaIndexDao {
     private static final Logger LOGGER = getLogger(MediaIndexDaoImpl.class);
 
+    private final EventBus eventBus;
     private final BiMap<String, MediaIndexElement> elements;
+    private final Map<String, Long> updateIds;
+    private final Set<String> listedContainers;
+    private final Set<String> changedContainers;
 
     /**
      * Instantiates a new media index dao implementation.
+     *
+     * @param eventBus event bus
      */
-    public MediaIndexDaoImpl() {
+    @Inject
+    public MediaIndexDaoImpl(final EventBus eventBus) {
+        this.eventBus = eventBus;
         this.elements = synchronizedBiMap(HashBiMap.<String, MediaIndexElement>create());
+        this.updateIds = new ConcurrentHashMap<>();
+        this.listedContainers = ConcurrentHashMap.newKeySet();
+        this.changedContainers = ConcurrentHashMap.newKeySet();
     }
 
     /**
@@ -69,6 +84,10 @@ public class MediaIndexDaoImpl implements MediaIndexDao {
         if (uuid == null) {
             uuid = newUniqueId();
             elements.put(uuid, element);
+            if (listedContainers.contains(element.getParentId())) {
+                // New child in a container that was already listed
+                changedContainers.add(element.getParentId());
+            }
         }
         return uuid;
     }
@@ -87,7 +106,27 @@ public class MediaIndexDaoImpl implements MediaIndexDao {
      * {@inheritDoc}
      */
     @Override
-    public synchronized void removeChildren(final String uuid) {
+    public void containerListed(final String uuid) {
+        if (!listedContainers.add(uuid) && changedContainers.remove(uuid)) {
+            updateContainers(Collections.singleton(uuid));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void removeChildren(final String uuid) {
+        updateContainers(removeChildElements(uuid));
+    }
+
+    /**
+     * Remove child media index elements.
+     *
+     * @param uuid parent element uuid
+     * @return containers whose children were removed
+     */
+    private synchronized Set<String> removeChildElements(final String uuid) {
         MediaIndexElement elValue;
         Collection<String> toRemove = new ArrayList<>();
 
@@ -102,14 +141,23 @@ public class MediaIndexDaoImpl implements MediaIndexDao {
         }
 
         // Remove elements
-        toRemove.forEach(elements::remove);
+        return removeElements(toRemove);
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public synchronized void clean() {
+    public void clean() {
+        updateContainers(cleanElements());
+    }
+
+    /**
+     * Remove media index elements whose parent or path no longer exists.
+     *
+     * @return containers whose children were removed
+     */
+    private synchronized Set<String> cleanElements() {
         String elId;
         MediaIndexElement elValue;
 
@@ -133,7 +181,15 @@ public class MediaIndexDaoImpl implements MediaIndexDao {
         }
 
         // Remove elements
-        toRemove.forEach(elements::remove);
+        return removeElements(toRemove);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getUpdateId(final String uuid) {
+        return updateIds.getOrDefault(uuid, 0L);
     }
 
     /**
@@ -149,6 +205,7 @@ public class MediaIndexDaoImpl implements MediaIndexDao {
             case ADD_FOLDER:
                 // Add node to mediaIndex
                 put(configNode.getId(), buildConfigMediaIndexElement(rootNode, configNode));
+                updateContainers(Collections.singleton(rootNode.getId()));
                 break;
             case UPDATE_FOLDER:
                 // Remove node and child nodes from mediaIndex and add node to mediaIndex
@@ -171,10 +228,43 @@ public class MediaIndexDaoImpl implements MediaIndexDao {
      * @param configNode configuration node
      */
     private void remove(final String uuid, final ConfigurationNode configNode) {
-        if (elements.get(uuid) != null) {
-            elements.remove(uuid);
+        // Remove children, then node
+        Set<String> containers = removeChildElements(configNode.getId());
+        containers.addAll(removeElements(Collections.singleton(uuid)));
+        containers.remove(uuid);
+        updateContainers(containers);
+    }
+
+    /**
+     * Remove media index elements.
+     *
+     * @param uuids uuids of elements to remove
+     * @return parent containers of removed elements, except removed ones
+     */
+    private Set<String> removeElements(final Collection<String> uuids) {
+        Set<String> containers = new HashSet<>();
+        for (String uuid : uuids) {
+            MediaIndexElement element = elements.remove(uuid);
+            if (element != null) {
+                containers.add(element.getParentId());
+            }
+            updateIds.remove(uuid);
+            listedContainers.remove(uuid);
+            changedContainers.remove(uuid);
+        }
+        containers.removeAll(uuids);
+        return containers;
+    }
+
+    /**
+     * Increment update id of containers and post container update events.
+     *
+     * @param containers container uuids
+     */
+    private void updateContainers(final Collection<String> containers) {
+        for (String container : containers) {
+            updateIds.merge(container, 1L, Long::sum);
+            eventBus.post(new MediaEvent(UPDATE_CONTAINER, container));
         }
-        // Remove children
-        removeChildren(configNode.getId());
     }
 }
@@ -29,7 +29,7 @@ public final class MediaIndexElementFactory {
     }
 
     /**
-     * Gets the media index element for configuration node.
+     * Gets the media index element for configuration node. Remote contents are not local paths.
      *
      * @param rootNode   root node
      * @param configNode config node
@@ -37,6 +37,6 @@ public final class MediaIndexElementFactory {
      */
     public static MediaIndexElement buildConfigMediaIndexElement(final RootNode rootNode, final ConfigurationNode configNode) {
         return new MediaIndexElement(rootNode.getId(), rootNode.getMediaType().getValue(), null, configNode.getPath(), configNode.getLabel(),
-                rootNode.isLocalPath(), true);
+                rootNode.isLocalPath() && !configNode.isRemote(), true);
     }
 }
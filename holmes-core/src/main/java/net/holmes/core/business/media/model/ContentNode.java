@@ -25,12 +25,13 @@ import java.util.Objects;
 import static com.google.common.base.MoreObjects.toStringHelper;
 
 /**
- * Content node represents a content stored on file system.
+ * Content node represents a content stored on file system, or a remote content (HTTP URL).
  */
 public final class ContentNode extends MimeTypeNode {
 
     private final Long size;
     private final String path;
+    private final boolean localPath;
 
     /**
      * Instantiates a new content node.
@@ -46,6 +47,23 @@ public final class ContentNode extends MimeTypeNode {
         this.path = file.getAbsolutePath();
         this.size = file.length();
         this.modifiedDate = file.lastModified();
+        this.localPath = true;
+    }
+
+    /**
+     * Instantiates a new remote content node. Remote content size and modification date are unknown.
+     *
+     * @param id       node id
+     * @param parentId parent node id
+     * @param name     node name
+     * @param url      content URL
+     * @param mimeType mime type
+     */
+    public ContentNode(final String id, final String parentId, final String name, final String url, final MimeType mimeType) {
+        super(NodeType.TYPE_CONTENT, id, parentId, name, mimeType);
+        this.path = url;
+        this.size = null;
+        this.localPath = false;
     }
 
     /**
@@ -60,18 +78,27 @@ public final class ContentNode extends MimeTypeNode {
     /**
      * Gets the content node path.
      *
-     * @return the content node path
+     * @return the content node path, or URL for a remote content
      */
     public String getPath() {
         return path;
     }
 
+    /**
+     * Checks whether content is stored on file system.
+     *
+     * @return true for a local content, false for a remote content
+     */
+    public boolean isLocalPath() {
+        return localPath;
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public int hashCode() {
-        return Objects.hash(id, parentId, name, type, modifiedDate, iconUrl, mimeType, size, path);
+        return Objects.hash(id, parentId, name, type, modifiedDate, iconUrl, mimeType, size, path, localPath);
     }
 
     /**
@@ -92,7 +119,8 @@ public final class ContentNode extends MimeTypeNode {
         final ContentNode other = (ContentNode) obj;
         return Objects.equals(this.mimeType, other.mimeType)
                 && Objects.equals(this.size, other.size)
-                && Objects.equals(this.path, other.path);
+                && Objects.equals(this.path, other.path)
+                && this.localPath == other.localPath;
     }
 
     /**
@@ -110,6 +138,7 @@ public final class ContentNode extends MimeTypeNode {
                 .add("mimeType", mimeType)
                 .add("size", size)
                 .add("path", path)
+                .add("localPath", localPath)
                 .toString();
     }
 }
@@ -18,6 +18,7 @@
 package net.holmes.core.business.mimetype;
 
 import net.holmes.core.business.mimetype.model.MimeType;
+import net.holmes.core.business.mimetype.model.MimeTypeProfile;
 
 import java.util.Collection;
 
@@ -42,4 +43,22 @@ public interface MimeTypeManager {
      * @return true if mime type is compliant with available mimeTypes
      */
     boolean isMimeTypeCompliant(MimeType mimeType, Collection<String> availableMimeTypes);
+
+    /**
+     * Check mime type is supported by mime type profile.
+     *
+     * @param mimeType        mime type to check
+     * @param mimeTypeProfile mime type profile, null profile accepts all mime types
+     * @return true if mime type is supported by mime type profile
+     */
+    boolean isMimeTypeSupported(MimeType mimeType, MimeTypeProfile mimeTypeProfile);
+
+    /**
+     * Get mime type profile compiled from available mime types.
+     * Profiles are shared: identical available mime types always get the same profile.
+     *
+     * @param availableMimeTypes list of available mime types
+     * @return mime type profile
+     */
+    MimeTypeProfile getMimeTypeProfile(Collection<String> availableMimeTypes);
 }
@@ -17,12 +17,18 @@
 
 package net.holmes.core.business.mimetype;
 
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import net.holmes.core.business.mimetype.dao.MimeTypeDao;
 import net.holmes.core.business.mimetype.model.MimeType;
+import net.holmes.core.business.mimetype.model.MimeTypeProfile;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static com.google.common.base.Strings.isNullOrEmpty;
 
@@ -32,6 +38,8 @@ import static com.google.common.base.Strings.isNullOrEmpty;
 @Singleton
 public final class MimeTypeManagerImpl implements MimeTypeManager {
     private final MimeTypeDao mimeTypeDao;
+    private final ImmutableMap<String, Integer> mimeTypeOrdinals;
+    private final Map<ImmutableSet<String>, MimeTypeProfile> mimeTypeProfiles;
 
     /**
      * Instantiates a new mime type manager implementation.
@@ -41,6 +49,15 @@ public final class MimeTypeManagerImpl implements MimeTypeManager {
     @Inject
     public MimeTypeManagerImpl(final MimeTypeDao mimeTypeDao) {
         this.mimeTypeDao = mimeTypeDao;
+        this.mimeTypeProfiles = new ConcurrentHashMap<>();
+
+        // Build mime type ordinal table
+        ImmutableMap.Builder<String, Integer> ordinals = ImmutableMap.builder();
+        int ordinal = 0;
+        for (String mimeType : mimeTypeDao.getMimeTypes()) {
+            ordinals.put(mimeType, ordinal++);
+        }
+        this.mimeTypeOrdinals = ordinals.build();
     }
 
     /**
@@ -61,6 +78,44 @@ public final class MimeTypeManagerImpl implements MimeTypeManager {
                 || isAliasMimeTypeCompliant(mimeType, availableMimeTypes);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isMimeTypeSupported(final MimeType mimeType, final MimeTypeProfile mimeTypeProfile) {
+        if (mimeTypeProfile == null || mimeType == null || isNullOrEmpty(mimeType.getMimeType())) {
+            return true;
+        }
+        Integer ordinal = mimeTypeOrdinals.get(mimeType.getMimeType());
+        // Mime types missing from ordinal table are checked against profile's mime types
+        return ordinal != null ? mimeTypeProfile.isCompliant(ordinal) : isMimeTypeCompliant(mimeType, mimeTypeProfile.getMimeTypes());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public MimeTypeProfile getMimeTypeProfile(final Collection<String> availableMimeTypes) {
+        ImmutableSet<String> mimeTypes = availableMimeTypes == null ? ImmutableSet.<String>of() : ImmutableSet.copyOf(availableMimeTypes);
+        return mimeTypeProfiles.computeIfAbsent(mimeTypes, this::buildMimeTypeProfile);
+    }
+
+    /**
+     * Build mime type profile: check compliance of each mime type in ordinal table.
+     *
+     * @param availableMimeTypes available mime types
+     * @return mime type profile
+     */
+    private MimeTypeProfile buildMimeTypeProfile(final ImmutableSet<String> availableMimeTypes) {
+        BitSet compliantMimeTypes = new BitSet(mimeTypeOrdinals.size());
+        for (Map.Entry<String, Integer> entry : mimeTypeOrdinals.entrySet()) {
+            if (isMimeTypeCompliant(MimeType.valueOf(entry.getKey()), availableMimeTypes)) {
+                compliantMimeTypes.set(entry.getValue());
+            }
+        }
+        return new MimeTypeProfile(availableMimeTypes, compliantMimeTypes);
+    }
+
     /**
      * Check if alias mime type is compliant with available mime types
      *
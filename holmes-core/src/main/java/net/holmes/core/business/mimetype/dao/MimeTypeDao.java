@@ -19,6 +19,8 @@ package net.holmes.core.business.mimetype.dao;
 
 import net.holmes.core.business.mimetype.model.MimeType;
 
+import java.util.Collection;
+
 /**
  * Mime type dao.
  */
@@ -38,4 +40,11 @@ public interface MimeTypeDao {
      * @return alias mime type or null
      */
     MimeType getAliasMimeType(MimeType mimeType);
+
+    /**
+     * Gets all known mime types, including alias mime types.
+     *
+     * @return known mime types
+     */
+    Collection<String> getMimeTypes();
 }
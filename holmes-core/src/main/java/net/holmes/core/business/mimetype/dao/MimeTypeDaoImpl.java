@@ -17,6 +17,7 @@
 
 package net.holmes.core.business.mimetype.dao;
 
+import com.google.common.collect.ImmutableMap;
 import net.holmes.core.business.mimetype.model.MimeType;
 import net.holmes.core.common.exception.HolmesRuntimeException;
 
@@ -25,16 +26,22 @@ import javax.inject.Named;
 import javax.inject.Singleton;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.Properties;
+import java.util.*;
 
-import static com.google.common.io.Files.getFileExtension;
+import static net.holmes.core.business.mimetype.model.MimeType.MIME_TYPE_OGG;
+import static net.holmes.core.business.mimetype.model.MimeType.MIME_TYPE_SUBTITLE;
 
 /**
  * Mime type dao implementation.
+ * <p>
+ * Mime types are compiled at startup into shared instances, indexed by file extension and alias.
+ * </p>
  */
 @Singleton
 public final class MimeTypeDaoImpl implements MimeTypeDao {
-    private final Properties properties;
+    private final MimeTypeExtensionTrie extensionMimeTypes;
+    private final Map<String, MimeType> aliasMimeTypes;
+    private final Map<String, MimeType> mimeTypes;
 
     /**
      * Instantiates a new mime type dao implementation.
@@ -44,16 +51,32 @@ public final class MimeTypeDaoImpl implements MimeTypeDao {
     @Inject
     public MimeTypeDaoImpl(@Named("mimeTypePath") final String mimeTypePath) {
         // Load mime types from property file
+        Properties properties = new Properties();
         try (InputStream in = this.getClass().getResourceAsStream(mimeTypePath)) {
             if (in == null) {
                 throw new IOException("Invalid mimeTypePath:" + mimeTypePath);
             }
-            properties = new Properties();
             properties.load(in);
         } catch (IOException e) {
             throw new HolmesRuntimeException(e);
         }
 
+        // Compile mime types
+        Map<String, MimeType> canonicalMimeTypes = new TreeMap<>();
+        Map<String, MimeType> aliases = new HashMap<>();
+        extensionMimeTypes = new MimeTypeExtensionTrie();
+        for (String key : properties.stringPropertyNames()) {
+            MimeType mimeType = canonicalMimeTypes.computeIfAbsent(properties.getProperty(key), MimeTypeDaoImpl::newMimeType);
+            if (key.indexOf('/') > 0) {
+                // Alias mime types are stored as keys
+                canonicalMimeTypes.computeIfAbsent(key, MimeTypeDaoImpl::newMimeType);
+                aliases.put(key, mimeType);
+            } else {
+                extensionMimeTypes.put(key, mimeType);
+            }
+        }
+        aliasMimeTypes = ImmutableMap.copyOf(aliases);
+        mimeTypes = ImmutableMap.copyOf(canonicalMimeTypes);
     }
 
     /**
@@ -62,7 +85,7 @@ public final class MimeTypeDaoImpl implements MimeTypeDao {
     @Override
     public MimeType getMimeType(final String fileName) {
         // Get mime type from fileName extension
-        return MimeType.valueOf(properties.getProperty(getFileExtension(fileName).toLowerCase()));
+        return extensionMimeTypes.get(fileName);
     }
 
     /**
@@ -70,6 +93,29 @@ public final class MimeTypeDaoImpl implements MimeTypeDao {
      */
     @Override
     public MimeType getAliasMimeType(final MimeType mimeType) {
-        return MimeType.valueOf(properties.getProperty(mimeType.getMimeType()));
+        return aliasMimeTypes.get(mimeType.getMimeType());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Collection<String> getMimeTypes() {
+        return mimeTypes.keySet();
+    }
+
+    /**
+     * Build new mime type, reusing mime type constants.
+     *
+     * @param mimeType mime type string
+     * @return mime type
+     */
+    private static MimeType newMimeType(final String mimeType) {
+        if (MIME_TYPE_SUBTITLE.getMimeType().equals(mimeType)) {
+            return MIME_TYPE_SUBTITLE;
+        } else if (MIME_TYPE_OGG.getMimeType().equals(mimeType)) {
+            return MIME_TYPE_OGG;
+        }
+        return MimeType.valueOf(mimeType);
     }
 }
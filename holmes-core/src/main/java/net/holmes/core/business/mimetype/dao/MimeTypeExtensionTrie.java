@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2012-2015  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.holmes.core.business.mimetype.dao;
+
+import net.holmes.core.business.mimetype.model.MimeType;
+
+import java.io.File;
+import java.util.Arrays;
+
+/**
+ * Trie indexing mime types by file extension.
+ * <p>
+ * Extensions are stored reversed so that a file name is matched from its last character back to the extension dot,
+ * without any substring or lower case copy of the file name.
+ * </p>
+ */
+final class MimeTypeExtensionTrie {
+    private final Node root = new Node();
+
+    /**
+     * Add extension to trie.
+     *
+     * @param extension file extension
+     * @param mimeType  mime type
+     */
+    void put(final String extension, final MimeType mimeType) {
+        Node node = root;
+        for (int i = extension.length() - 1; i >= 0; i--) {
+            node = node.getOrAddChild(extension.charAt(i));
+        }
+        node.mimeType = mimeType;
+    }
+
+    /**
+     * Get mime type matching file name extension (case insensitive).
+     *
+     * @param fileName file name
+     * @return mime type or null
+     */
+    MimeType get(final String fileName) {
+        Node node = root;
+        for (int i = fileName.length() - 1; i >= 0; i--) {
+            char c = fileName.charAt(i);
+            if (c == '.') {
+                return node.mimeType;
+            } else if (c == '/' || c == File.separatorChar) {
+                // No extension
+                return null;
+            }
+            node = node.getChild(Character.toLowerCase(c));
+            if (node == null) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Trie node.
+     */
+    private static final class Node {
+        private char[] keys = new char[0];
+        private Node[] children = new Node[0];
+        private MimeType mimeType;
+
+        /**
+         * Get child node.
+         *
+         * @param key child key
+         * @return child node or null
+         */
+        Node getChild(final char key) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] == key) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Get child node, add it if not present.
+         *
+         * @param key child key
+         * @return child node
+         */
+        Node getOrAddChild(final char key) {
+            Node child = getChild(key);
+            if (child == null) {
+                child = new Node();
+                keys = Arrays.copyOf(keys, keys.length + 1);
+                keys[keys.length - 1] = key;
+                children = Arrays.copyOf(children, children.length + 1);
+                children[children.length - 1] = child;
+            }
+            return child;
+        }
+    }
+}
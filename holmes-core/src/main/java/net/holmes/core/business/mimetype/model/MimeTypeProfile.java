@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2012-2015  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.business.mimetype.model;
+
+import com.google.common.collect.ImmutableSet;
+
+import java.util.BitSet;
+import java.util.Objects;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+
+/**
+ * Mime type profile: compiled set of mime types supported by a device.
+ * <p>
+ * Compliance of each known mime type is computed once and stored in a bit set indexed by mime type ordinal,
+ * so checking a mime type against the profile is a single bit test.
+ * </p>
+ */
+public final class MimeTypeProfile {
+    private final ImmutableSet<String> mimeTypes;
+    private final BitSet compliantMimeTypes;
+
+    /**
+     * Instantiates a new mime type profile.
+     *
+     * @param mimeTypes          available mime types the profile is compiled from
+     * @param compliantMimeTypes ordinals of compliant mime types
+     */
+    public MimeTypeProfile(final ImmutableSet<String> mimeTypes, final BitSet compliantMimeTypes) {
+        this.mimeTypes = mimeTypes;
+        this.compliantMimeTypes = (BitSet) compliantMimeTypes.clone();
+    }
+
+    /**
+     * Get available mime types the profile is compiled from.
+     *
+     * @return available mime types
+     */
+    public ImmutableSet<String> getMimeTypes() {
+        return mimeTypes;
+    }
+
+    /**
+     * Check mime type with given ordinal is compliant with this profile.
+     *
+     * @param mimeTypeOrdinal mime type ordinal
+     * @return true if mime type is compliant
+     */
+    public boolean isCompliant(final int mimeTypeOrdinal) {
+        return compliantMimeTypes.get(mimeTypeOrdinal);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(mimeTypes);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+
+        final MimeTypeProfile other = (MimeTypeProfile) obj;
+        return Objects.equals(this.mimeTypes, other.mimeTypes);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return toStringHelper(this)
+                .add("mimeTypes", mimeTypes)
+                .add("compliantMimeTypes", compliantMimeTypes)
+                .toString();
+    }
+}
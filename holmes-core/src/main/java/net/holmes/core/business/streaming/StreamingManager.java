@@ -18,11 +18,13 @@
 package net.holmes.core.business.streaming;
 
 import net.holmes.core.business.media.model.MediaNode;
+import net.holmes.core.business.mimetype.model.MimeTypeProfile;
 import net.holmes.core.business.streaming.device.Device;
 import net.holmes.core.business.streaming.device.UnknownDeviceException;
 import net.holmes.core.business.streaming.session.StreamingSession;
 import net.holmes.core.business.streaming.session.UnknownSessionException;
 
+import java.net.InetAddress;
 import java.util.Collection;
 
 /**
@@ -53,6 +55,15 @@ public interface StreamingManager {
      */
     Collection<Device> findDevices(String hostAddress);
 
+    /**
+     * Get mime type profile of devices located on a host.
+     *
+     * @param address     host address
+     * @param addSubtitle whether subtitle mime type is added to profile
+     * @return mime type profile or null if all mime types are available
+     */
+    MimeTypeProfile getMimeTypeProfile(InetAddress address, boolean addSubtitle);
+
     /**
      * Get all devices.
      *
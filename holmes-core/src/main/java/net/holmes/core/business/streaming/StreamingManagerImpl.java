@@ -20,7 +20,10 @@ package net.holmes.core.business.streaming;
 import com.google.common.eventbus.Subscribe;
 import com.google.common.util.concurrent.AbstractScheduledService;
 import net.holmes.core.business.configuration.ConfigurationManager;
+import net.holmes.core.business.media.ContentPrefetcher;
+import net.holmes.core.business.media.model.ContentNode;
 import net.holmes.core.business.media.model.MediaNode;
+import net.holmes.core.business.mimetype.model.MimeTypeProfile;
 import net.holmes.core.business.streaming.airplay.device.AirplayDevice;
 import net.holmes.core.business.streaming.device.Device;
 import net.holmes.core.business.streaming.device.DeviceDao;
@@ -36,6 +39,7 @@ import org.slf4j.Logger;
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
+import java.net.InetAddress;
 import java.util.Collection;
 import java.util.Map;
 
@@ -55,6 +59,7 @@ public final class StreamingManagerImpl implements StreamingManager {
     private final SessionDao sessionDao;
     private final DeviceStreamer upnpStreamer;
     private final DeviceStreamer airplayStreamer;
+    private final ContentPrefetcher contentPrefetcher;
 
     /**
      * Instantiates a new streaming manager implementation.
@@ -64,15 +69,17 @@ public final class StreamingManagerImpl implements StreamingManager {
      * @param sessionDao           session dao
      * @param upnpStreamer         upnp streamer
      * @param airplayStreamer      airplay streamer
+     * @param contentPrefetcher    content prefetcher
      */
     @Inject
     public StreamingManagerImpl(final ConfigurationManager configurationManager, final DeviceDao deviceDao, final SessionDao sessionDao,
                                 @Named("upnp") final DeviceStreamer upnpStreamer,
-                                @Named("airplay") final DeviceStreamer airplayStreamer) {
+                                @Named("airplay") final DeviceStreamer airplayStreamer, final ContentPrefetcher contentPrefetcher) {
         this.deviceDao = deviceDao;
         this.sessionDao = sessionDao;
         this.upnpStreamer = upnpStreamer;
         this.airplayStreamer = airplayStreamer;
+        this.contentPrefetcher = contentPrefetcher;
 
         // Start session status update task
         new UpdateSessionStatusService(configurationManager.getParameter(STREAMING_STATUS_UPDATE_DELAY_SECONDS)).startAsync();
@@ -106,6 +113,14 @@ public final class StreamingManagerImpl implements StreamingManager {
         return deviceDao.findDevices(hostAddress);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public MimeTypeProfile getMimeTypeProfile(final InetAddress address, final boolean addSubtitle) {
+        return deviceDao.getMimeTypeProfile(address, addSubtitle);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -139,6 +154,9 @@ public final class StreamingManagerImpl implements StreamingManager {
         Device device = deviceDao.getDevice(deviceId);
         sessionDao.initSession(deviceId, contentUrl, node.getName());
         getStreamer(device).play(device, contentUrl, node);
+        if (node instanceof ContentNode) {
+            contentPrefetcher.contentPlayed((ContentNode) node);
+        }
     }
 
     /**
@@ -49,7 +49,7 @@ public class AirplayDevice extends Device {
      * @param features device features
      */
     public AirplayDevice(final String id, final String name, final InetAddress address, final int port, final AirplayDeviceFeatures features) {
-        super(id, name, address, null);
+        super(id, name, address, null, null);
         this.port = port;
         this.features = features;
     }
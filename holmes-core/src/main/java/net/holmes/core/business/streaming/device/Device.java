@@ -17,6 +17,8 @@
 
 package net.holmes.core.business.streaming.device;
 
+import net.holmes.core.business.mimetype.model.MimeTypeProfile;
+
 import java.net.InetAddress;
 import java.util.Collection;
 
@@ -28,6 +30,7 @@ public abstract class Device {
     protected final String name;
     protected final InetAddress address;
     protected final Collection<String> supportedMimeTypes;
+    protected final MimeTypeProfile mimeTypeProfile;
 
     /**
      * Instantiates a new device
@@ -36,12 +39,15 @@ public abstract class Device {
      * @param name               device name
      * @param address            device inet address
      * @param supportedMimeTypes supported mime types
+     * @param mimeTypeProfile    supported mime types profile
      */
-    protected Device(final String id, final String name, final InetAddress address, final Collection<String> supportedMimeTypes) {
+    protected Device(final String id, final String name, final InetAddress address, final Collection<String> supportedMimeTypes,
+                     final MimeTypeProfile mimeTypeProfile) {
         this.id = id;
         this.name = name;
         this.address = address;
         this.supportedMimeTypes = supportedMimeTypes;
+        this.mimeTypeProfile = mimeTypeProfile;
     }
 
     /**
@@ -80,6 +86,15 @@ public abstract class Device {
         return supportedMimeTypes;
     }
 
+    /**
+     * Get supported mime types profile.
+     *
+     * @return supported mime types profile, null if all mime types are supported
+     */
+    public MimeTypeProfile getMimeTypeProfile() {
+        return mimeTypeProfile;
+    }
+
     /**
      * Get device type.
      *
@@ -17,6 +17,9 @@
 
 package net.holmes.core.business.streaming.device;
 
+import net.holmes.core.business.mimetype.model.MimeTypeProfile;
+
+import java.net.InetAddress;
 import java.util.Collection;
 
 /**
@@ -63,4 +66,13 @@ public interface DeviceDao {
      * @return list of devices
      */
     Collection<Device> findDevices(final String hostAddress);
+
+    /**
+     * Get mime type profile of devices located on a host.
+     *
+     * @param address     host address
+     * @param addSubtitle whether subtitle mime type is added to profile
+     * @return mime type profile or null if all mime types are available
+     */
+    MimeTypeProfile getMimeTypeProfile(final InetAddress address, final boolean addSubtitle);
 }
@@ -17,26 +17,37 @@
 
 package net.holmes.core.business.streaming.device;
 
+import net.holmes.core.business.mimetype.MimeTypeManager;
+import net.holmes.core.business.mimetype.model.MimeTypeProfile;
+
+import javax.inject.Inject;
 import javax.inject.Singleton;
-import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Optional;
+import java.net.InetAddress;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static java.util.stream.Collectors.toList;
+import static net.holmes.core.business.mimetype.model.MimeType.MIME_TYPE_SUBTITLE;
 
 /**
  * Device dao implementation.
  */
 @Singleton
 public final class DeviceDaoImpl implements DeviceDao {
+    private final MimeTypeManager mimeTypeManager;
     private final Map<String, Device> devices;
+    private final Map<InetAddress, HostMimeTypeProfiles> hostMimeTypeProfiles;
 
     /**
      * Instantiates a new device dao implementation.
+     *
+     * @param mimeTypeManager mime type manager
      */
-    public DeviceDaoImpl() {
-        this.devices = new HashMap<>();
+    @Inject
+    public DeviceDaoImpl(final MimeTypeManager mimeTypeManager) {
+        this.mimeTypeManager = mimeTypeManager;
+        this.devices = new ConcurrentHashMap<>();
+        this.hostMimeTypeProfiles = new ConcurrentHashMap<>();
     }
 
     /**
@@ -44,7 +55,12 @@ public final class DeviceDaoImpl implements DeviceDao {
      */
     @Override
     public void addDevice(final Device device) {
-        devices.put(device.getId(), device);
+        Device previousDevice = devices.put(device.getId(), device);
+        indexHost(device.getAddress());
+        if (previousDevice != null && !device.getAddress().equals(previousDevice.getAddress())) {
+            // Device moved to another host
+            indexHost(previousDevice.getAddress());
+        }
     }
 
     /**
@@ -56,6 +72,7 @@ public final class DeviceDaoImpl implements DeviceDao {
         if (device != null) {
             device.close();
             devices.remove(deviceId);
+            indexHost(device.getAddress());
             return true;
         }
         return false;
@@ -86,4 +103,57 @@ public final class DeviceDaoImpl implements DeviceDao {
                 .filter(device -> device.getAddress().getHostAddress().equals(hostAddress))
                 .collect(toList());
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public MimeTypeProfile getMimeTypeProfile(final InetAddress address, final boolean addSubtitle) {
+        HostMimeTypeProfiles profiles = hostMimeTypeProfiles.get(address);
+        if (profiles == null) {
+            return null;
+        }
+        return addSubtitle ? profiles.subtitleProfile : profiles.profile;
+    }
+
+    /**
+     * Rebuild mime type profiles of devices located on a host.
+     *
+     * @param address host address
+     */
+    private synchronized void indexHost(final InetAddress address) {
+        // Merge mime types supported by host devices
+        Set<String> mimeTypes = new HashSet<>();
+        devices.values().stream()
+                .filter(device -> address.equals(device.getAddress()) && device.getSupportedMimeTypes() != null)
+                .forEach(device -> mimeTypes.addAll(device.getSupportedMimeTypes()));
+
+        if (mimeTypes.isEmpty()) {
+            // No restriction on this host
+            hostMimeTypeProfiles.remove(address);
+        } else {
+            MimeTypeProfile profile = mimeTypeManager.getMimeTypeProfile(mimeTypes);
+            mimeTypes.add(MIME_TYPE_SUBTITLE.getMimeType());
+            hostMimeTypeProfiles.put(address, new HostMimeTypeProfiles(profile, mimeTypeManager.getMimeTypeProfile(mimeTypes)));
+        }
+    }
+
+    /**
+     * Mime type profiles of a host, with and without subtitles.
+     */
+    private static final class HostMimeTypeProfiles {
+        private final MimeTypeProfile profile;
+        private final MimeTypeProfile subtitleProfile;
+
+        /**
+         * Instantiates new host mime type profiles.
+         *
+         * @param profile         mime type profile
+         * @param subtitleProfile mime type profile including subtitles
+         */
+        HostMimeTypeProfiles(final MimeTypeProfile profile, final MimeTypeProfile subtitleProfile) {
+            this.profile = profile;
+            this.subtitleProfile = subtitleProfile;
+        }
+    }
 }
@@ -27,13 +27,18 @@ import org.fourthline.cling.model.meta.*;
 import org.fourthline.cling.model.types.DLNADoc;
 import org.fourthline.cling.model.types.DeviceType;
 import org.fourthline.cling.support.connectionmanager.ConnectionManagerService;
+import org.fourthline.cling.support.model.ProtocolInfo;
 
 import java.io.IOException;
+import java.util.Locale;
 
 import static net.holmes.core.common.Constants.*;
+import static net.holmes.core.common.MediaType.TYPE_IMAGE;
+import static net.holmes.core.common.MediaType.TYPE_VIDEO;
 import static net.holmes.core.common.StaticResourceLoader.UpnpIcon.*;
 import static net.holmes.core.common.StaticResourceLoader.getUpnpIcon;
 import static org.fourthline.cling.model.types.UDN.uniqueSystemIdentifier;
+import static org.fourthline.cling.support.model.Protocol.HTTP_GET;
 
 /**
  * Upnp utils.
@@ -41,6 +46,9 @@ import static org.fourthline.cling.model.types.UDN.uniqueSystemIdentifier;
 public final class UpnpUtils {
     public static final DeviceType DEVICE_TYPE = DeviceType.valueOf("urn:schemas-upnp-org:device:MediaServer:1");
     public static final DeviceIdentity DEVICE_IDENTITY = new DeviceIdentity(uniqueSystemIdentifier(HOLMES_UPNP_SERVER_NAME.toString()));
+    private static final String STREAMING_CONTENT_FEATURES = "DLNA.ORG_OP=01;DLNA.ORG_CI=0;DLNA.ORG_FLAGS=01700000000000000000000000000000";
+    private static final String TIME_SEEK_CONTENT_FEATURES = "DLNA.ORG_OP=11;DLNA.ORG_CI=0;DLNA.ORG_FLAGS=01700000000000000000000000000000";
+    private static final String IMAGE_CONTENT_FEATURES = "DLNA.ORG_OP=01;DLNA.ORG_CI=0;DLNA.ORG_FLAGS=00D00000000000000000000000000000";
 
     /**
      * Private constructor
@@ -59,6 +67,52 @@ public final class UpnpUtils {
         return new org.seamless.util.MimeType(mimeType.getType().getValue(), mimeType.getSubType());
     }
 
+    /**
+     * Get Upnp resource protocol info, holding DLNA content features.
+     *
+     * @param mimeType mime type
+     * @param timeSeek whether time seek is enabled
+     * @return Upnp protocol info
+     */
+    public static ProtocolInfo getUpnpProtocolInfo(final MimeType mimeType, final boolean timeSeek) {
+        return new ProtocolInfo(HTTP_GET, "*", getUpnpMimeType(mimeType).toString(), getDlnaContentFeatures(mimeType, timeSeek));
+    }
+
+    /**
+     * Get DLNA content features, as advertised in DIDL resources and in contentFeatures.dlna.org header.
+     * Time seek is only advertised for MPEG transport streams, which can be played from any packet.
+     *
+     * @param mimeType mime type
+     * @param timeSeek whether time seek is enabled
+     * @return DLNA content features
+     */
+    public static String getDlnaContentFeatures(final MimeType mimeType, final boolean timeSeek) {
+        if (mimeType.getType() == TYPE_IMAGE) {
+            return IMAGE_CONTENT_FEATURES;
+        }
+        return timeSeek && isTimeSeekSupported(mimeType) ? TIME_SEEK_CONTENT_FEATURES : STREAMING_CONTENT_FEATURES;
+    }
+
+    /**
+     * Whether DLNA time seek is supported for a mime type: byte ranges of MPEG transport streams are playable on their own,
+     * unlike ranges of MP4 or Matroska files that lack container headers.
+     *
+     * @param mimeType mime type
+     * @return true if time seek is supported
+     */
+    public static boolean isTimeSeekSupported(final MimeType mimeType) {
+        if (mimeType == null || mimeType.getType() != TYPE_VIDEO) {
+            return false;
+        }
+        switch (mimeType.getSubType().toLowerCase(Locale.ROOT)) {
+            case "mp2t":
+            case "vnd.dlna.mpeg-tts":
+                return true;
+            default:
+                return false;
+        }
+    }
+
 
     /**
      * Get Upnp device name associated to RemoteDevice
@@ -18,6 +18,7 @@
 package net.holmes.core.business.streaming.upnp.device;
 
 import net.holmes.core.business.mimetype.model.MimeType;
+import net.holmes.core.business.mimetype.model.MimeTypeProfile;
 import net.holmes.core.business.streaming.device.Device;
 import org.fourthline.cling.model.meta.RemoteService;
 
@@ -43,10 +44,12 @@ public class UpnpDevice extends Device {
      * @param name               device name
      * @param hostAddress        device host
      * @param supportedMimeTypes list of supported mime types
+     * @param mimeTypeProfile    supported mime types profile
      * @param avTransportService AV transport service
      */
-    public UpnpDevice(final String id, final String name, final InetAddress hostAddress, final Collection<String> supportedMimeTypes, final RemoteService avTransportService) {
-        super(id, name, hostAddress, supportedMimeTypes);
+    public UpnpDevice(final String id, final String name, final InetAddress hostAddress, final Collection<String> supportedMimeTypes,
+                      final MimeTypeProfile mimeTypeProfile, final RemoteService avTransportService) {
+        super(id, name, hostAddress, supportedMimeTypes, mimeTypeProfile);
         this.avTransportService = avTransportService;
         if (supportedMimeTypes != null) {
             for (String supportedMimeType : supportedMimeTypes) {
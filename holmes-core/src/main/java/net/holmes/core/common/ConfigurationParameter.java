@@ -33,6 +33,14 @@ public abstract class ConfigurationParameter<T> {
      * Enable streaming on Airplay devices
      */
     public static final ConfigurationBooleanParameter AIRPLAY_STREAMING_ENABLE = new ConfigurationBooleanParameter("enable_airplay_streaming", true);
+    /**
+     * Size of next content warmed up when a content is played to its end (in MB, 0 disables prefetch)
+     */
+    public static final ConfigurationIntParameter CONTENT_PREFETCH_SIZE = new ConfigurationIntParameter("content_prefetch_size", 8);
+    /**
+     * Maximum size of contents warmed up within 10 minutes (in MB)
+     */
+    public static final ConfigurationIntParameter CONTENT_PREFETCH_MAX_SIZE = new ConfigurationIntParameter("content_prefetch_max_size", 128);
     /**
      * Delay between Holmes release checks (in hours)
      */
@@ -61,6 +69,110 @@ public abstract class ConfigurationParameter<T> {
      * Number of threads used by Netty NIO worker event loop group (O means that Netty uses a default value)
      */
     public static final ConfigurationIntParameter HTTP_SERVER_WORKER_THREADS = new ConfigurationIntParameter("http_server_worker_threads", 0);
+    /**
+     * Number of threads used for blocking file system work of HTTP file requests (node lookup, stat, open)
+     */
+    public static final ConfigurationIntParameter HTTP_SERVER_FILE_THREADS = new ConfigurationIntParameter("http_server_file_threads", 8);
+    /**
+     * Send files with zero-copy file regions (sendfile) when no handler transforms the content
+     */
+    public static final ConfigurationBooleanParameter HTTP_SERVER_ZERO_COPY = new ConfigurationBooleanParameter("http_server_zero_copy", true);
+    /**
+     * Maximum number of open file channels shared by HTTP file requests
+     */
+    public static final ConfigurationIntParameter HTTP_SERVER_FILE_CHANNEL_CACHE_SIZE = new ConfigurationIntParameter("http_server_file_channel_cache_size", 64);
+    /**
+     * Delay after which an unused shared file channel is closed (in seconds)
+     */
+    public static final ConfigurationIntParameter HTTP_SERVER_FILE_CHANNEL_IDLE_SECONDS = new ConfigurationIntParameter("http_server_file_channel_idle_seconds", 30);
+    /**
+     * Memory used by cache of small content files, such as pictures and subtitles (in MB, 0 disables cache)
+     */
+    public static final ConfigurationIntParameter HTTP_SERVER_CONTENT_CACHE_SIZE = new ConfigurationIntParameter("http_server_content_cache_size", 32);
+    /**
+     * Maximum size of a content file kept in content cache (in KB)
+     */
+    public static final ConfigurationIntParameter HTTP_SERVER_CONTENT_CACHE_MAX_FILE_SIZE = new ConfigurationIntParameter("http_server_content_cache_max_file_size", 2048);
+    /**
+     * Disk space used by local cache of network folders contents (in MB)
+     */
+    public static final ConfigurationIntParameter HTTP_SERVER_DISK_CACHE_SIZE = new ConfigurationIntParameter("http_server_disk_cache_size", 10240);
+    /**
+     * Folders whose contents are cached on local disk, separated by path separator (empty disables disk cache)
+     */
+    public static final ConfigurationStringParameter HTTP_SERVER_DISK_CACHE_FOLDERS = new ConfigurationStringParameter("http_server_disk_cache_folders", "");
+    /**
+     * Maximum number of connections to each origin of remote contents, also number of proxy threads requesting origins
+     */
+    public static final ConfigurationIntParameter HTTP_SERVER_PROXY_MAX_CONNECTIONS = new ConfigurationIntParameter("http_server_proxy_max_connections", 4);
+    /**
+     * Delay during which remote content attributes are reused without checking origin (in seconds)
+     */
+    public static final ConfigurationIntParameter HTTP_SERVER_PROXY_VALIDATE_SECONDS = new ConfigurationIntParameter("http_server_proxy_validate_seconds", 60);
+    /**
+     * Size of asynchronous reads issued ahead of sequential file streams (in KB, 0 disables read-ahead)
+     */
+    public static final ConfigurationIntParameter HTTP_SERVER_READ_AHEAD_SIZE = new ConfigurationIntParameter("http_server_read_ahead_size", 2048);
+    /**
+     * Number of reads issued ahead of each sequential file stream
+     */
+    public static final ConfigurationIntParameter HTTP_SERVER_READ_AHEAD_BLOCKS = new ConfigurationIntParameter("http_server_read_ahead_blocks", 2);
+    /**
+     * Memory used by read-ahead buffers of all file streams (in MB)
+     */
+    public static final ConfigurationIntParameter HTTP_SERVER_READ_AHEAD_POOL_SIZE = new ConfigurationIntParameter("http_server_read_ahead_pool_size", 64);
+    /**
+     * Build time seek indexes of MPEG transport streams and answer DLNA time seek requests
+     */
+    public static final ConfigurationBooleanParameter HTTP_SERVER_TIME_SEEK = new ConfigurationBooleanParameter("http_server_time_seek", true);
+    /**
+     * Maximum bandwidth used by all HTTP clients (in KB per second, 0 means no limit)
+     */
+    public static final ConfigurationIntParameter HTTP_SERVER_GLOBAL_WRITE_LIMIT = new ConfigurationIntParameter("http_server_global_write_limit", 0);
+    /**
+     * Maximum bandwidth used by a single HTTP client host (in KB per second, 0 means no limit)
+     */
+    public static final ConfigurationIntParameter HTTP_SERVER_CLIENT_WRITE_LIMIT = new ConfigurationIntParameter("http_server_client_write_limit", 0);
+    /**
+     * Weight of clients with an active streaming session when sharing global bandwidth (other clients have a weight of 1)
+     */
+    public static final ConfigurationIntParameter HTTP_SERVER_STREAMING_PRIORITY = new ConfigurationIntParameter("http_server_streaming_priority", 4);
+    /**
+     * Pending bytes in a HTTP connection write buffer above which the connection becomes unwritable and file streaming pauses
+     */
+    public static final ConfigurationIntParameter HTTP_SERVER_WRITE_BUFFER_HIGH_WATER_MARK = new ConfigurationIntParameter("http_server_write_buffer_high_water_mark", 65536);
+    /**
+     * Pending bytes in a HTTP connection write buffer below which the connection becomes writable again and file streaming resumes
+     */
+    public static final ConfigurationIntParameter HTTP_SERVER_WRITE_BUFFER_LOW_WATER_MARK = new ConfigurationIntParameter("http_server_write_buffer_low_water_mark", 32768);
+    /**
+     * Delay after which a HTTP connection with no read, no write and no streaming progress is closed (in seconds, 0 disables)
+     */
+    public static final ConfigurationIntParameter HTTP_SERVER_IDLE_TIMEOUT_SECONDS = new ConfigurationIntParameter("http_server_idle_timeout_seconds", 300);
+    /**
+     * Use Linux native epoll transport when available (NIO transport otherwise)
+     */
+    public static final ConfigurationBooleanParameter HTTP_SERVER_NATIVE_TRANSPORT = new ConfigurationBooleanParameter("http_server_native_transport", true);
+    /**
+     * Set TCP_CORK on HTTP connections, coalescing response headers and body in full segments (native transport only)
+     */
+    public static final ConfigurationBooleanParameter HTTP_SERVER_TCP_CORK = new ConfigurationBooleanParameter("http_server_tcp_cork", false);
+    /**
+     * TCP_NOTSENT_LOWAT on HTTP connections, limiting unsent bytes in socket buffers (in bytes, 0 keeps system default, native transport only)
+     */
+    public static final ConfigurationIntParameter HTTP_SERVER_TCP_NOTSENT_LOWAT = new ConfigurationIntParameter("http_server_tcp_notsent_lowat", 0);
+    /**
+     * Write HTTP access log in Holmes data directory
+     */
+    public static final ConfigurationBooleanParameter HTTP_SERVER_ACCESS_LOG = new ConfigurationBooleanParameter("http_server_access_log", true);
+    /**
+     * Size of HTTP access log file above which it is rotated (in MB)
+     */
+    public static final ConfigurationIntParameter HTTP_SERVER_ACCESS_LOG_MAX_SIZE = new ConfigurationIntParameter("http_server_access_log_max_size", 10);
+    /**
+     * Number of rotated HTTP access log files kept
+     */
+    public static final ConfigurationIntParameter HTTP_SERVER_ACCESS_LOG_MAX_FILES = new ConfigurationIntParameter("http_server_access_log_max_files", 3);
 
     /**
      * System Tray parameters
@@ -89,17 +201,50 @@ public abstract class ConfigurationParameter<T> {
      * UPnP service port
      */
     public static final ConfigurationIntParameter UPNP_SERVICE_PORT = new ConfigurationIntParameter("upnp_service_port", 5002);
+    /**
+     * Maximum number of pre-rendered DIDL fragments kept in cache
+     */
+    public static final ConfigurationIntParameter UPNP_DIDL_CACHE_SIZE = new ConfigurationIntParameter("upnp_didl_cache_size", 10000);
 
     public static final ImmutableList<ConfigurationParameter> PARAMETERS = ImmutableList.<ConfigurationParameter>of(
             AIRPLAY_STREAMING_ENABLE,
+            CONTENT_PREFETCH_SIZE,
+            CONTENT_PREFETCH_MAX_SIZE,
             HTTP_SERVER_PORT,
             HTTP_SERVER_CACHE_SECOND,
             HTTP_SERVER_BOSS_THREADS,
             HTTP_SERVER_WORKER_THREADS,
+            HTTP_SERVER_FILE_THREADS,
+            HTTP_SERVER_ZERO_COPY,
+            HTTP_SERVER_FILE_CHANNEL_CACHE_SIZE,
+            HTTP_SERVER_FILE_CHANNEL_IDLE_SECONDS,
+            HTTP_SERVER_CONTENT_CACHE_SIZE,
+            HTTP_SERVER_CONTENT_CACHE_MAX_FILE_SIZE,
+            HTTP_SERVER_DISK_CACHE_SIZE,
+            HTTP_SERVER_DISK_CACHE_FOLDERS,
+            HTTP_SERVER_PROXY_MAX_CONNECTIONS,
+            HTTP_SERVER_PROXY_VALIDATE_SECONDS,
+            HTTP_SERVER_READ_AHEAD_SIZE,
+            HTTP_SERVER_READ_AHEAD_BLOCKS,
+            HTTP_SERVER_READ_AHEAD_POOL_SIZE,
+            HTTP_SERVER_TIME_SEEK,
+            HTTP_SERVER_GLOBAL_WRITE_LIMIT,
+            HTTP_SERVER_CLIENT_WRITE_LIMIT,
+            HTTP_SERVER_STREAMING_PRIORITY,
+            HTTP_SERVER_WRITE_BUFFER_HIGH_WATER_MARK,
+            HTTP_SERVER_WRITE_BUFFER_LOW_WATER_MARK,
+            HTTP_SERVER_IDLE_TIMEOUT_SECONDS,
+            HTTP_SERVER_NATIVE_TRANSPORT,
+            HTTP_SERVER_TCP_CORK,
+            HTTP_SERVER_TCP_NOTSENT_LOWAT,
+            HTTP_SERVER_ACCESS_LOG,
+            HTTP_SERVER_ACCESS_LOG_MAX_SIZE,
+            HTTP_SERVER_ACCESS_LOG_MAX_FILES,
             RELEASE_CHECK_DELAY_HOURS,
             STREAMING_STATUS_UPDATE_DELAY_SECONDS,
             SYSTRAY_ENABLE,
             UPNP_ADD_SUBTITLE,
+            UPNP_DIDL_CACHE_SIZE,
             UPNP_SERVER_ENABLE,
             UPNP_SERVER_NAME,
             UPNP_SERVICE_PORT);
@@ -20,6 +20,7 @@ package net.holmes.core.common;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 
 /**
  * File utility class.
@@ -53,6 +54,17 @@ public final class FileUtils {
         return file.isDirectory() && file.canRead() && !file.isHidden();
     }
 
+    /**
+     * Check if path is a remote content URL (HTTP or HTTPS).
+     *
+     * @param path path
+     * @return true if path is a remote URL
+     */
+    public static boolean isRemoteUrl(final String path) {
+        String lowerCasePath = path.toLowerCase(Locale.ROOT);
+        return lowerCasePath.startsWith("http://") || lowerCasePath.startsWith("https://");
+    }
+
     /**
      * List readable child folders and files.
      *
@@ -0,0 +1,198 @@
+/*
+ * Copyright (C) 2012-2015  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.service.http;
+
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.HttpHeaders;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static io.netty.handler.codec.http.HttpHeaders.Names.CONTENT_RANGE;
+import static io.netty.handler.codec.http.HttpResponseStatus.REQUESTED_RANGE_NOT_SATISFIABLE;
+
+/**
+ * Byte range requested in a HTTP Range header (RFC 7233).
+ */
+final class ByteRange {
+    private static final Pattern PATTERN_RANGE_HEADER = Pattern.compile("^\\s*bytes\\s*=(.*)$", Pattern.CASE_INSENSITIVE);
+    private static final Pattern PATTERN_RANGE_SPEC = Pattern.compile("^(\\d*)\\s*-\\s*(\\d*)$");
+    private static final int MAX_RANGE_SPECS = 32;
+
+    private final long start;
+    private final long end;
+
+    /**
+     * Instantiates a new byte range.
+     *
+     * @param start first byte position
+     * @param end   last byte position (inclusive)
+     */
+    ByteRange(final long start, final long end) {
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * Parse Range header against content length.
+     * Unsatisfiable range specs are dropped, overlapping or adjacent ranges are coalesced while keeping request order.
+     *
+     * @param rangeHeader   Range header value
+     * @param contentLength content length
+     * @return satisfiable byte ranges
+     * @throws HttpFileRequestException indicates that Range header is invalid or that no range is satisfiable
+     */
+    static List<ByteRange> parse(final String rangeHeader, final long contentLength) throws HttpFileRequestException {
+        Matcher headerMatcher = PATTERN_RANGE_HEADER.matcher(rangeHeader);
+        if (!headerMatcher.matches()) {
+            throw new HttpFileRequestException("Invalid range: " + rangeHeader, REQUESTED_RANGE_NOT_SATISFIABLE);
+        }
+
+        String[] specs = headerMatcher.group(1).split(",");
+        if (specs.length > MAX_RANGE_SPECS) {
+            throw new HttpFileRequestException("Too many ranges: " + rangeHeader, REQUESTED_RANGE_NOT_SATISFIABLE);
+        }
+
+        List<ByteRange> ranges = new ArrayList<>(specs.length);
+        boolean validSpec = false;
+        for (String spec : specs) {
+            if (spec.trim().isEmpty()) {
+                // Empty list elements are allowed
+                continue;
+            }
+            ByteRange range = parseSpec(spec.trim(), contentLength);
+            if (range == null) {
+                throw new HttpFileRequestException("Invalid range: " + rangeHeader, REQUESTED_RANGE_NOT_SATISFIABLE);
+            }
+            validSpec = true;
+            if (range.start < contentLength && range.start <= range.end) {
+                addRange(ranges, range);
+            }
+        }
+
+        if (!validSpec) {
+            throw new HttpFileRequestException("Invalid range: " + rangeHeader, REQUESTED_RANGE_NOT_SATISFIABLE);
+        } else if (ranges.isEmpty()) {
+            HttpHeaders headers = new DefaultHttpHeaders();
+            headers.set(CONTENT_RANGE, "bytes */" + contentLength);
+            throw new HttpFileRequestException("Unsatisfiable range: " + rangeHeader, REQUESTED_RANGE_NOT_SATISFIABLE, headers);
+        }
+        return ranges;
+    }
+
+    /**
+     * Parse a single byte range spec ("first-last", "first-" or "-suffixLength").
+     *
+     * @param spec          byte range spec
+     * @param contentLength content length
+     * @return byte range (may be unsatisfiable) or null if spec is invalid
+     */
+    private static ByteRange parseSpec(final String spec, final long contentLength) {
+        Matcher matcher = PATTERN_RANGE_SPEC.matcher(spec);
+        if (!matcher.matches() || matcher.group(1).isEmpty() && matcher.group(2).isEmpty()) {
+            return null;
+        }
+
+        try {
+            if (matcher.group(1).isEmpty()) {
+                // Suffix range: last N bytes
+                long suffixLength = Long.parseLong(matcher.group(2));
+                return new ByteRange(Math.max(0, contentLength - suffixLength), contentLength - 1);
+            }
+
+            long first = Long.parseLong(matcher.group(1));
+            if (matcher.group(2).isEmpty()) {
+                // Open range: from first byte to the end
+                return new ByteRange(first, contentLength - 1);
+            }
+
+            long last = Long.parseLong(matcher.group(2));
+            return last < first ? null : new ByteRange(first, Math.min(last, contentLength - 1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Add range to range list, coalescing it with ranges it overlaps or is adjacent to.
+     *
+     * @param ranges range list
+     * @param range  range to add
+     */
+    private static void addRange(final List<ByteRange> ranges, final ByteRange range) {
+        ByteRange merged = range;
+        int index = ranges.size();
+        for (int i = ranges.size() - 1; i >= 0; i--) {
+            ByteRange other = ranges.get(i);
+            if (merged.start <= other.end + 1 && other.start <= merged.end + 1) {
+                // Merge into the earliest range, as it comes first in request order
+                merged = new ByteRange(Math.min(merged.start, other.start), Math.max(merged.end, other.end));
+                ranges.remove(i);
+                index = i;
+            }
+        }
+        ranges.add(index, merged);
+    }
+
+    /**
+     * Get first byte position.
+     *
+     * @return first byte position
+     */
+    public long getStart() {
+        return start;
+    }
+
+    /**
+     * Get last byte position (inclusive).
+     *
+     * @return last byte position
+     */
+    public long getEnd() {
+        return end;
+    }
+
+    /**
+     * Get range length.
+     *
+     * @return range length
+     */
+    public long getLength() {
+        return end - start + 1;
+    }
+
+    /**
+     * Get Content-Range header value.
+     *
+     * @param contentLength complete content length
+     * @return Content-Range header value
+     */
+    public String getContentRange(final long contentLength) {
+        return "bytes " + start + "-" + end + "/" + contentLength;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return start + "-" + end;
+    }
+}
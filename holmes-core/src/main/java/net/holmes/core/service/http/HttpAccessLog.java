@@ -0,0 +1,306 @@
+/*
+ * Copyright (C) 2012-2015  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.service.http;
+
+import io.netty.util.concurrent.DefaultThreadFactory;
+import org.slf4j.Logger;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Asynchronous HTTP access log.
+ * <p>
+ * Entries are queued by event loops and written by a background thread, so that request handling never waits for disk.
+ * Entries are dropped when queue is full. Log file is rotated when its size exceeds a limit. Lines follow common log format,
+ * followed by time to first byte and duration in milliseconds, request route and requested range.
+ * </p>
+ */
+final class HttpAccessLog {
+    private static final Logger LOGGER = getLogger(HttpAccessLog.class);
+    private static final int QUEUE_CAPACITY = 4096;
+    private static final int BUFFER_SIZE = 16 * 1024;
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("dd/MMM/yyyy:HH:mm:ss Z", Locale.ENGLISH)
+            .withZone(ZoneId.systemDefault());
+    private static final Entry CLOSE = new Entry(null, 0, null, null, null, 0, 0, 0, 0, null, null);
+
+    private final Path logFile;
+    private final long maxSize;
+    private final int maxFiles;
+    private final BlockingQueue<Entry> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final Thread writerThread;
+    private volatile boolean closed;
+    private OutputStream output;
+    private long size;
+
+    /**
+     * Instantiates a new HTTP access log and starts its writer thread.
+     *
+     * @param logFile  log file
+     * @param maxSize  size in bytes above which log file is rotated
+     * @param maxFiles number of rotated log files kept
+     */
+    HttpAccessLog(final Path logFile, final long maxSize, final int maxFiles) {
+        this.logFile = logFile;
+        this.maxSize = maxSize;
+        this.maxFiles = maxFiles;
+        this.writerThread = new DefaultThreadFactory("holmes-access-log", true, Thread.MIN_PRIORITY).newThread(new Runnable() {
+            @Override
+            public void run() {
+                writeEntries();
+            }
+        });
+        this.writerThread.start();
+    }
+
+    /**
+     * Queue an access log entry. Entry is dropped if queue is full or if log is closed.
+     *
+     * @param clientAddress client IP address
+     * @param time          request date
+     * @param method        request method
+     * @param uri           request URI
+     * @param protocol      request protocol version
+     * @param status        response status code (0 if no response was sent)
+     * @param bytes         response content bytes
+     * @param ttfbNanos     time to first byte in nanoseconds
+     * @param durationNanos request duration in nanoseconds
+     * @param route         request route
+     * @param range         requested range, may be null
+     */
+    public void log(final String clientAddress, final long time, final String method, final String uri, final String protocol, final int status,
+                    final long bytes, final long ttfbNanos, final long durationNanos, final String route, final String range) {
+        if (closed || !queue.offer(new Entry(clientAddress, time, method, uri, protocol, status, bytes, ttfbNanos, durationNanos, route, range))) {
+            droppedCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Get number of entries dropped because queue was full.
+     *
+     * @return number of dropped entries
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * Close access log: queued entries are written, then writer thread stops.
+     */
+    public void close() {
+        closed = true;
+        queue.offer(CLOSE);
+        try {
+            writerThread.join(SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writer thread loop: write entries in batches and flush log file when queue is empty.
+     */
+    private void writeEntries() {
+        Entry entry;
+        try {
+            do {
+                entry = queue.poll(1, SECONDS);
+                if (entry != null && entry != CLOSE) {
+                    write(entry);
+                }
+                if (queue.isEmpty()) {
+                    flush();
+                }
+            } while (entry != CLOSE && !(entry == null && closed));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            closeOutput();
+        }
+    }
+
+    /**
+     * Write an entry, rotating log file when it is full.
+     *
+     * @param entry entry
+     */
+    private void write(final Entry entry) {
+        byte[] line = entry.format().getBytes(UTF_8);
+        try {
+            if (output != null && size + line.length > maxSize) {
+                closeOutput();
+                rotate();
+            }
+            if (output == null) {
+                Files.createDirectories(logFile.getParent());
+                output = new BufferedOutputStream(Files.newOutputStream(logFile, CREATE, APPEND), BUFFER_SIZE);
+                size = Files.size(logFile);
+            }
+            output.write(line);
+            size += line.length;
+        } catch (IOException e) {
+            LOGGER.warn("Failed to write HTTP access log {}: {}", logFile, e.getMessage());
+            closeOutput();
+            droppedCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Rotate log files: access.log becomes access.1.log, access.1.log becomes access.2.log and so on, oldest file is deleted.
+     *
+     * @throws IOException indicates that log files cannot be moved
+     */
+    private void rotate() throws IOException {
+        Files.deleteIfExists(getRotatedFile(maxFiles));
+        for (int index = maxFiles - 1; index >= 1; index--) {
+            Path rotatedFile = getRotatedFile(index);
+            if (Files.exists(rotatedFile)) {
+                Files.move(rotatedFile, getRotatedFile(index + 1), REPLACE_EXISTING);
+            }
+        }
+        if (maxFiles > 0) {
+            Files.move(logFile, getRotatedFile(1), REPLACE_EXISTING);
+        } else {
+            Files.deleteIfExists(logFile);
+        }
+    }
+
+    /**
+     * Get rotated log file.
+     *
+     * @param index rotation index (1 for most recent file)
+     * @return rotated log file
+     */
+    Path getRotatedFile(final int index) {
+        String fileName = logFile.getFileName().toString();
+        int extensionIndex = fileName.lastIndexOf('.');
+        String rotatedName = extensionIndex > 0 ? fileName.substring(0, extensionIndex) + "." + index + fileName.substring(extensionIndex)
+                : fileName + "." + index;
+        return logFile.resolveSibling(rotatedName);
+    }
+
+    /**
+     * Flush log file.
+     */
+    private void flush() {
+        if (output != null) {
+            try {
+                output.flush();
+            } catch (IOException e) {
+                LOGGER.warn("Failed to flush HTTP access log {}: {}", logFile, e.getMessage());
+                closeOutput();
+            }
+        }
+    }
+
+    /**
+     * Close log file.
+     */
+    private void closeOutput() {
+        if (output != null) {
+            try {
+                output.close();
+            } catch (IOException e) {
+                LOGGER.debug("Failed to close HTTP access log {}: {}", logFile, e.getMessage());
+            }
+            output = null;
+        }
+    }
+
+    /**
+     * Access log entry.
+     */
+    private static final class Entry {
+        private final String clientAddress;
+        private final long time;
+        private final String method;
+        private final String uri;
+        private final String protocol;
+        private final int status;
+        private final long bytes;
+        private final long ttfbNanos;
+        private final long durationNanos;
+        private final String route;
+        private final String range;
+
+        /**
+         * Instantiates a new access log entry.
+         *
+         * @param clientAddress client IP address
+         * @param time          request date
+         * @param method        request method
+         * @param uri           request URI
+         * @param protocol      request protocol version
+         * @param status        response status code
+         * @param bytes         response content bytes
+         * @param ttfbNanos     time to first byte in nanoseconds
+         * @param durationNanos request duration in nanoseconds
+         * @param route         request route
+         * @param range         requested range
+         */
+        Entry(final String clientAddress, final long time, final String method, final String uri, final String protocol, final int status,
+              final long bytes, final long ttfbNanos, final long durationNanos, final String route, final String range) {
+            this.clientAddress = clientAddress;
+            this.time = time;
+            this.method = method;
+            this.uri = uri;
+            this.protocol = protocol;
+            this.status = status;
+            this.bytes = bytes;
+            this.ttfbNanos = ttfbNanos;
+            this.durationNanos = durationNanos;
+            this.route = route;
+            this.range = range;
+        }
+
+        /**
+         * Format entry as a log line.
+         *
+         * @return log line
+         */
+        String format() {
+            StringBuilder line = new StringBuilder(160)
+                    .append(clientAddress).append(" - - [").append(DATE_FORMATTER.format(Instant.ofEpochMilli(time))).append("] \"")
+                    .append(method).append(' ').append(uri).append(' ').append(protocol).append("\" ")
+                    .append(status).append(' ').append(bytes).append(' ')
+                    .append(NANOSECONDS.toMillis(ttfbNanos)).append(' ').append(NANOSECONDS.toMillis(durationNanos)).append(' ')
+                    .append(route).append(' ').append(range != null ? '"' + range + '"' : "-")
+                    .append(System.lineSeparator());
+            return line.toString();
+        }
+    }
+}
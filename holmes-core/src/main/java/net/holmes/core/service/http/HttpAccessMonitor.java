@@ -0,0 +1,366 @@
+/*
+ * Copyright (C) 2012-2015  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.service.http;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufHolder;
+import io.netty.channel.*;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.LastHttpContent;
+import net.holmes.core.business.configuration.ConfigurationManager;
+import net.holmes.core.service.http.HttpRequestRouter.RouteType;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static io.netty.handler.codec.http.HttpHeaders.Names.RANGE;
+import static io.netty.handler.codec.http.HttpResponseStatus.PARTIAL_CONTENT;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static net.holmes.core.common.ConfigurationParameter.*;
+
+/**
+ * HTTP access monitor.
+ * <p>
+ * Records, for each HTTP request, time to first byte (until response headers are written), total duration (until last
+ * content is written to the connection), bytes sent and range size. Values are aggregated in lock-free histograms by route
+ * (content, static, backend) and counted by client address, so that recording a request never blocks an event loop.
+ * Requests are also written to an asynchronous access log in Holmes data directory.
+ * </p>
+ */
+@Singleton
+public final class HttpAccessMonitor {
+    private static final String LOG_DIRECTORY = "log";
+    private static final String LOG_FILE = "access.log";
+    private static final int MAX_CLIENTS = 256;
+    private static final String UNKNOWN_ADDRESS = "-";
+
+    private final HttpRequestRouter requestRouter;
+    private final HttpAccessLog accessLog;
+    private final Map<RouteType, RouteStatistics> routeStatistics;
+    private final ConcurrentMap<String, ClientStatistics> clientStatistics = new ConcurrentHashMap<>();
+
+    /**
+     * Instantiates a new HTTP access monitor.
+     *
+     * @param configurationManager configuration manager
+     * @param localHolmesDataDir   local Holmes data directory
+     * @param requestRouter        request router
+     */
+    @Inject
+    public HttpAccessMonitor(final ConfigurationManager configurationManager, @Named("localHolmesDataDir") final String localHolmesDataDir,
+                             final HttpRequestRouter requestRouter) {
+        this(requestRouter, configurationManager.getParameter(HTTP_SERVER_ACCESS_LOG)
+                ? new HttpAccessLog(Paths.get(localHolmesDataDir, LOG_DIRECTORY, LOG_FILE),
+                configurationManager.getParameter(HTTP_SERVER_ACCESS_LOG_MAX_SIZE) * 1024L * 1024L,
+                configurationManager.getParameter(HTTP_SERVER_ACCESS_LOG_MAX_FILES))
+                : null);
+    }
+
+    /**
+     * Instantiates a new HTTP access monitor.
+     *
+     * @param requestRouter request router
+     * @param accessLog     access log (null if access log is disabled)
+     */
+    HttpAccessMonitor(final HttpRequestRouter requestRouter, final HttpAccessLog accessLog) {
+        this.requestRouter = requestRouter;
+        this.accessLog = accessLog;
+        this.routeStatistics = new EnumMap<>(RouteType.class);
+        for (RouteType routeType : RouteType.values()) {
+            routeStatistics.put(routeType, new RouteStatistics());
+        }
+    }
+
+    /**
+     * Create a new access handler. This handler must be registered right after HTTP response encoder, so that it sees
+     * aggregated requests, and response contents once they are split in chunks by chunked write handler.
+     *
+     * @return access handler
+     */
+    public ChannelHandler newAccessHandler() {
+        return new AccessHandler();
+    }
+
+    /**
+     * Get request statistics by route: request, error and aborted request counts, and histograms of time to first byte
+     * and duration (in microseconds), bytes sent and range size.
+     *
+     * @return statistics by route name
+     */
+    public Map<String, Map<String, Object>> getRouteStatistics() {
+        Map<String, Map<String, Object>> statistics = new LinkedHashMap<>();
+        for (Map.Entry<RouteType, RouteStatistics> entry : routeStatistics.entrySet()) {
+            statistics.put(getRouteName(entry.getKey()), entry.getValue().getSummary());
+        }
+        return statistics;
+    }
+
+    /**
+     * Get request and sent byte counts by client address.
+     *
+     * @return statistics by client address
+     */
+    public Map<String, Map<String, Long>> getClientStatistics() {
+        Map<String, Map<String, Long>> statistics = new TreeMap<>();
+        for (Map.Entry<String, ClientStatistics> entry : clientStatistics.entrySet()) {
+            Map<String, Long> summary = new LinkedHashMap<>();
+            summary.put("requests", entry.getValue().requestCount.get());
+            summary.put("bytesSent", entry.getValue().sentBytes.get());
+            statistics.put(entry.getKey(), summary);
+        }
+        return statistics;
+    }
+
+    /**
+     * Get number of access log entries dropped because access log could not keep up.
+     *
+     * @return number of dropped entries
+     */
+    public long getDroppedLogCount() {
+        return accessLog != null ? accessLog.getDroppedCount() : 0;
+    }
+
+    /**
+     * Close access log, writing queued entries.
+     */
+    public void shutdown() {
+        if (accessLog != null) {
+            accessLog.close();
+        }
+    }
+
+    /**
+     * Get route name.
+     *
+     * @param routeType route type
+     * @return route name
+     */
+    private static String getRouteName(final RouteType routeType) {
+        return routeType == RouteType.REST ? "backend" : routeType.name().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Record a completed request.
+     *
+     * @param request       request
+     * @param clientAddress client address
+     * @param endTime       request end time (nano time)
+     * @param success       whether whole response was written
+     */
+    private void record(final AccessedRequest request, final String clientAddress, final long endTime, final boolean success) {
+        long ttfb = request.responseTime != 0 ? request.responseTime - request.startTime : 0;
+        long duration = endTime - request.startTime;
+
+        RouteStatistics statistics = routeStatistics.get(request.routeType);
+        statistics.ttfb.record(NANOSECONDS.toMicros(ttfb));
+        statistics.duration.record(NANOSECONDS.toMicros(duration));
+        statistics.sentBytes.record(request.sentBytes);
+        if (request.status == PARTIAL_CONTENT.code()) {
+            statistics.rangeSize.record(request.sentBytes);
+        }
+        if (!success) {
+            statistics.abortedCount.incrementAndGet();
+        } else if (request.status >= 400) {
+            statistics.errorCount.incrementAndGet();
+        }
+
+        // Count by client, up to a maximum number of clients
+        ClientStatistics client = clientStatistics.get(clientAddress);
+        if (client == null && clientStatistics.size() < MAX_CLIENTS) {
+            clientStatistics.putIfAbsent(clientAddress, new ClientStatistics());
+            client = clientStatistics.get(clientAddress);
+        }
+        if (client != null) {
+            client.requestCount.incrementAndGet();
+            client.sentBytes.addAndGet(request.sentBytes);
+        }
+
+        if (accessLog != null) {
+            accessLog.log(clientAddress, request.time, request.method, request.uri, request.protocol, request.status, request.sentBytes,
+                    ttfb, duration, getRouteName(request.routeType), request.range);
+        }
+    }
+
+    /**
+     * Access handler: tracks requests of a connection. Responses are written in request order, so pending requests
+     * are matched to responses in a queue. Handler runs on connection event loop, its state is not shared.
+     */
+    private final class AccessHandler extends ChannelDuplexHandler {
+        private final Deque<AccessedRequest> pendingRequests = new ArrayDeque<>();
+        private String clientAddress;
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void channelRead(final ChannelHandlerContext context, final Object msg) throws Exception {
+            if (msg instanceof HttpRequest) {
+                HttpRequest request = (HttpRequest) msg;
+                String uri = request.getUri();
+                int queryStart = uri.indexOf('?');
+                RouteType routeType = requestRouter.route(queryStart < 0 ? uri : uri.substring(0, queryStart)).getType();
+                pendingRequests.add(new AccessedRequest(request, routeType));
+            }
+            super.channelRead(context, msg);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void write(final ChannelHandlerContext context, final Object msg, final ChannelPromise promise) throws Exception {
+            final AccessedRequest request = pendingRequests.peek();
+            if (request != null) {
+                if (msg instanceof HttpResponse && request.responseTime == 0) {
+                    request.status = ((HttpResponse) msg).getStatus().code();
+                    request.responseTime = System.nanoTime();
+                }
+                if (msg instanceof ByteBufHolder) {
+                    request.sentBytes += ((ByteBufHolder) msg).content().readableBytes();
+                } else if (msg instanceof ByteBuf) {
+                    request.sentBytes += ((ByteBuf) msg).readableBytes();
+                } else if (msg instanceof FileRegion) {
+                    request.sentBytes += ((FileRegion) msg).count();
+                }
+                if (msg instanceof LastHttpContent) {
+                    pendingRequests.poll();
+                    final String address = getClientAddress(context);
+                    if (promise == context.voidPromise()) {
+                        record(request, address, System.nanoTime(), true);
+                    } else {
+                        promise.addListener(new ChannelFutureListener() {
+                            @Override
+                            public void operationComplete(final ChannelFuture future) {
+                                record(request, address, System.nanoTime(), future.isSuccess());
+                            }
+                        });
+                    }
+                }
+            }
+            super.write(context, msg, promise);
+        }
+
+        /**
+         * Requests still pending when connection is closed are recorded as aborted.
+         *
+         * @param context channel context
+         * @throws Exception if next handler fails
+         */
+        @Override
+        public void channelInactive(final ChannelHandlerContext context) throws Exception {
+            String address = getClientAddress(context);
+            long endTime = System.nanoTime();
+            AccessedRequest request;
+            while ((request = pendingRequests.poll()) != null) {
+                record(request, address, endTime, false);
+            }
+            super.channelInactive(context);
+        }
+
+        /**
+         * Get client IP address of connection.
+         *
+         * @param context channel context
+         * @return client address
+         */
+        private String getClientAddress(final ChannelHandlerContext context) {
+            if (clientAddress == null) {
+                SocketAddress remoteAddress = context.channel().remoteAddress();
+                clientAddress = remoteAddress instanceof InetSocketAddress && ((InetSocketAddress) remoteAddress).getAddress() != null
+                        ? ((InetSocketAddress) remoteAddress).getAddress().getHostAddress() : UNKNOWN_ADDRESS;
+            }
+            return clientAddress;
+        }
+    }
+
+    /**
+     * Request being served.
+     */
+    private static final class AccessedRequest {
+        private final long time = System.currentTimeMillis();
+        private final long startTime = System.nanoTime();
+        private final String method;
+        private final String uri;
+        private final String protocol;
+        private final String range;
+        private final RouteType routeType;
+        private int status;
+        private long responseTime;
+        private long sentBytes;
+
+        /**
+         * Instantiates a new accessed request.
+         *
+         * @param request   HTTP request
+         * @param routeType request route type
+         */
+        AccessedRequest(final HttpRequest request, final RouteType routeType) {
+            this.method = request.getMethod().name();
+            this.uri = request.getUri();
+            this.protocol = request.getProtocolVersion().text();
+            this.range = request.headers().get(RANGE);
+            this.routeType = routeType;
+        }
+    }
+
+    /**
+     * Request statistics of a route.
+     */
+    private static final class RouteStatistics {
+        private final HttpHistogram ttfb = new HttpHistogram();
+        private final HttpHistogram duration = new HttpHistogram();
+        private final HttpHistogram sentBytes = new HttpHistogram();
+        private final HttpHistogram rangeSize = new HttpHistogram();
+        private final AtomicLong errorCount = new AtomicLong();
+        private final AtomicLong abortedCount = new AtomicLong();
+
+        /**
+         * Get statistics summary.
+         *
+         * @return summary
+         */
+        Map<String, Object> getSummary() {
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("requests", duration.getCount());
+            summary.put("errors", errorCount.get());
+            summary.put("aborted", abortedCount.get());
+            summary.put("ttfbMicros", ttfb.getSummary());
+            summary.put("durationMicros", duration.getSummary());
+            summary.put("bytesSent", sentBytes.getSummary());
+            summary.put("rangeSize", rangeSize.getSummary());
+            return summary;
+        }
+    }
+
+    /**
+     * Request statistics of a client.
+     */
+    private static final class ClientStatistics {
+        private final AtomicLong requestCount = new AtomicLong();
+        private final AtomicLong sentBytes = new AtomicLong();
+    }
+}
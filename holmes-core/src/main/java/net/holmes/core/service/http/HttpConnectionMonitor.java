@@ -0,0 +1,194 @@
+/*
+ * Copyright (C) 2012-2015  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.service.http;
+
+import io.netty.channel.*;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.DefaultChannelGroup;
+import io.netty.handler.stream.ChunkedInput;
+import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.handler.timeout.IdleStateHandler;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import net.holmes.core.business.configuration.ConfigurationManager;
+import org.slf4j.Logger;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static net.holmes.core.common.ConfigurationParameter.HTTP_SERVER_IDLE_TIMEOUT_SECONDS;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * HTTP connection monitor.
+ * <p>
+ * Tracks open HTTP connections and file contents being written to them. A connection with no read, no write and no
+ * file streaming progress during idle timeout (typically a paused or stalled renderer) is closed, so that its file
+ * handles and buffers are released. Monitor exposes open connection, open file handle and buffered byte gauges.
+ * </p>
+ */
+@Singleton
+public final class HttpConnectionMonitor {
+    private static final Logger LOGGER = getLogger(HttpConnectionMonitor.class);
+
+    private final ChannelGroup channels = new DefaultChannelGroup("holmes-http", GlobalEventExecutor.INSTANCE);
+    private final AtomicInteger openFileCount = new AtomicInteger();
+    private final int idleTimeoutSeconds;
+
+    /**
+     * Instantiates a new HTTP connection monitor.
+     *
+     * @param configurationManager configuration manager
+     */
+    @Inject
+    public HttpConnectionMonitor(final ConfigurationManager configurationManager) {
+        this.idleTimeoutSeconds = configurationManager.getParameter(HTTP_SERVER_IDLE_TIMEOUT_SECONDS);
+    }
+
+    /**
+     * Create a new connection handler. This handler must be registered after chunked write handler, so that it sees
+     * file contents before they are split in chunks.
+     *
+     * @return connection handler
+     */
+    public ChannelHandler newConnectionHandler() {
+        return new ConnectionHandler(idleTimeoutSeconds);
+    }
+
+    /**
+     * Get number of open HTTP connections.
+     *
+     * @return number of connections
+     */
+    public int getConnectionCount() {
+        return channels.size();
+    }
+
+    /**
+     * Get number of file contents (file regions or chunked files) being written, i.e. open file handles.
+     *
+     * @return number of open file handles
+     */
+    public int getOpenFileCount() {
+        return openFileCount.get();
+    }
+
+    /**
+     * Get number of bytes buffered in write buffers of open HTTP connections.
+     *
+     * @return number of buffered bytes
+     */
+    public long getBufferedBytes() {
+        long bufferedBytes = 0;
+        for (Channel channel : channels) {
+            ChannelOutboundBuffer outboundBuffer = channel.unsafe().outboundBuffer();
+            if (outboundBuffer != null) {
+                bufferedBytes += outboundBuffer.totalPendingWriteBytes();
+            }
+        }
+        return bufferedBytes;
+    }
+
+    /**
+     * Connection handler: registers connection, tracks file contents and closes idle connection.
+     */
+    private final class ConnectionHandler extends IdleStateHandler {
+        private final long idleTimeoutNanos;
+        private long lastProgressTime;
+
+        /**
+         * Instantiates a new connection handler.
+         *
+         * @param idleTimeoutSeconds idle timeout in seconds
+         */
+        ConnectionHandler(final int idleTimeoutSeconds) {
+            super(0, 0, idleTimeoutSeconds);
+            this.idleTimeoutNanos = SECONDS.toNanos(idleTimeoutSeconds);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void channelActive(final ChannelHandlerContext context) throws Exception {
+            channels.add(context.channel());
+            super.channelActive(context);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void write(final ChannelHandlerContext context, final Object msg, final ChannelPromise promise) throws Exception {
+            if (msg instanceof FileRegion || msg instanceof ChunkedInput) {
+                super.write(context, msg, newFilePromise(context, promise));
+            } else {
+                super.write(context, msg, promise);
+            }
+        }
+
+        /**
+         * Connection is closed, unless a file content is still being streamed: a single file region write only
+         * completes at the end of the file, so streaming progress is checked as well as write completion.
+         *
+         * @param context channel context
+         * @param evt     idle state event
+         */
+        @Override
+        protected void channelIdle(final ChannelHandlerContext context, final IdleStateEvent evt) {
+            if (System.nanoTime() - lastProgressTime >= idleTimeoutNanos) {
+                LOGGER.debug("Close idle HTTP connection {}", context.channel());
+                context.close();
+            }
+        }
+
+        /**
+         * Get a promise tracking file content writing progress and completion, which completes original promise.
+         *
+         * @param context channel context
+         * @param promise original promise
+         * @return file content promise
+         */
+        private ChannelPromise newFilePromise(final ChannelHandlerContext context, final ChannelPromise promise) {
+            openFileCount.incrementAndGet();
+            lastProgressTime = System.nanoTime();
+            ChannelProgressivePromise filePromise = context.newProgressivePromise();
+            filePromise.addListener(new ChannelProgressiveFutureListener() {
+                @Override
+                public void operationProgressed(final ChannelProgressiveFuture future, final long progress, final long total) {
+                    lastProgressTime = System.nanoTime();
+                    if (promise instanceof ChannelProgressivePromise) {
+                        ((ChannelProgressivePromise) promise).tryProgress(progress, total);
+                    }
+                }
+
+                @Override
+                public void operationComplete(final ChannelProgressiveFuture future) {
+                    openFileCount.decrementAndGet();
+                    if (future.isSuccess()) {
+                        promise.trySuccess();
+                    } else {
+                        promise.tryFailure(future.cause());
+                    }
+                }
+            });
+            return filePromise;
+        }
+    }
+}
@@ -0,0 +1,245 @@
+/*
+ * Copyright (C) 2012-2015  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.service.http;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import net.holmes.core.business.configuration.ConfigurationManager;
+import org.slf4j.Logger;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.nio.file.StandardOpenOption.READ;
+import static net.holmes.core.common.ConfigurationParameter.HTTP_SERVER_CONTENT_CACHE_MAX_FILE_SIZE;
+import static net.holmes.core.common.ConfigurationParameter.HTTP_SERVER_CONTENT_CACHE_SIZE;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * In-memory cache of small content files.
+ * <p>
+ * Slideshows and photo grids request the same pictures and subtitles over and over. Content files smaller than a threshold
+ * are kept in pooled direct buffers, in a least recently used cache bounded by total size. Cached content is valid as long as
+ * file length and modification date do not change. Responses are slices of cached buffers, each slice holding a reference
+ * to its buffer until it is written out, so that an evicted buffer is released once its last response is sent.
+ * </p>
+ */
+@Singleton
+public final class HttpContentCache {
+    private static final Logger LOGGER = getLogger(HttpContentCache.class);
+
+    private final long maxFileSize;
+    private final Cache<String, CachedContent> contents;
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong size = new AtomicLong();
+
+    /**
+     * Instantiates a new HTTP content cache.
+     *
+     * @param configurationManager configuration manager
+     */
+    @Inject
+    public HttpContentCache(final ConfigurationManager configurationManager) {
+        this(configurationManager.getParameter(HTTP_SERVER_CONTENT_CACHE_SIZE) * 1024L * 1024L,
+                configurationManager.getParameter(HTTP_SERVER_CONTENT_CACHE_MAX_FILE_SIZE) * 1024L);
+    }
+
+    /**
+     * Instantiates a new HTTP content cache.
+     *
+     * @param maximumSize maximum size of cached contents in bytes (0 disables cache)
+     * @param maxFileSize maximum size of a cached content file in bytes
+     */
+    HttpContentCache(final long maximumSize, final long maxFileSize) {
+        this.maxFileSize = Math.min(maxFileSize, maximumSize);
+        this.contents = CacheBuilder.newBuilder()
+                .maximumWeight(maximumSize)
+                .concurrencyLevel(1)
+                .weigher(new Weigher<String, CachedContent>() {
+                    @Override
+                    public int weigh(final String path, final CachedContent content) {
+                        return content.buffer.capacity();
+                    }
+                })
+                .removalListener(new RemovalListener<String, CachedContent>() {
+                    @Override
+                    public void onRemoval(final RemovalNotification<String, CachedContent> notification) {
+                        // Release cache reference, buffer is freed when last response slice is released
+                        size.addAndGet(-notification.getValue().buffer.capacity());
+                        notification.getValue().buffer.release();
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * Acquire cached content of a file, file is loaded in cache if it is small enough. Caller must release returned buffer.
+     *
+     * @param file         content file
+     * @param length       file length
+     * @param lastModified file last modification date
+     * @return retained content buffer, or null if file is not cached
+     */
+    public ByteBuf acquire(final File file, final long length, final long lastModified) {
+        if (length <= 0 || length > maxFileSize) {
+            return null;
+        }
+
+        // Get cached content
+        String path = file.getAbsolutePath();
+        ByteBuf buffer = retainCached(path, length, lastModified);
+        if (buffer != null) {
+            hitCount.incrementAndGet();
+            return buffer;
+        }
+        missCount.incrementAndGet();
+
+        // Load file outside of lock, as it may block on file system
+        CachedContent loadedContent = load(file, (int) length, lastModified);
+        if (loadedContent == null) {
+            return null;
+        }
+        synchronized (contents) {
+            // Another request may have loaded the same file meanwhile
+            buffer = retainCached(path, length, lastModified);
+            if (buffer == null) {
+                contents.put(path, loadedContent);
+                size.addAndGet(loadedContent.buffer.capacity());
+                // Content may have been evicted at once if cache is full of bigger contents
+                return contents.getIfPresent(path) == loadedContent ? loadedContent.buffer.retain() : null;
+            }
+        }
+        loadedContent.buffer.release();
+        return buffer;
+    }
+
+    /**
+     * Get number of requests served from cache.
+     *
+     * @return hit count
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * Get number of requests for cacheable contents not found in cache.
+     *
+     * @return miss count
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * Get ratio of cacheable content requests served from cache.
+     *
+     * @return hit rate, 1 if no cacheable content has been requested
+     */
+    public double getHitRate() {
+        long hits = hitCount.get();
+        long requests = hits + missCount.get();
+        return requests == 0 ? 1.0 : (double) hits / requests;
+    }
+
+    /**
+     * Get size of cached contents.
+     *
+     * @return size in bytes
+     */
+    public long getSize() {
+        return size.get();
+    }
+
+    /**
+     * Retain cached content if it matches file length and last modification date.
+     * Cache is only accessed with lock held, so that a buffer cannot be released by eviction while it is retained.
+     *
+     * @param path         file path
+     * @param length       file length
+     * @param lastModified file last modification date
+     * @return retained content buffer or null
+     */
+    private ByteBuf retainCached(final String path, final long length, final long lastModified) {
+        synchronized (contents) {
+            CachedContent content = contents.getIfPresent(path);
+            if (content != null) {
+                if (content.buffer.capacity() == length && content.lastModified == lastModified) {
+                    return content.buffer.retain();
+                }
+                // File has been modified
+                contents.invalidate(path);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Load file in a pooled direct buffer.
+     *
+     * @param file         content file
+     * @param length       file length
+     * @param lastModified file last modification date
+     * @return loaded content, or null if file cannot be read
+     */
+    private static CachedContent load(final File file, final int length, final long lastModified) {
+        ByteBuf buffer = PooledByteBufAllocator.DEFAULT.directBuffer(length, length);
+        try (FileChannel channel = FileChannel.open(file.toPath(), READ)) {
+            while (buffer.isWritable()) {
+                if (buffer.writeBytes(channel, buffer.writableBytes()) < 0) {
+                    throw new EOFException(file.getPath());
+                }
+            }
+            return new CachedContent(buffer, lastModified);
+        } catch (IOException e) {
+            LOGGER.debug("Failed to load {} in content cache: {}", file, e.getMessage());
+            buffer.release();
+            return null;
+        }
+    }
+
+    /**
+     * Cached content: file content and modification date.
+     */
+    private static final class CachedContent {
+        private final ByteBuf buffer;
+        private final long lastModified;
+
+        /**
+         * Instantiates a new cached content.
+         *
+         * @param buffer       file content
+         * @param lastModified file last modification date
+         */
+        CachedContent(final ByteBuf buffer, final long lastModified) {
+            this.buffer = buffer;
+            this.lastModified = lastModified;
+        }
+    }
+}
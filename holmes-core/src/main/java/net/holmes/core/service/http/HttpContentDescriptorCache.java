@@ -0,0 +1,255 @@
+/*
+ * Copyright (C) 2012-2015  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.service.http;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.eventbus.Subscribe;
+import io.netty.handler.codec.http.HttpMessage;
+import net.holmes.core.business.media.model.ContentNode;
+import net.holmes.core.business.mimetype.model.MimeType;
+import net.holmes.core.common.event.ConfigurationEvent;
+import net.holmes.core.common.event.MediaEvent;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static net.holmes.core.common.event.MediaEvent.MediaEventType.UPDATE_CONTAINER;
+import static net.holmes.core.service.http.HttpFileRequest.newRemoteContentRequest;
+import static net.holmes.core.service.http.HttpFileRequest.newValidatedContentRequest;
+
+/**
+ * Cache of content descriptors, resolved from media index by content node id.
+ * <p>
+ * Renderers send many requests for the same content while seeking, each of them resolving content node, its file attributes
+ * and mime type again. Descriptors (path, length, modification date, mime type and entity tag) are kept for a short time,
+ * and validated against file attributes with a single file system call on each request. Descriptors of content nodes
+ * removed from media index are evicted on media and configuration events.
+ * </p>
+ * <p>
+ * Validation stats content file: cache is only read by HttpContentRequestDecoder, running on file executor group, never on event loop.
+ * </p>
+ */
+@Singleton
+public final class HttpContentDescriptorCache {
+    private static final int CACHE_SIZE = 1024;
+    private static final long TIME_TO_LIVE_SECONDS = 30;
+
+    private final Cache<String, ContentDescriptor> descriptors;
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * Instantiates a new HTTP content descriptor cache.
+     */
+    @Inject
+    public HttpContentDescriptorCache() {
+        this(CACHE_SIZE, TIME_TO_LIVE_SECONDS);
+    }
+
+    /**
+     * Instantiates a new HTTP content descriptor cache.
+     *
+     * @param maximumSize       maximum number of descriptors
+     * @param timeToLiveSeconds descriptor time to live (in seconds)
+     */
+    HttpContentDescriptorCache(final int maximumSize, final long timeToLiveSeconds) {
+        this.descriptors = CacheBuilder.newBuilder().maximumSize(maximumSize).expireAfterWrite(timeToLiveSeconds, SECONDS).build();
+    }
+
+    /**
+     * Get content descriptor. Local content descriptor is validated against current file attributes,
+     * so this method may block on file system and must not be called on an event loop.
+     *
+     * @param nodeId content node id
+     * @return content descriptor, or null if content is not cached or if it has been modified
+     */
+    public ContentDescriptor get(final String nodeId) {
+        ContentDescriptor descriptor = descriptors.getIfPresent(nodeId);
+        if (descriptor != null && !descriptor.isValid()) {
+            descriptors.invalidate(nodeId);
+            descriptor = null;
+        }
+        if (descriptor != null) {
+            hitCount.incrementAndGet();
+        } else {
+            missCount.incrementAndGet();
+        }
+        return descriptor;
+    }
+
+    /**
+     * Add content descriptor of a content node, resolved from media index.
+     *
+     * @param nodeId      content node id
+     * @param contentNode content node
+     * @return content descriptor
+     */
+    public ContentDescriptor put(final String nodeId, final ContentNode contentNode) {
+        ContentDescriptor descriptor = contentNode.isLocalPath()
+                ? new ContentDescriptor(contentNode.getParentId(), new File(contentNode.getPath()), null, contentNode.getMimeType(),
+                contentNode.getSize(), contentNode.getModifiedDate())
+                : new ContentDescriptor(contentNode.getParentId(), null, contentNode.getPath(), contentNode.getMimeType(), 0, 0);
+        descriptors.put(nodeId, descriptor);
+        return descriptor;
+    }
+
+    /**
+     * Handle media event: when a container is updated, its child content nodes may have been removed from media index.
+     *
+     * @param mediaEvent media event
+     */
+    @Subscribe
+    public void handleMediaEvent(final MediaEvent mediaEvent) {
+        if (mediaEvent.getType() == UPDATE_CONTAINER) {
+            String containerId = mediaEvent.getParameter();
+            descriptors.asMap().values().removeIf(descriptor -> containerId.equals(descriptor.parentId));
+        }
+    }
+
+    /**
+     * Handle configuration event: when a folder is updated or deleted, all its content nodes are removed from media index.
+     *
+     * @param configurationEvent configuration event
+     */
+    @Subscribe
+    public void handleConfigEvent(final ConfigurationEvent configurationEvent) {
+        switch (configurationEvent.getType()) {
+            case UPDATE_FOLDER:
+            case DELETE_FOLDER:
+                descriptors.invalidateAll();
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Get number of requests served from cache.
+     *
+     * @return hit count
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * Get number of requests not served from cache.
+     *
+     * @return miss count
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * Content descriptor.
+     */
+    public static final class ContentDescriptor {
+        private final String parentId;
+        private final File file;
+        private final String remoteUrl;
+        private final MimeType mimeType;
+        private final long length;
+        private final long lastModified;
+        private final String entityTag;
+
+        /**
+         * Instantiates a new content descriptor.
+         *
+         * @param parentId     content node parent id
+         * @param file         content file (null for a remote content)
+         * @param remoteUrl    remote content URL (null for a local content)
+         * @param mimeType     mime type
+         * @param length       file length
+         * @param lastModified file last modification date
+         */
+        ContentDescriptor(final String parentId, final File file, final String remoteUrl, final MimeType mimeType, final long length,
+                          final long lastModified) {
+            this.parentId = parentId;
+            this.file = file;
+            this.remoteUrl = remoteUrl;
+            this.mimeType = mimeType;
+            this.length = length;
+            this.lastModified = lastModified;
+            this.entityTag = HttpFileRequestHandler.getEntityTag(length, lastModified);
+        }
+
+        /**
+         * Check descriptor matches current file attributes, with a single file system call.
+         * Remote content attributes are validated by remote content proxy.
+         *
+         * @return true if descriptor is valid
+         */
+        boolean isValid() {
+            if (file == null) {
+                return true;
+            }
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+                return attributes.isRegularFile() && attributes.size() == length && attributes.lastModifiedTime().toMillis() == lastModified;
+            } catch (IOException e) {
+                return false;
+            }
+        }
+
+        /**
+         * Build a HTTP file request for this content.
+         *
+         * @param httpMessage original HTTP message
+         * @return HTTP file request
+         */
+        HttpFileRequest newRequest(final HttpMessage httpMessage) {
+            return file != null ? newValidatedContentRequest(httpMessage, file, mimeType, length, lastModified, entityTag)
+                    : newRemoteContentRequest(httpMessage, remoteUrl, mimeType);
+        }
+
+        /**
+         * Get content file.
+         *
+         * @return content file, null for a remote content
+         */
+        public File getFile() {
+            return file;
+        }
+
+        /**
+         * Get content mime type.
+         *
+         * @return mime type
+         */
+        public MimeType getMimeType() {
+            return mimeType;
+        }
+
+        /**
+         * Get content entity tag.
+         *
+         * @return entity tag
+         */
+        public String getEntityTag() {
+            return entityTag;
+        }
+    }
+}
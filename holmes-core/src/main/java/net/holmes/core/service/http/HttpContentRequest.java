@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2012-2015  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.service.http;
+
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.util.ReferenceCounted;
+
+/**
+ * Http content request: request for a content of media index, decoded on event loop.
+ * Content is resolved from media index on file executor group, as media index lookup may block on file system.
+ * Content request holds a reference to original HTTP request, forwarded to the pipeline when content is not found.
+ */
+public final class HttpContentRequest implements ReferenceCounted {
+    private final FullHttpRequest httpRequest;
+    private final String contentId;
+
+    /**
+     * Instantiates a new HttpContentRequest.
+     *
+     * @param httpRequest original HTTP request, retained by caller
+     * @param contentId   requested content id
+     */
+    public HttpContentRequest(final FullHttpRequest httpRequest, final String contentId) {
+        this.httpRequest = httpRequest;
+        this.contentId = contentId;
+    }
+
+    /**
+     * Get original HTTP request.
+     *
+     * @return HTTP request
+     */
+    public FullHttpRequest getHttpRequest() {
+        return httpRequest;
+    }
+
+    /**
+     * Get requested content id.
+     *
+     * @return content id
+     */
+    public String getContentId() {
+        return contentId;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int refCnt() {
+        return httpRequest.refCnt();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public HttpContentRequest retain() {
+        httpRequest.retain();
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public HttpContentRequest retain(final int increment) {
+        httpRequest.retain(increment);
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean release() {
+        return httpRequest.release();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean release(final int decrement) {
+        return httpRequest.release(decrement);
+    }
+}
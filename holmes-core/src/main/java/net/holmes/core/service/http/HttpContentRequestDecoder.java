@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2012-2015  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.service.http;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.MessageToMessageDecoder;
+import net.holmes.core.business.media.MediaManager;
+import net.holmes.core.business.media.model.ContentNode;
+import net.holmes.core.business.media.model.MediaNode;
+import net.holmes.core.service.http.HttpContentDescriptorCache.ContentDescriptor;
+
+import javax.inject.Inject;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Decode HttpContentRequest messages to HttpFileRequest, running on file executor group.
+ * Content descriptor is read from descriptor cache, or resolved from media index: both may block on file system.
+ * If content is not found in media index, original HTTP request is forwarded to the Netty pipeline.
+ */
+public final class HttpContentRequestDecoder extends MessageToMessageDecoder<HttpContentRequest> {
+    private final MediaManager mediaManager;
+    private final HttpContentDescriptorCache contentDescriptorCache;
+
+    /**
+     * Instantiates a new HTTP content request decoder.
+     *
+     * @param mediaManager           media manager
+     * @param contentDescriptorCache content descriptor cache
+     */
+    @Inject
+    public HttpContentRequestDecoder(final MediaManager mediaManager, final HttpContentDescriptorCache contentDescriptorCache) {
+        this.mediaManager = mediaManager;
+        this.contentDescriptorCache = contentDescriptorCache;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void decode(final ChannelHandlerContext context, final HttpContentRequest request, final List<Object> out) {
+        ContentDescriptor descriptor = contentDescriptorCache.get(request.getContentId());
+        if (descriptor == null) {
+            Optional<MediaNode> node = mediaManager.getNode(request.getContentId());
+            if (node.isPresent() && node.get() instanceof ContentNode) {
+                // Content found in media index, media index has checked content file
+                descriptor = contentDescriptorCache.put(request.getContentId(), (ContentNode) node.get());
+            }
+        }
+
+        if (descriptor != null) {
+            // Add file request to message list
+            out.add(descriptor.newRequest(request.getHttpRequest()));
+        } else {
+            // Forward request to pipeline
+            out.add(request.getHttpRequest().retain());
+        }
+    }
+}
@@ -0,0 +1,443 @@
+/*
+ * Copyright (C) 2012-2015  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.service.http;
+
+import com.google.common.base.Splitter;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.ImmutableList;
+import net.holmes.core.business.configuration.ConfigurationManager;
+import org.slf4j.Logger;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.hash.Hashing.sha1;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static net.holmes.core.common.ConfigurationParameter.HTTP_SERVER_DISK_CACHE_FOLDERS;
+import static net.holmes.core.common.ConfigurationParameter.HTTP_SERVER_DISK_CACHE_SIZE;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Local disk cache of contents stored in network folders and of remote contents.
+ * <p>
+ * Contents of configured folders (typically network shares) and remote contents proxied by Holmes are cached by blocks
+ * in Holmes data directory, so that
+ * range requests and replays are served from local disk instead of network, and playback does not stall when
+ * network storage is slow. Blocks are written through when they are first read from network, and evicted in
+ * least recently used order once cache exceeds its size. Block names are derived from file path, length and
+ * modification date: blocks of a modified file are never read again, and age out of cache. Block files survive restarts,
+ * their modification date recording their last access.
+ * </p>
+ * <p>
+ * Blocks are read by shared file channels: chunked inputs and read-ahead engine read through the cache, zero-copy
+ * transfers are not used for cached files. Recently read blocks are kept in memory, shared by all readers: readers of
+ * different blocks load them in parallel, readers of the same block wait for a single load.
+ * </p>
+ */
+@Singleton
+public final class HttpDiskCache {
+    private static final Logger LOGGER = getLogger(HttpDiskCache.class);
+    private static final String CACHE_DIRECTORY = "disk-cache";
+    private static final String BLOCK_FILE_EXTENSION = ".blk";
+    static final int BLOCK_SIZE = 1024 * 1024;
+    private static final int MEMORY_BLOCK_COUNT = 8;
+
+    private final Path cacheDirectory;
+    private final boolean enabled;
+    private final List<String> folders;
+    private final Cache<String, Integer> blocks;
+    private final Cache<String, ByteBuffer> memoryBlocks;
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong size = new AtomicLong();
+
+    /**
+     * Instantiates a new HTTP disk cache.
+     *
+     * @param configurationManager configuration manager
+     * @param localHolmesDataDir   local Holmes data directory
+     */
+    @Inject
+    public HttpDiskCache(final ConfigurationManager configurationManager, @Named("localHolmesDataDir") final String localHolmesDataDir) {
+        this(Paths.get(localHolmesDataDir, CACHE_DIRECTORY), configurationManager.getParameter(HTTP_SERVER_DISK_CACHE_SIZE) * 1024L * 1024L,
+                Splitter.on(File.pathSeparator).trimResults().omitEmptyStrings().splitToList(configurationManager.getParameter(HTTP_SERVER_DISK_CACHE_FOLDERS)));
+    }
+
+    /**
+     * Instantiates a new HTTP disk cache.
+     *
+     * @param cacheDirectory directory where blocks are stored
+     * @param maximumSize    maximum size of cached blocks in bytes (0 disables cache)
+     * @param folders        cached folders
+     */
+    HttpDiskCache(final Path cacheDirectory, final long maximumSize, final List<String> folders) {
+        this.cacheDirectory = cacheDirectory;
+        this.enabled = maximumSize >= BLOCK_SIZE;
+        ImmutableList.Builder<String> folderPaths = ImmutableList.builder();
+        if (enabled) {
+            for (String folder : folders) {
+                folderPaths.add(new File(folder).getAbsolutePath());
+            }
+        }
+        this.folders = folderPaths.build();
+        this.blocks = CacheBuilder.newBuilder()
+                .maximumWeight(maximumSize)
+                .concurrencyLevel(1)
+                .weigher(new Weigher<String, Integer>() {
+                    @Override
+                    public int weigh(final String name, final Integer length) {
+                        return length;
+                    }
+                })
+                .removalListener(new RemovalListener<String, Integer>() {
+                    @Override
+                    public void onRemoval(final RemovalNotification<String, Integer> notification) {
+                        size.addAndGet(-notification.getValue());
+                        if (notification.getCause() != RemovalCause.REPLACED) {
+                            deleteBlock(notification.getKey());
+                        }
+                    }
+                })
+                .build();
+        this.memoryBlocks = CacheBuilder.newBuilder().maximumSize(MEMORY_BLOCK_COUNT).build();
+        if (enabled) {
+            loadBlocks();
+        }
+    }
+
+    /**
+     * Open cached file. Cached file reads its blocks from local disk, or from network file if they are not cached yet.
+     *
+     * @param path         file path
+     * @param length       file length
+     * @param lastModified file last modification date
+     * @return cached file, or null if file is not in a cached folder
+     */
+    public DiskCachedFile open(final String path, final long length, final long lastModified) {
+        for (String folder : folders) {
+            if (path.equals(folder) || path.startsWith(folder + File.separator)) {
+                return new DiskCachedFile(path, length, lastModified);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get number of blocks read from local disk.
+     *
+     * @return hit count
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * Get number of blocks not found in cache.
+     *
+     * @return miss count
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * Get size of cached blocks.
+     *
+     * @return size in bytes
+     */
+    public long getSize() {
+        return size.get();
+    }
+
+    /**
+     * Get key of a content version, from which its block names are derived.
+     *
+     * @param location content path or URL
+     * @param length   content length
+     * @param version  content version (modification date or entity tag)
+     * @return content key
+     */
+    static String getKey(final String location, final long length, final String version) {
+        return sha1().hashString(location + '\n' + length + '\n' + version, UTF_8).toString();
+    }
+
+    /**
+     * Get name of a content block.
+     *
+     * @param key   content key
+     * @param index block index
+     * @return block file name
+     */
+    static String getBlockName(final String key, final long index) {
+        return key + "-" + index + BLOCK_FILE_EXTENSION;
+    }
+
+    /**
+     * Read cached block from local disk.
+     *
+     * @param name  block file name
+     * @param block buffer to fill up to its limit (block length)
+     * @return true if block has been read, false if block is not cached
+     */
+    boolean readBlock(final String name, final ByteBuffer block) {
+        if (!enabled) {
+            return false;
+        }
+        if (blocks.getIfPresent(name) == null) {
+            missCount.incrementAndGet();
+            return false;
+        }
+        File blockFile = cacheDirectory.resolve(name).toFile();
+        try (FileChannel channel = FileChannel.open(blockFile.toPath(), READ)) {
+            if (channel.size() != block.remaining()) {
+                throw new IOException("Invalid block size " + channel.size());
+            }
+            readFully(channel, block, 0, blockFile.getPath());
+            // Record access, so that least recently used order is kept across restarts
+            blockFile.setLastModified(System.currentTimeMillis());
+            hitCount.incrementAndGet();
+            return true;
+        } catch (IOException e) {
+            // Block has been evicted meanwhile or is corrupted
+            LOGGER.debug("Failed to read cached block {}: {}", name, e.getMessage());
+            blocks.invalidate(name);
+            missCount.incrementAndGet();
+            return false;
+        }
+    }
+
+    /**
+     * Write block to local disk. Block is written to a temporary file first, so that a partially written block is never read.
+     * Write failure (local disk full) is not fatal, block is read from its source next time.
+     *
+     * @param name  block file name
+     * @param block block content, from buffer position to limit
+     */
+    void writeBlock(final String name, final ByteBuffer block) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            Files.createDirectories(cacheDirectory);
+            Path tempFile = Files.createTempFile(cacheDirectory, null, null);
+            ByteBuffer content = block.duplicate();
+            try (FileChannel channel = FileChannel.open(tempFile, WRITE)) {
+                while (content.hasRemaining()) {
+                    channel.write(content);
+                }
+            }
+            Files.move(tempFile, cacheDirectory.resolve(name), REPLACE_EXISTING, ATOMIC_MOVE);
+            addBlock(name, block.remaining());
+        } catch (IOException e) {
+            LOGGER.debug("Failed to write cached block {}: {}", name, e.getMessage());
+        }
+    }
+
+    /**
+     * Register blocks persisted by previous runs, in last access order. Partially written blocks are deleted.
+     */
+    private void loadBlocks() {
+        if (!Files.isDirectory(cacheDirectory)) {
+            return;
+        }
+        List<File> blockFiles = new ArrayList<>();
+        try (DirectoryStream<Path> directoryStream = Files.newDirectoryStream(cacheDirectory)) {
+            for (Path path : directoryStream) {
+                if (path.getFileName().toString().endsWith(BLOCK_FILE_EXTENSION)) {
+                    blockFiles.add(path.toFile());
+                } else {
+                    Files.deleteIfExists(path);
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Failed to read disk cache " + cacheDirectory, e);
+        }
+        Collections.sort(blockFiles, new Comparator<File>() {
+            @Override
+            public int compare(final File file1, final File file2) {
+                return Long.compare(file1.lastModified(), file2.lastModified());
+            }
+        });
+        for (File blockFile : blockFiles) {
+            addBlock(blockFile.getName(), (int) blockFile.length());
+        }
+        LOGGER.debug("Loaded {} blocks ({} bytes) from disk cache {}", blocks.size(), size.get(), cacheDirectory);
+    }
+
+    /**
+     * Register a block in cache, least recently used blocks are evicted if cache is full.
+     *
+     * @param name   block file name
+     * @param length block length
+     */
+    private void addBlock(final String name, final int length) {
+        size.addAndGet(length);
+        blocks.put(name, length);
+    }
+
+    /**
+     * Delete evicted block file.
+     *
+     * @param name block file name
+     */
+    private void deleteBlock(final String name) {
+        try {
+            Files.deleteIfExists(cacheDirectory.resolve(name));
+        } catch (IOException e) {
+            LOGGER.warn("Failed to delete cached block {}: {}", name, e.getMessage());
+        }
+    }
+
+    /**
+     * Read a channel until buffer is full.
+     *
+     * @param channel  file channel
+     * @param buffer   buffer to fill up to its limit
+     * @param position file position of first byte to read
+     * @param path     file path
+     * @throws IOException indicates that file cannot be read or ends before buffer is filled
+     */
+    private static void readFully(final FileChannel channel, final ByteBuffer buffer, final long position, final String path) throws IOException {
+        long filePosition = position;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, filePosition);
+            if (read < 0) {
+                throw new EOFException(path);
+            }
+            filePosition += read;
+        }
+    }
+
+    /**
+     * File of a cached folder, read by blocks. Blocks are kept in memory blocks cache, as chunked inputs read a block
+     * by several chunks.
+     */
+    public final class DiskCachedFile {
+        private final String path;
+        private final String key;
+        private final long length;
+
+        /**
+         * Instantiates a new disk cached file.
+         *
+         * @param path         file path
+         * @param length       file length
+         * @param lastModified file last modification date
+         */
+        DiskCachedFile(final String path, final long length, final long lastModified) {
+            this.path = path;
+            this.key = getKey(path, length, Long.toString(lastModified));
+            this.length = length;
+        }
+
+        /**
+         * Fill buffer with file content, read from cached blocks.
+         *
+         * @param source   network file channel, read when blocks are not cached
+         * @param buffer   buffer to fill up to its limit
+         * @param position file position of first byte to read
+         * @throws IOException indicates that file cannot be read or ends before buffer is filled
+         */
+        public void readFully(final FileChannel source, final ByteBuffer buffer, final long position) throws IOException {
+            long filePosition = position;
+            while (buffer.hasRemaining()) {
+                if (filePosition >= length) {
+                    throw new EOFException(path);
+                }
+                ByteBuffer blockContent = getBlock(source, filePosition / BLOCK_SIZE).duplicate();
+                int blockOffset = (int) (filePosition % BLOCK_SIZE);
+                blockContent.position(blockOffset).limit(Math.min(blockContent.limit(), blockOffset + buffer.remaining()));
+                filePosition += blockContent.remaining();
+                buffer.put(blockContent);
+            }
+        }
+
+        /**
+         * Get a block from memory blocks cache, block is loaded once if it is not in memory.
+         *
+         * @param source network file channel
+         * @param index  block index
+         * @return read-only block content
+         * @throws IOException indicates that network file cannot be read
+         */
+        private ByteBuffer getBlock(final FileChannel source, final long index) throws IOException {
+            final String name = getBlockName(key, index);
+            try {
+                return memoryBlocks.get(name, new Callable<ByteBuffer>() {
+                    @Override
+                    public ByteBuffer call() throws IOException {
+                        return loadBlock(source, index, name);
+                    }
+                });
+            } catch (ExecutionException e) {
+                Throwables.propagateIfInstanceOf(e.getCause(), IOException.class);
+                throw new IOException(e.getCause());
+            }
+        }
+
+        /**
+         * Load a block in memory, from local disk if it is cached, otherwise from network file. Block read from network
+         * is written to cache.
+         *
+         * @param source network file channel
+         * @param index  block index
+         * @param name   block name
+         * @return read-only block content
+         * @throws IOException indicates that network file cannot be read
+         */
+        private ByteBuffer loadBlock(final FileChannel source, final long index, final String name) throws IOException {
+            int blockLength = (int) Math.min(BLOCK_SIZE, length - index * BLOCK_SIZE);
+            ByteBuffer block = ByteBuffer.allocate(blockLength);
+            if (!readBlock(name, block)) {
+                block.clear();
+                HttpDiskCache.readFully(source, block, index * BLOCK_SIZE, path);
+                block.flip();
+                writeBlock(name, block);
+            }
+            block.position(0);
+            return block.asReadOnlyBuffer();
+        }
+    }
+}
@@ -0,0 +1,489 @@
+/*
+ * Copyright (C) 2012-2015  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.service.http;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.DefaultFileRegion;
+import io.netty.handler.stream.ChunkedInput;
+import io.netty.util.AbstractReferenceCounted;
+import net.holmes.core.business.configuration.ConfigurationManager;
+import net.holmes.core.service.http.HttpDiskCache.DiskCachedFile;
+import org.slf4j.Logger;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import static java.nio.file.StandardOpenOption.READ;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static net.holmes.core.common.ConfigurationParameter.HTTP_SERVER_FILE_CHANNEL_CACHE_SIZE;
+import static net.holmes.core.common.ConfigurationParameter.HTTP_SERVER_FILE_CHANNEL_IDLE_SECONDS;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Cache of open file channels shared by HTTP file requests.
+ * <p>
+ * Renderers seeking in a video send many short range requests for the same file. Instead of opening and closing
+ * the file for each request, file channels are kept open and shared across connections: contents only use
+ * positional reads or transfers, so they never depend on channel position. Cached channels are reference counted,
+ * each content holding a reference until it is written out. A channel is closed once it is evicted from cache
+ * (cache full, idle timeout or file modified) and its last content is released.
+ * </p>
+ * <p>
+ * Chunked inputs of sequential streams are served by read-ahead engine, when one is configured. Files of network folders
+ * are read through local disk cache, when one is configured.
+ * </p>
+ */
+@Singleton
+public final class HttpFileChannelCache {
+    private static final Logger LOGGER = getLogger(HttpFileChannelCache.class);
+
+    private final Cache<String, CachedFileChannel> fileChannels;
+    private final HttpFileReadAhead readAhead;
+    private final HttpDiskCache diskCache;
+
+    /**
+     * Instantiates a new HTTP file channel cache.
+     *
+     * @param configurationManager  configuration manager
+     * @param httpFileExecutorGroup HTTP file executor group, running idle channels cleanup
+     * @param readAhead             read-ahead engine of chunked inputs
+     * @param diskCache             local disk cache of network folders
+     */
+    @Inject
+    public HttpFileChannelCache(final ConfigurationManager configurationManager, final HttpFileExecutorGroup httpFileExecutorGroup,
+                                final HttpFileReadAhead readAhead, final HttpDiskCache diskCache) {
+        this(configurationManager.getParameter(HTTP_SERVER_FILE_CHANNEL_CACHE_SIZE), Math.max(0, configurationManager.getParameter(HTTP_SERVER_FILE_CHANNEL_IDLE_SECONDS)),
+                readAhead, diskCache);
+
+        // Cache only evicts idle channels on access: clean up periodically so that idle channels are closed without traffic
+        // (no idle delay means channels are never kept, so no clean up is needed)
+        int idleSeconds = configurationManager.getParameter(HTTP_SERVER_FILE_CHANNEL_IDLE_SECONDS);
+        if (idleSeconds > 0) {
+            httpFileExecutorGroup.getExecutorGroup().scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    cleanUp();
+                }
+            }, idleSeconds, idleSeconds, SECONDS);
+        }
+    }
+
+    /**
+     * Instantiates a new HTTP file channel cache.
+     *
+     * @param maximumSize maximum number of open file channels
+     * @param idleSeconds delay after which an unused file channel is closed (in seconds)
+     */
+    HttpFileChannelCache(final int maximumSize, final int idleSeconds) {
+        this(maximumSize, idleSeconds, null);
+    }
+
+    /**
+     * Instantiates a new HTTP file channel cache.
+     *
+     * @param maximumSize maximum number of open file channels
+     * @param idleSeconds delay after which an unused file channel is closed (in seconds)
+     * @param readAhead   read-ahead engine of chunked inputs (null for plain chunked inputs)
+     */
+    HttpFileChannelCache(final int maximumSize, final int idleSeconds, final HttpFileReadAhead readAhead) {
+        this(maximumSize, idleSeconds, readAhead, null);
+    }
+
+    /**
+     * Instantiates a new HTTP file channel cache.
+     *
+     * @param maximumSize maximum number of open file channels
+     * @param idleSeconds delay after which an unused file channel is closed (in seconds)
+     * @param readAhead   read-ahead engine of chunked inputs (null for plain chunked inputs)
+     * @param diskCache   local disk cache of network folders (null if files are always read directly)
+     */
+    HttpFileChannelCache(final int maximumSize, final int idleSeconds, final HttpFileReadAhead readAhead, final HttpDiskCache diskCache) {
+        this.readAhead = readAhead;
+        this.diskCache = diskCache;
+        this.fileChannels = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterAccess(idleSeconds, SECONDS)
+                .removalListener(new RemovalListener<String, CachedFileChannel>() {
+                    @Override
+                    public void onRemoval(final RemovalNotification<String, CachedFileChannel> notification) {
+                        // Release cache reference, channel is closed when last content is released
+                        notification.getValue().release();
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * Acquire a file channel. Cached channel is returned if file has not been modified since it was opened,
+     * otherwise file is opened and cached. Caller must release returned channel.
+     *
+     * @param file file
+     * @return file channel
+     * @throws IOException indicates that file cannot be opened
+     */
+    public CachedFileChannel acquire(final File file) throws IOException {
+        return acquire(file, file.length(), file.lastModified());
+    }
+
+    /**
+     * Acquire a file channel, with known file attributes. Cached channel is returned if it was opened with the same attributes,
+     * otherwise file is opened and cached. Caller must release returned channel.
+     *
+     * @param file         file
+     * @param length       file length
+     * @param lastModified file last modification date
+     * @return file channel
+     * @throws IOException indicates that file cannot be opened
+     */
+    public CachedFileChannel acquire(final File file, final long length, final long lastModified) throws IOException {
+        String path = file.getAbsolutePath();
+
+        // Get cached channel
+        CachedFileChannel fileChannel = retainCached(path, length, lastModified);
+        if (fileChannel != null) {
+            return fileChannel;
+        }
+
+        // Open file outside of lock, as it may block on file system
+        DiskCachedFile diskCachedFile = diskCache != null ? diskCache.open(path, length, lastModified) : null;
+        CachedFileChannel openedFileChannel = new CachedFileChannel(path, FileChannel.open(file.toPath(), READ), length, lastModified, readAhead,
+                diskCachedFile);
+        synchronized (fileChannels) {
+            // Another request may have opened the same file meanwhile
+            fileChannel = retainCached(path, length, lastModified);
+            if (fileChannel == null) {
+                // Retain before caching, as cache may evict channel right away (no idle delay)
+                openedFileChannel.retain();
+                fileChannels.put(path, openedFileChannel);
+                return openedFileChannel;
+            }
+        }
+        openedFileChannel.release();
+        return fileChannel;
+    }
+
+    /**
+     * Get number of open file channels in cache.
+     *
+     * @return number of open file channels
+     */
+    public long getOpenChannelCount() {
+        synchronized (fileChannels) {
+            return fileChannels.size();
+        }
+    }
+
+    /**
+     * Close idle file channels.
+     */
+    void cleanUp() {
+        synchronized (fileChannels) {
+            fileChannels.cleanUp();
+        }
+    }
+
+    /**
+     * Retain cached file channel if it matches file length and last modification date.
+     * Cache is only accessed with lock held, so that a channel cannot be released by eviction while it is retained.
+     *
+     * @param path         file path
+     * @param length       file length
+     * @param lastModified file last modification date
+     * @return retained cached file channel or null
+     */
+    private CachedFileChannel retainCached(final String path, final long length, final long lastModified) {
+        synchronized (fileChannels) {
+            CachedFileChannel fileChannel = fileChannels.getIfPresent(path);
+            if (fileChannel != null) {
+                if (fileChannel.length == length && fileChannel.lastModified == lastModified) {
+                    return fileChannel.retain();
+                }
+                // File has been modified
+                fileChannels.invalidate(path);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Reference counted open file channel.
+     */
+    public static final class CachedFileChannel extends AbstractReferenceCounted {
+        private final String path;
+        private final FileChannel channel;
+        private final long length;
+        private final long lastModified;
+        private final HttpFileReadAhead readAhead;
+        private final DiskCachedFile diskCachedFile;
+        private volatile long readPosition = -1;
+
+        /**
+         * Instantiates a new cached file channel.
+         *
+         * @param path           file path
+         * @param channel        open file channel
+         * @param length         file length
+         * @param lastModified   file last modification date
+         * @param readAhead      read-ahead engine of chunked inputs (null for plain chunked inputs)
+         * @param diskCachedFile local disk cache of file (null if file is read directly)
+         */
+        CachedFileChannel(final String path, final FileChannel channel, final long length, final long lastModified, final HttpFileReadAhead readAhead,
+                          final DiskCachedFile diskCachedFile) {
+            this.path = path;
+            this.channel = channel;
+            this.length = length;
+            this.lastModified = lastModified;
+            this.readAhead = readAhead;
+            this.diskCachedFile = diskCachedFile;
+        }
+
+        /**
+         * Create a zero-copy file region on this channel. Region holds a reference to this channel until it is released.
+         *
+         * @param offset region offset
+         * @param count  region length
+         * @return file region
+         */
+        public DefaultFileRegion newFileRegion(final long offset, final long count) {
+            return new SharedFileRegion(this, offset, count);
+        }
+
+        /**
+         * Check whether file content can be written as a zero-copy file region: file regions are transferred
+         * from network file, bypassing disk cache.
+         *
+         * @return true if file is not read through disk cache
+         */
+        public boolean isZeroCopyCapable() {
+            return diskCachedFile == null;
+        }
+
+        /**
+         * Create a chunked input on this channel. Input holds a reference to this channel until it is closed.
+         *
+         * @param offset    content offset
+         * @param count     content length
+         * @param chunkSize chunk size
+         * @return chunked input
+         */
+        public ChunkedInput<ByteBuf> newChunkedInput(final long offset, final long count, final int chunkSize) {
+            if (readAhead != null) {
+                return readAhead.newChunkedInput(this, offset, count, chunkSize);
+            }
+            return new SharedChunkedFile(this, offset, count, chunkSize);
+        }
+
+        /**
+         * Get file path.
+         *
+         * @return file path
+         */
+        String getPath() {
+            return path;
+        }
+
+        /**
+         * Get position where last chunked input on this channel stopped reading, used to detect sequential streams.
+         *
+         * @return read position, or -1 if no chunked input has been closed yet
+         */
+        long getReadPosition() {
+            return readPosition;
+        }
+
+        /**
+         * Fill buffer with a positional read, channel position is not modified. File is read through disk cache if it has one.
+         *
+         * @param buffer   buffer to fill up to its limit
+         * @param position file position of first byte to read
+         * @throws IOException indicates that file cannot be read or ends before buffer is filled
+         */
+        void readFully(final ByteBuffer buffer, final long position) throws IOException {
+            if (diskCachedFile != null) {
+                diskCachedFile.readFully(channel, buffer, position);
+                return;
+            }
+            long filePosition = position;
+            while (buffer.hasRemaining()) {
+                int read = channel.read(buffer, filePosition);
+                if (read < 0) {
+                    throw new EOFException(path);
+                }
+                filePosition += read;
+            }
+        }
+
+        /**
+         * Record position where a chunked input on this channel stopped reading.
+         *
+         * @param position read position
+         */
+        void updateReadPosition(final long position) {
+            readPosition = position;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public CachedFileChannel retain() {
+            super.retain();
+            return this;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void deallocate() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                LOGGER.warn("Failed to close {}: {}", path, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Zero-copy file region on a shared file channel: releases channel reference instead of closing it.
+     */
+    static final class SharedFileRegion extends DefaultFileRegion {
+        private final CachedFileChannel fileChannel;
+
+        /**
+         * Instantiates a new shared file region.
+         *
+         * @param fileChannel cached file channel
+         * @param offset      region offset
+         * @param count       region length
+         */
+        SharedFileRegion(final CachedFileChannel fileChannel, final long offset, final long count) {
+            super(fileChannel.channel, offset, count);
+            this.fileChannel = fileChannel.retain();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void deallocate() {
+            fileChannel.release();
+        }
+    }
+
+    /**
+     * Chunked input reading a shared file channel with positional reads: releases channel reference when closed.
+     */
+    static final class SharedChunkedFile implements ChunkedInput<ByteBuf> {
+        private final CachedFileChannel fileChannel;
+        private final long startOffset;
+        private final long endOffset;
+        private final int chunkSize;
+        private long offset;
+        private boolean closed;
+
+        /**
+         * Instantiates a new shared chunked file.
+         *
+         * @param fileChannel cached file channel
+         * @param offset      content offset
+         * @param count       content length
+         * @param chunkSize   chunk size
+         */
+        SharedChunkedFile(final CachedFileChannel fileChannel, final long offset, final long count, final int chunkSize) {
+            this.fileChannel = fileChannel.retain();
+            this.startOffset = offset;
+            this.endOffset = offset + count;
+            this.chunkSize = chunkSize;
+            this.offset = offset;
+        }
+
+        /**
+         * Get content start offset in file.
+         *
+         * @return start offset
+         */
+        public long startOffset() {
+            return startOffset;
+        }
+
+        /**
+         * Get content end offset (exclusive) in file.
+         *
+         * @return end offset
+         */
+        public long endOffset() {
+            return endOffset;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean isEndOfInput() {
+            return offset >= endOffset;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                fileChannel.updateReadPosition(offset);
+                fileChannel.release();
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public ByteBuf readChunk(final ChannelHandlerContext context) throws IOException {
+            if (offset >= endOffset) {
+                return null;
+            }
+
+            int length = (int) Math.min(chunkSize, endOffset - offset);
+            ByteBuf chunk = context.alloc().buffer(length);
+            boolean release = true;
+            try {
+                fileChannel.readFully(chunk.nioBuffer(0, length), offset);
+                chunk.writerIndex(length);
+                offset += length;
+                release = false;
+                return chunk;
+            } finally {
+                if (release) {
+                    chunk.release();
+                }
+            }
+        }
+    }
+}
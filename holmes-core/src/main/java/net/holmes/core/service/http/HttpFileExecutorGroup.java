@@ -0,0 +1,222 @@
+/*
+ * Copyright (C) 2012-2015  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.service.http;
+
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandler.Sharable;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.util.concurrent.*;
+import net.holmes.core.business.configuration.ConfigurationManager;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static net.holmes.core.common.ConfigurationParameter.HTTP_SERVER_FILE_THREADS;
+
+/**
+ * Executor group running HTTP file request handlers.
+ * <p>
+ * Resolving a content request (media index lookup, descriptor validation) and handling a file request (stat, open) may block
+ * on slow file systems. These handlers run on a dedicated group of threads, so that a slow file system never stalls the connections
+ * multiplexed on a Netty event loop: only URI routing, request dispatch and cached static resources are handled on event loop.
+ * </p>
+ * <p>
+ * Group records queue depth, time spent in blocking handlers on executor group, and time spent handling HTTP requests
+ * on event loop threads, which shows event loop blocking left.
+ * </p>
+ */
+@Singleton
+public final class HttpFileExecutorGroup {
+    private static final String THREAD_POOL_NAME = "holmes-http-file";
+
+    private final EventExecutorGroup executorGroup;
+    private final HandlerTime blockingTime = new HandlerTime();
+    private final HandlerTime eventLoopTime = new HandlerTime();
+    private final ChannelHandler blockingTimeHandler = new TimeHandler(blockingTime);
+    private final ChannelHandler eventLoopTimeHandler = new TimeHandler(eventLoopTime);
+
+    /**
+     * Instantiates a new HTTP file executor group.
+     *
+     * @param configurationManager configuration manager
+     */
+    @Inject
+    public HttpFileExecutorGroup(final ConfigurationManager configurationManager) {
+        this.executorGroup = new DefaultEventExecutorGroup(configurationManager.getParameter(HTTP_SERVER_FILE_THREADS),
+                new DefaultThreadFactory(THREAD_POOL_NAME, true));
+    }
+
+    /**
+     * Get executor group to register blocking handlers with.
+     *
+     * @return executor group
+     */
+    public EventExecutorGroup getExecutorGroup() {
+        return executorGroup;
+    }
+
+    /**
+     * Get handler recording time spent in following handlers of the same executor group.
+     * This handler must be registered with executor group, just before blocking handlers.
+     *
+     * @return blocking time handler
+     */
+    public ChannelHandler getBlockingTimeHandler() {
+        return blockingTimeHandler;
+    }
+
+    /**
+     * Get handler recording time spent in following handlers running on event loop, while decoding and dispatching HTTP requests.
+     * This handler must be registered on event loop, just before HTTP file request decoder.
+     *
+     * @return event loop time handler
+     */
+    public ChannelHandler getEventLoopTimeHandler() {
+        return eventLoopTimeHandler;
+    }
+
+    /**
+     * Get number of tasks waiting in executor queues.
+     *
+     * @return queue depth
+     */
+    public int getQueueDepth() {
+        int queueDepth = 0;
+        for (EventExecutor executor : executorGroup) {
+            if (executor instanceof SingleThreadEventExecutor) {
+                queueDepth += ((SingleThreadEventExecutor) executor).pendingTasks();
+            }
+        }
+        return queueDepth;
+    }
+
+    /**
+     * Get number of messages processed by blocking handlers.
+     *
+     * @return number of messages
+     */
+    public long getBlockingCount() {
+        return blockingTime.count.get();
+    }
+
+    /**
+     * Get total time spent in blocking handlers on executor group, i.e. time kept off event loops.
+     *
+     * @return total blocking time in nanoseconds
+     */
+    public long getBlockingTime() {
+        return blockingTime.time.get();
+    }
+
+    /**
+     * Get longest time spent processing a message in blocking handlers.
+     *
+     * @return maximum blocking time in nanoseconds
+     */
+    public long getMaxBlockingTime() {
+        return blockingTime.maxTime.get();
+    }
+
+    /**
+     * Get number of HTTP requests handled on event loop.
+     *
+     * @return number of requests
+     */
+    public long getEventLoopCount() {
+        return eventLoopTime.count.get();
+    }
+
+    /**
+     * Get total time spent handling HTTP requests on event loop threads, during which other connections of the event loop wait.
+     *
+     * @return total event loop time in nanoseconds
+     */
+    public long getEventLoopTime() {
+        return eventLoopTime.time.get();
+    }
+
+    /**
+     * Get longest time spent handling a HTTP request on an event loop thread.
+     *
+     * @return maximum event loop time in nanoseconds
+     */
+    public long getMaxEventLoopTime() {
+        return eventLoopTime.maxTime.get();
+    }
+
+    /**
+     * Shutdown executor group.
+     *
+     * @return termination future
+     */
+    public Future<?> shutdownGracefully() {
+        return executorGroup.shutdownGracefully();
+    }
+
+    /**
+     * Time spent processing messages in handlers.
+     */
+    private static final class HandlerTime {
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong time = new AtomicLong();
+        private final AtomicLong maxTime = new AtomicLong();
+
+        /**
+         * Record time spent processing a message.
+         *
+         * @param nanos processing time in nanoseconds
+         */
+        void record(final long nanos) {
+            count.incrementAndGet();
+            time.addAndGet(nanos);
+            maxTime.accumulateAndGet(nanos, Math::max);
+        }
+    }
+
+    /**
+     * Handler recording time spent in following handlers running on the same executor.
+     */
+    @Sharable
+    private static final class TimeHandler extends ChannelInboundHandlerAdapter {
+        private final HandlerTime handlerTime;
+
+        /**
+         * Instantiates a new time handler.
+         *
+         * @param handlerTime recorded handler time
+         */
+        TimeHandler(final HandlerTime handlerTime) {
+            this.handlerTime = handlerTime;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void channelRead(final ChannelHandlerContext context, final Object msg) {
+            long start = System.nanoTime();
+            try {
+                context.fireChannelRead(msg);
+            } finally {
+                handlerTime.record(System.nanoTime() - start);
+            }
+        }
+    }
+}
@@ -0,0 +1,420 @@
+/*
+ * Copyright (C) 2012-2015  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.service.http;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.stream.ChunkedInput;
+import io.netty.handler.stream.ChunkedWriteHandler;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.EventExecutorGroup;
+import net.holmes.core.business.configuration.ConfigurationManager;
+import net.holmes.core.service.http.HttpFileChannelCache.CachedFileChannel;
+import net.holmes.core.service.http.HttpFileChannelCache.SharedChunkedFile;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static net.holmes.core.common.ConfigurationParameter.HTTP_SERVER_READ_AHEAD_BLOCKS;
+import static net.holmes.core.common.ConfigurationParameter.HTTP_SERVER_READ_AHEAD_POOL_SIZE;
+import static net.holmes.core.common.ConfigurationParameter.HTTP_SERVER_READ_AHEAD_SIZE;
+
+/**
+ * Read-ahead engine of chunked file inputs.
+ * <p>
+ * Chunked inputs read small chunks on the event loop: when several streams are played from a spinning disk,
+ * interleaved small reads make disk heads seek between files for each chunk. Sequential streams are rather read by large
+ * blocks, ahead of client position, on the blocking executor group. Chunks are then copied from memory, and the transfer
+ * is suspended when a block is not read yet, so that disk latency never stalls the event loop.
+ * </p>
+ * <p>
+ * Block buffers come from a bounded pool: streams started when pool is exhausted read their chunks synchronously,
+ * until buffers are released. Zero-copy transfers do not go through this engine, as kernel already reads ahead files sent
+ * with sendfile.
+ * </p>
+ */
+@Singleton
+public final class HttpFileReadAhead {
+    private final int blockSize;
+    private final int streamBlocks;
+    private final int maxBuffers;
+    private final EventExecutorGroup executorGroup;
+    private final Deque<ByteBuffer> freeBuffers = new ArrayDeque<>();
+    private final AtomicLong readCount = new AtomicLong();
+    private final AtomicLong readBytes = new AtomicLong();
+    private int allocatedBuffers;
+    private int usedBuffers;
+
+    /**
+     * Instantiates a new HTTP file read-ahead engine.
+     *
+     * @param configurationManager  configuration manager
+     * @param httpFileExecutorGroup HTTP file executor group, running block reads
+     */
+    @Inject
+    public HttpFileReadAhead(final ConfigurationManager configurationManager, final HttpFileExecutorGroup httpFileExecutorGroup) {
+        this(configurationManager.getParameter(HTTP_SERVER_READ_AHEAD_SIZE) * 1024, configurationManager.getParameter(HTTP_SERVER_READ_AHEAD_BLOCKS),
+                configurationManager.getParameter(HTTP_SERVER_READ_AHEAD_POOL_SIZE) * 1024L * 1024L, httpFileExecutorGroup.getExecutorGroup());
+    }
+
+    /**
+     * Instantiates a new HTTP file read-ahead engine.
+     *
+     * @param blockSize     size of block reads in bytes (0 disables read-ahead)
+     * @param streamBlocks  maximum number of blocks read ahead of each stream
+     * @param poolSize      size of block buffer pool in bytes
+     * @param executorGroup executor group running block reads
+     */
+    HttpFileReadAhead(final int blockSize, final int streamBlocks, final long poolSize, final EventExecutorGroup executorGroup) {
+        this.blockSize = blockSize;
+        this.streamBlocks = Math.max(1, streamBlocks);
+        this.maxBuffers = blockSize > 0 ? (int) Math.min(Integer.MAX_VALUE, poolSize / blockSize) : 0;
+        this.executorGroup = executorGroup;
+    }
+
+    /**
+     * Create a chunked input on a file channel. Input reads ahead of client position if access is sequential:
+     * content spans several chunks and is either large enough to fill a block, or continues where previous input
+     * on the same file stopped (renderers streaming a file with successive range requests).
+     *
+     * @param fileChannel cached file channel
+     * @param offset      content offset
+     * @param count       content length
+     * @param chunkSize   chunk size
+     * @return chunked input
+     */
+    public ChunkedInput<ByteBuf> newChunkedInput(final CachedFileChannel fileChannel, final long offset, final long count, final int chunkSize) {
+        if (maxBuffers > 0 && count > chunkSize && (count >= blockSize || offset == fileChannel.getReadPosition())) {
+            return new ReadAheadChunkedFile(fileChannel, offset, count, chunkSize);
+        }
+        return new SharedChunkedFile(fileChannel, offset, count, chunkSize);
+    }
+
+    /**
+     * Get number of block buffers in use.
+     *
+     * @return number of used buffers
+     */
+    public int getUsedBufferCount() {
+        synchronized (freeBuffers) {
+            return usedBuffers;
+        }
+    }
+
+    /**
+     * Get number of block reads.
+     *
+     * @return number of block reads
+     */
+    public long getReadCount() {
+        return readCount.get();
+    }
+
+    /**
+     * Get number of bytes read by block reads.
+     *
+     * @return number of bytes
+     */
+    public long getReadBytes() {
+        return readBytes.get();
+    }
+
+    /**
+     * Acquire a block buffer from pool.
+     *
+     * @return buffer, or null if pool is exhausted
+     */
+    private ByteBuffer acquireBuffer() {
+        synchronized (freeBuffers) {
+            ByteBuffer buffer = freeBuffers.poll();
+            if (buffer == null && allocatedBuffers < maxBuffers) {
+                allocatedBuffers++;
+                buffer = ByteBuffer.allocateDirect(blockSize);
+            }
+            if (buffer != null) {
+                usedBuffers++;
+            }
+            return buffer;
+        }
+    }
+
+    /**
+     * Release a block buffer to pool.
+     *
+     * @param buffer buffer
+     */
+    private void releaseBuffer(final ByteBuffer buffer) {
+        buffer.clear();
+        synchronized (freeBuffers) {
+            freeBuffers.push(buffer);
+            usedBuffers--;
+        }
+    }
+
+    /**
+     * Chunked input reading ahead of client position: holds a reference to file channel until it is closed.
+     */
+    final class ReadAheadChunkedFile implements ChunkedInput<ByteBuf> {
+        private final CachedFileChannel fileChannel;
+        private final long endOffset;
+        private final int chunkSize;
+        private final EventExecutor executor;
+        private final Deque<Block> blocks = new ArrayDeque<>();
+        private volatile ChannelHandlerContext context;
+        private long offset;
+        private boolean closed;
+
+        /**
+         * Instantiates a new read-ahead chunked file.
+         *
+         * @param fileChannel cached file channel
+         * @param offset      content offset
+         * @param count       content length
+         * @param chunkSize   chunk size
+         */
+        ReadAheadChunkedFile(final CachedFileChannel fileChannel, final long offset, final long count, final int chunkSize) {
+            this.fileChannel = fileChannel.retain();
+            this.endOffset = offset + count;
+            this.chunkSize = chunkSize;
+            // Blocks of a stream are read in sequence by the same thread
+            this.executor = executorGroup.next();
+            this.offset = offset;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean isEndOfInput() {
+            return offset >= endOffset;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                fileChannel.updateReadPosition(offset);
+                for (Block block : blocks) {
+                    block.discard();
+                }
+                blocks.clear();
+                fileChannel.release();
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public ByteBuf readChunk(final ChannelHandlerContext context) throws IOException {
+            if (offset >= endOffset) {
+                return null;
+            }
+            this.context = context;
+            readAhead();
+
+            Block block = blocks.peek();
+            if (block == null) {
+                // Buffer pool is exhausted
+                return readDirect(context);
+            }
+            if (!block.isRead()) {
+                if (context.pipeline().get(ChunkedWriteHandler.class) != null && block.suspend()) {
+                    // Transfer is resumed once block is read
+                    return null;
+                }
+                block.await();
+            }
+            if (block.failure != null) {
+                throw block.failure;
+            }
+
+            // Copy chunk from block
+            int length = (int) Math.min(chunkSize, block.end - offset);
+            ByteBuffer source = block.buffer.duplicate();
+            source.limit((int) (offset - block.start) + length).position((int) (offset - block.start));
+            ByteBuf chunk = context.alloc().buffer(length);
+            chunk.writeBytes(source);
+            offset += length;
+            if (offset >= block.end) {
+                blocks.poll();
+                releaseBuffer(block.buffer);
+                readAhead();
+            }
+            return chunk;
+        }
+
+        /**
+         * Issue block reads following client position, up to maximum number of blocks per stream.
+         */
+        private void readAhead() {
+            while (blocks.size() < streamBlocks) {
+                long start = blocks.isEmpty() ? offset : blocks.peekLast().end;
+                if (start >= endOffset) {
+                    return;
+                }
+                ByteBuffer buffer = acquireBuffer();
+                if (buffer == null) {
+                    return;
+                }
+                buffer.limit((int) Math.min(blockSize, endOffset - start));
+                Block block = new Block(start, buffer);
+                blocks.add(block);
+                executor.execute(block);
+            }
+        }
+
+        /**
+         * Read a chunk synchronously.
+         *
+         * @param context channel context
+         * @return chunk
+         * @throws IOException indicates that file cannot be read
+         */
+        private ByteBuf readDirect(final ChannelHandlerContext context) throws IOException {
+            int length = (int) Math.min(chunkSize, endOffset - offset);
+            ByteBuf chunk = context.alloc().buffer(length);
+            boolean release = true;
+            try {
+                fileChannel.readFully(chunk.nioBuffer(0, length), offset);
+                chunk.writerIndex(length);
+                offset += length;
+                release = false;
+                return chunk;
+            } finally {
+                if (release) {
+                    chunk.release();
+                }
+            }
+        }
+
+        /**
+         * Block read ahead of client position. Block holds a reference to file channel until it is read.
+         */
+        private final class Block implements Runnable {
+            private final long start;
+            private final long end;
+            private final ByteBuffer buffer;
+            private IOException failure;
+            private boolean read;
+            private boolean suspended;
+            private boolean discarded;
+
+            /**
+             * Instantiates a new block.
+             *
+             * @param start  file position of block
+             * @param buffer block buffer, limited to block length
+             */
+            Block(final long start, final ByteBuffer buffer) {
+                this.start = start;
+                this.end = start + buffer.limit();
+                this.buffer = buffer;
+                fileChannel.retain();
+            }
+
+            /**
+             * Read block, then resume suspended transfer or release buffer of discarded block.
+             */
+            @Override
+            public void run() {
+                IOException readFailure = null;
+                try {
+                    fileChannel.readFully(buffer.duplicate(), start);
+                    readCount.incrementAndGet();
+                    readBytes.addAndGet(end - start);
+                } catch (IOException e) {
+                    readFailure = e;
+                } finally {
+                    fileChannel.release();
+                }
+
+                boolean resume;
+                synchronized (this) {
+                    failure = readFailure;
+                    read = true;
+                    resume = suspended && !discarded;
+                    if (discarded) {
+                        releaseBuffer(buffer);
+                    }
+                    notifyAll();
+                }
+                if (resume) {
+                    ChunkedWriteHandler chunkedWriteHandler = context.pipeline().get(ChunkedWriteHandler.class);
+                    if (chunkedWriteHandler != null) {
+                        chunkedWriteHandler.resumeTransfer();
+                    }
+                }
+            }
+
+            /**
+             * Check whether block is read.
+             *
+             * @return true if block is read (or failed to be read)
+             */
+            synchronized boolean isRead() {
+                return read;
+            }
+
+            /**
+             * Suspend transfer until block is read.
+             *
+             * @return true if transfer is suspended, false if block has been read meanwhile
+             */
+            synchronized boolean suspend() {
+                suspended = !read;
+                return suspended;
+            }
+
+            /**
+             * Wait until block is read.
+             *
+             * @throws InterruptedIOException indicates that thread has been interrupted
+             */
+            synchronized void await() throws InterruptedIOException {
+                while (!read) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException(fileChannel.getPath());
+                    }
+                }
+            }
+
+            /**
+             * Discard block: buffer is released now if block is read, otherwise once it is read.
+             */
+            synchronized void discard() {
+                discarded = true;
+                if (read) {
+                    releaseBuffer(buffer);
+                }
+            }
+        }
+    }
+}
@@ -18,10 +18,14 @@
 package net.holmes.core.service.http;
 
 import io.netty.handler.codec.http.HttpMessage;
+import io.netty.handler.codec.http.HttpRequest;
 import net.holmes.core.business.mimetype.model.MimeType;
+import net.holmes.core.service.http.StaticResourceCache.StaticResource;
 
 import java.io.File;
 
+import static io.netty.handler.codec.http.HttpMethod.HEAD;
+
 /**
  * Http file request.
  */
@@ -30,26 +34,107 @@ public final class HttpFileRequest {
     private final File file;
     private final MimeType mimeType;
     private final boolean staticResource;
+    private final Long fileLength;
+    private final Long lastModified;
+    private final StaticResource cachedResource;
+    private final String remoteUrl;
+    private final String entityTag;
 
     /**
      * Instantiates a new HttpFileRequest.
      *
      * @param httpMessage    original HTTP message
-     * @param file           file
+     * @param file           file (null for a remote content)
      * @param mimeType       mime type
      * @param staticResource request for a static resource
+     * @param fileLength     file length (null if unknown)
+     * @param lastModified   file last modification date (null if unknown)
+     * @param cachedResource cached static resource (null if request is not served from cache)
+     * @param remoteUrl      remote content URL (null for a local file)
+     * @param entityTag      file entity tag (null if file attributes are not validated)
      */
-    public HttpFileRequest(final HttpMessage httpMessage, final File file, final MimeType mimeType, final boolean staticResource) {
+    private HttpFileRequest(final HttpMessage httpMessage, final File file, final MimeType mimeType, final boolean staticResource,
+                            final Long fileLength, final Long lastModified, final StaticResource cachedResource, final String remoteUrl,
+                            final String entityTag) {
         this.httpMessage = httpMessage;
         this.file = file;
         this.mimeType = mimeType;
         this.staticResource = staticResource;
+        this.fileLength = fileLength;
+        this.lastModified = lastModified;
+        this.cachedResource = cachedResource;
+        this.remoteUrl = remoteUrl;
+        this.entityTag = entityTag;
+    }
+
+    /**
+     * Build a request for a content file, file attributes are read from file system.
+     *
+     * @param httpMessage original HTTP message
+     * @param file        file
+     * @param mimeType    mime type
+     * @return HTTP file request
+     */
+    public static HttpFileRequest newContentRequest(final HttpMessage httpMessage, final File file, final MimeType mimeType) {
+        return new HttpFileRequest(httpMessage, file, mimeType, false, null, null, null, null, null);
+    }
+
+    /**
+     * Build a request for a content file, with file attributes validated when request was decoded.
+     *
+     * @param httpMessage  original HTTP message
+     * @param file         file
+     * @param mimeType     mime type
+     * @param fileLength   file length
+     * @param lastModified file last modification date
+     * @param entityTag    file entity tag
+     * @return HTTP file request
+     */
+    public static HttpFileRequest newValidatedContentRequest(final HttpMessage httpMessage, final File file, final MimeType mimeType,
+                                                             final long fileLength, final long lastModified, final String entityTag) {
+        return new HttpFileRequest(httpMessage, file, mimeType, false, fileLength, lastModified, null, null, entityTag);
+    }
+
+    /**
+     * Build a request for a static resource, file attributes are read from file system.
+     *
+     * @param httpMessage original HTTP message
+     * @param file        file
+     * @param mimeType    mime type
+     * @return HTTP file request
+     */
+    public static HttpFileRequest newStaticResourceRequest(final HttpMessage httpMessage, final File file, final MimeType mimeType) {
+        return new HttpFileRequest(httpMessage, file, mimeType, true, null, null, null, null, null);
+    }
+
+    /**
+     * Build a request for a cached static resource.
+     *
+     * @param httpMessage    original HTTP message
+     * @param cachedResource cached static resource
+     * @return HTTP file request
+     */
+    public static HttpFileRequest newCachedResourceRequest(final HttpMessage httpMessage, final StaticResource cachedResource) {
+        return new HttpFileRequest(httpMessage, cachedResource.getFile(), cachedResource.getMimeType(), true,
+                cachedResource.getVariant(false).getLength(), cachedResource.getLastModified(), cachedResource, null, null);
+    }
+
+    /**
+     * Build a request for a remote content, served through remote content proxy.
+     *
+     * @param httpMessage original HTTP message
+     * @param remoteUrl   remote content URL
+     * @param mimeType    mime type
+     * @return HTTP file request
+     */
+    public static HttpFileRequest newRemoteContentRequest(final HttpMessage httpMessage, final String remoteUrl, final MimeType mimeType) {
+        return new HttpFileRequest(httpMessage, null, mimeType, false, null, null, null, remoteUrl, null);
     }
 
     /**
      * Get requested file.
      *
-     * @return requested file
+     * @return requested file, null for a remote content
      */
     public File getFile() {
         return file;
@@ -81,4 +166,67 @@ public final class HttpFileRequest {
     public boolean isStaticResource() {
         return staticResource;
     }
-}
\ No newline at end of file
+
+    /**
+     * Check if request is a HEAD request.
+     *
+     * @return true if request is a HEAD request
+     */
+    public boolean isHeadRequest() {
+        return httpMessage instanceof HttpRequest && HEAD.equals(((HttpRequest) httpMessage).getMethod());
+    }
+
+    /**
+     * Get file length, known attribute or read from file system.
+     *
+     * @return file length
+     */
+    public long getFileLength() {
+        return fileLength != null ? fileLength : file.length();
+    }
+
+    /**
+     * Get file last modification date, known attribute or read from file system.
+     *
+     * @return file last modification date
+     */
+    public long getLastModified() {
+        return lastModified != null ? lastModified : file.lastModified();
+    }
+
+    /**
+     * Get cached static resource.
+     *
+     * @return cached static resource or null if request is not served from cache
+     */
+    public StaticResource getCachedResource() {
+        return cachedResource;
+    }
+
+    /**
+     * Get remote content URL.
+     *
+     * @return remote content URL or null if request is not for a remote content
+     */
+    public String getRemoteUrl() {
+        return remoteUrl;
+    }
+
+    /**
+     * Check whether file attributes have been validated when request was decoded, so that file system does not need to be checked again.
+     *
+     * @return true if file attributes are validated
+     */
+    public boolean isValidated() {
+        return entityTag != null;
+    }
+
+    /**
+     * Get validated file entity tag.
+     *
+     * @return entity tag, or null if file attributes are not validated
+     */
+    public String getEntityTag() {
+        return entityTag;
+    }
+}
@@ -21,47 +21,57 @@ import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.MessageToMessageDecoder;
 import io.netty.handler.codec.http.FullHttpRequest;
 import io.netty.handler.codec.http.QueryStringDecoder;
-import net.holmes.core.business.media.MediaManager;
-import net.holmes.core.business.media.model.ContentNode;
-import net.holmes.core.business.media.model.MediaNode;
 import net.holmes.core.business.mimetype.MimeTypeManager;
 import net.holmes.core.business.mimetype.model.MimeType;
-import net.holmes.core.common.WebApplication;
+import net.holmes.core.service.http.HttpRequestRouter.Route;
+import net.holmes.core.service.http.StaticResourceCache.StaticResource;
 
 import javax.inject.Inject;
 import javax.inject.Named;
 import java.io.File;
 import java.util.List;
-import java.util.Optional;
 
 import static io.netty.handler.codec.http.HttpMethod.GET;
-import static net.holmes.core.common.Constants.*;
+import static io.netty.handler.codec.http.HttpMethod.HEAD;
+import static io.netty.handler.codec.http.QueryStringDecoder.decodeComponent;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static net.holmes.core.common.Constants.HTTP_CONTENT_ID;
+import static net.holmes.core.service.http.HttpFileRequest.newCachedResourceRequest;
+import static net.holmes.core.service.http.HttpFileRequest.newStaticResourceRequest;
+import static net.holmes.core.service.http.HttpRequestRouter.RouteType.CONTENT;
+import static net.holmes.core.service.http.HttpRequestRouter.RouteType.STATIC;
 
 /**
- * Decode FullHttpRequest messages to HttpFileRequest.
- * Two kinds of files are handled:
+ * Decode FullHttpRequest GET and HEAD messages to HttpFileRequest or HttpContentRequest, running on event loop.
+ * Requests are dispatched by request router, two kinds of files are handled:
  * <ul>
- * <li>static files for messages with requested file name having a valid mime type.</li>
- * <li>content files for messages with request parameter "id" matching content in media index.</li>
+ * <li>static files for messages with requested file name having a valid mime type, served from static resource cache when cached.</li>
+ * <li>content files for messages with request parameter "id", decoded to HttpContentRequest: content is resolved from media index
+ * by HttpContentRequestDecoder on file executor group.</li>
  * </ul>
- * If message does not fit previous criteria, message is forwarded to the Netty pipeline.
+ * If message does not fit previous criteria, or is routed to REST resources, message is forwarded to the Netty pipeline.
+ * This decoder never calls media index nor file system.
  */
 public final class HttpFileRequestDecoder extends MessageToMessageDecoder<FullHttpRequest> {
-    private final MediaManager mediaManager;
     private final MimeTypeManager mimeTypeManager;
+    private final StaticResourceCache staticResourceCache;
+    private final HttpRequestRouter requestRouter;
     private final String uiDirectory;
 
     /**
      * Instantiates a new HTTP file request decoder.
      *
-     * @param mediaManager    media manager
-     * @param mimeTypeManager mime type manager
-     * @param uiDirectory     UI base directory
+     * @param mimeTypeManager     mime type manager
+     * @param staticResourceCache static resource cache
+     * @param requestRouter       request router
+     * @param uiDirectory         UI base directory
      */
     @Inject
-    public HttpFileRequestDecoder(final MediaManager mediaManager, final MimeTypeManager mimeTypeManager, @Named("uiDirectory") final String uiDirectory) {
-        this.mediaManager = mediaManager;
+    public HttpFileRequestDecoder(final MimeTypeManager mimeTypeManager, final StaticResourceCache staticResourceCache, final HttpRequestRouter requestRouter,
+                                  @Named("uiDirectory") final String uiDirectory) {
         this.mimeTypeManager = mimeTypeManager;
+        this.staticResourceCache = staticResourceCache;
+        this.requestRouter = requestRouter;
         this.uiDirectory = uiDirectory;
     }
 
@@ -70,32 +80,25 @@ public final class HttpFileRequestDecoder extends MessageToMessageDecoder<FullHt
      */
     @Override
     protected void decode(final ChannelHandlerContext context, final FullHttpRequest request, final List<Object> out) {
-        HttpFileRequest fileRequest = null;
+        Object fileRequest = null;
 
-        // only GET requests are handled
-        if (request.getMethod().equals(GET)) {
-            QueryStringDecoder requestDecoder = new QueryStringDecoder(request.getUri());
-            if (requestDecoder.path().startsWith(HTTP_CONTENT_REQUEST_PATH.toString()) && requestDecoder.parameters().get(HTTP_CONTENT_ID.toString()) != null) {
-                // Content file request is valid if content is found in media index
-                Optional<MediaNode> node = mediaManager.getNode(requestDecoder.parameters().get(HTTP_CONTENT_ID.toString()).get(0));
-                if (node.isPresent() && node.get() instanceof ContentNode) {
-                    // Content found in media index, build a file request based on this content
-                    ContentNode contentNode = (ContentNode) node.get();
-                    fileRequest = new HttpFileRequest(request, new File(contentNode.getPath()), contentNode.getMimeType(), false);
-                }
-            } else {
-                // Static file request is valid if requested file name has a valid mime type
-                String requestedFileName = getRequestedFileName(requestDecoder);
-                MimeType mimeType = mimeTypeManager.getMimeType(requestedFileName);
-                if (mimeType != null) {
-                    // Found valid mime type, build a static file request
-                    fileRequest = new HttpFileRequest(request, new File(uiDirectory, requestedFileName), mimeType, true);
-                }
+        // only GET and HEAD requests are handled
+        if (request.getMethod().equals(GET) || request.getMethod().equals(HEAD)) {
+            String uri = request.getUri();
+            int queryStart = uri.indexOf('?');
+            String path = decodeComponent(queryStart < 0 ? uri : uri.substring(0, queryStart), UTF_8);
+            Route route = requestRouter.route(path);
+            if (route.getType() == CONTENT) {
+                // Content is resolved from media index on file executor group, query string is only decoded for content requests
+                List<String> contentId = queryStart < 0 ? null : new QueryStringDecoder(uri).parameters().get(HTTP_CONTENT_ID.toString());
+                fileRequest = contentId != null ? new HttpContentRequest(request.retain(), contentId.get(0)) : getStaticFileRequest(request, route, path);
+            } else if (route.getType() == STATIC) {
+                fileRequest = getStaticFileRequest(request, route, path);
             }
         }
 
         if (fileRequest != null) {
-            // Add file request to message list
+            // Add file or content request to message list
             out.add(fileRequest);
         } else {
             // Forward request to pipeline
@@ -104,19 +107,40 @@ public final class HttpFileRequestDecoder extends MessageToMessageDecoder<FullHt
     }
 
     /**
-     * Get requested file name.
+     * Get static file request.
+     * Static file request is served from cache when resource is cached, otherwise it is valid if requested file name has a valid mime type.
      *
-     * @param requestDecoder request decoder
-     * @return requested file name
+     * @param request HTTP request
+     * @param route   request route
+     * @param path    request path
+     * @return static file request or null if requested file has no valid mime type
      */
-    private String getRequestedFileName(final QueryStringDecoder requestDecoder) {
-        // Get request path and remove trailing slashes
-        String fileName = requestDecoder.path().replaceAll("/+$", "");
-
-        // Check if fileName is a web application
-        WebApplication webApplication = WebApplication.findByPath(fileName);
+    private HttpFileRequest getStaticFileRequest(final FullHttpRequest request, final Route route, final String path) {
+        // Web application paths are served by their welcome file
+        String requestedFileName = route.getWelcomeFile() != null ? route.getWelcomeFile() : removeTrailingSlashes(path);
+        StaticResource cachedResource = staticResourceCache.get(requestedFileName);
+        if (cachedResource != null) {
+            return newCachedResourceRequest(request, cachedResource);
+        }
+        MimeType mimeType = mimeTypeManager.getMimeType(requestedFileName);
+        if (mimeType != null) {
+            // Found valid mime type, build a static file request
+            return newStaticResourceRequest(request, new File(uiDirectory, requestedFileName), mimeType);
+        }
+        return null;
+    }
 
-        // Return web application welcome file or requested file name
-        return webApplication != null ? fileName + webApplication.getWelcomeFile() : fileName;
+    /**
+     * Remove trailing slashes from path.
+     *
+     * @param path path
+     * @return path without trailing slashes
+     */
+    private static String removeTrailingSlashes(final String path) {
+        int end = path.length();
+        while (end > 0 && path.charAt(end - 1) == '/') {
+            end--;
+        }
+        return path.substring(0, end);
     }
 }
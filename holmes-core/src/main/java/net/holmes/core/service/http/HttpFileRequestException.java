@@ -17,6 +17,7 @@
 
 package net.holmes.core.service.http;
 
+import io.netty.handler.codec.http.HttpHeaders;
 import io.netty.handler.codec.http.HttpResponseStatus;
 import net.holmes.core.common.exception.HolmesException;
 
@@ -25,6 +26,7 @@ import net.holmes.core.common.exception.HolmesException;
  */
 public final class HttpFileRequestException extends HolmesException {
     private final transient HttpResponseStatus status;
+    private final transient HttpHeaders headers;
 
     /**
      * Instantiates a new http file request exception.
@@ -33,8 +35,20 @@ public final class HttpFileRequestException extends HolmesException {
      * @param status  status
      */
     public HttpFileRequestException(final String message, final HttpResponseStatus status) {
+        this(message, status, HttpHeaders.EMPTY_HEADERS);
+    }
+
+    /**
+     * Instantiates a new http file request exception with additional response headers.
+     *
+     * @param message message
+     * @param status  status
+     * @param headers headers added to error response
+     */
+    public HttpFileRequestException(final String message, final HttpResponseStatus status, final HttpHeaders headers) {
         super(message);
         this.status = status;
+        this.headers = headers;
     }
 
     /**
@@ -45,4 +59,13 @@ public final class HttpFileRequestException extends HolmesException {
     public HttpResponseStatus getStatus() {
         return status;
     }
+
+    /**
+     * Get headers added to error response.
+     *
+     * @return headers
+     */
+    public HttpHeaders getHeaders() {
+        return headers;
+    }
 }
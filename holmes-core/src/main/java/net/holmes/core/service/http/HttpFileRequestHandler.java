@@ -19,24 +19,34 @@ package net.holmes.core.service.http;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPipeline;
 import io.netty.channel.SimpleChannelInboundHandler;
 import io.netty.handler.codec.http.*;
-import io.netty.handler.stream.ChunkedFile;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.handler.traffic.AbstractTrafficShapingHandler;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.FutureListener;
 import net.holmes.core.business.configuration.ConfigurationManager;
+import net.holmes.core.business.media.ContentPrefetcher;
+import net.holmes.core.service.http.HttpFileChannelCache.CachedFileChannel;
+import net.holmes.core.service.http.HttpRemoteContentProxy.RemoteContent;
+import net.holmes.core.service.http.StaticResourceCache.StaticResource;
+import net.holmes.core.service.http.StaticResourceCache.Variant;
+import net.holmes.core.service.http.seek.TimeSeekIndex;
+import net.holmes.core.service.http.seek.TimeSeekIndexStore;
 
 import javax.inject.Inject;
 import java.io.File;
 import java.io.IOException;
-import java.io.RandomAccessFile;
+import java.text.ParseException;
 import java.text.SimpleDateFormat;
-import java.util.Calendar;
-import java.util.Date;
-import java.util.TimeZone;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
 
 import static io.netty.buffer.Unpooled.copiedBuffer;
+import static io.netty.buffer.Unpooled.wrappedBuffer;
 import static io.netty.channel.ChannelFutureListener.CLOSE;
 import static io.netty.handler.codec.http.HttpHeaders.Names.*;
 import static io.netty.handler.codec.http.HttpHeaders.Values.*;
@@ -44,20 +54,28 @@ import static io.netty.handler.codec.http.HttpHeaders.*;
 import static io.netty.handler.codec.http.HttpResponseStatus.*;
 import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
 import static io.netty.handler.codec.http.LastHttpContent.EMPTY_LAST_CONTENT;
+import static java.nio.charset.StandardCharsets.US_ASCII;
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.TimeZone.getTimeZone;
+import static net.holmes.core.business.streaming.upnp.UpnpUtils.getDlnaContentFeatures;
 import static net.holmes.core.common.ConfigurationParameter.HTTP_SERVER_CACHE_SECOND;
+import static net.holmes.core.common.ConfigurationParameter.HTTP_SERVER_ZERO_COPY;
 import static net.holmes.core.common.Constants.HOLMES_HTTP_SERVER_NAME;
 import static net.holmes.core.common.FileUtils.isValidFile;
+import static net.holmes.core.common.MediaType.TYPE_IMAGE;
 
 /**
  * Http file request handler.
  */
 public final class HttpFileRequestHandler extends SimpleChannelInboundHandler<HttpFileRequest> {
-    private static final Pattern PATTERN_RANGE_START_OFFSET = Pattern.compile("^(?i)\\s*bytes\\s*=\\s*(\\d+)\\s*-.*$");
     private static final String HTTP_DATE_FORMAT = "EEE, dd MMM yyyy HH:mm:ss zzz";
     private static final int CHUNK_SIZE = 8192;
     private static final TimeZone GMT_TIMEZONE = getTimeZone("GMT");
+    private static final String MULTIPART_BYTERANGES = "multipart/byteranges; boundary=";
+    private static final String TRANSFER_MODE_DLNA = "transferMode.dlna.org";
+    private static final String GET_CONTENT_FEATURES_DLNA = "getcontentFeatures.dlna.org";
+    private static final String TIME_SEEK_RANGE_DLNA = "TimeSeekRange.dlna.org";
+    private static final int TIME_SEEK_RETRY_SECONDS = 2;
 
     private static final CharSequence X_SERVER = newEntity(SERVER);
     private static final CharSequence X_SERVER_NAME = newEntity(HOLMES_HTTP_SERVER_NAME.toString());
@@ -66,25 +84,55 @@ public final class HttpFileRequestHandler extends SimpleChannelInboundHandler<Ht
     private static final CharSequence X_BYTES = newEntity(BYTES);
     private static final CharSequence X_DATE = newEntity(DATE);
     private static final CharSequence X_LAST_MODIFIED = newEntity(LAST_MODIFIED);
+    private static final CharSequence X_ETAG = newEntity(ETAG);
+    private static final CharSequence X_VARY = newEntity(VARY);
+    private static final CharSequence X_ACCEPT_ENCODING = newEntity(ACCEPT_ENCODING);
+    private static final CharSequence X_CONTENT_ENCODING = newEntity(CONTENT_ENCODING);
     private static final CharSequence X_EXPIRES = newEntity(EXPIRES);
     private static final CharSequence X_CACHE_CONTROL = newEntity(CACHE_CONTROL);
     private static final CharSequence X_CONTENT_TYPE = newEntity(CONTENT_TYPE);
     private static final CharSequence X_CONTENT_TYPE_UTF8 = newEntity("text/plain; charset=" + UTF_8);
     private static final CharSequence X_CONNECTION = newEntity(CONNECTION);
     private static final CharSequence X_KEEP_ALIVE = newEntity(KEEP_ALIVE);
+    private static final CharSequence X_TRANSFER_MODE_DLNA = newEntity(TRANSFER_MODE_DLNA);
+    private static final CharSequence X_STREAMING = newEntity("Streaming");
+    private static final CharSequence X_INTERACTIVE = newEntity("Interactive");
+    private static final CharSequence X_CONTENT_FEATURES_DLNA = newEntity("contentFeatures.dlna.org");
+    private static final CharSequence X_TIME_SEEK_RANGE_DLNA = newEntity(TIME_SEEK_RANGE_DLNA);
 
     private final int httpCacheSecond;
+    private final boolean zeroCopy;
+    private final HttpFileChannelCache fileChannelCache;
+    private final TimeSeekIndexStore timeSeekIndexStore;
+    private final ContentPrefetcher contentPrefetcher;
+    private final HttpContentCache contentCache;
+    private final HttpRemoteContentProxy remoteContentProxy;
     private final SimpleDateFormat httpDateFormatter;
+    private final Queue<HttpFileRequest> pendingRequests = new ArrayDeque<>();
+    private boolean remoteContentPending;
 
     /**
      * Instantiates a new Http file request handler.
      *
      * @param configurationManager configuration manager
+     * @param fileChannelCache     shared file channel cache
+     * @param timeSeekIndexStore   video time seek index store
+     * @param contentPrefetcher    content prefetcher
+     * @param contentCache         small content cache
+     * @param remoteContentProxy   remote content proxy
      */
     @Inject
-    public HttpFileRequestHandler(final ConfigurationManager configurationManager) {
+    public HttpFileRequestHandler(final ConfigurationManager configurationManager, final HttpFileChannelCache fileChannelCache,
+                                  final TimeSeekIndexStore timeSeekIndexStore, final ContentPrefetcher contentPrefetcher,
+                                  final HttpContentCache contentCache, final HttpRemoteContentProxy remoteContentProxy) {
         httpCacheSecond = configurationManager.getParameter(HTTP_SERVER_CACHE_SECOND);
-        httpDateFormatter = new SimpleDateFormat(HTTP_DATE_FORMAT);
+        zeroCopy = configurationManager.getParameter(HTTP_SERVER_ZERO_COPY);
+        this.fileChannelCache = fileChannelCache;
+        this.timeSeekIndexStore = timeSeekIndexStore;
+        this.contentPrefetcher = contentPrefetcher;
+        this.contentCache = contentCache;
+        this.remoteContentProxy = remoteContentProxy;
+        httpDateFormatter = new SimpleDateFormat(HTTP_DATE_FORMAT, Locale.US);
         httpDateFormatter.setTimeZone(GMT_TIMEZONE);
     }
 
@@ -93,36 +141,234 @@ public final class HttpFileRequestHandler extends SimpleChannelInboundHandler<Ht
      */
     @Override
     protected void channelRead0(final ChannelHandlerContext context, final HttpFileRequest request) throws HttpFileRequestException, IOException {
+        if (remoteContentPending) {
+            // Previous request waits for remote content attributes: requests are answered in order
+            pendingRequests.add(request);
+        } else if (request.getRemoteUrl() != null) {
+            readRemoteContent(context, request);
+        } else {
+            handleRequest(context, request, null);
+        }
+    }
+
+    /**
+     * Read remote content attributes and handle request. Attributes are read from origin on remote content proxy executor group,
+     * request is then handled on this handler executor, followed by requests received meanwhile.
+     *
+     * @param context channel context
+     * @param request remote content request
+     * @throws HttpFileRequestException indicates that remote content cannot be served
+     * @throws IOException              indicates an I/O error
+     */
+    private void readRemoteContent(final ChannelHandlerContext context, final HttpFileRequest request) throws HttpFileRequestException, IOException {
+        final Future<RemoteContent> remoteContent = remoteContentProxy.getContent(request.getRemoteUrl());
+        if (remoteContent.isDone()) {
+            handleRequest(context, request, getRemoteContent(remoteContent));
+            return;
+        }
+        remoteContentPending = true;
+        remoteContent.addListener(new FutureListener<RemoteContent>() {
+            @Override
+            public void operationComplete(final Future<RemoteContent> future) {
+                context.executor().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        remoteContentPending = false;
+                        try {
+                            handleRequest(context, request, getRemoteContent(future));
+                        } catch (HttpFileRequestException | IOException | RuntimeException e) {
+                            exceptionCaught(context, e);
+                        }
+                        HttpFileRequest pendingRequest;
+                        while (!remoteContentPending && (pendingRequest = pendingRequests.poll()) != null) {
+                            try {
+                                channelRead0(context, pendingRequest);
+                            } catch (HttpFileRequestException | IOException | RuntimeException e) {
+                                exceptionCaught(context, e);
+                            }
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Get remote content attributes read from origin.
+     *
+     * @param future future remote content, done
+     * @return remote content
+     * @throws HttpFileRequestException indicates that content is not found or that origin cannot be reached
+     */
+    private static RemoteContent getRemoteContent(final Future<RemoteContent> future) throws HttpFileRequestException {
+        if (future.isSuccess()) {
+            return future.getNow();
+        } else if (future.cause() instanceof HttpFileRequestException) {
+            throw (HttpFileRequestException) future.cause();
+        }
+        throw new HttpFileRequestException("Failed to reach origin: " + future.cause(), BAD_GATEWAY);
+    }
+
+    /**
+     * Handle file request.
+     *
+     * @param context       channel context
+     * @param request       file request
+     * @param remoteContent remote content attributes (null if content is not remote)
+     * @throws HttpFileRequestException indicates that content cannot be served
+     * @throws IOException              indicates an I/O error
+     */
+    private void handleRequest(final ChannelHandlerContext context, final HttpFileRequest request, final RemoteContent remoteContent)
+            throws HttpFileRequestException, IOException {
         // Check file
-        File file = request.getFile();
-        if (!isValidFile(file)) {
+        final File file = request.getFile();
+        StaticResource cachedResource = request.getCachedResource();
+        if (cachedResource == null && remoteContent == null && !request.isValidated() && !isValidFile(file)) {
             throw new HttpFileRequestException(file.getPath(), NOT_FOUND);
         }
 
-        // Get file descriptor
-        RandomAccessFile randomFile = new RandomAccessFile(file, "r");
-        long fileLength = randomFile.length();
+        // Get content attributes, date validators are not used when remote content modification date is unknown
+        HttpHeaders requestHeaders = request.getHttpMessage().headers();
+        long lastModified = remoteContent != null ? remoteContent.getLastModified() : request.getLastModified();
+        Long modifiedDate = remoteContent == null || lastModified != 0 ? lastModified : null;
+        long fileLength;
+        String entityTag;
+        Variant variant = null;
+        if (remoteContent != null) {
+            fileLength = remoteContent.getLength();
+            entityTag = remoteContent.getEntityTag();
+        } else if (cachedResource != null) {
+            // Cached static resource: select variant, byte ranges are always served from uncompressed variant
+            variant = cachedResource.getVariant(requestHeaders.get(RANGE) == null && isGzipAccepted(requestHeaders.get(ACCEPT_ENCODING)));
+            fileLength = variant.getLength();
+            entityTag = variant.getEntityTag();
+        } else if (request.isValidated()) {
+            // File attributes have been validated when request was decoded
+            fileLength = request.getFileLength();
+            entityTag = request.getEntityTag();
+        } else {
+            // HEAD request is answered from known file attributes without opening the file
+            fileLength = request.isHeadRequest() ? request.getFileLength() : file.length();
+            entityTag = getEntityTag(fileLength, lastModified);
+        }
 
-        // Get start offset
-        long startOffset = getStartOffset(request.getHttpMessage());
+        // Get video time seek index (built in background on first request)
+        boolean timeSeek = !request.isStaticResource() && remoteContent == null && timeSeekIndexStore.isTimeSeekSupported(request.getMimeType());
+        TimeSeekIndex timeSeekIndex = timeSeek ? timeSeekIndexStore.getIndex(file, request.getMimeType(), fileLength, lastModified) : null;
 
         // Build HTTP response
-        HttpResponse response = buildHttpResponse(startOffset, fileLength);
+        HttpResponse response;
+        List<ByteRange> ranges = Collections.emptyList();
+        boolean notModified = isNotModified(requestHeaders, entityTag, modifiedDate);
+        if (notModified) {
+            response = buildHttpResponse(NOT_MODIFIED);
+        } else if (!request.isStaticResource() && requestHeaders.contains(TIME_SEEK_RANGE_DLNA)) {
+            // DLNA time seek: requested time range is served as the matching byte range, with a 200 status
+            if (timeSeekIndex == null && timeSeek && timeSeekIndexStore.isIndexPending(file)) {
+                // Time seek is advertised, but index is still being built
+                HttpHeaders headers = new DefaultHttpHeaders();
+                headers.set(RETRY_AFTER, TIME_SEEK_RETRY_SECONDS);
+                throw new HttpFileRequestException("Time seek index is being built for " + file.getPath(), SERVICE_UNAVAILABLE, headers);
+            } else if (timeSeekIndex == null) {
+                throw new HttpFileRequestException("Time seek is not supported for " + (file != null ? file.getPath() : request.getRemoteUrl()),
+                        NOT_ACCEPTABLE);
+            }
+            TimeSeekRange timeSeekRange = TimeSeekRange.parse(requestHeaders.get(TIME_SEEK_RANGE_DLNA), timeSeekIndex, fileLength);
+            response = buildHttpResponse(OK);
+            response.headers().set(X_TIME_SEEK_RANGE_DLNA, timeSeekRange.getHeaderValue(fileLength));
+            addContentHeaders(response, timeSeekRange.getByteRange().getLength(), request.getMimeType().getMimeType());
+            if (!request.isHeadRequest()) {
+                ranges = Collections.singletonList(timeSeekRange.getByteRange());
+            }
+        } else {
+            // Get requested byte ranges (Range header does not apply to HEAD request)
+            if (!request.isHeadRequest()) {
+                ranges = getByteRanges(requestHeaders, entityTag, modifiedDate, fileLength);
+            }
+
+            if (ranges.isEmpty()) {
+                response = buildHttpResponse(OK);
+                addContentHeaders(response, fileLength, request.getMimeType().getMimeType());
+            } else if (ranges.size() == 1) {
+                response = buildHttpResponse(PARTIAL_CONTENT);
+                response.headers().set(X_CONTENT_RANGE, ranges.get(0).getContentRange(fileLength));
+                addContentHeaders(response, ranges.get(0).getLength(), request.getMimeType().getMimeType());
+            } else {
+                response = buildHttpResponse(PARTIAL_CONTENT);
+            }
+        }
+        if (entityTag != null) {
+            response.headers().set(X_ETAG, entityTag);
+        }
+        if (cachedResource != null && cachedResource.isCompressed()) {
+            response.headers().set(X_VARY, X_ACCEPT_ENCODING);
+        }
+        if (variant != null && variant.getContentEncoding() != null && !notModified) {
+            response.headers().set(X_CONTENT_ENCODING, variant.getContentEncoding());
+        }
 
         // Add HTTP headers to response
-        addContentHeaders(response, fileLength - startOffset, request);
-        addDateAndCacheHeaders(response, request);
+        addDateAndCacheHeaders(response, request, modifiedDate);
+        addDlnaHeaders(response, request, timeSeek);
         boolean keepAlive = addKeepAliveHeader(response, request);
 
-        // Write the response headers
-        context.write(response);
-
-        // Write the content
-        context.write(new ChunkedFile(randomFile, startOffset, fileLength - startOffset, CHUNK_SIZE));
+        // Write the response headers and the content
+        if (notModified || request.isHeadRequest()) {
+            context.write(response);
+        } else {
+            // Small file content is served from memory, other file content is read from a shared file channel,
+            // each content holds its own buffer or channel reference. Remote content is read through proxy.
+            boolean localFile = variant == null && remoteContent == null;
+            ByteBuf cachedContent = localFile ? contentCache.acquire(file, fileLength, lastModified) : null;
+            CachedFileChannel fileChannel = null;
+            if (localFile && cachedContent == null) {
+                fileChannel = request.isValidated() ? fileChannelCache.acquire(file, fileLength, lastModified) : fileChannelCache.acquire(file);
+            }
+            try {
+                if (ranges.isEmpty()) {
+                    context.write(response);
+                    context.write(newContent(context, cachedContent, fileChannel, variant, remoteContent, 0, fileLength));
+                } else if (ranges.size() == 1) {
+                    context.write(response);
+                    context.write(newContent(context, cachedContent, fileChannel, variant, remoteContent, ranges.get(0).getStart(), ranges.get(0).getLength()));
+                } else {
+                    writeMultipartContent(context, response, cachedContent, fileChannel, variant, remoteContent, fileLength, ranges, request.getMimeType().getMimeType());
+                }
+            } finally {
+                if (cachedContent != null) {
+                    cachedContent.release();
+                }
+                if (fileChannel != null) {
+                    fileChannel.release();
+                }
+            }
+        }
 
         // Write the end marker
         ChannelFuture lastContentFuture = context.writeAndFlush(EMPTY_LAST_CONTENT);
 
+        // Notify content prefetcher of streamed section once written: next content is warmed up when a client
+        // streams content up to its end
+        if (!request.isStaticResource() && remoteContent == null && !notModified && !request.isHeadRequest()) {
+            long start = ranges.isEmpty() ? 0 : Long.MAX_VALUE;
+            long end = ranges.isEmpty() ? fileLength : 0;
+            for (ByteRange range : ranges) {
+                start = Math.min(start, range.getStart());
+                end = Math.max(end, range.getEnd() + 1);
+            }
+            final long streamedStart = start;
+            final long streamedEnd = end;
+            final long length = fileLength;
+            lastContentFuture.addListener(new ChannelFutureListener() {
+                @Override
+                public void operationComplete(final ChannelFuture future) {
+                    if (future.isSuccess()) {
+                        contentPrefetcher.contentStreamed(file, streamedStart, streamedEnd, length);
+                    }
+                }
+            });
+        }
+
         // Decide whether to close the connection or not when the whole content is written out.
         if (!keepAlive) {
             lastContentFuture.addListener(CLOSE);
@@ -137,35 +383,25 @@ public final class HttpFileRequestHandler extends SimpleChannelInboundHandler<Ht
     public void exceptionCaught(final ChannelHandlerContext context, final Throwable cause) {
         if (context.channel().isActive()) {
             HttpResponseStatus status = INTERNAL_SERVER_ERROR;
+            HttpHeaders headers = HttpHeaders.EMPTY_HEADERS;
             if (cause instanceof HttpFileRequestException) {
                 status = ((HttpFileRequestException) cause).getStatus();
+                headers = ((HttpFileRequestException) cause).getHeaders();
             }
-            sendError(context, cause.getMessage(), status);
+            sendError(context, cause.getMessage(), status, headers);
         }
     }
 
     /**
      * Build HTTP response.
      *
-     * @param startOffset start offset
-     * @param fileLength  file length
+     * @param status response status
      * @return HTTP response
-     * @throws HttpFileRequestException indicates that start offset is invalid
      */
-    private HttpResponse buildHttpResponse(final long startOffset, final long fileLength) throws HttpFileRequestException {
-        HttpResponse response;
-        if (startOffset == 0) {
-            // Instantiates a new default HTTP response
-            response = new DefaultHttpResponse(HTTP_1_1, OK, false);
-            response.headers().set(X_ACCEPT_RANGES, X_BYTES);
-        } else if (startOffset < fileLength) {
-            // Instantiates a new default HTTP response with content range
-            response = new DefaultHttpResponse(HTTP_1_1, PARTIAL_CONTENT, false);
-            response.headers().set(X_CONTENT_RANGE, startOffset + "-" + (fileLength - 1) + "/" + fileLength);
-        } else {
-            // Invalid start offset
-            throw new HttpFileRequestException("Invalid start offset: " + startOffset, REQUESTED_RANGE_NOT_SATISFIABLE);
-        }
+    private HttpResponse buildHttpResponse(final HttpResponseStatus status) {
+        // Instantiates a new default HTTP response
+        HttpResponse response = new DefaultHttpResponse(HTTP_1_1, status, false);
+        response.headers().set(X_ACCEPT_RANGES, X_BYTES);
 
         // Add server header
         response.headers().set(X_SERVER, X_SERVER_NAME);
@@ -174,50 +410,243 @@ public final class HttpFileRequestHandler extends SimpleChannelInboundHandler<Ht
     }
 
     /**
-     * Get start offset from Http message range header.
+     * Check whether gzip content coding is accepted according to Accept-Encoding header.
      *
-     * @param httpMessage Http message
-     * @return start offset
+     * @param acceptEncoding Accept-Encoding header value
+     * @return true if gzip is accepted
+     */
+    private static boolean isGzipAccepted(final String acceptEncoding) {
+        if (acceptEncoding != null) {
+            for (String coding : acceptEncoding.split(",")) {
+                String[] parameters = coding.split(";");
+                String name = parameters[0].trim();
+                if (GZIP.equalsIgnoreCase(name) || "*".equals(name)) {
+                    return parameters.length < 2 || getQuality(parameters[1]) > 0;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get quality value from Accept-Encoding parameter.
+     *
+     * @param parameter parameter ("q=value")
+     * @return quality value
+     */
+    private static double getQuality(final String parameter) {
+        String trimmedParameter = parameter.trim();
+        if (trimmedParameter.startsWith("q=")) {
+            try {
+                return Double.parseDouble(trimmedParameter.substring(2));
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+        return 1;
+    }
+
+    /**
+     * Get entity tag: strong validator derived from file modification date and length.
+     *
+     * @param fileLength   file length
+     * @param lastModified file last modification date
+     * @return entity tag
+     */
+    static String getEntityTag(final long fileLength, final long lastModified) {
+        return '"' + Long.toHexString(lastModified) + '-' + Long.toHexString(fileLength) + '"';
+    }
+
+    /**
+     * Evaluate conditional request headers (RFC 7232): If-None-Match, or If-Modified-Since when If-None-Match is absent.
+     *
+     * @param headers      request headers
+     * @param entityTag    file entity tag (null if unknown)
+     * @param lastModified file last modification date (null if unknown)
+     * @return true if file has not been modified and 304 status should be returned
+     */
+    private boolean isNotModified(final HttpHeaders headers, final String entityTag, final Long lastModified) {
+        String ifNoneMatch = headers.get(IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            // Weak comparison
+            String opaqueTag = entityTag != null && entityTag.startsWith("W/") ? entityTag.substring(2) : entityTag;
+            for (String tag : ifNoneMatch.split(",")) {
+                String trimmedTag = tag.trim();
+                if ("*".equals(trimmedTag) || opaqueTag != null && opaqueTag.equals(trimmedTag.startsWith("W/") ? trimmedTag.substring(2) : trimmedTag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        Date ifModifiedSince = parseHttpDate(headers.get(IF_MODIFIED_SINCE));
+        return ifModifiedSince != null && lastModified != null && lastModified / 1000 <= ifModifiedSince.getTime() / 1000;
+    }
+
+    /**
+     * Get byte ranges from Http message range header.
+     *
+     * @param headers      request headers
+     * @param entityTag    file entity tag (null if unknown)
+     * @param lastModified file last modification date (null if unknown)
+     * @param fileLength   file length
+     * @return byte ranges, empty list if the whole file is requested
      * @throws HttpFileRequestException indicates that requested range is invalid
      */
-    private long getStartOffset(final HttpMessage httpMessage) throws HttpFileRequestException {
-        long startOffset = 0;
-        String range = httpMessage.headers().get(RANGE);
-        if (range != null) {
-            Matcher matcher = PATTERN_RANGE_START_OFFSET.matcher(range);
-            if (matcher.find()) {
-                startOffset = Long.parseLong(matcher.group(1));
-            } else {
-                throw new HttpFileRequestException(range, REQUESTED_RANGE_NOT_SATISFIABLE);
+    private List<ByteRange> getByteRanges(final HttpHeaders headers, final String entityTag, final Long lastModified, final long fileLength)
+            throws HttpFileRequestException {
+        String range = headers.get(RANGE);
+        if (range == null || !isRangeApplicable(headers.get(IF_RANGE), entityTag, lastModified)) {
+            return Collections.emptyList();
+        }
+        return ByteRange.parse(range, fileLength);
+    }
+
+    /**
+     * Check whether range request applies according to If-Range header.
+     * Range is applied only if If-Range header matches file entity tag (strong comparison) or file modification date.
+     *
+     * @param ifRange      If-Range header value
+     * @param entityTag    file entity tag (null if unknown)
+     * @param lastModified file last modification date (null if unknown)
+     * @return true if range request applies
+     */
+    private boolean isRangeApplicable(final String ifRange, final String entityTag, final Long lastModified) {
+        if (ifRange == null) {
+            return true;
+        } else if (ifRange.trim().startsWith("\"") || ifRange.trim().startsWith("W/")) {
+            return entityTag != null && !entityTag.startsWith("W/") && entityTag.equals(ifRange.trim());
+        }
+        Date date = parseHttpDate(ifRange);
+        return date != null && lastModified != null && date.getTime() / 1000 == lastModified / 1000;
+    }
+
+    /**
+     * Parse HTTP date.
+     *
+     * @param value HTTP date header value
+     * @return date or null if value is missing or invalid
+     */
+    private Date parseHttpDate(final String value) {
+        if (value != null) {
+            try {
+                return httpDateFormatter.parse(value.trim());
+            } catch (ParseException e) {
+                // Invalid date is ignored
             }
         }
-        return startOffset;
+        return null;
+    }
+
+    /**
+     * Get content to write: cached resource slice, cached file content slice, remote content, zero-copy file region or chunked file.
+     *
+     * @param context       channel context
+     * @param cachedContent cached file content (null if content is not cached)
+     * @param fileChannel   shared file channel (null if content is read from cache)
+     * @param variant       cached resource variant (null if content is read from file)
+     * @param remoteContent remote content (null if content is not remote)
+     * @param offset        content offset
+     * @param length        content length
+     * @return content
+     */
+    private Object newContent(final ChannelHandlerContext context, final ByteBuf cachedContent, final CachedFileChannel fileChannel,
+                              final Variant variant, final RemoteContent remoteContent, final long offset, final long length) {
+        if (variant != null) {
+            // Cached content is shared, no copy
+            return variant.getContent(offset, length);
+        } else if (cachedContent != null) {
+            // Slice holds a reference to cached buffer until it is written out
+            return cachedContent.slice((int) offset, (int) length).retain();
+        } else if (remoteContent != null) {
+            // Remote content blocks are fetched asynchronously, from disk cache or origin
+            return remoteContentProxy.newChunkedInput(remoteContent, offset, length, CHUNK_SIZE);
+        } else if (zeroCopy && fileChannel.isZeroCopyCapable() && isZeroCopyCapable(context.pipeline())) {
+            // File region is transferred by the kernel (sendfile), without copying file content to user space
+            return fileChannel.newFileRegion(offset, length);
+        }
+        return fileChannel.newChunkedInput(offset, length, CHUNK_SIZE);
+    }
+
+    /**
+     * Check whether file content can be written as a zero-copy file region.
+     * File regions bypass user space, so they cannot go through handlers transforming the content (encryption or compression),
+     * nor through traffic shaping handlers, which only measure buffers.
+     *
+     * @param pipeline channel pipeline
+     * @return true if file content can be written as a file region
+     */
+    private boolean isZeroCopyCapable(final ChannelPipeline pipeline) {
+        return pipeline.get(SslHandler.class) == null && pipeline.get(HttpContentEncoder.class) == null
+                && pipeline.get(AbstractTrafficShapingHandler.class) == null;
+    }
+
+    /**
+     * Write multipart/byteranges response.
+     *
+     * @param context       channel context
+     * @param response      HTTP response
+     * @param cachedContent cached file content (null if content is not cached)
+     * @param fileChannel   shared file channel (null if content is read from cache)
+     * @param variant       cached resource variant (null if content is read from file)
+     * @param remoteContent remote content (null if content is not remote)
+     * @param fileLength    file length
+     * @param ranges        byte ranges
+     * @param mimeType      file mime type
+     */
+    private void writeMultipartContent(final ChannelHandlerContext context, final HttpResponse response, final ByteBuf cachedContent,
+                                       final CachedFileChannel fileChannel, final Variant variant, final RemoteContent remoteContent,
+                                       final long fileLength, final List<ByteRange> ranges, final String mimeType) {
+        String boundary = Long.toHexString(ThreadLocalRandom.current().nextLong()) + Long.toHexString(System.nanoTime());
+
+        // Build part headers and compute content length
+        List<byte[]> partHeaders = new ArrayList<>(ranges.size());
+        byte[] closingBoundary = ("\r\n--" + boundary + "--\r\n").getBytes(US_ASCII);
+        long contentLength = closingBoundary.length;
+        for (ByteRange range : ranges) {
+            byte[] partHeader = ("\r\n--" + boundary + "\r\n" + CONTENT_TYPE + ": " + mimeType + "\r\n"
+                    + CONTENT_RANGE + ": " + range.getContentRange(fileLength) + "\r\n\r\n").getBytes(US_ASCII);
+            partHeaders.add(partHeader);
+            contentLength += partHeader.length + range.getLength();
+        }
+        addContentHeaders(response, contentLength, MULTIPART_BYTERANGES + boundary);
+
+        // Write response headers and parts
+        context.write(response);
+        for (int i = 0; i < ranges.size(); i++) {
+            context.write(wrappedBuffer(partHeaders.get(i)));
+            context.write(newContent(context, cachedContent, fileChannel, variant, remoteContent, ranges.get(i).getStart(), ranges.get(i).getLength()));
+        }
+        context.write(wrappedBuffer(closingBoundary));
     }
 
     /**
      * Add content length and type headers.
      *
-     * @param response   HTTP response
-     * @param fileLength file length
-     * @param request    file request
+     * @param response      HTTP response
+     * @param contentLength content length
+     * @param contentType   content type
      */
-    private void addContentHeaders(final HttpResponse response, final long fileLength, final HttpFileRequest request) {
-        setContentLength(response, fileLength);
-        response.headers().set(X_CONTENT_TYPE, request.getMimeType().getMimeType());
+    private void addContentHeaders(final HttpResponse response, final long contentLength, final String contentType) {
+        setContentLength(response, contentLength);
+        response.headers().set(X_CONTENT_TYPE, contentType);
     }
 
     /**
      * Add date and cache headers to response.
      *
-     * @param response HTTP response
-     * @param request  file request
+     * @param response     HTTP response
+     * @param request      file request
+     * @param lastModified content last modification date (null if unknown)
      */
-    private void addDateAndCacheHeaders(final HttpResponse response, final HttpFileRequest request) {
+    private void addDateAndCacheHeaders(final HttpResponse response, final HttpFileRequest request, final Long lastModified) {
         Calendar calendar = Calendar.getInstance();
 
-        // Add date header
+        // Add date headers
         response.headers().set(X_DATE, httpDateFormatter.format(calendar.getTime()));
-        response.headers().set(X_LAST_MODIFIED, httpDateFormatter.format(new Date(request.getFile().lastModified())));
+        if (lastModified != null) {
+            response.headers().set(X_LAST_MODIFIED, httpDateFormatter.format(new Date(lastModified)));
+        }
 
         // Add cache header for static resources
         if (request.isStaticResource() && httpCacheSecond > 0) {
@@ -227,6 +656,30 @@ public final class HttpFileRequestHandler extends SimpleChannelInboundHandler<Ht
         }
     }
 
+    /**
+     * Add DLNA transfer mode and content features headers to content file response.
+     * Content features are the ones advertised in DIDL resources.
+     *
+     * @param response HTTP response
+     * @param request  file request
+     * @param timeSeek whether time seek is enabled for content
+     */
+    private void addDlnaHeaders(final HttpResponse response, final HttpFileRequest request, final boolean timeSeek) {
+        if (!request.isStaticResource()) {
+            HttpHeaders requestHeaders = request.getHttpMessage().headers();
+            boolean image = request.getMimeType().getType() == TYPE_IMAGE;
+
+            // Use requested transfer mode, or default transfer mode for this content
+            String transferMode = requestHeaders.get(TRANSFER_MODE_DLNA);
+            response.headers().set(X_TRANSFER_MODE_DLNA, transferMode != null ? transferMode : image ? X_INTERACTIVE : X_STREAMING);
+
+            // Add content features when requested
+            if (requestHeaders.contains(GET_CONTENT_FEATURES_DLNA)) {
+                response.headers().set(X_CONTENT_FEATURES_DLNA, getDlnaContentFeatures(request.getMimeType(), timeSeek));
+            }
+        }
+    }
+
     /**
      * Add keep alive header.
      *
@@ -248,11 +701,13 @@ public final class HttpFileRequestHandler extends SimpleChannelInboundHandler<Ht
      * @param context channel context                                                    z
      * @param message message
      * @param status  response status
+     * @param headers additional response headers
      */
-    private void sendError(final ChannelHandlerContext context, final String message, final HttpResponseStatus status) {
+    private void sendError(final ChannelHandlerContext context, final String message, final HttpResponseStatus status, final HttpHeaders headers) {
         // Build error response
         ByteBuf buffer = copiedBuffer("Failure: " + message + " " + status.toString() + "\r\n", UTF_8);
         HttpMessage response = new DefaultFullHttpResponse(HTTP_1_1, status, buffer, false);
+        response.headers().add(headers);
         response.headers().set(X_CONTENT_TYPE, X_CONTENT_TYPE_UTF8);
 
         // Close the connection as soon as the error message is sent.
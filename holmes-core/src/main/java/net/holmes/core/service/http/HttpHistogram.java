@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2012-2015  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.service.http;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of non negative values (durations, sizes).
+ * <p>
+ * Values are counted in power of two buckets, so that recording a value is a few atomic increments, with no allocation.
+ * Percentiles are approximated by the upper bound of the bucket they fall in, which is at most twice the actual value.
+ * </p>
+ */
+final class HttpHistogram {
+    private static final int BUCKET_COUNT = 64;
+    private static final double[] PERCENTILES = {0.5, 0.9, 0.99};
+    private static final String[] PERCENTILE_NAMES = {"p50", "p90", "p99"};
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Record a value. Negative values are recorded as 0.
+     *
+     * @param value value
+     */
+    public void record(final long value) {
+        long recordedValue = Math.max(value, 0);
+        buckets.incrementAndGet(getBucket(recordedValue));
+        count.incrementAndGet();
+        sum.addAndGet(recordedValue);
+        long currentMax = max.get();
+        while (recordedValue > currentMax && !max.compareAndSet(currentMax, recordedValue)) {
+            currentMax = max.get();
+        }
+    }
+
+    /**
+     * Get number of recorded values.
+     *
+     * @return number of values
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Get sum of recorded values.
+     *
+     * @return sum of values
+     */
+    public long getSum() {
+        return sum.get();
+    }
+
+    /**
+     * Get maximum recorded value.
+     *
+     * @return maximum value
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Get approximate percentile of recorded values.
+     *
+     * @param percentile percentile (between 0 and 1)
+     * @return upper bound of bucket holding percentile, capped by maximum value, or 0 if no value is recorded
+     */
+    public long getPercentile(final double percentile) {
+        long[] snapshot = new long[BUCKET_COUNT];
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            snapshot[i] = buckets.get(i);
+            total += snapshot[i];
+        }
+        return getPercentile(snapshot, total, percentile);
+    }
+
+    /**
+     * Get histogram summary: count, mean, maximum and usual percentiles.
+     *
+     * @return summary
+     */
+    public Map<String, Long> getSummary() {
+        long[] snapshot = new long[BUCKET_COUNT];
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            snapshot[i] = buckets.get(i);
+            total += snapshot[i];
+        }
+        Map<String, Long> summary = new LinkedHashMap<>();
+        summary.put("count", total);
+        summary.put("mean", total > 0 ? sum.get() / total : 0);
+        summary.put("max", max.get());
+        for (int i = 0; i < PERCENTILES.length; i++) {
+            summary.put(PERCENTILE_NAMES[i], getPercentile(snapshot, total, PERCENTILES[i]));
+        }
+        return summary;
+    }
+
+    /**
+     * Get approximate percentile of a buckets snapshot.
+     *
+     * @param snapshot   bucket counts
+     * @param total      total count
+     * @param percentile percentile (between 0 and 1)
+     * @return percentile
+     */
+    private long getPercentile(final long[] snapshot, final long total, final double percentile) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(total * percentile));
+        long cumulated = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            cumulated += snapshot[i];
+            if (cumulated >= rank) {
+                return Math.min(getUpperBound(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Get bucket of a value: bucket 0 holds 0, bucket n holds values from 2^(n-1) to 2^n - 1.
+     *
+     * @param value value
+     * @return bucket index
+     */
+    static int getBucket(final long value) {
+        return Math.min(BUCKET_COUNT - Long.numberOfLeadingZeros(value), BUCKET_COUNT - 1);
+    }
+
+    /**
+     * Get upper bound of a bucket.
+     *
+     * @param bucket bucket index
+     * @return greatest value of bucket
+     */
+    static long getUpperBound(final int bucket) {
+        return bucket >= BUCKET_COUNT - 1 ? Long.MAX_VALUE : (1L << bucket) - 1;
+    }
+}
@@ -0,0 +1,245 @@
+/*
+ * Copyright (C) 2012-2015  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.service.http;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.pool.AbstractChannelPoolHandler;
+import io.netty.channel.pool.AbstractChannelPoolMap;
+import io.netty.channel.pool.ChannelPool;
+import io.netty.channel.pool.FixedChannelPool;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.http.*;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.util.AttributeKey;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.FutureListener;
+import io.netty.util.concurrent.Promise;
+
+import javax.net.ssl.SSLException;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.channels.ClosedChannelException;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static io.netty.handler.codec.http.HttpHeaders.Names.HOST;
+import static io.netty.handler.codec.http.HttpHeaders.Names.RANGE;
+import static io.netty.handler.codec.http.HttpHeaders.Names.USER_AGENT;
+import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
+import static net.holmes.core.common.Constants.HOLMES_HTTP_SERVER_NAME;
+
+/**
+ * HTTP client of remote content origins.
+ * <p>
+ * Connections are kept alive and pooled by origin (scheme, host and port), with a maximum number of connections
+ * per origin, so that block requests of proxied contents reuse established connections. Responses are aggregated
+ * in memory: requested ranges must not exceed maximum response size.
+ * </p>
+ */
+final class HttpOriginClient {
+    private static final String THREAD_POOL_NAME = "holmes-http-origin";
+    private static final AttributeKey<Promise<FullHttpResponse>> RESPONSE_PROMISE = AttributeKey.valueOf("holmesOriginResponse");
+    private static final int CONNECT_TIMEOUT_MILLIS = 10000;
+
+    private final EventLoopGroup eventLoopGroup;
+    private final AbstractChannelPoolMap<String, ChannelPool> channelPools;
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong connectionCount = new AtomicLong();
+    private SslContext sslContext;
+
+    /**
+     * Instantiates a new HTTP origin client.
+     *
+     * @param maxConnections  maximum number of connections per origin
+     * @param maxResponseSize maximum size of response content
+     */
+    HttpOriginClient(final int maxConnections, final int maxResponseSize) {
+        this.eventLoopGroup = new NioEventLoopGroup(1, new DefaultThreadFactory(THREAD_POOL_NAME, true));
+        final Bootstrap bootstrap = new Bootstrap()
+                .group(eventLoopGroup)
+                .channel(NioSocketChannel.class)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, CONNECT_TIMEOUT_MILLIS);
+        this.channelPools = new AbstractChannelPoolMap<String, ChannelPool>() {
+            @Override
+            protected ChannelPool newPool(final String origin) {
+                final URI originUri = URI.create(origin);
+                final boolean secure = "https".equals(originUri.getScheme());
+                return new FixedChannelPool(bootstrap.clone().remoteAddress(originUri.getHost(), originUri.getPort()), new AbstractChannelPoolHandler() {
+                    @Override
+                    public void channelCreated(final Channel channel) throws SSLException {
+                        connectionCount.incrementAndGet();
+                        if (secure) {
+                            channel.pipeline().addLast("ssl", getSslContext().newHandler(channel.alloc(), originUri.getHost(), originUri.getPort()));
+                        }
+                        channel.pipeline().addLast("codec", new HttpClientCodec())
+                                .addLast("aggregator", new HttpObjectAggregator(maxResponseSize))
+                                .addLast("response", new ResponseHandler());
+                    }
+                }, maxConnections);
+            }
+        };
+    }
+
+    /**
+     * Send a request to origin.
+     *
+     * @param uri    requested URI
+     * @param method request method
+     * @param range  requested byte range (Range header value), null for whole content
+     * @return future response, caller must release response
+     */
+    Future<FullHttpResponse> request(final URI uri, final HttpMethod method, final String range) {
+        final Promise<FullHttpResponse> responsePromise = eventLoopGroup.next().newPromise();
+        final String scheme = uri.getScheme() == null ? "" : uri.getScheme().toLowerCase(Locale.ROOT);
+        if (!"http".equals(scheme) && !"https".equals(scheme) || uri.getHost() == null) {
+            return responsePromise.setFailure(new IOException("Unsupported URI " + uri));
+        }
+        int port = uri.getPort() > 0 ? uri.getPort() : "https".equals(scheme) ? 443 : 80;
+        final ChannelPool channelPool = channelPools.get(scheme + "://" + uri.getHost() + ":" + port);
+        requestCount.incrementAndGet();
+
+        // Build request
+        String path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+        final FullHttpRequest request = new DefaultFullHttpRequest(HTTP_1_1, method, uri.getRawQuery() == null ? path : path + "?" + uri.getRawQuery());
+        request.headers().set(HOST, uri.getPort() > 0 ? uri.getHost() + ":" + uri.getPort() : uri.getHost());
+        request.headers().set(USER_AGENT, HOLMES_HTTP_SERVER_NAME.toString());
+        if (range != null) {
+            request.headers().set(RANGE, range);
+        }
+
+        // Send request on a pooled connection, connection is released once response is received
+        channelPool.acquire().addListener(new FutureListener<Channel>() {
+            @Override
+            public void operationComplete(final Future<Channel> future) {
+                if (!future.isSuccess()) {
+                    responsePromise.tryFailure(future.cause());
+                    return;
+                }
+                final Channel channel = future.getNow();
+                channel.attr(RESPONSE_PROMISE).set(responsePromise);
+                responsePromise.addListener(new FutureListener<FullHttpResponse>() {
+                    @Override
+                    public void operationComplete(final Future<FullHttpResponse> responseFuture) {
+                        channel.attr(RESPONSE_PROMISE).remove();
+                        if (!responseFuture.isSuccess() || !HttpHeaders.isKeepAlive(responseFuture.getNow())) {
+                            channel.close();
+                        }
+                        channelPool.release(channel);
+                    }
+                });
+                channel.writeAndFlush(request).addListener(new FutureListener<Void>() {
+                    @Override
+                    public void operationComplete(final Future<Void> writeFuture) {
+                        if (!writeFuture.isSuccess()) {
+                            responsePromise.tryFailure(writeFuture.cause());
+                        }
+                    }
+                });
+            }
+        });
+        return responsePromise;
+    }
+
+    /**
+     * Get number of requests sent to origins.
+     *
+     * @return request count
+     */
+    long getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * Get number of connections opened to origins.
+     *
+     * @return connection count
+     */
+    long getConnectionCount() {
+        return connectionCount.get();
+    }
+
+    /**
+     * Close pooled connections and shut down client.
+     */
+    void shutdownGracefully() {
+        channelPools.close();
+        eventLoopGroup.shutdownGracefully();
+    }
+
+    /**
+     * Get SSL context of secure origins, created on first use.
+     *
+     * @return SSL context
+     * @throws SSLException indicates that SSL context cannot be created
+     */
+    private synchronized SslContext getSslContext() throws SSLException {
+        if (sslContext == null) {
+            sslContext = SslContextBuilder.forClient().build();
+        }
+        return sslContext;
+    }
+
+    /**
+     * Handler completing response promise of a pooled connection.
+     */
+    private static final class ResponseHandler extends SimpleChannelInboundHandler<FullHttpResponse> {
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void channelRead0(final ChannelHandlerContext context, final FullHttpResponse response) {
+            Promise<FullHttpResponse> responsePromise = context.channel().attr(RESPONSE_PROMISE).get();
+            if (responsePromise == null || !responsePromise.trySuccess(response.retain())) {
+                response.release();
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void channelInactive(final ChannelHandlerContext context) throws Exception {
+            Promise<FullHttpResponse> responsePromise = context.channel().attr(RESPONSE_PROMISE).get();
+            if (responsePromise != null) {
+                responsePromise.tryFailure(new ClosedChannelException());
+            }
+            super.channelInactive(context);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void exceptionCaught(final ChannelHandlerContext context, final Throwable cause) {
+            Promise<FullHttpResponse> responsePromise = context.channel().attr(RESPONSE_PROMISE).get();
+            if (responsePromise != null) {
+                responsePromise.tryFailure(cause);
+            }
+            context.close();
+        }
+    }
+}
@@ -0,0 +1,524 @@
+/*
+ * Copyright (C) 2012-2015  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.service.http;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.stream.ChunkedInput;
+import io.netty.handler.stream.ChunkedWriteHandler;
+import io.netty.util.concurrent.DefaultEventExecutorGroup;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.EventExecutorGroup;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.FutureListener;
+import io.netty.util.concurrent.Promise;
+import net.holmes.core.business.configuration.ConfigurationManager;
+import org.slf4j.Logger;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.util.Date;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static io.netty.handler.codec.http.HttpHeaders.Names.*;
+import static io.netty.handler.codec.http.HttpMethod.GET;
+import static io.netty.handler.codec.http.HttpResponseStatus.*;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static net.holmes.core.common.ConfigurationParameter.HTTP_SERVER_PROXY_MAX_CONNECTIONS;
+import static net.holmes.core.common.ConfigurationParameter.HTTP_SERVER_PROXY_VALIDATE_SECONDS;
+import static net.holmes.core.service.http.HttpDiskCache.BLOCK_SIZE;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Caching proxy of remote contents (HTTP URLs).
+ * <p>
+ * Remote contents are served by Holmes HTTP server like local files, range requests included. Their attributes
+ * (length, modification date, entity tag) are read from origin with a HEAD request, following redirections, and reused for a while.
+ * Contents are then fetched from origin by blocks, with range requests on pooled connections, and stored in disk cache:
+ * renderers playing the same remote content share its blocks, a block being fetched once while several renderers wait
+ * for it. Next block is fetched ahead of each stream.
+ * </p>
+ * <p>
+ * Origin requests may be slow: attributes and blocks are read on a dedicated executor group, HTTP file request handlers
+ * are notified asynchronously and never wait for origins.
+ * </p>
+ * <p>
+ * Origins that do not support range requests are only served for contents fitting in a block.
+ * </p>
+ */
+@Singleton
+public final class HttpRemoteContentProxy {
+    private static final Logger LOGGER = getLogger(HttpRemoteContentProxy.class);
+    private static final String THREAD_POOL_NAME = "holmes-http-proxy";
+    private static final int MAX_REDIRECTS = 5;
+    private static final long REQUEST_TIMEOUT_SECONDS = 30;
+
+    private final HttpDiskCache diskCache;
+    private final HttpOriginClient originClient;
+    private final EventExecutorGroup executorGroup;
+    private final Cache<String, RemoteContent> contents;
+    private final ConcurrentMap<String, Promise<ByteBuffer>> pendingBlocks = new ConcurrentHashMap<>();
+    private final AtomicLong originBytes = new AtomicLong();
+
+    /**
+     * Instantiates a new HTTP remote content proxy.
+     *
+     * @param configurationManager configuration manager
+     * @param diskCache            disk cache storing content blocks
+     */
+    @Inject
+    public HttpRemoteContentProxy(final ConfigurationManager configurationManager, final HttpDiskCache diskCache) {
+        this(diskCache, configurationManager.getParameter(HTTP_SERVER_PROXY_MAX_CONNECTIONS),
+                configurationManager.getParameter(HTTP_SERVER_PROXY_VALIDATE_SECONDS),
+                new DefaultEventExecutorGroup(configurationManager.getParameter(HTTP_SERVER_PROXY_MAX_CONNECTIONS),
+                        new DefaultThreadFactory(THREAD_POOL_NAME, true)));
+    }
+
+    /**
+     * Instantiates a new HTTP remote content proxy.
+     *
+     * @param diskCache       disk cache storing content blocks
+     * @param maxConnections  maximum number of connections per origin
+     * @param validateSeconds delay during which content attributes are reused without checking origin (in seconds)
+     * @param executorGroup   executor group running origin requests
+     */
+    HttpRemoteContentProxy(final HttpDiskCache diskCache, final int maxConnections, final int validateSeconds, final EventExecutorGroup executorGroup) {
+        this.diskCache = diskCache;
+        this.originClient = new HttpOriginClient(maxConnections, BLOCK_SIZE);
+        this.executorGroup = executorGroup;
+        this.contents = CacheBuilder.newBuilder().expireAfterWrite(validateSeconds, SECONDS).build();
+    }
+
+    /**
+     * Get remote content attributes. Attributes are read from origin on proxy executor group if they are not known yet
+     * or if they expired, returned future is done immediately otherwise.
+     *
+     * @param url content URL
+     * @return future remote content, failed with a {@link HttpFileRequestException} if content is not found or if origin cannot be reached
+     */
+    public Future<RemoteContent> getContent(final String url) {
+        RemoteContent content = contents.getIfPresent(url);
+        if (content != null) {
+            return executorGroup.next().newSucceededFuture(content);
+        }
+        return executorGroup.submit(new Callable<RemoteContent>() {
+            @Override
+            public RemoteContent call() throws HttpFileRequestException {
+                return loadContent(url);
+            }
+        });
+    }
+
+    /**
+     * Get remote content attributes from cache, or read them from origin. Concurrent reads of the same content are sent once.
+     * This method blocks while origin is requested.
+     *
+     * @param url content URL
+     * @return remote content
+     * @throws HttpFileRequestException indicates that content is not found or that origin cannot be reached
+     */
+    private RemoteContent loadContent(final String url) throws HttpFileRequestException {
+        try {
+            return contents.get(url, new Callable<RemoteContent>() {
+                @Override
+                public RemoteContent call() throws HttpFileRequestException {
+                    return probe(url);
+                }
+            });
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            if (e.getCause() instanceof HttpFileRequestException) {
+                throw (HttpFileRequestException) e.getCause();
+            }
+            throw new HttpFileRequestException("Failed to reach " + url + ": " + e.getCause().getMessage(), BAD_GATEWAY);
+        }
+    }
+
+    /**
+     * Create a chunked input on remote content. Input fetches content blocks asynchronously, transfer is suspended
+     * until blocks are available.
+     *
+     * @param content   remote content
+     * @param offset    content offset
+     * @param count     content length
+     * @param chunkSize chunk size
+     * @return chunked input
+     */
+    public ChunkedInput<ByteBuf> newChunkedInput(final RemoteContent content, final long offset, final long count, final int chunkSize) {
+        return new RemoteChunkedInput(content, offset, count, chunkSize);
+    }
+
+    /**
+     * Get number of requests sent to origins.
+     *
+     * @return request count
+     */
+    public long getOriginRequestCount() {
+        return originClient.getRequestCount();
+    }
+
+    /**
+     * Get number of connections opened to origins.
+     *
+     * @return connection count
+     */
+    public long getOriginConnectionCount() {
+        return originClient.getConnectionCount();
+    }
+
+    /**
+     * Get number of content bytes fetched from origins.
+     *
+     * @return number of bytes
+     */
+    public long getOriginBytes() {
+        return originBytes.get();
+    }
+
+    /**
+     * Close connections to origins and shut down proxy executor group.
+     */
+    public void shutdownGracefully() {
+        originClient.shutdownGracefully();
+        executorGroup.shutdownGracefully();
+    }
+
+    /**
+     * Read remote content attributes from origin.
+     *
+     * @param url content URL
+     * @return remote content
+     * @throws HttpFileRequestException indicates that content is not found or that origin cannot be reached
+     */
+    private RemoteContent probe(final String url) throws HttpFileRequestException {
+        URI uri;
+        try {
+            uri = URI.create(url);
+        } catch (IllegalArgumentException e) {
+            throw new HttpFileRequestException("Invalid URL " + url, NOT_FOUND);
+        }
+        for (int redirect = 0; ; redirect++) {
+            FullHttpResponse response;
+            try {
+                response = send(uri, HttpMethod.HEAD, null);
+            } catch (IOException e) {
+                throw new HttpFileRequestException("Failed to reach " + url + ": " + e.getMessage(), BAD_GATEWAY);
+            }
+            try {
+                int code = response.getStatus().code();
+                String location = response.headers().get(LOCATION);
+                if (code >= 300 && code < 400 && location != null && redirect < MAX_REDIRECTS) {
+                    uri = uri.resolve(location);
+                } else if (code == NOT_FOUND.code() || code == GONE.code()) {
+                    throw new HttpFileRequestException(url, NOT_FOUND);
+                } else if (code != OK.code() || !response.headers().contains(CONTENT_LENGTH)) {
+                    throw new HttpFileRequestException("Unexpected response from " + uri + ": " + response.getStatus(), BAD_GATEWAY);
+                } else {
+                    long length = HttpHeaders.getContentLength(response);
+                    Date lastModified = HttpHeaders.getDateHeader(response, LAST_MODIFIED, null);
+                    String entityTag = response.headers().get(ETAG);
+                    RemoteContent content = new RemoteContent(uri, length, lastModified != null ? lastModified.getTime() : 0, entityTag);
+                    LOGGER.debug("Remote content {}: {} bytes at {}", url, length, uri);
+                    return content;
+                }
+            } finally {
+                response.release();
+            }
+        }
+    }
+
+    /**
+     * Send a request to origin and wait for response. Request is sent again if pooled connection has been closed by origin.
+     *
+     * @param uri    requested URI
+     * @param method request method
+     * @param range  requested byte range, null for whole content
+     * @return response, caller must release it
+     * @throws IOException indicates that request failed or timed out
+     */
+    private FullHttpResponse send(final URI uri, final HttpMethod method, final String range) throws IOException {
+        for (int attempt = 0; ; attempt++) {
+            Future<FullHttpResponse> future = originClient.request(uri, method, range);
+            if (!future.awaitUninterruptibly(REQUEST_TIMEOUT_SECONDS, SECONDS) && future.cancel(false)) {
+                throw new IOException("Request timed out: " + uri);
+            }
+            if (future.isSuccess()) {
+                return future.getNow();
+            }
+            if (attempt > 0 || !(future.cause() instanceof ClosedChannelException)) {
+                throw new IOException("Request failed: " + uri + " (" + future.cause() + ")", future.cause());
+            }
+        }
+    }
+
+    /**
+     * Get a content block. Block is read from disk cache, or fetched from origin. A block is fetched once,
+     * while several streams wait for it.
+     *
+     * @param content remote content
+     * @param index   block index
+     * @return future block, buffer content must not be modified
+     */
+    private Future<ByteBuffer> getBlock(final RemoteContent content, final long index) {
+        final String name = HttpDiskCache.getBlockName(content.key, index);
+        EventExecutor executor = executorGroup.next();
+        final Promise<ByteBuffer> promise = executor.newPromise();
+        Promise<ByteBuffer> pendingBlock = pendingBlocks.putIfAbsent(name, promise);
+        if (pendingBlock != null) {
+            return pendingBlock;
+        }
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    promise.setSuccess(loadBlock(content, index, name));
+                } catch (IOException | RuntimeException e) {
+                    LOGGER.debug("Failed to fetch block {} of {}: {}", index, content.uri, e.getMessage());
+                    promise.setFailure(e);
+                } finally {
+                    pendingBlocks.remove(name, promise);
+                }
+            }
+        });
+        return promise;
+    }
+
+    /**
+     * Load a content block from disk cache, or fetch it from origin and write it to disk cache.
+     *
+     * @param content remote content
+     * @param index   block index
+     * @param name    block name
+     * @return block
+     * @throws IOException indicates that block cannot be fetched
+     */
+    private ByteBuffer loadBlock(final RemoteContent content, final long index, final String name) throws IOException {
+        long start = index * BLOCK_SIZE;
+        int length = (int) Math.min(BLOCK_SIZE, content.length - start);
+        ByteBuffer block = ByteBuffer.allocate(length);
+        if (diskCache.readBlock(name, block)) {
+            block.flip();
+            return block;
+        }
+
+        block.clear();
+        FullHttpResponse response = send(content.uri, GET, "bytes=" + start + "-" + (start + length - 1));
+        try {
+            ByteBuf body = response.content();
+            int bodyOffset;
+            if (PARTIAL_CONTENT.equals(response.getStatus())) {
+                String contentRange = response.headers().get(CONTENT_RANGE);
+                if (contentRange == null || !contentRange.endsWith("/" + content.length)) {
+                    // Content has been modified on origin
+                    contents.invalidate(content.uri.toString());
+                    throw new IOException("Unexpected content range " + contentRange);
+                }
+                bodyOffset = 0;
+            } else if (OK.equals(response.getStatus()) && body.readableBytes() == content.length) {
+                // Origin does not support range requests, whole content fits in response
+                bodyOffset = (int) start;
+            } else {
+                throw new IOException("Unexpected response " + response.getStatus());
+            }
+            if (body.readableBytes() < bodyOffset + length) {
+                throw new EOFException(content.uri.toString());
+            }
+            body.getBytes(body.readerIndex() + bodyOffset, block);
+        } finally {
+            response.release();
+        }
+        originBytes.addAndGet(length);
+        block.flip();
+        diskCache.writeBlock(name, block);
+        return block;
+    }
+
+    /**
+     * Remote content attributes.
+     */
+    public static final class RemoteContent {
+        private final URI uri;
+        private final long length;
+        private final long lastModified;
+        private final String key;
+        private final String entityTag;
+
+        /**
+         * Instantiates a new remote content.
+         *
+         * @param uri             content URI, after redirections
+         * @param length          content length
+         * @param lastModified    content last modification date (0 if unknown)
+         * @param originEntityTag entity tag sent by origin (null if unknown)
+         */
+        RemoteContent(final URI uri, final long length, final long lastModified, final String originEntityTag) {
+            this.uri = uri;
+            this.length = length;
+            this.lastModified = lastModified;
+            // Content version is origin entity tag, or modification date
+            String version = originEntityTag != null ? originEntityTag : lastModified != 0 ? String.valueOf(new Date(lastModified)) : null;
+            this.key = HttpDiskCache.getKey(uri.toString(), length, version);
+            if (version == null) {
+                // Content version is unknown, content cannot be validated
+                this.entityTag = null;
+            } else {
+                // Weak origin entity tag remains weak
+                this.entityTag = (originEntityTag != null && originEntityTag.startsWith("W/") ? "W/\"" : "\"") + key + '"';
+            }
+        }
+
+        /**
+         * Get content length.
+         *
+         * @return content length
+         */
+        public long getLength() {
+            return length;
+        }
+
+        /**
+         * Get content last modification date.
+         *
+         * @return last modification date, 0 if unknown
+         */
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        /**
+         * Get content entity tag, derived from content version (origin entity tag or modification date).
+         *
+         * @return entity tag, null if content version is unknown
+         */
+        public String getEntityTag() {
+            return entityTag;
+        }
+    }
+
+    /**
+     * Chunked input on remote content: chunks are copied from content blocks, next block being fetched ahead.
+     */
+    final class RemoteChunkedInput implements ChunkedInput<ByteBuf> {
+        private final RemoteContent content;
+        private final long endOffset;
+        private final int chunkSize;
+        private long offset;
+        private long blockIndex = -1;
+        private Future<ByteBuffer> block;
+        private Future<ByteBuffer> nextBlock;
+
+        /**
+         * Instantiates a new remote chunked input.
+         *
+         * @param content   remote content
+         * @param offset    content offset
+         * @param count     content length
+         * @param chunkSize chunk size
+         */
+        RemoteChunkedInput(final RemoteContent content, final long offset, final long count, final int chunkSize) {
+            this.content = content;
+            this.endOffset = offset + count;
+            this.chunkSize = chunkSize;
+            this.offset = offset;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean isEndOfInput() {
+            return offset >= endOffset;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void close() {
+            // Pending blocks are still fetched, for other streams and disk cache
+            block = null;
+            nextBlock = null;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public ByteBuf readChunk(final ChannelHandlerContext context) throws IOException {
+            if (offset >= endOffset) {
+                return null;
+            }
+
+            // Switch to block holding offset, and fetch next block ahead
+            long index = offset / BLOCK_SIZE;
+            if (index != blockIndex) {
+                block = nextBlock != null && index == blockIndex + 1 ? nextBlock : getBlock(content, index);
+                nextBlock = (index + 1) * BLOCK_SIZE < endOffset ? getBlock(content, index + 1) : null;
+                blockIndex = index;
+            }
+            if (!block.isDone()) {
+                final ChunkedWriteHandler chunkedWriteHandler = context.pipeline().get(ChunkedWriteHandler.class);
+                if (chunkedWriteHandler != null) {
+                    // Transfer is resumed once block is available, outside of current transfer
+                    final EventExecutor executor = context.executor();
+                    block.addListener(new FutureListener<ByteBuffer>() {
+                        @Override
+                        public void operationComplete(final Future<ByteBuffer> future) {
+                            executor.execute(new Runnable() {
+                                @Override
+                                public void run() {
+                                    chunkedWriteHandler.resumeTransfer();
+                                }
+                            });
+                        }
+                    });
+                    return null;
+                }
+                block.awaitUninterruptibly();
+            }
+            if (!block.isSuccess()) {
+                throw new IOException("Failed to fetch " + content.uri, block.cause());
+            }
+
+            // Copy chunk from block
+            ByteBuffer source = block.getNow().duplicate();
+            int blockOffset = (int) (offset - index * BLOCK_SIZE);
+            int length = (int) Math.min(Math.min(chunkSize, source.limit() - blockOffset), endOffset - offset);
+            source.limit(blockOffset + length).position(blockOffset);
+            ByteBuf chunk = context.alloc().buffer(length);
+            chunk.writeBytes(source);
+            offset += length;
+            return chunk;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2012-2015  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.service.http;
+
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.http.LastHttpContent;
+
+/**
+ * HTTP request dispatcher, running on connection event loop right after HTTP file request decoder.
+ * <p>
+ * Only file and content requests are dispatched to file executor group, where content request decoder and file request handler
+ * may block on file system: cached static resources are served by a file request handler running on event loop, and other requests
+ * go straight to RestEasy handlers. When a previous request of the connection is still being answered (pipelined requests),
+ * requests follow the file executor group path, so that responses are written in request order.
+ * </p>
+ */
+final class HttpRequestDispatcher extends ChannelDuplexHandler {
+    private final ChannelHandler staticRequestHandler;
+    private final ChannelHandler fileRequestHandler;
+    private ChannelHandlerContext staticRequestContext;
+    private ChannelHandlerContext fileRequestContext;
+    private int pendingRequests;
+
+    /**
+     * Instantiates a new HTTP request dispatcher.
+     *
+     * @param staticRequestHandler file request handler running on event loop, serving cached static resources
+     * @param fileRequestHandler   file request handler running on file executor group
+     */
+    HttpRequestDispatcher(final ChannelHandler staticRequestHandler, final ChannelHandler fileRequestHandler) {
+        this.staticRequestHandler = staticRequestHandler;
+        this.fileRequestHandler = fileRequestHandler;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void channelRead(final ChannelHandlerContext context, final Object msg) {
+        if (staticRequestContext == null) {
+            // File request handlers are registered after dispatcher
+            staticRequestContext = context.pipeline().context(staticRequestHandler);
+            fileRequestContext = context.pipeline().context(fileRequestHandler);
+        }
+        pendingRequests++;
+        if (pendingRequests > 1) {
+            // Previous response is pending: follow file executor group path, which answers requests in order
+            staticRequestContext.fireChannelRead(msg);
+        } else if (msg instanceof HttpFileRequest && ((HttpFileRequest) msg).getCachedResource() != null) {
+            // Cached static resource, served from memory on event loop
+            context.fireChannelRead(msg);
+        } else if (msg instanceof HttpFileRequest || msg instanceof HttpContentRequest) {
+            // File or content request, dispatched to file executor group
+            staticRequestContext.fireChannelRead(msg);
+        } else {
+            // Other request, forwarded to RestEasy handlers
+            fileRequestContext.fireChannelRead(msg);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(final ChannelHandlerContext context, final Object msg, final ChannelPromise promise) throws Exception {
+        if (msg instanceof LastHttpContent && pendingRequests > 0) {
+            // Response is complete
+            pendingRequests--;
+        }
+        super.write(context, msg, promise);
+    }
+}
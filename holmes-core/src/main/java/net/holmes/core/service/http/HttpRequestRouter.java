@@ -0,0 +1,243 @@
+/*
+ * Copyright (C) 2012-2015  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.service.http;
+
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import net.holmes.core.common.WebApplication;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.ws.rs.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import static net.holmes.core.common.Constants.HTTP_CONTENT_REQUEST_PATH;
+
+/**
+ * Http request router: dispatches request paths to content, static or REST routes.
+ * <p>
+ * Routes are compiled once into a trie over path segments. A path is matched by walking the trie segment by segment,
+ * segments being compared in place, so that routing does not allocate. Empty segments (repeated or trailing slashes) are ignored.
+ * </p>
+ * <ul>
+ * <li>content route: "/content" and paths below, content being identified by request parameter "id"</li>
+ * <li>REST route: root paths of JAX-RS resources bound in injector, and paths below</li>
+ * <li>static route: web application paths, routed to their welcome file, and any other path</li>
+ * </ul>
+ */
+@Singleton
+public final class HttpRequestRouter {
+    private static final Route STATIC_ROUTE = new Route(RouteType.STATIC, null);
+
+    private final Node root = new Node("");
+
+    /**
+     * Instantiates a new HTTP request router. REST routes are read from JAX-RS resources bound in injector.
+     *
+     * @param injector injector
+     */
+    @Inject
+    public HttpRequestRouter(final Injector injector) {
+        this(getResourcePaths(injector));
+    }
+
+    /**
+     * Instantiates a new HTTP request router.
+     *
+     * @param restPaths REST root paths
+     */
+    HttpRequestRouter(final Collection<String> restPaths) {
+        add(HTTP_CONTENT_REQUEST_PATH.toString(), new Route(RouteType.CONTENT, null), true);
+        for (String restPath : restPaths) {
+            add(restPath, new Route(RouteType.REST, null), true);
+        }
+        for (WebApplication webApplication : WebApplication.values()) {
+            add(webApplication.getPath(), new Route(RouteType.STATIC, webApplication.getPath() + webApplication.getWelcomeFile()), false);
+        }
+    }
+
+    /**
+     * Get route of a request path.
+     *
+     * @param path decoded request path, without query string
+     * @return route
+     */
+    public Route route(final String path) {
+        Node node = root;
+        Route prefixRoute = null;
+        int length = path.length();
+        int start = 0;
+        while (start < length) {
+            if (path.charAt(start) == '/') {
+                start++;
+                continue;
+            }
+            int end = path.indexOf('/', start);
+            if (end < 0) {
+                end = length;
+            }
+            node = node.getChild(path, start, end - start);
+            if (node == null) {
+                return prefixRoute != null ? prefixRoute : STATIC_ROUTE;
+            }
+            if (node.prefixRoute != null) {
+                prefixRoute = node.prefixRoute;
+            }
+            start = end;
+        }
+        return node.route != null ? node.route : prefixRoute != null ? prefixRoute : STATIC_ROUTE;
+    }
+
+    /**
+     * Add a route to the trie.
+     *
+     * @param path   route path
+     * @param route  route
+     * @param prefix whether route applies to paths below route path as well
+     */
+    private void add(final String path, final Route route, final boolean prefix) {
+        Node node = root;
+        for (String segment : path.split("/")) {
+            if (!segment.isEmpty()) {
+                node = node.addChild(segment);
+            }
+        }
+        if (node.route == null) {
+            node.route = route;
+        }
+        if (prefix && node.prefixRoute == null) {
+            node.prefixRoute = route;
+        }
+    }
+
+    /**
+     * Get root paths of JAX-RS resources bound in injector.
+     *
+     * @param injector injector
+     * @return resource paths
+     */
+    private static List<String> getResourcePaths(final Injector injector) {
+        List<String> paths = new ArrayList<>();
+        for (Key<?> key : injector.getBindings().keySet()) {
+            Path path = key.getTypeLiteral().getRawType().getAnnotation(Path.class);
+            if (path != null) {
+                paths.add(path.value());
+            }
+        }
+        return paths;
+    }
+
+    /**
+     * Route type.
+     */
+    public enum RouteType {
+        CONTENT, STATIC, REST
+    }
+
+    /**
+     * Request route.
+     */
+    public static final class Route {
+        private final RouteType type;
+        private final String welcomeFile;
+
+        /**
+         * Instantiates a new route.
+         *
+         * @param type        route type
+         * @param welcomeFile web application welcome file path (null if route is not a web application)
+         */
+        Route(final RouteType type, final String welcomeFile) {
+            this.type = type;
+            this.welcomeFile = welcomeFile;
+        }
+
+        /**
+         * Get route type.
+         *
+         * @return route type
+         */
+        public RouteType getType() {
+            return type;
+        }
+
+        /**
+         * Get web application welcome file path.
+         *
+         * @return welcome file path or null if route is not a web application
+         */
+        public String getWelcomeFile() {
+            return welcomeFile;
+        }
+    }
+
+    /**
+     * Trie node, matching a path segment.
+     */
+    private static final class Node {
+        private final String segment;
+        private Node[] children = new Node[0];
+        private Route route;
+        private Route prefixRoute;
+
+        /**
+         * Instantiates a new trie node.
+         *
+         * @param segment path segment
+         */
+        Node(final String segment) {
+            this.segment = segment;
+        }
+
+        /**
+         * Get child node matching a path segment, compared in place.
+         *
+         * @param path   path
+         * @param start  segment start
+         * @param length segment length
+         * @return child node or null if no child matches segment
+         */
+        Node getChild(final String path, final int start, final int length) {
+            for (Node child : children) {
+                if (child.segment.length() == length && path.regionMatches(start, child.segment, 0, length)) {
+                    return child;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Get or add child node.
+         *
+         * @param childSegment child path segment
+         * @return child node
+         */
+        Node addChild(final String childSegment) {
+            Node child = getChild(childSegment, 0, childSegment.length());
+            if (child == null) {
+                child = new Node(childSegment);
+                children = Arrays.copyOf(children, children.length + 1);
+                children[children.length - 1] = child;
+            }
+            return child;
+        }
+    }
+}
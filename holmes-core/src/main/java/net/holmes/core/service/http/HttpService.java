@@ -22,13 +22,12 @@ import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.handler.codec.http.HttpObjectAggregator;
 import io.netty.handler.codec.http.HttpRequestDecoder;
 import io.netty.handler.codec.http.HttpResponseEncoder;
 import io.netty.handler.stream.ChunkedWriteHandler;
+import io.netty.util.concurrent.EventExecutorGroup;
 import net.holmes.core.business.configuration.ConfigurationManager;
 import net.holmes.core.service.Service;
 import org.jboss.resteasy.core.SynchronousDispatcher;
@@ -66,22 +65,41 @@ public final class HttpService implements Service {
 
     private final Injector injector;
     private final ConfigurationManager configurationManager;
+    private final HttpTransport transport;
     private final EventLoopGroup nettyBossGroup;
     private final EventLoopGroup nettyWorkerGroup;
+    private final HttpFileExecutorGroup httpFileExecutorGroup;
+    private final HttpConnectionMonitor httpConnectionMonitor;
+    private final HttpTrafficShaper httpTrafficShaper;
+    private final HttpRemoteContentProxy httpRemoteContentProxy;
+    private final HttpAccessMonitor httpAccessMonitor;
     private final ResteasyDeployment resteasy;
 
     /**
      * Instantiates a new HTTP service.
      *
-     * @param injector             injector
-     * @param configurationManager configuration manager
+     * @param injector               injector
+     * @param configurationManager   configuration manager
+     * @param httpFileExecutorGroup  executor group for blocking HTTP file handlers
+     * @param httpConnectionMonitor  HTTP connection monitor
+     * @param httpTrafficShaper      HTTP traffic shaper
+     * @param httpRemoteContentProxy HTTP remote content proxy
+     * @param httpAccessMonitor      HTTP access monitor
      */
     @Inject
-    public HttpService(final Injector injector, final ConfigurationManager configurationManager) {
+    public HttpService(final Injector injector, final ConfigurationManager configurationManager, final HttpFileExecutorGroup httpFileExecutorGroup,
+                       final HttpConnectionMonitor httpConnectionMonitor, final HttpTrafficShaper httpTrafficShaper,
+                       final HttpRemoteContentProxy httpRemoteContentProxy, final HttpAccessMonitor httpAccessMonitor) {
         this.injector = injector;
         this.configurationManager = configurationManager;
-        this.nettyBossGroup = new NioEventLoopGroup(configurationManager.getParameter(HTTP_SERVER_BOSS_THREADS));
-        this.nettyWorkerGroup = new NioEventLoopGroup(configurationManager.getParameter(HTTP_SERVER_WORKER_THREADS));
+        this.httpFileExecutorGroup = httpFileExecutorGroup;
+        this.httpConnectionMonitor = httpConnectionMonitor;
+        this.httpTrafficShaper = httpTrafficShaper;
+        this.httpRemoteContentProxy = httpRemoteContentProxy;
+        this.httpAccessMonitor = httpAccessMonitor;
+        this.transport = HttpTransport.select(configurationManager.getParameter(HTTP_SERVER_NATIVE_TRANSPORT));
+        this.nettyBossGroup = transport.newEventLoopGroup(configurationManager.getParameter(HTTP_SERVER_BOSS_THREADS));
+        this.nettyWorkerGroup = transport.newEventLoopGroup(configurationManager.getParameter(HTTP_SERVER_WORKER_THREADS));
         this.resteasy = new ResteasyDeployment();
     }
 
@@ -101,7 +119,7 @@ public final class HttpService implements Service {
         // Configure the service.
         ServerBootstrap serverBootstrap = new ServerBootstrap();
         serverBootstrap.group(nettyBossGroup, nettyWorkerGroup)
-                .channel(NioServerSocketChannel.class)
+                .channel(transport.getServerChannelClass())
                 .childHandler(new ChannelInitializer<SocketChannel>() {
                     @Override
                     protected void initChannel(final SocketChannel channel) {
@@ -110,11 +128,29 @@ public final class HttpService implements Service {
                         pipeline.addLast("decoder", new HttpRequestDecoder(MAX_INITIAL_LINE_LENGTH, MAX_HEADER_SIZE, MAX_CHUNK_SIZE, false))
                                 .addLast("aggregator", new HttpObjectAggregator(MAX_CONTENT_LENGTH))
                                 .addLast("encoder", new HttpResponseEncoder())
-                                .addLast("chunkedWriter", new ChunkedWriteHandler());
-
-                        // Add HTTP file request handlers
-                        pipeline.addLast("httpFileRequestDecoder", injector.getInstance(HttpFileRequestDecoder.class))
-                                .addLast("httpFileRequestHandler", injector.getInstance(HttpFileRequestHandler.class));
+                                .addLast("accessMonitor", httpAccessMonitor.newAccessHandler());
+
+                        // Add client traffic shaping handler, shaping chunks written by chunked write handler
+                        if (httpTrafficShaper.isEnabled()) {
+                            pipeline.addLast("trafficShaping", httpTrafficShaper.getClientHandler(channel));
+                        }
+
+                        pipeline.addLast("chunkedWriter", new ChunkedWriteHandler())
+                                .addLast("connectionMonitor", httpConnectionMonitor.newConnectionHandler());
+
+                        // Add HTTP file request decoder (URI routing) and dispatcher, running on event loop, then HTTP file request handlers:
+                        // cached static resources are served on event loop, contents are resolved from media index and served
+                        // on file executor group as they may block on file system
+                        EventExecutorGroup fileGroup = httpFileExecutorGroup.getExecutorGroup();
+                        HttpFileRequestHandler staticRequestHandler = injector.getInstance(HttpFileRequestHandler.class);
+                        HttpFileRequestHandler fileRequestHandler = injector.getInstance(HttpFileRequestHandler.class);
+                        pipeline.addLast("httpEventLoopTime", httpFileExecutorGroup.getEventLoopTimeHandler())
+                                .addLast("httpFileRequestDecoder", injector.getInstance(HttpFileRequestDecoder.class))
+                                .addLast("httpRequestDispatcher", new HttpRequestDispatcher(staticRequestHandler, fileRequestHandler))
+                                .addLast("httpStaticRequestHandler", staticRequestHandler)
+                                .addLast(fileGroup, "httpFileBlockingTime", httpFileExecutorGroup.getBlockingTimeHandler())
+                                .addLast(fileGroup, "httpContentRequestDecoder", injector.getInstance(HttpContentRequestDecoder.class))
+                                .addLast(fileGroup, "httpFileRequestHandler", fileRequestHandler);
 
                         // Add RestEasy handlers
                         pipeline.addLast("restEasyHttpRequestDecoder", new RestEasyHttpRequestDecoder(resteasyDispatcher.getDispatcher(), RESTEASY_MAPPING_PREFIX, HTTP))
@@ -124,17 +160,23 @@ public final class HttpService implements Service {
                 })
                 .option(SO_BACKLOG, BACKLOG)
                 .childOption(ALLOCATOR, DEFAULT)
-                .childOption(SO_KEEPALIVE, true);
+                .childOption(SO_KEEPALIVE, true)
+                .childOption(WRITE_BUFFER_HIGH_WATER_MARK, configurationManager.getParameter(HTTP_SERVER_WRITE_BUFFER_HIGH_WATER_MARK))
+                .childOption(WRITE_BUFFER_LOW_WATER_MARK, configurationManager.getParameter(HTTP_SERVER_WRITE_BUFFER_LOW_WATER_MARK));
+        transport.configure(serverBootstrap, configurationManager);
 
         // Register backend JAX-RS handlers (declared in Guice injector) to RestEasy
         ModuleProcessor guiceProcessor = new ModuleProcessor(resteasy.getRegistry(), resteasy.getProviderFactory());
         guiceProcessor.processInjector(injector);
 
-        // Bind and start service to accept incoming connections
+        // Bind and start service to accept incoming connections (several server sockets may share the port)
         SocketAddress boundAddress = new InetSocketAddress(configurationManager.getParameter(HTTP_SERVER_PORT));
-        serverBootstrap.bind(boundAddress).syncUninterruptibly();
+        int bindCount = transport.getBindCount(nettyBossGroup);
+        for (int i = 0; i < bindCount; i++) {
+            serverBootstrap.bind(boundAddress).syncUninterruptibly();
+        }
 
-        LOGGER.info("HTTP service bound on {}", boundAddress);
+        LOGGER.info("HTTP service bound on {} ({} transport, {} server socket(s))", boundAddress, transport, bindCount);
     }
 
     /**
@@ -148,6 +190,11 @@ public final class HttpService implements Service {
         // Stop Netty event executors
         nettyBossGroup.shutdownGracefully();
         nettyWorkerGroup.shutdownGracefully();
+        httpFileExecutorGroup.shutdownGracefully();
+        httpRemoteContentProxy.shutdownGracefully();
+
+        // Write pending access log entries
+        httpAccessMonitor.shutdown();
 
         // Stop RestEasy
         resteasy.stop();
@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2012-2015  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.service.http;
+
+import javax.inject.Inject;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
+
+/**
+ * Handler for HTTP statistics REST requests: request aggregates by route and by client, connection and cache gauges.
+ */
+@Path("/backend/statistics")
+public final class HttpStatisticsHandler {
+
+    private final HttpAccessMonitor httpAccessMonitor;
+    private final HttpConnectionMonitor httpConnectionMonitor;
+    private final HttpFileExecutorGroup httpFileExecutorGroup;
+    private final HttpTrafficShaper httpTrafficShaper;
+    private final HttpFileChannelCache httpFileChannelCache;
+    private final HttpContentCache httpContentCache;
+    private final HttpDiskCache httpDiskCache;
+    private final HttpContentDescriptorCache httpContentDescriptorCache;
+    private final HttpRemoteContentProxy httpRemoteContentProxy;
+
+    /**
+     * Instantiates a new HTTP statistics handler.
+     *
+     * @param httpAccessMonitor          HTTP access monitor
+     * @param httpConnectionMonitor      HTTP connection monitor
+     * @param httpFileExecutorGroup      executor group for blocking HTTP file handlers
+     * @param httpTrafficShaper          HTTP traffic shaper
+     * @param httpFileChannelCache       HTTP file channel cache
+     * @param httpContentCache           HTTP content cache
+     * @param httpDiskCache              HTTP disk cache
+     * @param httpContentDescriptorCache HTTP content descriptor cache
+     * @param httpRemoteContentProxy     HTTP remote content proxy
+     */
+    @Inject
+    public HttpStatisticsHandler(final HttpAccessMonitor httpAccessMonitor, final HttpConnectionMonitor httpConnectionMonitor,
+                                 final HttpFileExecutorGroup httpFileExecutorGroup, final HttpTrafficShaper httpTrafficShaper,
+                                 final HttpFileChannelCache httpFileChannelCache, final HttpContentCache httpContentCache,
+                                 final HttpDiskCache httpDiskCache, final HttpContentDescriptorCache httpContentDescriptorCache,
+                                 final HttpRemoteContentProxy httpRemoteContentProxy) {
+        this.httpAccessMonitor = httpAccessMonitor;
+        this.httpConnectionMonitor = httpConnectionMonitor;
+        this.httpFileExecutorGroup = httpFileExecutorGroup;
+        this.httpTrafficShaper = httpTrafficShaper;
+        this.httpFileChannelCache = httpFileChannelCache;
+        this.httpContentCache = httpContentCache;
+        this.httpDiskCache = httpDiskCache;
+        this.httpContentDescriptorCache = httpContentDescriptorCache;
+        this.httpRemoteContentProxy = httpRemoteContentProxy;
+    }
+
+    /**
+     * Get HTTP statistics.
+     *
+     * @return statistics
+     */
+    @GET
+    @Produces(APPLICATION_JSON)
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("routes", httpAccessMonitor.getRouteStatistics());
+        statistics.put("clients", httpAccessMonitor.getClientStatistics());
+        statistics.put("droppedLogEntries", httpAccessMonitor.getDroppedLogCount());
+
+        Map<String, Object> connections = new LinkedHashMap<>();
+        connections.put("open", httpConnectionMonitor.getConnectionCount());
+        connections.put("openFiles", httpConnectionMonitor.getOpenFileCount());
+        connections.put("bufferedBytes", httpConnectionMonitor.getBufferedBytes());
+        connections.put("traffic", httpTrafficShaper.getClients());
+        statistics.put("connections", connections);
+
+        Map<String, Object> fileExecutor = new LinkedHashMap<>();
+        fileExecutor.put("queueDepth", httpFileExecutorGroup.getQueueDepth());
+        fileExecutor.put("blockingCount", httpFileExecutorGroup.getBlockingCount());
+        fileExecutor.put("blockingTime", httpFileExecutorGroup.getBlockingTime());
+        fileExecutor.put("maxBlockingTime", httpFileExecutorGroup.getMaxBlockingTime());
+        fileExecutor.put("eventLoopCount", httpFileExecutorGroup.getEventLoopCount());
+        fileExecutor.put("eventLoopTime", httpFileExecutorGroup.getEventLoopTime());
+        fileExecutor.put("maxEventLoopTime", httpFileExecutorGroup.getMaxEventLoopTime());
+        fileExecutor.put("openChannels", httpFileChannelCache.getOpenChannelCount());
+        statistics.put("fileExecutor", fileExecutor);
+
+        Map<String, Object> caches = new LinkedHashMap<>();
+        caches.put("content", getCacheStatistics(httpContentCache.getHitCount(), httpContentCache.getMissCount(), httpContentCache.getSize()));
+        caches.put("disk", getCacheStatistics(httpDiskCache.getHitCount(), httpDiskCache.getMissCount(), httpDiskCache.getSize()));
+        caches.put("descriptor", getCacheStatistics(httpContentDescriptorCache.getHitCount(), httpContentDescriptorCache.getMissCount(), null));
+        statistics.put("caches", caches);
+
+        Map<String, Object> remote = new LinkedHashMap<>();
+        remote.put("originRequests", httpRemoteContentProxy.getOriginRequestCount());
+        remote.put("originConnections", httpRemoteContentProxy.getOriginConnectionCount());
+        remote.put("originBytes", httpRemoteContentProxy.getOriginBytes());
+        statistics.put("remote", remote);
+        return statistics;
+    }
+
+    /**
+     * Get cache statistics.
+     *
+     * @param hitCount  hit count
+     * @param missCount miss count
+     * @param size      cache size in bytes (null if not relevant)
+     * @return cache statistics
+     */
+    private static Map<String, Object> getCacheStatistics(final long hitCount, final long missCount, final Long size) {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("hits", hitCount);
+        statistics.put("misses", missCount);
+        if (size != null) {
+            statistics.put("size", size);
+        }
+        return statistics;
+    }
+}
@@ -0,0 +1,373 @@
+/*
+ * Copyright (C) 2012-2015  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.service.http;
+
+import com.google.common.collect.ImmutableList;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandler;
+import io.netty.handler.traffic.GlobalTrafficShapingHandler;
+import net.holmes.core.business.configuration.ConfigurationManager;
+import net.holmes.core.business.streaming.StreamingManager;
+import net.holmes.core.business.streaming.device.Device;
+import net.holmes.core.business.streaming.session.SessionStatus;
+import net.holmes.core.business.streaming.session.UnknownSessionException;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static net.holmes.core.business.streaming.session.SessionStatus.PLAYING;
+import static net.holmes.core.business.streaming.session.SessionStatus.WAITING;
+import static net.holmes.core.common.ConfigurationParameter.*;
+
+/**
+ * HTTP traffic shaper: global bandwidth limit shared fairly by client hosts.
+ * <p>
+ * All connections of a client host share a traffic shaping handler, whose write limit is computed periodically:
+ * global limit is shared by weighted max-min fairness. Clients that do not use their share (idle or limited by
+ * their own network) are given what they use plus some headroom, remaining bandwidth is shared by other clients
+ * according to their weight. Clients with an active streaming session get a higher weight than other clients
+ * (typically browsing pictures and thumbnails). Per client limit, when set, caps each client share.
+ * </p>
+ */
+@Singleton
+public final class HttpTrafficShaper {
+    private static final long CHECK_INTERVAL = 1000;
+    private static final int SATURATION_PERCENT = 90;
+    private static final int HEADROOM_PERCENT = 125;
+    private static final int MIN_SHARE_DIVISOR = 4;
+    private static final long KILOBYTE = 1024;
+
+    private final StreamingManager streamingManager;
+    private final ScheduledExecutorService executor;
+    private final long globalWriteLimit;
+    private final long clientWriteLimit;
+    private final int streamingWeight;
+    private final Map<String, ClientTraffic> clients = new HashMap<>();
+
+    /**
+     * Instantiates a new HTTP traffic shaper.
+     *
+     * @param configurationManager  configuration manager
+     * @param streamingManager      streaming manager
+     * @param httpFileExecutorGroup HTTP file executor group, running traffic counters and write limits updates
+     */
+    @Inject
+    public HttpTrafficShaper(final ConfigurationManager configurationManager, final StreamingManager streamingManager,
+                             final HttpFileExecutorGroup httpFileExecutorGroup) {
+        this(streamingManager, httpFileExecutorGroup.getExecutorGroup(),
+                configurationManager.getParameter(HTTP_SERVER_GLOBAL_WRITE_LIMIT) * KILOBYTE,
+                configurationManager.getParameter(HTTP_SERVER_CLIENT_WRITE_LIMIT) * KILOBYTE,
+                configurationManager.getParameter(HTTP_SERVER_STREAMING_PRIORITY));
+
+        if (isEnabled()) {
+            executor.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    updateWriteLimits(false);
+                }
+            }, CHECK_INTERVAL, CHECK_INTERVAL, MILLISECONDS);
+        }
+    }
+
+    /**
+     * Instantiates a new HTTP traffic shaper.
+     *
+     * @param streamingManager streaming manager
+     * @param executor         executor running traffic counters
+     * @param globalWriteLimit global write limit in bytes per second (0 means no limit)
+     * @param clientWriteLimit client write limit in bytes per second (0 means no limit)
+     * @param streamingWeight  weight of clients with an active streaming session
+     */
+    HttpTrafficShaper(final StreamingManager streamingManager, final ScheduledExecutorService executor, final long globalWriteLimit,
+                      final long clientWriteLimit, final int streamingWeight) {
+        this.streamingManager = streamingManager;
+        this.executor = executor;
+        this.globalWriteLimit = globalWriteLimit;
+        this.clientWriteLimit = clientWriteLimit;
+        this.streamingWeight = Math.max(streamingWeight, 1);
+    }
+
+    /**
+     * Whether traffic shaping is enabled, i.e. a global or client write limit is set.
+     *
+     * @return true if traffic shaping is enabled
+     */
+    public boolean isEnabled() {
+        return globalWriteLimit > 0 || clientWriteLimit > 0;
+    }
+
+    /**
+     * Get traffic shaping handler of channel client host. Channel is registered to client until it is closed.
+     * Shaping handler only shapes buffers: it must be registered before chunked write handler.
+     *
+     * @param channel client channel
+     * @return client traffic shaping handler
+     */
+    public synchronized ChannelHandler getClientHandler(final Channel channel) {
+        String address = getClientAddress(channel.remoteAddress());
+        ClientTraffic client = clients.get(address);
+        if (client == null) {
+            client = new ClientTraffic(address, new GlobalTrafficShapingHandler(executor, clientWriteLimit, 0, CHECK_INTERVAL));
+            clients.put(address, client);
+            updateWriteLimits(true);
+        }
+        client.connectionCount++;
+
+        final ClientTraffic channelClient = client;
+        channel.closeFuture().addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(final ChannelFuture future) {
+                releaseClient(channelClient);
+            }
+        });
+        return client.handler;
+    }
+
+    /**
+     * Get live traffic of connected clients.
+     *
+     * @return client traffic
+     */
+    public synchronized ImmutableList<ClientTraffic> getClients() {
+        return ImmutableList.copyOf(clients.values());
+    }
+
+    /**
+     * Update write limits of clients according to their weight and their last throughput.
+     * When clients come or go, last throughputs no longer reflect demands: all clients then get their weighted share.
+     *
+     * @param resetShares whether to ignore last throughputs
+     */
+    synchronized void updateWriteLimits(final boolean resetShares) {
+        List<ClientTraffic> clientList = new ArrayList<>(clients.values());
+        int[] weights = new int[clientList.size()];
+        long[] limits = new long[clientList.size()];
+        long[] throughputs = new long[clientList.size()];
+        for (int i = 0; i < clientList.size(); i++) {
+            ClientTraffic client = clientList.get(i);
+            client.streaming = isStreaming(client.address);
+            weights[i] = client.streaming ? streamingWeight : 1;
+            limits[i] = resetShares ? 0 : client.handler.getWriteLimit();
+            throughputs[i] = client.handler.trafficCounter().lastWriteThroughput();
+        }
+
+        long[] writeLimits = computeWriteLimits(globalWriteLimit, clientWriteLimit, weights, limits, throughputs);
+        for (int i = 0; i < clientList.size(); i++) {
+            if (clientList.get(i).handler.getWriteLimit() != writeLimits[i]) {
+                clientList.get(i).handler.setWriteLimit(writeLimits[i]);
+            }
+        }
+    }
+
+    /**
+     * Compute client write limits: global limit is shared by weighted max-min fairness (water filling).
+     * A client using less than its limit only demands its throughput plus some headroom (at least a quarter of its
+     * weighted share), other clients demand as much as possible. Clients whose demand is lower than their weighted share
+     * of remaining bandwidth get their demand, until remaining bandwidth is shared by remaining clients. Bandwidth left
+     * when all demands are met is shared by all clients according to their weight.
+     *
+     * @param globalLimit global write limit (0 means no limit)
+     * @param clientLimit client write limit (0 means no limit)
+     * @param weights     client weights
+     * @param limits      current client write limits (0 means no limit)
+     * @param throughputs last client write throughputs
+     * @return client write limits (0 means no limit)
+     */
+    static long[] computeWriteLimits(final long globalLimit, final long clientLimit, final int[] weights, final long[] limits,
+                                     final long[] throughputs) {
+        int count = weights.length;
+        long[] writeLimits = new long[count];
+        if (globalLimit <= 0) {
+            // Only client limit applies
+            for (int i = 0; i < count; i++) {
+                writeLimits[i] = clientLimit;
+            }
+            return writeLimits;
+        }
+
+        // Estimate client demands
+        int totalWeight = 0;
+        for (int weight : weights) {
+            totalWeight += weight;
+        }
+        long[] demands = new long[count];
+        for (int i = 0; i < count; i++) {
+            boolean saturated = limits[i] <= 0 || throughputs[i] * 100 >= limits[i] * SATURATION_PERCENT;
+            long minShare = globalLimit * weights[i] / totalWeight / MIN_SHARE_DIVISOR;
+            demands[i] = saturated ? Long.MAX_VALUE : Math.max(throughputs[i] * HEADROOM_PERCENT / 100, minShare);
+            if (clientLimit > 0) {
+                demands[i] = Math.min(demands[i], clientLimit);
+            }
+        }
+
+        // Give their demand to clients demanding less than their weighted share of remaining bandwidth
+        boolean[] assigned = new boolean[count];
+        long remaining = globalLimit;
+        int pendingWeight = totalWeight;
+        boolean changed = true;
+        while (changed && pendingWeight > 0) {
+            changed = false;
+            long unit = remaining / pendingWeight;
+            for (int i = 0; i < count; i++) {
+                if (!assigned[i] && demands[i] <= unit * weights[i]) {
+                    writeLimits[i] = demands[i];
+                    assigned[i] = true;
+                    remaining -= demands[i];
+                    pendingWeight -= weights[i];
+                    changed = true;
+                }
+            }
+        }
+
+        // Share remaining bandwidth: between unsatisfied clients, or between all clients if all demands are met
+        int shareWeight = pendingWeight > 0 ? pendingWeight : totalWeight;
+        for (int i = 0; i < count; i++) {
+            if (pendingWeight == 0 || !assigned[i]) {
+                writeLimits[i] += remaining * weights[i] / shareWeight;
+                if (clientLimit > 0) {
+                    writeLimits[i] = Math.min(writeLimits[i], clientLimit);
+                }
+            }
+            // Write limit 0 means no limit
+            writeLimits[i] = Math.max(writeLimits[i], 1);
+        }
+        return writeLimits;
+    }
+
+    /**
+     * Release client channel. Client is removed when its last channel is closed.
+     *
+     * @param client client
+     */
+    private synchronized void releaseClient(final ClientTraffic client) {
+        if (--client.connectionCount == 0) {
+            clients.remove(client.address);
+            client.handler.release();
+            updateWriteLimits(true);
+        }
+    }
+
+    /**
+     * Check whether a device located on client host has an active streaming session.
+     *
+     * @param address client host address
+     * @return true if client is streaming
+     */
+    private boolean isStreaming(final String address) {
+        for (Device device : streamingManager.findDevices(address)) {
+            try {
+                SessionStatus status = streamingManager.getSession(device.getId()).getStatus();
+                if (status == PLAYING || status == WAITING) {
+                    return true;
+                }
+            } catch (UnknownSessionException e) {
+                // No session on this device
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get client host address.
+     *
+     * @param remoteAddress channel remote address
+     * @return client host address
+     */
+    private static String getClientAddress(final SocketAddress remoteAddress) {
+        if (remoteAddress instanceof InetSocketAddress) {
+            return ((InetSocketAddress) remoteAddress).getAddress().getHostAddress();
+        }
+        return String.valueOf(remoteAddress);
+    }
+
+    /**
+     * Traffic of a client host.
+     */
+    public static final class ClientTraffic {
+        private final String address;
+        private final GlobalTrafficShapingHandler handler;
+        private int connectionCount;
+        private volatile boolean streaming;
+
+        /**
+         * Instantiates a new client traffic.
+         *
+         * @param address client host address
+         * @param handler client traffic shaping handler
+         */
+        ClientTraffic(final String address, final GlobalTrafficShapingHandler handler) {
+            this.address = address;
+            this.handler = handler;
+        }
+
+        /**
+         * Get client host address.
+         *
+         * @return client host address
+         */
+        public String getAddress() {
+            return address;
+        }
+
+        /**
+         * Whether client has an active streaming session.
+         *
+         * @return true if client is streaming
+         */
+        public boolean isStreaming() {
+            return streaming;
+        }
+
+        /**
+         * Get current write limit.
+         *
+         * @return write limit in bytes per second (0 means no limit)
+         */
+        public long getWriteLimit() {
+            return handler.getWriteLimit();
+        }
+
+        /**
+         * Get write throughput measured during last check interval.
+         *
+         * @return write throughput in bytes per second
+         */
+        public long getWriteThroughput() {
+            return handler.trafficCounter().lastWriteThroughput();
+        }
+
+        /**
+         * Get number of bytes written to client.
+         *
+         * @return number of written bytes
+         */
+        public long getWrittenBytes() {
+            return handler.trafficCounter().cumulativeWrittenBytes();
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2012-2015  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.service.http;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.util.internal.PlatformDependent;
+import net.holmes.core.business.configuration.ConfigurationManager;
+
+import static com.google.common.collect.Iterables.size;
+import static io.netty.channel.epoll.EpollChannelOption.*;
+import static net.holmes.core.common.ConfigurationParameter.HTTP_SERVER_TCP_CORK;
+import static net.holmes.core.common.ConfigurationParameter.HTTP_SERVER_TCP_NOTSENT_LOWAT;
+
+/**
+ * Netty transport used by HTTP service.
+ */
+enum HttpTransport {
+    /**
+     * Linux native epoll transport.
+     * <p>
+     * Server socket is bound once per boss event loop with SO_REUSEPORT, so that kernel spreads incoming connections
+     * across boss threads. TCP_CORK and TCP_NOTSENT_LOWAT are set on connections when configured.
+     * </p>
+     */
+    EPOLL {
+        @Override
+        EventLoopGroup newEventLoopGroup(final int threads) {
+            return new EpollEventLoopGroup(threads);
+        }
+
+        @Override
+        Class<? extends ServerChannel> getServerChannelClass() {
+            return EpollServerSocketChannel.class;
+        }
+
+        @Override
+        void configure(final ServerBootstrap serverBootstrap, final ConfigurationManager configurationManager) {
+            serverBootstrap.option(SO_REUSEPORT, true)
+                    .childOption(TCP_CORK, configurationManager.getParameter(HTTP_SERVER_TCP_CORK));
+            int notSentLowat = configurationManager.getParameter(HTTP_SERVER_TCP_NOTSENT_LOWAT);
+            if (notSentLowat > 0) {
+                serverBootstrap.childOption(TCP_NOTSENT_LOWAT, (long) notSentLowat);
+            }
+        }
+
+        @Override
+        int getBindCount(final EventLoopGroup bossGroup) {
+            return size(bossGroup);
+        }
+    },
+    /**
+     * Java NIO transport, available on all platforms.
+     */
+    NIO {
+        @Override
+        EventLoopGroup newEventLoopGroup(final int threads) {
+            return new NioEventLoopGroup(threads);
+        }
+
+        @Override
+        Class<? extends ServerChannel> getServerChannelClass() {
+            return NioServerSocketChannel.class;
+        }
+
+        @Override
+        void configure(final ServerBootstrap serverBootstrap, final ConfigurationManager configurationManager) {
+            // No transport specific option
+        }
+
+        @Override
+        int getBindCount(final EventLoopGroup bossGroup) {
+            return 1;
+        }
+    };
+
+    /**
+     * Select transport: native epoll transport when requested and available, NIO transport otherwise.
+     * Native transport event loops allocate off-heap memory, so they also require sun.misc.Unsafe to be usable.
+     *
+     * @param nativeTransport whether native transport is requested
+     * @return transport
+     */
+    static HttpTransport select(final boolean nativeTransport) {
+        return nativeTransport && Epoll.isAvailable() && PlatformDependent.hasUnsafe() ? EPOLL : NIO;
+    }
+
+    /**
+     * Create a new event loop group for this transport.
+     *
+     * @param threads number of threads (0 means that Netty uses a default value)
+     * @return event loop group
+     */
+    abstract EventLoopGroup newEventLoopGroup(final int threads);
+
+    /**
+     * Get server channel class for this transport.
+     *
+     * @return server channel class
+     */
+    abstract Class<? extends ServerChannel> getServerChannelClass();
+
+    /**
+     * Set transport specific options on server bootstrap.
+     *
+     * @param serverBootstrap      server bootstrap
+     * @param configurationManager configuration manager
+     */
+    abstract void configure(final ServerBootstrap serverBootstrap, final ConfigurationManager configurationManager);
+
+    /**
+     * Get number of server sockets to bind on server port.
+     *
+     * @param bossGroup boss event loop group
+     * @return number of server sockets
+     */
+    abstract int getBindCount(final EventLoopGroup bossGroup);
+}
@@ -0,0 +1,285 @@
+/*
+ * Copyright (C) 2012-2015  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.service.http;
+
+import com.google.common.collect.ImmutableMap;
+import io.netty.buffer.ByteBuf;
+import net.holmes.core.business.mimetype.MimeTypeManager;
+import net.holmes.core.business.mimetype.model.MimeType;
+import net.holmes.core.common.WebApplication;
+import org.slf4j.Logger;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+import static com.google.common.hash.Hashing.murmur3_128;
+import static io.netty.buffer.Unpooled.directBuffer;
+import static io.netty.buffer.Unpooled.unreleasableBuffer;
+import static net.holmes.core.common.FileUtils.isValidFile;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * In-memory cache of UI static resources.
+ * <p>
+ * UI directory is loaded once at startup: each resource is kept in an immutable direct buffer, along with a gzip variant
+ * when compression saves space, and a strong entity tag computed from content hash. Web application paths are mapped to
+ * their welcome file, so resource lookup needs no further resolution and serving a resource needs no file I/O.
+ * </p>
+ */
+@Singleton
+public final class StaticResourceCache {
+    private static final Logger LOGGER = getLogger(StaticResourceCache.class);
+    private static final long MAX_RESOURCE_SIZE = 4 * 1024 * 1024;
+    private static final double MIN_COMPRESSION_RATIO = 0.9;
+
+    private final ImmutableMap<String, StaticResource> resources;
+
+    /**
+     * Instantiates a new static resource cache.
+     *
+     * @param mimeTypeManager mime type manager
+     * @param uiDirectory     UI base directory
+     */
+    @Inject
+    public StaticResourceCache(final MimeTypeManager mimeTypeManager, @Named("uiDirectory") final String uiDirectory) {
+        Path uiPath = Paths.get(uiDirectory);
+        Map<String, StaticResource> resourceMap = new HashMap<>();
+        if (Files.isDirectory(uiPath)) {
+            try (Stream<Path> paths = Files.walk(uiPath)) {
+                paths.filter(Files::isRegularFile).forEach(path -> {
+                    String requestPath = "/" + uiPath.relativize(path).toString().replace(File.separatorChar, '/');
+                    StaticResource resource = loadResource(path.toFile(), mimeTypeManager.getMimeType(requestPath));
+                    if (resource != null) {
+                        resourceMap.put(requestPath, resource);
+                    }
+                });
+            } catch (IOException | UncheckedIOException e) {
+                LOGGER.warn("Failed to load UI resources from {}: {}", uiDirectory, e.getMessage());
+            }
+        }
+
+        // Map web application paths to their welcome file
+        for (WebApplication webApplication : WebApplication.values()) {
+            StaticResource welcomeResource = resourceMap.get(webApplication.getPath() + webApplication.getWelcomeFile());
+            if (welcomeResource != null) {
+                resourceMap.put(webApplication.getPath(), welcomeResource);
+            }
+        }
+        resources = ImmutableMap.copyOf(resourceMap);
+        LOGGER.info("{} UI resources loaded in cache", resources.size());
+    }
+
+    /**
+     * Load static resource.
+     *
+     * @param file     resource file
+     * @param mimeType resource mime type
+     * @return static resource or null if file is not a valid static resource
+     */
+    private static StaticResource loadResource(final File file, final MimeType mimeType) {
+        if (mimeType == null || !isValidFile(file) || file.length() > MAX_RESOURCE_SIZE) {
+            return null;
+        }
+
+        try {
+            byte[] content = Files.readAllBytes(file.toPath());
+            String hash = murmur3_128().hashBytes(content).toString();
+            Variant identity = new Variant(content, '"' + hash + '"', null);
+
+            // Keep gzip variant only if compression is worth it
+            byte[] gzipContent = gzip(content);
+            Variant gzip = gzipContent.length < content.length * MIN_COMPRESSION_RATIO ? new Variant(gzipContent, "\"" + hash + "-gzip\"", "gzip") : null;
+
+            return new StaticResource(file, mimeType, file.lastModified(), identity, gzip);
+        } catch (IOException e) {
+            LOGGER.warn("Failed to load UI resource {}: {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Gzip content.
+     *
+     * @param content content
+     * @return gzip content
+     * @throws IOException indicates that compression failed
+     */
+    private static byte[] gzip(final byte[] content) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(content.length / 2 + 32);
+        try (GZIPOutputStream gzipOut = new GZIPOutputStream(out)) {
+            gzipOut.write(content);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Get static resource.
+     *
+     * @param path requested path, without trailing slash (web application path or resource path)
+     * @return static resource or null if resource is not cached
+     */
+    public StaticResource get(final String path) {
+        return resources.get(path);
+    }
+
+    /**
+     * Cached static resource.
+     */
+    public static final class StaticResource {
+        private final File file;
+        private final MimeType mimeType;
+        private final long lastModified;
+        private final Variant identity;
+        private final Variant gzip;
+
+        /**
+         * Instantiates a new static resource.
+         *
+         * @param file         resource file
+         * @param mimeType     resource mime type
+         * @param lastModified resource last modification date
+         * @param identity     uncompressed variant
+         * @param gzip         gzip variant (null if resource is not compressed)
+         */
+        StaticResource(final File file, final MimeType mimeType, final long lastModified, final Variant identity, final Variant gzip) {
+            this.file = file;
+            this.mimeType = mimeType;
+            this.lastModified = lastModified;
+            this.identity = identity;
+            this.gzip = gzip;
+        }
+
+        /**
+         * Get resource file.
+         *
+         * @return resource file
+         */
+        public File getFile() {
+            return file;
+        }
+
+        /**
+         * Get resource mime type.
+         *
+         * @return resource mime type
+         */
+        public MimeType getMimeType() {
+            return mimeType;
+        }
+
+        /**
+         * Get resource last modification date.
+         *
+         * @return resource last modification date
+         */
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        /**
+         * Check whether resource has a compressed variant, i.e. whether response depends on Accept-Encoding.
+         *
+         * @return true if resource has a compressed variant
+         */
+        public boolean isCompressed() {
+            return gzip != null;
+        }
+
+        /**
+         * Get resource variant.
+         *
+         * @param acceptGzip whether gzip encoding is accepted
+         * @return gzip variant if accepted and available, otherwise uncompressed variant
+         */
+        public Variant getVariant(final boolean acceptGzip) {
+            return acceptGzip && gzip != null ? gzip : identity;
+        }
+    }
+
+    /**
+     * Static resource representation with a given content encoding.
+     */
+    public static final class Variant {
+        private final ByteBuf content;
+        private final String entityTag;
+        private final String contentEncoding;
+
+        /**
+         * Instantiates a new variant.
+         *
+         * @param content         variant content
+         * @param entityTag       variant entity tag
+         * @param contentEncoding content encoding (null for identity)
+         */
+        Variant(final byte[] content, final String entityTag, final String contentEncoding) {
+            this.content = unreleasableBuffer(directBuffer(content.length).writeBytes(content));
+            this.entityTag = entityTag;
+            this.contentEncoding = contentEncoding;
+        }
+
+        /**
+         * Get content length.
+         *
+         * @return content length
+         */
+        public long getLength() {
+            return content.readableBytes();
+        }
+
+        /**
+         * Get content slice, sharing cached memory.
+         *
+         * @param offset slice offset
+         * @param length slice length
+         * @return content slice
+         */
+        public ByteBuf getContent(final long offset, final long length) {
+            return content.slice((int) offset, (int) length);
+        }
+
+        /**
+         * Get entity tag.
+         *
+         * @return entity tag
+         */
+        public String getEntityTag() {
+            return entityTag;
+        }
+
+        /**
+         * Get content encoding.
+         *
+         * @return content encoding or null for identity
+         */
+        public String getContentEncoding() {
+            return contentEncoding;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright (C) 2012-2015  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.service.http;
+
+import net.holmes.core.service.http.seek.TimeSeekIndex;
+
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static io.netty.handler.codec.http.HttpResponseStatus.BAD_REQUEST;
+import static io.netty.handler.codec.http.HttpResponseStatus.REQUESTED_RANGE_NOT_SATISFIABLE;
+
+/**
+ * DLNA time seek range (TimeSeekRange.dlna.org header), resolved to a byte range through a time seek index.
+ */
+final class TimeSeekRange {
+    private static final Pattern PATTERN_TIME_SEEK_HEADER = Pattern.compile("^\\s*npt\\s*=\\s*([0-9:.]+)\\s*-\\s*([0-9:.]*)\\s*$", Pattern.CASE_INSENSITIVE);
+    private static final Pattern PATTERN_NPT_SECONDS = Pattern.compile("^(\\d+)(?:\\.(\\d{1,3})\\d*)?$");
+    private static final Pattern PATTERN_NPT_HHMMSS = Pattern.compile("^(\\d+):(\\d{1,2}):(\\d{1,2})(?:\\.(\\d{1,3})\\d*)?$");
+
+    private final long startTime;
+    private final long endTime;
+    private final long duration;
+    private final ByteRange byteRange;
+
+    /**
+     * Instantiates a new time seek range.
+     *
+     * @param startTime start time in milliseconds
+     * @param endTime   end time in milliseconds
+     * @param duration  content duration in milliseconds
+     * @param byteRange byte range
+     */
+    TimeSeekRange(final long startTime, final long endTime, final long duration, final ByteRange byteRange) {
+        this.startTime = startTime;
+        this.endTime = endTime;
+        this.duration = duration;
+        this.byteRange = byteRange;
+    }
+
+    /**
+     * Parse TimeSeekRange.dlna.org header and resolve it to a byte range.
+     * Range starts at last seek point preceding requested start time, so that playback starts on a key frame,
+     * and ends before first seek point following requested end time.
+     *
+     * @param timeSeekHeader TimeSeekRange.dlna.org header value
+     * @param index          content time seek index
+     * @param contentLength  content length
+     * @return time seek range
+     * @throws HttpFileRequestException indicates that header is invalid or that time range is not satisfiable
+     */
+    static TimeSeekRange parse(final String timeSeekHeader, final TimeSeekIndex index, final long contentLength) throws HttpFileRequestException {
+        Matcher matcher = PATTERN_TIME_SEEK_HEADER.matcher(timeSeekHeader);
+        long requestedStart = matcher.matches() ? parseNpt(matcher.group(1)) : -1;
+        long requestedEnd = matcher.matches() && !matcher.group(2).isEmpty() ? parseNpt(matcher.group(2)) : Long.MAX_VALUE;
+        if (requestedStart < 0 || requestedEnd < requestedStart) {
+            throw new HttpFileRequestException("Invalid time seek range: " + timeSeekHeader, BAD_REQUEST);
+        }
+        long duration = index.getDuration();
+        if (requestedStart >= duration) {
+            throw new HttpFileRequestException("Unsatisfiable time seek range: " + timeSeekHeader, REQUESTED_RANGE_NOT_SATISFIABLE);
+        }
+
+        // Start on seek point, or on file start for first seek point as it follows container headers
+        int startPoint = index.floor(requestedStart);
+        long startTime = startPoint > 0 ? index.getTime(startPoint) : 0;
+        long firstByte = startPoint > 0 ? index.getOffset(startPoint) : 0;
+
+        // End before next seek point, or on file end
+        long endTime = Math.min(requestedEnd, duration);
+        long lastByte = contentLength - 1;
+        if (requestedEnd != Long.MAX_VALUE) {
+            int endPoint = index.higher(requestedEnd);
+            if (endPoint < index.size()) {
+                lastByte = Math.min(lastByte, index.getOffset(endPoint) - 1);
+            }
+        }
+        if (firstByte > lastByte) {
+            throw new HttpFileRequestException("Unsatisfiable time seek range: " + timeSeekHeader, REQUESTED_RANGE_NOT_SATISFIABLE);
+        }
+        return new TimeSeekRange(startTime, endTime, duration, new ByteRange(firstByte, lastByte));
+    }
+
+    /**
+     * Parse normal play time (seconds with optional fraction, or hours:minutes:seconds with optional fraction).
+     *
+     * @param npt normal play time
+     * @return time in milliseconds, or -1 if time is invalid
+     */
+    private static long parseNpt(final String npt) {
+        try {
+            Matcher matcher = PATTERN_NPT_SECONDS.matcher(npt);
+            if (matcher.matches()) {
+                return Long.parseLong(matcher.group(1)) * 1000 + parseMillis(matcher.group(2));
+            }
+            matcher = PATTERN_NPT_HHMMSS.matcher(npt);
+            if (matcher.matches() && Integer.parseInt(matcher.group(2)) < 60 && Integer.parseInt(matcher.group(3)) < 60) {
+                return ((Long.parseLong(matcher.group(1)) * 60 + Integer.parseInt(matcher.group(2))) * 60 + Integer.parseInt(matcher.group(3))) * 1000
+                        + parseMillis(matcher.group(4));
+            }
+        } catch (NumberFormatException e) {
+            // Out of range value
+        }
+        return -1;
+    }
+
+    /**
+     * Parse fraction of second.
+     *
+     * @param fraction fraction digits (up to 3), may be null
+     * @return milliseconds
+     */
+    private static long parseMillis(final String fraction) {
+        if (fraction == null) {
+            return 0;
+        }
+        long millis = Long.parseLong(fraction);
+        for (int i = fraction.length(); i < 3; i++) {
+            millis *= 10;
+        }
+        return millis;
+    }
+
+    /**
+     * Format time as normal play time in seconds.
+     *
+     * @param time time in milliseconds
+     * @return normal play time
+     */
+    private static String formatNpt(final long time) {
+        return String.format(Locale.ROOT, "%d.%03d", time / 1000, time % 1000);
+    }
+
+    /**
+     * Get start time.
+     *
+     * @return start time in milliseconds
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * Get end time.
+     *
+     * @return end time in milliseconds
+     */
+    public long getEndTime() {
+        return endTime;
+    }
+
+    /**
+     * Get byte range matching time range.
+     *
+     * @return byte range
+     */
+    public ByteRange getByteRange() {
+        return byteRange;
+    }
+
+    /**
+     * Get TimeSeekRange.dlna.org response header value, giving actual time range and matching byte range.
+     *
+     * @param contentLength complete content length
+     * @return TimeSeekRange.dlna.org header value
+     */
+    public String getHeaderValue(final long contentLength) {
+        return "npt=" + formatNpt(startTime) + "-" + formatNpt(endTime) + "/" + formatNpt(duration)
+                + " bytes=" + byteRange.getStart() + "-" + byteRange.getEnd() + "/" + contentLength;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return formatNpt(startTime) + "-" + formatNpt(endTime);
+    }
+}
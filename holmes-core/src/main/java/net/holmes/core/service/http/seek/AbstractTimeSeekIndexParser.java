@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2012-2015  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.service.http.seek;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Time seek index parser: reads seek points from container structures.
+ */
+abstract class AbstractTimeSeekIndexParser {
+
+    /**
+     * Parse time seek index of a video file.
+     *
+     * @param channel video file channel
+     * @return time seek index or null if container holds no usable seek point
+     * @throws IOException indicates that file cannot be read or that container is invalid
+     */
+    public abstract TimeSeekIndex parse(final FileChannel channel) throws IOException;
+
+    /**
+     * Read bytes at position, without changing channel position.
+     *
+     * @param channel  file channel
+     * @param position position
+     * @param length   number of bytes to read
+     * @return buffer holding read bytes
+     * @throws IOException indicates that bytes cannot be read or that end of file is reached
+     */
+    protected static ByteBuffer read(final FileChannel channel, final long position, final int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of file at " + (position + buffer.position()));
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Growable list of seek points, keeping only points that move forward both in time and in file.
+     * Points closer than half a second to the previous point are dropped: they barely improve seeking accuracy
+     * but cost memory (e.g. intra-only videos where each frame is a key frame).
+     */
+    protected static final class SeekPointList {
+        private static final long MIN_INTERVAL = 500;
+
+        private long[] times = new long[256];
+        private long[] offsets = new long[256];
+        private int size;
+
+        /**
+         * Add seek point. Point is ignored if it does not follow last point by at least half a second.
+         *
+         * @param time   seek point time in milliseconds
+         * @param offset seek point byte offset
+         */
+        public void add(final long time, final long offset) {
+            if (size > 0 && (time < times[size - 1] + MIN_INTERVAL || offset <= offsets[size - 1])) {
+                return;
+            }
+            if (size == times.length) {
+                times = Arrays.copyOf(times, size * 2);
+                offsets = Arrays.copyOf(offsets, size * 2);
+            }
+            times[size] = time;
+            offsets[size] = offset;
+            size++;
+        }
+
+        /**
+         * Get number of seek points.
+         *
+         * @return number of seek points
+         */
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Get time of last seek point.
+         *
+         * @return last seek point time in milliseconds, 0 if list is empty
+         */
+        public long getLastTime() {
+            return size > 0 ? times[size - 1] : 0;
+        }
+
+        /**
+         * Build time seek index from seek points.
+         *
+         * @param duration duration in milliseconds
+         * @return time seek index or null if there is no seek point
+         */
+        public TimeSeekIndex toIndex(final long duration) {
+            if (size == 0) {
+                return null;
+            }
+            return new TimeSeekIndex(Math.max(duration, getLastTime()), Arrays.copyOf(times, size), Arrays.copyOf(offsets, size));
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2012-2015  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.service.http.seek;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * MPEG transport stream (TS, M2TS) time seek index parser.
+ * <p>
+ * Transport streams have no index: program clock references (PCR) are sampled at regular byte intervals,
+ * each sample giving the time of a packet boundary. Renderers resynchronize on next key frame after seeking
+ * to such a boundary, as they do when tuning a broadcast stream.
+ * </p>
+ */
+final class MpegTsTimeSeekIndexParser extends AbstractTimeSeekIndexParser {
+    private static final int SYNC_BYTE = 0x47;
+    private static final int TS_PACKET_SIZE = 188;
+    private static final int M2TS_PACKET_SIZE = 192;
+    private static final int M2TS_PREFIX_SIZE = 4;
+    private static final int MAX_SAMPLES = 4096;
+    private static final long MIN_SAMPLE_INTERVAL = 256 * 1024;
+    private static final int SCAN_PACKETS = 512;
+    private static final long PCR_WRAP = 1L << 33;
+    private static final long PCR_TICKS_PER_MS = 90;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public TimeSeekIndex parse(final FileChannel channel) throws IOException {
+        // Detect packet size: TS packets (188 bytes) or M2TS packets (192 bytes, starting with a 4 bytes time code)
+        long fileLength = channel.size();
+        if (fileLength < 3 * M2TS_PACKET_SIZE) {
+            return null;
+        }
+        ByteBuffer start = read(channel, 0, 3 * M2TS_PACKET_SIZE);
+        int packetSize;
+        int prefixSize;
+        if (isSynchronized(start, 0, TS_PACKET_SIZE)) {
+            packetSize = TS_PACKET_SIZE;
+            prefixSize = 0;
+        } else if (isSynchronized(start, M2TS_PREFIX_SIZE, M2TS_PACKET_SIZE)) {
+            packetSize = M2TS_PACKET_SIZE;
+            prefixSize = M2TS_PREFIX_SIZE;
+        } else {
+            throw new IOException("Not a MPEG transport stream");
+        }
+
+        // Sample PCR of the first PCR stream at regular intervals
+        long packetCount = fileLength / packetSize;
+        long step = Math.max(packetCount / MAX_SAMPLES, MIN_SAMPLE_INTERVAL / packetSize);
+        PcrClock clock = new PcrClock();
+        SeekPointList seekPoints = new SeekPointList();
+        for (long packet = 0; packet < packetCount; packet += step) {
+            long[] pcr = findPcr(channel, packet, packetCount, packetSize, prefixSize, clock.pid, false);
+            if (pcr != null) {
+                seekPoints.add(clock.getTime(pcr[0], pcr[1]), pcr[2]);
+            }
+        }
+
+        // Duration is given by last PCR of the stream
+        long duration = 0;
+        if (clock.pid >= 0) {
+            long[] lastPcr = findPcr(channel, Math.max(0, packetCount - SCAN_PACKETS), packetCount, packetSize, prefixSize, clock.pid, true);
+            if (lastPcr != null) {
+                duration = clock.getTime(lastPcr[0], lastPcr[1]);
+            }
+        }
+        return seekPoints.toIndex(duration);
+    }
+
+    /**
+     * Check that packets are aligned on sync bytes.
+     *
+     * @param buffer     buffer
+     * @param offset     offset of first sync byte
+     * @param packetSize packet size
+     * @return true if three consecutive packets start with a sync byte
+     */
+    private static boolean isSynchronized(final ByteBuffer buffer, final int offset, final int packetSize) {
+        for (int i = 0; i < 3; i++) {
+            if ((buffer.get(offset + i * packetSize) & 0xFF) != SYNC_BYTE) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Find a packet carrying a PCR.
+     *
+     * @param channel     file channel
+     * @param firstPacket index of first packet to scan
+     * @param packetCount number of packets in file
+     * @param packetSize  packet size
+     * @param prefixSize  size of packet prefix preceding sync byte
+     * @param pid         PCR stream PID (-1 for any stream)
+     * @param last        whether to find last PCR of scanned packets instead of first one
+     * @return PCR PID, PCR base (90 kHz) and packet offset, or null if no PCR is found
+     * @throws IOException indicates that packets cannot be read
+     */
+    private static long[] findPcr(final FileChannel channel, final long firstPacket, final long packetCount, final int packetSize,
+                                  final int prefixSize, final int pid, final boolean last) throws IOException {
+        int scannedPackets = (int) Math.min(SCAN_PACKETS, packetCount - firstPacket);
+        ByteBuffer packets = read(channel, firstPacket * packetSize, scannedPackets * packetSize);
+        long[] pcr = null;
+        for (int i = 0; i < scannedPackets; i++) {
+            int position = i * packetSize + prefixSize;
+            if ((packets.get(position) & 0xFF) != SYNC_BYTE) {
+                // Corrupted packet
+                continue;
+            }
+            int packetPid = (packets.get(position + 1) & 0x1F) << 8 | packets.get(position + 2) & 0xFF;
+            boolean adaptationField = (packets.get(position + 3) & 0x20) != 0;
+            if (adaptationField && (packets.get(position + 4) & 0xFF) >= 7 && (packets.get(position + 5) & 0x10) != 0
+                    && (pid < 0 || packetPid == pid)) {
+                long base = (packets.get(position + 6) & 0xFFL) << 25 | (packets.get(position + 7) & 0xFFL) << 17
+                        | (packets.get(position + 8) & 0xFFL) << 9 | (packets.get(position + 9) & 0xFFL) << 1
+                        | (packets.get(position + 10) & 0xFFL) >> 7;
+                pcr = new long[]{packetPid, base, (firstPacket + i) * packetSize};
+                if (!last) {
+                    return pcr;
+                }
+            }
+        }
+        return pcr;
+    }
+
+    /**
+     * Program clock, converting successive PCR values to times relative to first PCR.
+     */
+    private static final class PcrClock {
+        private int pid = -1;
+        private long firstPcr;
+        private long previousPcr;
+        private long wrapOffset;
+
+        /**
+         * Get time of PCR. First PCR sets clock stream and origin, clock wraps around every 26 hours.
+         *
+         * @param pcrPid PCR stream PID
+         * @param pcr    PCR base (90 kHz)
+         * @return time in milliseconds
+         */
+        long getTime(final long pcrPid, final long pcr) {
+            if (pid < 0) {
+                pid = (int) pcrPid;
+                firstPcr = pcr;
+            } else if (pcr < previousPcr && previousPcr - pcr > PCR_WRAP / 2) {
+                wrapOffset += PCR_WRAP;
+            }
+            previousPcr = pcr;
+            return (pcr + wrapOffset - firstPcr) / PCR_TICKS_PER_MS;
+        }
+    }
+}
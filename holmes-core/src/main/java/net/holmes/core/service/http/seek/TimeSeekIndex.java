@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2012-2015  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.service.http.seek;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+
+/**
+ * Time seek index of a video file: sorted seek points mapping a presentation time to the byte offset
+ * of a key frame (or of a container unit starting with a key frame).
+ */
+public final class TimeSeekIndex {
+    private final long duration;
+    private final long[] times;
+    private final long[] offsets;
+
+    /**
+     * Instantiates a new time seek index.
+     *
+     * @param duration video duration in milliseconds
+     * @param times    seek point times in milliseconds, sorted
+     * @param offsets  seek point byte offsets, sorted
+     */
+    public TimeSeekIndex(final long duration, final long[] times, final long[] offsets) {
+        if (times.length != offsets.length || times.length == 0) {
+            throw new IllegalArgumentException("Invalid seek points");
+        }
+        this.duration = duration;
+        this.times = times.clone();
+        this.offsets = offsets.clone();
+    }
+
+    /**
+     * Read time seek index.
+     *
+     * @param input data input
+     * @return time seek index
+     * @throws IOException indicates that index cannot be read
+     */
+    public static TimeSeekIndex readFrom(final DataInput input) throws IOException {
+        long duration = input.readLong();
+        int size = input.readInt();
+        if (size <= 0) {
+            throw new IOException("Invalid seek point count: " + size);
+        }
+        long[] times = new long[size];
+        long[] offsets = new long[size];
+        for (int i = 0; i < size; i++) {
+            times[i] = input.readLong();
+            offsets[i] = input.readLong();
+        }
+        return new TimeSeekIndex(duration, times, offsets);
+    }
+
+    /**
+     * Write time seek index.
+     *
+     * @param output data output
+     * @throws IOException indicates that index cannot be written
+     */
+    public void writeTo(final DataOutput output) throws IOException {
+        output.writeLong(duration);
+        output.writeInt(times.length);
+        for (int i = 0; i < times.length; i++) {
+            output.writeLong(times[i]);
+            output.writeLong(offsets[i]);
+        }
+    }
+
+    /**
+     * Get video duration.
+     *
+     * @return duration in milliseconds
+     */
+    public long getDuration() {
+        return duration;
+    }
+
+    /**
+     * Get number of seek points.
+     *
+     * @return number of seek points
+     */
+    public int size() {
+        return times.length;
+    }
+
+    /**
+     * Get seek point time.
+     *
+     * @param index seek point index
+     * @return seek point time in milliseconds
+     */
+    public long getTime(final int index) {
+        return times[index];
+    }
+
+    /**
+     * Get seek point byte offset.
+     *
+     * @param index seek point index
+     * @return seek point byte offset
+     */
+    public long getOffset(final int index) {
+        return offsets[index];
+    }
+
+    /**
+     * Find last seek point at or before time: playback started from this point reaches time without missing frames.
+     *
+     * @param time time in milliseconds
+     * @return seek point index (first seek point if time is before it)
+     */
+    public int floor(final long time) {
+        int index = Arrays.binarySearch(times, time);
+        if (index < 0) {
+            index = -index - 2;
+        } else {
+            // Several seek points may share the same time: use the first one
+            while (index > 0 && times[index - 1] == time) {
+                index--;
+            }
+        }
+        return Math.max(index, 0);
+    }
+
+    /**
+     * Find first seek point after time.
+     *
+     * @param time time in milliseconds
+     * @return seek point index, or number of seek points if no seek point follows time
+     */
+    public int higher(final long time) {
+        int index = Arrays.binarySearch(times, time);
+        if (index < 0) {
+            return -index - 1;
+        }
+        while (index < times.length && times[index] == time) {
+            index++;
+        }
+        return index;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return toStringHelper(this)
+                .add("duration", duration)
+                .add("size", times.length)
+                .toString();
+    }
+}
@@ -0,0 +1,292 @@
+/*
+ * Copyright (C) 2012-2015  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.service.http.seek;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import net.holmes.core.business.configuration.ConfigurationManager;
+import net.holmes.core.business.mimetype.model.MimeType;
+import net.holmes.core.business.streaming.upnp.UpnpUtils;
+import org.slf4j.Logger;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+import static com.google.common.hash.Hashing.sha1;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.util.concurrent.Executors.newSingleThreadExecutor;
+import static net.holmes.core.common.ConfigurationParameter.HTTP_SERVER_TIME_SEEK;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Store of video time seek indexes.
+ * <p>
+ * Indexes are built in background on first request of a video, then persisted in Holmes data directory,
+ * next to configuration, so that they survive restarts. An index is valid as long as video length and
+ * modification date do not change. Videos that cannot be indexed are recorded as well, so that they are parsed only once.
+ * </p>
+ */
+@Singleton
+public final class TimeSeekIndexStore {
+    private static final Logger LOGGER = getLogger(TimeSeekIndexStore.class);
+    private static final String INDEX_DIRECTORY = "seek-index";
+    private static final String INDEX_FILE_EXTENSION = ".idx";
+    private static final int INDEX_FILE_MAGIC = 0x48534958;
+    private static final int INDEX_FILE_VERSION = 1;
+    private static final int CACHE_SIZE = 64;
+    private static final AbstractTimeSeekIndexParser MPEG_TS_PARSER = new MpegTsTimeSeekIndexParser();
+
+    private final boolean enabled;
+    private final Path indexDirectory;
+    private final Executor executor;
+    private final Cache<String, StoredIndex> indexes;
+    private final Set<String> pendingPaths;
+
+    /**
+     * Instantiates a new time seek index store.
+     *
+     * @param configurationManager configuration manager
+     * @param localHolmesDataDir   local Holmes data directory
+     */
+    @Inject
+    public TimeSeekIndexStore(final ConfigurationManager configurationManager, @Named("localHolmesDataDir") final String localHolmesDataDir) {
+        this(configurationManager.getParameter(HTTP_SERVER_TIME_SEEK), Paths.get(localHolmesDataDir, INDEX_DIRECTORY),
+                newSingleThreadExecutor(new DefaultThreadFactory("holmes-seek-index", true, Thread.MIN_PRIORITY)));
+    }
+
+    /**
+     * Instantiates a new time seek index store.
+     *
+     * @param enabled        whether time seek is enabled
+     * @param indexDirectory directory where indexes are persisted
+     * @param executor       executor building indexes
+     */
+    public TimeSeekIndexStore(final boolean enabled, final Path indexDirectory, final Executor executor) {
+        this.enabled = enabled;
+        this.indexDirectory = indexDirectory;
+        this.executor = executor;
+        this.indexes = CacheBuilder.newBuilder().maximumSize(CACHE_SIZE).build();
+        this.pendingPaths = ConcurrentHashMap.newKeySet();
+    }
+
+    /**
+     * Whether time seek is enabled and supported for a mime type.
+     *
+     * @param mimeType video mime type
+     * @return true if time seek index can be built for this mime type
+     */
+    public boolean isTimeSeekSupported(final MimeType mimeType) {
+        return enabled && UpnpUtils.isTimeSeekSupported(mimeType);
+    }
+
+    /**
+     * Whether time seek index of a video is being built.
+     *
+     * @param file video file
+     * @return true if index is being built
+     */
+    public boolean isIndexPending(final File file) {
+        return pendingPaths.contains(file.getAbsolutePath());
+    }
+
+    /**
+     * Get time seek index of a video. Index is read from memory or from disk, if it is not available yet
+     * it is built in background.
+     *
+     * @param file         video file
+     * @param mimeType     video mime type
+     * @param fileLength   video file length
+     * @param lastModified video file last modification date
+     * @return time seek index, or null if video cannot be indexed or if index is not available yet
+     */
+    public TimeSeekIndex getIndex(final File file, final MimeType mimeType, final long fileLength, final long lastModified) {
+        if (!isTimeSeekSupported(mimeType)) {
+            return null;
+        }
+
+        // Get index from memory, then from disk
+        final String path = file.getAbsolutePath();
+        StoredIndex storedIndex = indexes.getIfPresent(path);
+        if (storedIndex == null || !storedIndex.isValid(fileLength, lastModified)) {
+            storedIndex = load(path);
+            if (storedIndex != null && storedIndex.isValid(fileLength, lastModified)) {
+                indexes.put(path, storedIndex);
+            } else {
+                storedIndex = null;
+            }
+        }
+        if (storedIndex != null) {
+            return storedIndex.index;
+        }
+
+        // Build index in background, once
+        if (pendingPaths.add(path)) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        build(file, path, MPEG_TS_PARSER, fileLength, lastModified);
+                    } finally {
+                        pendingPaths.remove(path);
+                    }
+                }
+            });
+        }
+        return null;
+    }
+
+    /**
+     * Build and persist time seek index.
+     *
+     * @param file         video file
+     * @param path         video file absolute path
+     * @param parser       time seek index parser
+     * @param fileLength   video file length
+     * @param lastModified video file last modification date
+     */
+    private void build(final File file, final String path, final AbstractTimeSeekIndexParser parser, final long fileLength, final long lastModified) {
+        long start = System.currentTimeMillis();
+        TimeSeekIndex index;
+        try (FileChannel channel = FileChannel.open(file.toPath(), READ)) {
+            index = parser.parse(channel);
+        } catch (IOException | RuntimeException e) {
+            // Invalid or corrupted container: recorded as not indexable
+            LOGGER.debug("Failed to build time seek index of {}: {}", path, e.getMessage());
+            index = null;
+        }
+
+        // Video may have been modified while it was parsed
+        if (file.length() == fileLength && file.lastModified() == lastModified) {
+            StoredIndex storedIndex = new StoredIndex(path, fileLength, lastModified, index);
+            indexes.put(path, storedIndex);
+            save(storedIndex);
+            LOGGER.debug("Built time seek index of {} in {} ms: {}", path, System.currentTimeMillis() - start, index);
+        }
+    }
+
+    /**
+     * Load persisted index.
+     *
+     * @param path video file absolute path
+     * @return persisted index or null if not available
+     */
+    private StoredIndex load(final String path) {
+        File indexFile = getIndexFile(path).toFile();
+        if (!indexFile.isFile()) {
+            return null;
+        }
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+            if (input.readInt() != INDEX_FILE_MAGIC || input.readInt() != INDEX_FILE_VERSION || !path.equals(input.readUTF())) {
+                return null;
+            }
+            long fileLength = input.readLong();
+            long lastModified = input.readLong();
+            TimeSeekIndex index = input.readBoolean() ? TimeSeekIndex.readFrom(input) : null;
+            return new StoredIndex(path, fileLength, lastModified, index);
+        } catch (IOException e) {
+            LOGGER.warn("Failed to read time seek index " + indexFile, e);
+            return null;
+        }
+    }
+
+    /**
+     * Persist index. Index is written to a temporary file first, so that a partially written index is never read.
+     *
+     * @param storedIndex index to persist
+     */
+    private void save(final StoredIndex storedIndex) {
+        Path indexFile = getIndexFile(storedIndex.path);
+        try {
+            Files.createDirectories(indexDirectory);
+            Path tempFile = Files.createTempFile(indexDirectory, null, null);
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+                output.writeInt(INDEX_FILE_MAGIC);
+                output.writeInt(INDEX_FILE_VERSION);
+                output.writeUTF(storedIndex.path);
+                output.writeLong(storedIndex.fileLength);
+                output.writeLong(storedIndex.lastModified);
+                output.writeBoolean(storedIndex.index != null);
+                if (storedIndex.index != null) {
+                    storedIndex.index.writeTo(output);
+                }
+            }
+            Files.move(tempFile, indexFile, REPLACE_EXISTING, ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOGGER.warn("Failed to write time seek index " + indexFile, e);
+        }
+    }
+
+    /**
+     * Get persisted index file of a video.
+     *
+     * @param path video file absolute path
+     * @return index file
+     */
+    private Path getIndexFile(final String path) {
+        return indexDirectory.resolve(sha1().hashString(path, UTF_8).toString() + INDEX_FILE_EXTENSION);
+    }
+
+    /**
+     * Time seek index with attributes of indexed video.
+     */
+    private static final class StoredIndex {
+        private final String path;
+        private final long fileLength;
+        private final long lastModified;
+        private final TimeSeekIndex index;
+
+        /**
+         * Instantiates a new stored index.
+         *
+         * @param path         video file absolute path
+         * @param fileLength   video file length
+         * @param lastModified video file last modification date
+         * @param index        time seek index (null if video cannot be indexed)
+         */
+        StoredIndex(final String path, final long fileLength, final long lastModified, final TimeSeekIndex index) {
+            this.path = path;
+            this.fileLength = fileLength;
+            this.lastModified = lastModified;
+            this.index = index;
+        }
+
+        /**
+         * Check index is still valid for video.
+         *
+         * @param fileLength   current video file length
+         * @param lastModified current video file last modification date
+         * @return true if video has not been modified since it was indexed
+         */
+        boolean isValid(final long fileLength, final long lastModified) {
+            return this.fileLength == fileLength && this.lastModified == lastModified;
+        }
+    }
+}
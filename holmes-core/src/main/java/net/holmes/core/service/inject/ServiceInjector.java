@@ -22,9 +22,13 @@ import com.google.inject.Singleton;
 import net.holmes.core.service.ReleaseCheckService;
 import net.holmes.core.service.Service;
 import net.holmes.core.service.airplay.AirplayService;
+import net.holmes.core.service.http.HttpContentRequestDecoder;
 import net.holmes.core.service.http.HttpFileRequestDecoder;
 import net.holmes.core.service.http.HttpFileRequestHandler;
+import net.holmes.core.service.http.HttpRequestRouter;
 import net.holmes.core.service.http.HttpService;
+import net.holmes.core.service.http.HttpStatisticsHandler;
+import net.holmes.core.service.http.StaticResourceCache;
 import net.holmes.core.service.systray.SystrayService;
 import net.holmes.core.service.upnp.UpnpService;
 
@@ -63,8 +67,18 @@ public class ServiceInjector extends AbstractModule {
         // Bind Upnp service
         bind(org.fourthline.cling.UpnpService.class).toProvider(UpnpServiceProvider.class).in(Singleton.class);
 
-        // Bind Http file request decoder and handler
+        // Bind Http file request decoders and handler
         bind(HttpFileRequestDecoder.class);
+        bind(HttpContentRequestDecoder.class);
         bind(HttpFileRequestHandler.class);
+
+        // Bind static resource cache, loaded at startup
+        bind(StaticResourceCache.class).asEagerSingleton();
+
+        // Bind Http request router, compiled at startup
+        bind(HttpRequestRouter.class).asEagerSingleton();
+
+        // Bind Http statistics REST handler
+        bind(HttpStatisticsHandler.class);
     }
 }
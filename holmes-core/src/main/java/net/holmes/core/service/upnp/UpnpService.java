@@ -19,6 +19,8 @@ package net.holmes.core.service.upnp;
 
 import com.google.inject.Injector;
 import net.holmes.core.business.configuration.ConfigurationManager;
+import net.holmes.core.business.mimetype.MimeTypeManager;
+import net.holmes.core.business.mimetype.model.MimeTypeProfile;
 import net.holmes.core.business.streaming.StreamingManager;
 import net.holmes.core.business.streaming.upnp.device.UpnpDevice;
 import net.holmes.core.service.Service;
@@ -59,6 +61,7 @@ public final class UpnpService implements Service {
     private final Injector injector;
     private final ConfigurationManager configurationManager;
     private final StreamingManager streamingManager;
+    private final MimeTypeManager mimeTypeManager;
 
     private org.fourthline.cling.UpnpService upnpService = null;
 
@@ -68,12 +71,15 @@ public final class UpnpService implements Service {
      * @param injector             Guice injector
      * @param configurationManager configuration manager
      * @param streamingManager     streaming manager
+     * @param mimeTypeManager      mime type manager
      */
     @Inject
-    public UpnpService(final Injector injector, final ConfigurationManager configurationManager, final StreamingManager streamingManager) {
+    public UpnpService(final Injector injector, final ConfigurationManager configurationManager, final StreamingManager streamingManager,
+                       final MimeTypeManager mimeTypeManager) {
         this.injector = injector;
         this.configurationManager = configurationManager;
         this.streamingManager = streamingManager;
+        this.mimeTypeManager = mimeTypeManager;
     }
 
     /**
@@ -152,11 +158,14 @@ public final class UpnpService implements Service {
                             // Got protocol info, get available mime types
                             Set<String> availableMimeTypes = getAvailableMimeTypes(sinkProtocolInfo);
 
+                            // Compile mime type profile, shared by devices with identical protocol info
+                            MimeTypeProfile mimeTypeProfile = mimeTypeManager.getMimeTypeProfile(availableMimeTypes);
+
                             // Add device
                             if (LOGGER.isDebugEnabled()) {
                                 LOGGER.debug("Remote device added {} : {} [{}]", deviceId, deviceName, deviceHost);
                             }
-                            streamingManager.addDevice(new UpnpDevice(deviceId, deviceName, deviceHost, availableMimeTypes, avTransportService));
+                            streamingManager.addDevice(new UpnpDevice(deviceId, deviceName, deviceHost, availableMimeTypes, mimeTypeProfile, avTransportService));
                         }
 
                         @Override
@@ -26,6 +26,8 @@ import org.fourthline.cling.support.contentdirectory.ContentDirectoryException;
 import org.fourthline.cling.support.model.BrowseFlag;
 import org.fourthline.cling.support.model.BrowseResult;
 
+import java.beans.PropertyChangeSupport;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -55,12 +57,26 @@ public abstract class AbstractContentDirectoryService {
     private final CSV<String> sortCapabilities;
     @UpnpStateVariable(sendEvents = true, defaultValue = "0", eventMaximumRateMilliseconds = 200)
     private final UnsignedIntegerFourBytes systemUpdateID = new UnsignedIntegerFourBytes(0);
+    @UpnpStateVariable(sendEvents = true, eventMaximumRateMilliseconds = 200)
+    private final CSV<String> containerUpdateIDs = new CSVString();
+
+    private final PropertyChangeSupport propertyChangeSupport;
 
     protected AbstractContentDirectoryService(final List<String> searchCapabilities, final List<String> sortCapabilities) {
         this.searchCapabilities = new CSVString();
         this.searchCapabilities.addAll(searchCapabilities);
         this.sortCapabilities = new CSVString();
         this.sortCapabilities.addAll(sortCapabilities);
+        this.propertyChangeSupport = new PropertyChangeSupport(this);
+    }
+
+    /**
+     * Get property change support, used by UPnP stack to send state variable events.
+     *
+     * @return property change support
+     */
+    public PropertyChangeSupport getPropertyChangeSupport() {
+        return propertyChangeSupport;
     }
 
     /**
@@ -93,6 +109,32 @@ public abstract class AbstractContentDirectoryService {
         return systemUpdateID;
     }
 
+    /**
+     * Get container update ids (evented only).
+     *
+     * @return snapshot of container update ids, as container id and update id pairs
+     */
+    public synchronized CSV<String> getContainerUpdateIDs() {
+        CSV<String> snapshot = new CSVString();
+        snapshot.addAll(containerUpdateIDs);
+        return snapshot;
+    }
+
+    /**
+     * Change container update ids and system update id, then fire a single event for both state variables
+     * (comma separated property names are evented together by the UPnP stack).
+     * Events are moderated by the UPnP stack according to state variables maximum rate.
+     *
+     * @param updateIDs container update ids, as container id and update id pairs
+     */
+    protected synchronized void changeContainerUpdateIDs(final Collection<String> updateIDs) {
+        Long oldSystemUpdateID = systemUpdateID.getValue();
+        systemUpdateID.increment(true);
+        containerUpdateIDs.clear();
+        containerUpdateIDs.addAll(updateIDs);
+        propertyChangeSupport.firePropertyChange("SystemUpdateID,ContainerUpdateIDs", oldSystemUpdateID, systemUpdateID.getValue());
+    }
+
     /**
      * Browse for content.
      *
@@ -18,25 +18,27 @@
 package net.holmes.core.service.upnp.directory;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.eventbus.Subscribe;
 import net.holmes.core.business.configuration.ConfigurationManager;
 import net.holmes.core.business.media.MediaManager;
 import net.holmes.core.business.media.MediaSearchRequest;
 import net.holmes.core.business.media.model.ContentNode;
 import net.holmes.core.business.media.model.FolderNode;
 import net.holmes.core.business.media.model.MediaNode;
+import net.holmes.core.business.mimetype.model.MimeTypeProfile;
 import net.holmes.core.business.streaming.StreamingManager;
-import net.holmes.core.business.streaming.upnp.device.UpnpDevice;
+import net.holmes.core.common.event.MediaEvent;
 import org.fourthline.cling.model.profile.RemoteClientInfo;
 import org.fourthline.cling.support.contentdirectory.ContentDirectoryException;
-import org.fourthline.cling.support.contentdirectory.DIDLParser;
 import org.fourthline.cling.support.model.BrowseFlag;
 import org.fourthline.cling.support.model.BrowseResult;
 
 import javax.inject.Inject;
 import java.util.*;
 
-import static net.holmes.core.business.mimetype.model.MimeType.MIME_TYPE_SUBTITLE;
+import static net.holmes.core.common.ConfigurationParameter.HTTP_SERVER_TIME_SEEK;
 import static net.holmes.core.common.ConfigurationParameter.UPNP_ADD_SUBTITLE;
+import static net.holmes.core.common.event.MediaEvent.MediaEventType.UPDATE_CONTAINER;
 import static org.fourthline.cling.support.contentdirectory.ContentDirectoryErrorCode.NO_SUCH_OBJECT;
 import static org.fourthline.cling.support.model.BrowseFlag.*;
 
@@ -44,12 +46,17 @@ import static org.fourthline.cling.support.model.BrowseFlag.*;
  * UPnP Content directory service.
  */
 public final class ContentDirectoryService extends AbstractContentDirectoryService {
+    private static final int MAX_EVENTED_CONTAINERS = 32;
+
+    private final Map<String, Long> containerUpdateIds = new LinkedHashMap<>();
     @Inject
     private ConfigurationManager configurationManager;
     @Inject
     private MediaManager mediaManager;
     @Inject
     private StreamingManager streamingManager;
+    @Inject
+    private DidlFragmentCache didlFragmentCache;
 
     /**
      * Instantiates a new content directory service.
@@ -69,68 +76,89 @@ public final class ContentDirectoryService extends AbstractContentDirectoryServi
         MediaNode browseNode = mediaManager.getNode(objectID)
                 .orElseThrow(() -> new ContentDirectoryException(NO_SUCH_OBJECT, objectID));
 
-        // Get available mime types
-        List<String> availableMimeTypes = getAvailableMimeType(remoteClientInfo);
+        // Get available mime types profile
+        MimeTypeProfile mimeTypeProfile = getMimeTypeProfile(remoteClientInfo);
 
         // Build browse result
         DirectoryBrowseResult result;
+        boolean timeSeek = configurationManager.getParameter(HTTP_SERVER_TIME_SEEK);
         if (DIRECT_CHILDREN == browseFlag) {
-            result = new DirectoryBrowseResult(firstResult, maxResults);
+            result = new DirectoryBrowseResult(firstResult, maxResults, didlFragmentCache, timeSeek);
             // Add child nodes
-            Collection<MediaNode> searchResult = mediaManager.searchChildNodes(new MediaSearchRequest(browseNode, availableMimeTypes));
+            Collection<MediaNode> searchResult = mediaManager.searchChildNodes(new MediaSearchRequest(browseNode, mimeTypeProfile));
             for (MediaNode childNode : searchResult) {
-                addNode(objectID, childNode, result, availableMimeTypes);
+                addNode(objectID, childNode, result, mimeTypeProfile);
             }
         } else if (METADATA == browseFlag) {
-            result = new DirectoryBrowseResult(0, 1);
+            result = new DirectoryBrowseResult(0, 1, didlFragmentCache, timeSeek);
             // Get node
-            addNode(browseNode.getParentId(), browseNode, result, availableMimeTypes);
+            addNode(browseNode.getParentId(), browseNode, result, mimeTypeProfile);
         } else {
-            result = new DirectoryBrowseResult(0, 1);
+            result = new DirectoryBrowseResult(0, 1, didlFragmentCache, timeSeek);
         }
 
-        return result.buildBrowseResult(new DIDLParser());
+        // Containers have their own update id
+        long updateId = browseNode instanceof FolderNode ? mediaManager.getContainerUpdateId(objectID) : getSystemUpdateID().getValue();
+        return result.buildBrowseResult(updateId);
     }
 
     /**
-     * Get available mime types
+     * Container content has changed, send container update ids event.
+     * Event holds the most recently updated containers, so that updates skipped by event moderation are sent with next event.
      *
-     * @param remoteClientInfo remote client info
-     * @return available mime types
+     * @param mediaEvent media event
      */
-    private List<String> getAvailableMimeType(final RemoteClientInfo remoteClientInfo) {
-        // Get available mime types
-        List<String> availableMimeTypes = new ArrayList<>();
-        if (remoteClientInfo.getConnection() != null) {
-            streamingManager.findDevices(remoteClientInfo.getRemoteAddress().getHostAddress()).stream()
-                    .filter(device -> device instanceof UpnpDevice)
-                    .forEach(device -> availableMimeTypes.addAll(device.getSupportedMimeTypes()));
+    @Subscribe
+    public void handleMediaEvent(final MediaEvent mediaEvent) {
+        if (mediaEvent.getType() == UPDATE_CONTAINER) {
+            String containerId = mediaEvent.getParameter();
+            List<String> updateIds = new ArrayList<>();
+            synchronized (containerUpdateIds) {
+                containerUpdateIds.remove(containerId);
+                containerUpdateIds.put(containerId, mediaManager.getContainerUpdateId(containerId));
+                if (containerUpdateIds.size() > MAX_EVENTED_CONTAINERS) {
+                    containerUpdateIds.remove(containerUpdateIds.keySet().iterator().next());
+                }
+                containerUpdateIds.forEach((id, updateId) -> {
+                    updateIds.add(id);
+                    updateIds.add(updateId.toString());
+                });
+            }
+            changeContainerUpdateIDs(updateIds);
         }
+    }
 
-        // Add subtitle
-        if (!availableMimeTypes.isEmpty() && configurationManager.getParameter(UPNP_ADD_SUBTITLE)) {
-            availableMimeTypes.add(MIME_TYPE_SUBTITLE.getMimeType());
+    /**
+     * Get available mime types profile
+     *
+     * @param remoteClientInfo remote client info
+     * @return available mime types profile or null if all mime types are available
+     */
+    private MimeTypeProfile getMimeTypeProfile(final RemoteClientInfo remoteClientInfo) {
+        if (remoteClientInfo.getConnection() == null) {
+            return null;
         }
-        return availableMimeTypes;
+        // Get profile indexed by client address
+        return streamingManager.getMimeTypeProfile(remoteClientInfo.getRemoteAddress(), configurationManager.getParameter(UPNP_ADD_SUBTITLE));
     }
 
     /**
      * Adds node.
      *
-     * @param nodeId             node id
-     * @param node               node
-     * @param result             result
-     * @param availableMimeTypes availableMimeTypes
+     * @param nodeId          node id
+     * @param node            node
+     * @param result          result
+     * @param mimeTypeProfile available mime types profile
      * @throws ContentDirectoryException
      */
-    private void addNode(final String nodeId, final MediaNode node, final DirectoryBrowseResult result, final List<String> availableMimeTypes) throws ContentDirectoryException {
+    private void addNode(final String nodeId, final MediaNode node, final DirectoryBrowseResult result, final MimeTypeProfile mimeTypeProfile) throws ContentDirectoryException {
         if (result.acceptNode()) {
             if (node instanceof ContentNode) {
                 // Add item to result
                 result.addItem(nodeId, (ContentNode) node, mediaManager.getNodeUrl(node));
             } else if (node instanceof FolderNode) {
                 // Get child counts
-                Collection<MediaNode> searchResult = mediaManager.searchChildNodes(new MediaSearchRequest(node, availableMimeTypes));
+                Collection<MediaNode> searchResult = mediaManager.searchChildNodes(new MediaSearchRequest(node, mimeTypeProfile));
                 // Add container to result
                 result.addContainer(nodeId, node, searchResult.size());
             }
@@ -151,4 +179,9 @@ public final class ContentDirectoryService extends AbstractContentDirectoryServi
     void setStreamingManager(final StreamingManager streamingManager) {
         this.streamingManager = streamingManager;
     }
+
+    @VisibleForTesting
+    void setDidlFragmentCache(final DidlFragmentCache didlFragmentCache) {
+        this.didlFragmentCache = didlFragmentCache;
+    }
 }
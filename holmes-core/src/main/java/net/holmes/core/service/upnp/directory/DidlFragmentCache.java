@@ -0,0 +1,251 @@
+/*
+ * Copyright (C) 2012-2015  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.holmes.core.service.upnp.directory;
+
+import com.google.common.base.Splitter;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import net.holmes.core.business.configuration.ConfigurationManager;
+import net.holmes.core.business.media.model.MediaNode;
+import net.holmes.core.common.exception.HolmesRuntimeException;
+import org.fourthline.cling.support.contentdirectory.ContentDirectoryException;
+import org.fourthline.cling.support.contentdirectory.DIDLParser;
+import org.fourthline.cling.support.model.DIDLContent;
+import org.fourthline.cling.support.model.DIDLObject;
+import org.fourthline.cling.support.model.container.Container;
+import org.fourthline.cling.support.model.item.Item;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+
+import static net.holmes.core.common.ConfigurationParameter.UPNP_DIDL_CACHE_SIZE;
+import static org.fourthline.cling.support.contentdirectory.ContentDirectoryErrorCode.CANNOT_PROCESS;
+
+/**
+ * Cache of pre-rendered DIDL fragments.
+ * <p>
+ * Each node is serialized once to its DIDL &lt;item&gt; or &lt;container&gt; element, with the host portion of content urls
+ * replaced by a placeholder. Fragments are invalidated when node modified date, name, parent or child count change.
+ * </p>
+ */
+@Singleton
+public final class DidlFragmentCache {
+    private static final String HOST_PLACEHOLDER = "holmes-host-" + UUID.randomUUID();
+    private static final String DIDL_ROOT_ELEMENT = "<DIDL-Lite";
+    private static final String SCHEME_SEPARATOR = "://";
+
+    private final DIDLParser didlParser;
+    private final Cache<String, DidlFragment> fragments;
+    private final String documentStart;
+    private final String documentEnd;
+
+    /**
+     * Instantiates a new DIDL fragment cache.
+     *
+     * @param configurationManager configuration manager
+     */
+    @Inject
+    public DidlFragmentCache(final ConfigurationManager configurationManager) {
+        this(new DIDLParser(), configurationManager.getParameter(UPNP_DIDL_CACHE_SIZE));
+    }
+
+    /**
+     * Instantiates a new DIDL fragment cache.
+     *
+     * @param didlParser  DIDL parser
+     * @param maximumSize maximum number of cached fragments
+     */
+    DidlFragmentCache(final DIDLParser didlParser, final int maximumSize) {
+        this.didlParser = didlParser;
+        this.fragments = CacheBuilder.newBuilder().maximumSize(maximumSize).build();
+
+        // Get DIDL document root element from a sample document
+        DIDLContent didl = new DIDLContent();
+        didl.addContainer(new Container("0", "-1", "", null, new DIDLObject.Class("object.container"), 0));
+        try {
+            String document = didlParser.generate(didl);
+            this.documentStart = document.substring(0, getContentStart(document));
+            this.documentEnd = document.substring(getContentEnd(document));
+        } catch (Exception e) {
+            throw new HolmesRuntimeException(e);
+        }
+    }
+
+    /**
+     * Get DIDL document start, up to the root element start tag.
+     *
+     * @return DIDL document start
+     */
+    public String getDocumentStart() {
+        return documentStart;
+    }
+
+    /**
+     * Get DIDL document end, the root element end tag.
+     *
+     * @return DIDL document end
+     */
+    public String getDocumentEnd() {
+        return documentEnd;
+    }
+
+    /**
+     * Get cached fragment of a node.
+     *
+     * @param parentNodeId parent node id
+     * @param node         node
+     * @param childCount   container child count
+     * @return fragment or null if node is not in cache or cached fragment is outdated
+     */
+    public DidlFragment getFragment(final String parentNodeId, final MediaNode node, final int childCount) {
+        DidlFragment fragment = fragments.getIfPresent(node.getId());
+        return fragment != null && fragment.isValid(parentNodeId, node, childCount) ? fragment : null;
+    }
+
+    /**
+     * Render DIDL object and put resulting fragment in cache.
+     *
+     * @param parentNodeId parent node id
+     * @param node         node
+     * @param childCount   container child count
+     * @param didlObject   DIDL item or container, with content urls built by {@link #getTemplatedUrl(String, int)}
+     * @return fragment
+     * @throws ContentDirectoryException
+     */
+    public DidlFragment putFragment(final String parentNodeId, final MediaNode node, final int childCount, final DIDLObject didlObject) throws ContentDirectoryException {
+        DIDLContent didl = new DIDLContent();
+        if (didlObject instanceof Container) {
+            didl.addContainer((Container) didlObject);
+        } else {
+            didl.addItem((Item) didlObject);
+        }
+
+        String content;
+        try {
+            String document = didlParser.generate(didl);
+            content = document.substring(getContentStart(document), getContentEnd(document));
+        } catch (Exception e) {
+            throw new ContentDirectoryException(CANNOT_PROCESS.getCode(), e.getMessage(), e);
+        }
+
+        DidlFragment fragment = new DidlFragment(parentNodeId, node, childCount, Splitter.on(HOST_PLACEHOLDER).splitToList(content));
+        fragments.put(node.getId(), fragment);
+        return fragment;
+    }
+
+    /**
+     * Get end index of the host portion of an url.
+     *
+     * @param url url
+     * @return host end index
+     */
+    public static int getHostEnd(final String url) {
+        int schemeEnd = url.indexOf(SCHEME_SEPARATOR);
+        int hostEnd = url.indexOf('/', schemeEnd < 0 ? 0 : schemeEnd + SCHEME_SEPARATOR.length());
+        return hostEnd < 0 ? url.length() : hostEnd;
+    }
+
+    /**
+     * Get url with host portion replaced by placeholder.
+     *
+     * @param url     url
+     * @param hostEnd host end index
+     * @return templated url
+     */
+    public static String getTemplatedUrl(final String url, final int hostEnd) {
+        return HOST_PLACEHOLDER + url.substring(hostEnd);
+    }
+
+    /**
+     * Get start index of DIDL document content.
+     *
+     * @param document DIDL document
+     * @return content start index
+     */
+    private static int getContentStart(final String document) {
+        return document.indexOf('>', document.indexOf(DIDL_ROOT_ELEMENT)) + 1;
+    }
+
+    /**
+     * Get end index of DIDL document content.
+     *
+     * @param document DIDL document
+     * @return content end index
+     */
+    private static int getContentEnd(final String document) {
+        return document.lastIndexOf("</");
+    }
+
+    /**
+     * Pre-rendered DIDL fragment.
+     */
+    public static final class DidlFragment {
+        private final String parentNodeId;
+        private final String name;
+        private final Long modifiedDate;
+        private final int childCount;
+        private final String[] parts;
+
+        /**
+         * Instantiates a new DIDL fragment.
+         *
+         * @param parentNodeId parent node id
+         * @param node         node
+         * @param childCount   container child count
+         * @param parts        fragment parts, split on host placeholder
+         */
+        private DidlFragment(final String parentNodeId, final MediaNode node, final int childCount, final List<String> parts) {
+            this.parentNodeId = parentNodeId;
+            this.name = node.getName();
+            this.modifiedDate = node.getModifiedDate();
+            this.childCount = childCount;
+            this.parts = parts.toArray(new String[parts.size()]);
+        }
+
+        /**
+         * Check fragment is still valid for node.
+         *
+         * @param parentNodeId parent node id
+         * @param node         node
+         * @param childCount   container child count
+         * @return true if fragment is valid
+         */
+        private boolean isValid(final String parentNodeId, final MediaNode node, final int childCount) {
+            return this.childCount == childCount
+                    && Objects.equals(this.modifiedDate, node.getModifiedDate())
+                    && Objects.equals(this.parentNodeId, parentNodeId)
+                    && Objects.equals(this.name, node.getName());
+        }
+
+        /**
+         * Append fragment to DIDL content, replacing host placeholder with url host.
+         *
+         * @param content DIDL content
+         * @param url     url providing host portion
+         * @param hostEnd host end index in url
+         */
+        public void appendTo(final StringBuilder content, final String url, final int hostEnd) {
+            content.append(parts[0]);
+            for (int i = 1; i < parts.length; i++) {
+                content.append(url, 0, hostEnd).append(parts[i]);
+            }
+        }
+    }
+}
@@ -20,10 +20,9 @@ package net.holmes.core.service.upnp.directory;
 import net.holmes.core.business.media.model.ContentNode;
 import net.holmes.core.business.media.model.MediaNode;
 import net.holmes.core.business.mimetype.model.MimeType;
+import net.holmes.core.service.upnp.directory.DidlFragmentCache.DidlFragment;
 import org.fourthline.cling.support.contentdirectory.ContentDirectoryException;
-import org.fourthline.cling.support.contentdirectory.DIDLParser;
 import org.fourthline.cling.support.model.BrowseResult;
-import org.fourthline.cling.support.model.DIDLContent;
 import org.fourthline.cling.support.model.DIDLObject;
 import org.fourthline.cling.support.model.DIDLObject.Property.DC;
 import org.fourthline.cling.support.model.DIDLObject.Property.UPNP;
@@ -33,20 +32,28 @@ import org.fourthline.cling.support.model.item.*;
 
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 
 import static net.holmes.core.business.mimetype.model.MimeType.*;
-import static net.holmes.core.business.streaming.upnp.UpnpUtils.getUpnpMimeType;
+import static net.holmes.core.business.streaming.upnp.UpnpUtils.getUpnpProtocolInfo;
+import static net.holmes.core.service.upnp.directory.DidlFragmentCache.getHostEnd;
+import static net.holmes.core.service.upnp.directory.DidlFragmentCache.getTemplatedUrl;
 import static org.fourthline.cling.support.contentdirectory.ContentDirectoryErrorCode.CANNOT_PROCESS;
 
 /**
  * UPnP directory browse result.
  */
 final class DirectoryBrowseResult {
-    private static final String UPNP_DATE_FORMAT = "yyyy-MM-dd'T'HH:mm:ssZ";
+    private static final DateTimeFormatter UPNP_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ssZ");
     private static final DIDLObject.Class CONTAINER_CLASS = new DIDLObject.Class("object.container");
+    private static final int NO_CHILD_COUNT = -1;
 
-    private final DIDLContent didl;
+    private final DidlFragmentCache fragmentCache;
+    private final boolean timeSeek;
+    private final StringBuilder containers;
+    private final StringBuilder items;
     private final long firstResult;
     private final long maxResults;
 
@@ -56,13 +63,18 @@ final class DirectoryBrowseResult {
     /**
      * Instantiates a new directory browse result.
      *
-     * @param firstResult first result
-     * @param maxResults  max results
+     * @param firstResult   first result
+     * @param maxResults    max results
+     * @param fragmentCache DIDL fragment cache
+     * @param timeSeek      whether time seek is enabled
      */
-    public DirectoryBrowseResult(final long firstResult, final long maxResults) {
+    public DirectoryBrowseResult(final long firstResult, final long maxResults, final DidlFragmentCache fragmentCache, final boolean timeSeek) {
         this.firstResult = firstResult;
         this.maxResults = maxResults;
-        this.didl = new DIDLContent();
+        this.fragmentCache = fragmentCache;
+        this.timeSeek = timeSeek;
+        this.containers = new StringBuilder();
+        this.items = new StringBuilder();
         this.itemCount = 0L;
         this.totalCount = 0L;
     }
@@ -95,12 +107,19 @@ final class DirectoryBrowseResult {
     }
 
     /**
-     * Get DIDL.
+     * Get DIDL document, containers come before items.
      *
-     * @return DIDL
+     * @return DIDL document
      */
-    public DIDLContent getDidl() {
-        return didl;
+    public String getDidl() {
+        String documentStart = fragmentCache.getDocumentStart();
+        String documentEnd = fragmentCache.getDocumentEnd();
+        return new StringBuilder(documentStart.length() + containers.length() + items.length() + documentEnd.length())
+                .append(documentStart)
+                .append(containers)
+                .append(items)
+                .append(documentEnd)
+                .toString();
     }
 
     /**
@@ -115,16 +134,11 @@ final class DirectoryBrowseResult {
     /**
      * Build browse result.
      *
-     * @param didlParser DIDL parser
+     * @param updateId container update id
      * @return browse result
-     * @throws ContentDirectoryException
      */
-    public BrowseResult buildBrowseResult(final DIDLParser didlParser) throws ContentDirectoryException {
-        try {
-            return new BrowseResult(didlParser.generate(didl), itemCount, totalCount);
-        } catch (Exception e) {
-            throw new ContentDirectoryException(CANNOT_PROCESS.getCode(), e.getMessage(), e);
-        }
+    public BrowseResult buildBrowseResult(final long updateId) {
+        return new BrowseResult(getDidl(), itemCount, totalCount, updateId);
     }
 
     /**
@@ -136,21 +150,34 @@ final class DirectoryBrowseResult {
      * @throws ContentDirectoryException
      */
     public void addItem(final String parentNodeId, final ContentNode contentNode, final String url) throws ContentDirectoryException {
-        Res res = new Res(getUpnpMimeType(contentNode.getMimeType()), contentNode.getSize(), url);
-        addDidlItem(parentNodeId, contentNode, contentNode.getName(), contentNode.getMimeType(), res);
+        int hostEnd = getHostEnd(url);
+        DidlFragment fragment = fragmentCache.getFragment(parentNodeId, contentNode, NO_CHILD_COUNT);
+        if (fragment == null) {
+            // Render item, url host is templated
+            // Resource advertises the same DLNA content features as HTTP responses
+            Res res = new Res(getUpnpProtocolInfo(contentNode.getMimeType(), timeSeek), contentNode.getSize(), getTemplatedUrl(url, hostEnd));
+            Item item = getDidlItem(parentNodeId, contentNode, contentNode.getName(), contentNode.getMimeType(), res);
+            if (item == null) {
+                return;
+            }
+            setDidlMetadata(item, contentNode);
+            fragment = fragmentCache.putFragment(parentNodeId, contentNode, NO_CHILD_COUNT, item);
+        }
+        fragment.appendTo(items, url, hostEnd);
+        itemCount++;
     }
 
     /**
-     * Add item to didl.
+     * Get didl item.
      *
      * @param parentNodeId parent node id
      * @param node         node to add
      * @param name         node name
      * @param mimeType     node mimeType
      * @param res          didl resource
-     * @throws ContentDirectoryException
+     * @return DIDL item or null
      */
-    private void addDidlItem(final String parentNodeId, final MediaNode node, final String name, final MimeType mimeType, final Res res) throws ContentDirectoryException {
+    private Item getDidlItem(final String parentNodeId, final MediaNode node, final String name, final MimeType mimeType, final Res res) {
         Item item;
         switch (mimeType.getType()) {
             case TYPE_VIDEO:
@@ -169,11 +196,7 @@ final class DirectoryBrowseResult {
                 item = getUnknownTypeItem(parentNodeId, node, name, mimeType, res);
                 break;
         }
-        if (item != null) {
-            setDidlMetadata(item, node);
-            didl.addItem(item);
-            itemCount++;
-        }
+        return item;
     }
 
     /**
@@ -207,11 +230,14 @@ final class DirectoryBrowseResult {
      * @throws ContentDirectoryException
      */
     public void addContainer(final String parentNodeId, final MediaNode node, final int childCount) throws ContentDirectoryException {
-        Container container = new Container(node.getId(), parentNodeId, node.getName(), null, CONTAINER_CLASS, childCount);
-        container.setSearchable(true);
-        setDidlMetadata(container, node);
-
-        didl.addContainer(container);
+        DidlFragment fragment = fragmentCache.getFragment(parentNodeId, node, childCount);
+        if (fragment == null) {
+            Container container = new Container(node.getId(), parentNodeId, node.getName(), null, CONTAINER_CLASS, childCount);
+            container.setSearchable(true);
+            setDidlMetadata(container, node);
+            fragment = fragmentCache.putFragment(parentNodeId, node, childCount, container);
+        }
+        fragment.appendTo(containers, "", 0);
         itemCount++;
     }
 
@@ -234,7 +260,7 @@ final class DirectoryBrowseResult {
      */
     private void setDidlMetadata(final DIDLObject didlObject, final MediaNode node) throws ContentDirectoryException {
         if (node.getModifiedDate() != null) {
-            didlObject.replaceFirstProperty(new DC.DATE(new SimpleDateFormat(UPNP_DATE_FORMAT).format(node.getModifiedDate())));
+            didlObject.replaceFirstProperty(new DC.DATE(UPNP_DATE_FORMAT.format(Instant.ofEpochMilli(node.getModifiedDate()).atZone(ZoneId.systemDefault()))));
         }
 
         if (node.getIconUrl() != null) {
@@ -278,7 +278,7 @@ public class StreamingHandlerTest {
         expect(mediaManager.searchChildNodes(isA(MediaSearchRequest.class))).andReturn(searchResult).atLeastOnce();
         expect(mediaManager.getNodeUrl(isA(AbstractNode.class))).andReturn("nodeUrl").atLeastOnce();
         expect(device.isVideoSupported()).andReturn(true).atLeastOnce();
-        expect(device.getSupportedMimeTypes()).andReturn(null).atLeastOnce();
+        expect(device.getMimeTypeProfile()).andReturn(null).atLeastOnce();
 
         replay(mediaManager, streamingManager, device);
         StreamingHandler streamingHandler = new StreamingHandler(mediaManager, streamingManager);
@@ -306,7 +306,7 @@ public class StreamingHandlerTest {
         expect(mediaManager.getNode(eq("nodeId"))).andReturn(Optional.of(node)).atLeastOnce();
         expect(mediaManager.searchChildNodes(isA(MediaSearchRequest.class))).andReturn(searchResult).atLeastOnce();
         expect(mediaManager.getNodeUrl(isA(AbstractNode.class))).andReturn("nodeUrl").atLeastOnce();
-        expect(device.getSupportedMimeTypes()).andReturn(null).atLeastOnce();
+        expect(device.getMimeTypeProfile()).andReturn(null).atLeastOnce();
 
         replay(mediaManager, streamingManager, device);
         StreamingHandler streamingHandler = new StreamingHandler(mediaManager, streamingManager);
@@ -25,6 +25,7 @@ import net.holmes.core.business.configuration.ConfigurationManager;
 import net.holmes.core.business.configuration.exception.UnknownNodeException;
 import net.holmes.core.business.configuration.model.ConfigurationNode;
 import net.holmes.core.common.event.ConfigurationEvent;
+import org.easymock.Capture;
 import org.junit.Test;
 
 import java.io.IOException;
@@ -239,11 +240,87 @@ public class BackendManagerImplTest {
         }
     }
 
+    @Test
+    public void testAddRemoteContent() throws IOException {
+        ConfigurationManager configurationManager = createMock(ConfigurationManager.class);
+        EventBus eventBus = createMock(EventBus.class);
+
+        Capture<ConfigurationNode> node = newCapture();
+        expect(configurationManager.findNode(AUDIO, null, "remoteAudio", "http://localhost/audio.mp3")).andReturn(Optional.<ConfigurationNode>empty());
+        expect(configurationManager.addNode(eq(AUDIO), capture(node))).andReturn(true);
+        eventBus.post(isA(ConfigurationEvent.class));
+        expectLastCall();
+
+        replay(configurationManager, eventBus);
+
+        try {
+            BackendManagerImpl backendManager = new BackendManagerImpl(configurationManager, eventBus);
+            backendManager.addFolder(new ConfigurationFolder(null, "remoteAudio", "http://localhost/audio.mp3", true), AUDIO);
+            assertTrue(node.getValue().isRemote());
+            assertEquals("http://localhost/audio.mp3", node.getValue().getPath());
+        } finally {
+            verify(configurationManager, eventBus);
+        }
+    }
+
+    @Test(expected = BackendException.class)
+    public void testAddRemoteContentWithBadUrl() {
+        ConfigurationManager configurationManager = createMock(ConfigurationManager.class);
+        EventBus eventBus = createMock(EventBus.class);
+
+        replay(configurationManager, eventBus);
+
+        try {
+            BackendManagerImpl backendManager = new BackendManagerImpl(configurationManager, eventBus);
+            backendManager.addFolder(new ConfigurationFolder(null, "remoteAudio", System.getProperty("java.io.tmpdir"), true), AUDIO);
+        } finally {
+            verify(configurationManager, eventBus);
+        }
+    }
+
+    @Test(expected = BackendException.class)
+    public void testAddFolderWithRemoteUrl() {
+        ConfigurationManager configurationManager = createMock(ConfigurationManager.class);
+        EventBus eventBus = createMock(EventBus.class);
+
+        replay(configurationManager, eventBus);
+
+        try {
+            BackendManagerImpl backendManager = new BackendManagerImpl(configurationManager, eventBus);
+            backendManager.addFolder(new ConfigurationFolder(null, "newAudioFolder", "http://localhost/audio.mp3"), AUDIO);
+        } finally {
+            verify(configurationManager, eventBus);
+        }
+    }
+
+    @Test
+    public void testEditRemoteContent() throws IOException, UnknownNodeException {
+        ConfigurationManager configurationManager = createMock(ConfigurationManager.class);
+        EventBus eventBus = createMock(EventBus.class);
+
+        expect(configurationManager.getNode(AUDIO, "id")).andReturn(new ConfigurationNode("id", "name", "http://localhost/audio.mp3", true));
+        expect(configurationManager.findNode(AUDIO, "id", "name", "http://localhost/audio2.mp3")).andReturn(Optional.<ConfigurationNode>empty());
+        expect(configurationManager.editNode(AUDIO, "id", "name", "http://localhost/audio2.mp3"))
+                .andReturn(Optional.of(new ConfigurationNode("id", "name", "http://localhost/audio2.mp3", true)));
+        eventBus.post(isA(ConfigurationEvent.class));
+        expectLastCall();
+
+        replay(configurationManager, eventBus);
+
+        try {
+            BackendManagerImpl backendManager = new BackendManagerImpl(configurationManager, eventBus);
+            backendManager.editFolder("id", new ConfigurationFolder("id", "name", "http://localhost/audio2.mp3"), AUDIO);
+        } finally {
+            verify(configurationManager, eventBus);
+        }
+    }
+
     @Test(expected = BackendException.class)
     public void testEditFolderIOException() throws IOException, UnknownNodeException {
         ConfigurationManager configurationManager = createMock(ConfigurationManager.class);
         EventBus eventBus = createMock(EventBus.class);
 
+        expect(configurationManager.getNode(AUDIO, "id")).andReturn(new ConfigurationNode("id", "audios", System.getProperty("java.io.tmpdir")));
         expect(configurationManager.findNode(AUDIO, "id", "editedAudiosTest", System.getProperty("java.io.tmpdir"))).andReturn(Optional.<ConfigurationNode>empty());
         expect(configurationManager.editNode(AUDIO, "id", "editedAudiosTest", System.getProperty("java.io.tmpdir"))).andThrow(new IOException());
 
@@ -262,6 +339,7 @@ public class BackendManagerImplTest {
         ConfigurationManager configurationManager = createMock(ConfigurationManager.class);
         EventBus eventBus = createMock(EventBus.class);
 
+        expect(configurationManager.getNode(AUDIO, "id")).andReturn(new ConfigurationNode("id", "audios", System.getProperty("java.io.tmpdir")));
         expect(configurationManager.findNode(AUDIO, "id", "name", System.getProperty("java.io.tmpdir"))).andReturn(Optional.<ConfigurationNode>empty());
         expect(configurationManager.editNode(AUDIO, "id", "name", System.getProperty("java.io.tmpdir"))).andReturn(Optional.of(new ConfigurationNode("id", "name", System.getProperty("java.io.tmpdir"))));
         eventBus.post(isA(ConfigurationEvent.class));
@@ -282,8 +360,7 @@ public class BackendManagerImplTest {
         ConfigurationManager configurationManager = createMock(ConfigurationManager.class);
         EventBus eventBus = createMock(EventBus.class);
 
-        expect(configurationManager.findNode(AUDIO, "bad_id", "editedAudiosTest", System.getProperty("java.io.tmpdir"))).andReturn(Optional.<ConfigurationNode>empty());
-        expect(configurationManager.editNode(AUDIO, "bad_id", "editedAudiosTest", System.getProperty("java.io.tmpdir"))).andThrow(new UnknownNodeException("bad_id"));
+        expect(configurationManager.getNode(AUDIO, "bad_id")).andThrow(new UnknownNodeException("bad_id"));
 
         replay(configurationManager, eventBus);
 
@@ -300,6 +377,7 @@ public class BackendManagerImplTest {
         ConfigurationManager configurationManager = createMock(ConfigurationManager.class);
         EventBus eventBus = createMock(EventBus.class);
 
+        expect(configurationManager.getNode(AUDIO, "id")).andReturn(new ConfigurationNode("id", "audios", System.getProperty("java.io.tmpdir")));
         expect(configurationManager.findNode(AUDIO, "id", "name", System.getProperty("java.io.tmpdir"))).andReturn(Optional.<ConfigurationNode>empty());
         expect(configurationManager.editNode(AUDIO, "id", "name", System.getProperty("java.io.tmpdir"))).andReturn(Optional.<ConfigurationNode>empty());
 
@@ -96,6 +96,7 @@ public class ConfigurationFolderTest {
         ConfigurationFolder folder3 = new ConfigurationFolder("id3", "name", "path");
         ConfigurationFolder folder4 = new ConfigurationFolder("id", "name1", "path");
         ConfigurationFolder folder5 = new ConfigurationFolder("id", "name", "path1");
+        ConfigurationFolder folder6 = new ConfigurationFolder("id", "name", "path", true);
         assertEquals(folder, folder);
         assertEquals(folder, folder2);
         assertNotEquals(folder, null);
@@ -103,5 +104,14 @@ public class ConfigurationFolderTest {
         assertNotEquals(folder, folder3);
         assertNotEquals(folder, folder4);
         assertNotEquals(folder, folder5);
+        assertNotEquals(folder, folder6);
+    }
+
+    @Test
+    public void testSetRemote() throws Exception {
+        ConfigurationFolder folder = new ConfigurationFolder("id", "name", "path");
+        assertFalse(folder.isRemote());
+        folder.setRemote(true);
+        assertTrue(folder.isRemote());
     }
 }
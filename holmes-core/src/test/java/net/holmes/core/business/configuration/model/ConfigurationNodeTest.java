@@ -73,6 +73,15 @@ public class ConfigurationNodeTest {
         assertEquals(node.getPath(), "newPath");
     }
 
+    /**
+     * Method: isRemote()
+     */
+    @Test
+    public void testIsRemote() throws Exception {
+        assertFalse(new ConfigurationNode("id", "label", "path").isRemote());
+        assertTrue(new ConfigurationNode("id", "label", "http://localhost/video.avi", true).isRemote());
+    }
+
     /**
      * Method: hashCode()
      */
@@ -98,6 +107,7 @@ public class ConfigurationNodeTest {
         ConfigurationNode node3 = new ConfigurationNode("id3", "label", "path");
         ConfigurationNode node4 = new ConfigurationNode("id", "label4", "path");
         ConfigurationNode node5 = new ConfigurationNode("id", "label", "path4");
+        ConfigurationNode node6 = new ConfigurationNode("id", "label", "path", true);
         assertEquals(node1, node1);
         assertEquals(node1, node2);
         assertNotEquals(node1, null);
@@ -105,6 +115,7 @@ public class ConfigurationNodeTest {
         assertNotEquals(node1, node3);
         assertNotEquals(node1, node4);
         assertNotEquals(node1, node5);
+        assertNotEquals(node1, node6);
     }
 
     /**
@@ -0,0 +1,174 @@
+/*
+ * Copyright (C) 2012-2015  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.business.media;
+
+import net.holmes.core.business.media.model.ContentNode;
+import net.holmes.core.business.mimetype.MimeTypeManager;
+import net.holmes.core.business.mimetype.MimeTypeManagerImpl;
+import net.holmes.core.business.mimetype.dao.MimeTypeDaoImpl;
+import net.holmes.core.business.mimetype.model.MimeType;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Executor;
+
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
+import static org.easymock.EasyMock.*;
+import static org.junit.Assert.*;
+
+public class ContentPrefetcherImplTest {
+    private MimeTypeManager mimeTypeManager;
+    private Path folder;
+
+    @Before
+    public void setUp() throws IOException {
+        mimeTypeManager = new MimeTypeManagerImpl(new MimeTypeDaoImpl("/mimetypes.properties"));
+        folder = Files.createTempDirectory("holmes");
+        folder.toFile().deleteOnExit();
+    }
+
+    @Test
+    public void testCompareNames() {
+        assertTrue(ContentPrefetcherImpl.compareNames("Episode 2.avi", "Episode 10.avi") < 0);
+        assertTrue(ContentPrefetcherImpl.compareNames("Episode 10.avi", "Episode 9.avi") > 0);
+        assertTrue(ContentPrefetcherImpl.compareNames("episode 1.avi", "Episode 2.avi") < 0);
+        assertTrue(ContentPrefetcherImpl.compareNames("S01E02.avi", "S1E3.avi") < 0);
+        assertTrue(ContentPrefetcherImpl.compareNames("Episode.avi", "Episode 1.avi") > 0);
+        assertTrue(ContentPrefetcherImpl.compareNames("Episode 1", "Episode 1.avi") < 0);
+        assertNotEquals(0, ContentPrefetcherImpl.compareNames("E01.avi", "E1.avi"));
+        assertEquals(0, ContentPrefetcherImpl.compareNames("E1.avi", "E1.avi"));
+    }
+
+    @Test
+    public void testGetNextFile() throws IOException {
+        File first = createFile("Show 1.avi", 100);
+        File second = createFile("Show 2.avi", 100);
+        createFile("Show 2.srt", 100);
+        createFile("cover.jpg", 100);
+        File third = createFile("Show 10.avi", 100);
+
+        ContentPrefetcherImpl contentPrefetcher = new ContentPrefetcherImpl(mimeTypeManager, 16, 1000, directExecutor());
+        assertEquals(second, contentPrefetcher.getNextFile(first));
+        assertEquals(third, contentPrefetcher.getNextFile(second));
+        assertNull(contentPrefetcher.getNextFile(third));
+        assertNull(contentPrefetcher.getNextFile(new File(folder.toFile(), "unknown.avi")));
+        assertNull(contentPrefetcher.getNextFile(new File(folder.toFile(), "unknown")));
+    }
+
+    @Test
+    public void testGetNextFileModifiedFolder() throws IOException {
+        File first = createFile("Show 1.avi", 100);
+        File third = createFile("Show 3.avi", 100);
+
+        ContentPrefetcherImpl contentPrefetcher = new ContentPrefetcherImpl(mimeTypeManager, 16, 1000, directExecutor());
+        contentPrefetcher.contentPlayed(new ContentNode("id", "parentId", "Show 1.avi", first, MimeType.valueOf("video/avi")));
+        assertEquals(third, contentPrefetcher.getNextFile(first));
+
+        // Folder ordering is refreshed once folder is modified
+        File second = createFile("Show 2.avi", 100);
+        assertTrue(folder.toFile().setLastModified(folder.toFile().lastModified() + 2000));
+        assertEquals(second, contentPrefetcher.getNextFile(first));
+    }
+
+    @Test
+    public void testContentStreamed() throws IOException {
+        File first = createFile("Show 1.avi", 100);
+        createFile("Show 2.avi", 50);
+
+        ContentPrefetcherImpl contentPrefetcher = new ContentPrefetcherImpl(mimeTypeManager, 16, 1000, directExecutor());
+
+        // Content is not near its end yet
+        contentPrefetcher.contentStreamed(first, 0, 40, 100);
+        contentPrefetcher.contentStreamed(first, 40, 83, 100);
+        assertEquals(0, contentPrefetcher.getPrefetchedSize());
+
+        // Next content is prefetched once, when sequential streaming reaches content end
+        contentPrefetcher.contentStreamed(first, 83, 90, 100);
+        assertEquals(50, contentPrefetcher.getPrefetchedSize());
+        contentPrefetcher.contentStreamed(first, 90, 100, 100);
+        assertEquals(50, contentPrefetcher.getPrefetchedSize());
+    }
+
+    @Test
+    public void testContentStreamedTailProbe() throws IOException {
+        File first = createFile("Show 1.avi", 100);
+        createFile("Show 2.avi", 50);
+
+        ContentPrefetcherImpl contentPrefetcher = new ContentPrefetcherImpl(mimeTypeManager, 16, 1000, directExecutor());
+
+        // Renderer reads content head, then probes content tail
+        contentPrefetcher.contentStreamed(first, 0, 10, 100);
+        contentPrefetcher.contentStreamed(first, 90, 100, 100);
+        assertEquals(0, contentPrefetcher.getPrefetchedSize());
+
+        // Whole tail is streamed
+        contentPrefetcher.contentStreamed(first, 84, 100, 100);
+        assertEquals(50, contentPrefetcher.getPrefetchedSize());
+    }
+
+    @Test
+    public void testContentStreamedLastContent() throws IOException {
+        File last = createFile("Show 1.avi", 100);
+
+        ContentPrefetcherImpl contentPrefetcher = new ContentPrefetcherImpl(mimeTypeManager, 16, 1000, directExecutor());
+        contentPrefetcher.contentStreamed(last, 0, 100, 100);
+        assertEquals(0, contentPrefetcher.getPrefetchedSize());
+    }
+
+    @Test
+    public void testPrefetchLimit() throws IOException {
+        File first = createFile("Show 1.avi", 100);
+        File second = createFile("Show 2.avi", 100);
+        createFile("Show 3.avi", 100);
+
+        ContentPrefetcherImpl contentPrefetcher = new ContentPrefetcherImpl(mimeTypeManager, 16, 150, directExecutor());
+        contentPrefetcher.contentStreamed(first, 0, 100, 100);
+        assertEquals(100, contentPrefetcher.getPrefetchedSize());
+
+        // Prefetching third content would exceed limit
+        contentPrefetcher.contentStreamed(second, 0, 100, 100);
+        assertEquals(100, contentPrefetcher.getPrefetchedSize());
+    }
+
+    @Test
+    public void testPrefetchDisabled() throws IOException {
+        File first = createFile("Show 1.avi", 100);
+        createFile("Show 2.avi", 100);
+
+        Executor executor = createMock(Executor.class);
+        replay(executor);
+
+        ContentPrefetcherImpl contentPrefetcher = new ContentPrefetcherImpl(mimeTypeManager, 0, 1000, executor);
+        contentPrefetcher.contentPlayed(new ContentNode("id", "parentId", "Show 1.avi", first, MimeType.valueOf("video/avi")));
+        contentPrefetcher.contentStreamed(first, 0, 100, 100);
+        assertEquals(0, contentPrefetcher.getPrefetchedSize());
+
+        verify(executor);
+    }
+
+    private File createFile(final String name, final int length) throws IOException {
+        File file = new File(folder.toFile(), name);
+        Files.write(file.toPath(), new byte[length]);
+        file.deleteOnExit();
+        return file;
+    }
+}
@@ -17,6 +17,7 @@
 
 package net.holmes.core.business.media;
 
+import com.google.common.collect.ImmutableSet;
 import net.holmes.core.business.configuration.ConfigurationManager;
 import net.holmes.core.business.configuration.ConfigurationManagerImpl;
 import net.holmes.core.business.configuration.dao.ConfigurationDao;
@@ -27,6 +28,7 @@ import net.holmes.core.business.media.model.MediaNode;
 import net.holmes.core.business.media.model.RootNode;
 import net.holmes.core.business.mimetype.MimeTypeManager;
 import net.holmes.core.business.mimetype.model.MimeType;
+import net.holmes.core.business.mimetype.model.MimeTypeProfile;
 import net.holmes.core.common.event.MediaEvent;
 import net.holmes.core.test.TestConfigurationDao;
 import org.junit.Test;
@@ -35,7 +37,6 @@ import java.io.File;
 import java.net.InetAddress;
 import java.util.*;
 
-import static com.google.common.collect.Lists.newArrayList;
 import static java.util.stream.Collectors.toList;
 import static net.holmes.core.business.media.model.RootNode.*;
 import static net.holmes.core.common.event.MediaEvent.MediaEventType.*;
@@ -140,6 +141,24 @@ public class MediaManagerImplTest {
         verify(mediaDao, mimeTypeManager, localAddress);
     }
 
+    @Test
+    public void testGetContainerUpdateId() {
+        ConfigurationManager configurationManager = new ConfigurationManagerImpl(new TestConfigurationDao());
+        ResourceBundle resourceBundle = ResourceBundle.getBundle("message");
+        MediaDao mediaDao = createMock(MediaDao.class);
+        MimeTypeManager mimeTypeManager = createMock(MimeTypeManager.class);
+        InetAddress localAddress = createMock(InetAddress.class);
+
+        expect(mediaDao.getContainerUpdateId("nodeId")).andReturn(2L);
+
+        replay(mediaDao, mimeTypeManager, localAddress);
+
+        MediaManagerImpl mediaManager = new MediaManagerImpl(configurationManager, resourceBundle, mediaDao, mimeTypeManager, localAddress);
+        assertEquals(2L, mediaManager.getContainerUpdateId("nodeId"));
+
+        verify(mediaDao, mimeTypeManager, localAddress);
+    }
+
     @Test
     public void testHandleMediaEvent() {
         ConfigurationDao configurationDao = new TestConfigurationDao();
@@ -238,7 +257,7 @@ public class MediaManagerImplTest {
         replay(mediaDao, mimeTypeManager, localAddress);
 
         MediaManagerImpl mediaManager = new MediaManagerImpl(configurationManager, resourceBundle, mediaDao, mimeTypeManager, localAddress);
-        MediaSearchRequest request = new MediaSearchRequest(new FolderNode(VIDEO.getId(), VIDEO.getParentId(), VIDEO.getBundleKey()), newArrayList("video/avi"));
+        MediaSearchRequest request = new MediaSearchRequest(new FolderNode(VIDEO.getId(), VIDEO.getParentId(), VIDEO.getBundleKey()), new MimeTypeProfile(ImmutableSet.of("video/avi"), new BitSet()));
         Collection<MediaNode> result = mediaManager.searchChildNodes(request);
 
         assertNotNull(result);
@@ -248,7 +267,6 @@ public class MediaManagerImplTest {
     }
 
     @Test
-    @SuppressWarnings("unchecked")
     public void testSearchChildNodesOfFolder() {
         ConfigurationDao configurationDao = new TestConfigurationDao();
         ConfigurationManager configurationManager = new ConfigurationManagerImpl(configurationDao);
@@ -265,13 +283,13 @@ public class MediaManagerImplTest {
         childNodes.add(new ContentNode("id2", "parentId", "name", new File(""), audioMimeType));
 
         expect(mediaDao.getChildNodes(eq("folderId"))).andReturn(childNodes);
-        expect(mimeTypeManager.isMimeTypeCompliant(eq(videoMimeType), isA(List.class))).andReturn(true);
-        expect(mimeTypeManager.isMimeTypeCompliant(eq(audioMimeType), isA(List.class))).andReturn(false);
+        expect(mimeTypeManager.isMimeTypeSupported(eq(videoMimeType), isA(MimeTypeProfile.class))).andReturn(true);
+        expect(mimeTypeManager.isMimeTypeSupported(eq(audioMimeType), isA(MimeTypeProfile.class))).andReturn(false);
 
         replay(mediaDao, mimeTypeManager, localAddress);
 
         MediaManagerImpl mediaManager = new MediaManagerImpl(configurationManager, resourceBundle, mediaDao, mimeTypeManager, localAddress);
-        MediaSearchRequest request = new MediaSearchRequest(new FolderNode("folderId", "folderParentId", "folderName"), newArrayList("video/avi"));
+        MediaSearchRequest request = new MediaSearchRequest(new FolderNode("folderId", "folderParentId", "folderName"), new MimeTypeProfile(ImmutableSet.of("video/avi"), new BitSet()));
         Collection<MediaNode> result = mediaManager.searchChildNodes(request);
 
         assertNotNull(result);
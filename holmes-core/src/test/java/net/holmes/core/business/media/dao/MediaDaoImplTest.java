@@ -29,6 +29,7 @@ import net.holmes.core.business.mimetype.MimeTypeManager;
 import net.holmes.core.business.mimetype.model.MimeType;
 import net.holmes.core.common.UniqueIdGenerator;
 import net.holmes.core.test.TestConfigurationDao;
+import org.easymock.Capture;
 import org.junit.Test;
 
 import java.nio.file.Path;
@@ -36,6 +37,7 @@ import java.nio.file.Paths;
 import java.util.List;
 import java.util.Optional;
 
+import static com.google.common.collect.Lists.newArrayList;
 import static net.holmes.core.business.media.model.RootNode.VIDEO;
 import static net.holmes.core.business.mimetype.model.MimeType.MIME_TYPE_SUBTITLE;
 import static net.holmes.core.common.MediaType.*;
@@ -149,6 +151,29 @@ public class MediaDaoImplTest {
         verify(mimeTypeManager, mediaIndexDao);
     }
 
+    @Test
+    public void testGetRemoteVideoNode() {
+        ConfigurationManager configurationManager = new ConfigurationManagerImpl(new TestConfigurationDao());
+        MimeTypeManager mimeTypeManager = createMock(MimeTypeManager.class);
+        MediaIndexDao mediaIndexDao = createMock(MediaIndexDao.class);
+
+        MediaIndexElement videoElement = new MediaIndexElement(VIDEO.getId(), TYPE_VIDEO.getValue(), null, "http://localhost/videos/video.avi?key=value", null, false, true);
+        expect(mediaIndexDao.get(eq("nodeId"))).andReturn(videoElement);
+        expect(mimeTypeManager.getMimeType(eq("video.avi"))).andReturn(MimeType.valueOf("video/avi"));
+
+        replay(mimeTypeManager, mediaIndexDao);
+        MediaDaoImpl mediaDao = new MediaDaoImpl(configurationManager, mimeTypeManager, mediaIndexDao);
+
+        Optional<MediaNode> result = mediaDao.getNode("nodeId");
+        assertTrue(result.isPresent());
+        ContentNode contentNode = (ContentNode) result.get();
+        assertFalse(contentNode.isLocalPath());
+        assertEquals("video.avi", contentNode.getName());
+        assertEquals("http://localhost/videos/video.avi?key=value", contentNode.getPath());
+
+        verify(mimeTypeManager, mediaIndexDao);
+    }
+
     @Test
     public void testGetVideoFileNodeNoMimeType() {
         ConfigurationManager configurationManager = new ConfigurationManagerImpl(new TestConfigurationDao());
@@ -207,6 +232,9 @@ public class MediaDaoImplTest {
         expect(mimeTypeManager.getMimeType(eq("video.unknown"))).andReturn(null).atLeastOnce();
         expect(mimeTypeManager.getMimeType(eq("video.srt"))).andReturn(MIME_TYPE_SUBTITLE).atLeastOnce();
 
+        mediaIndexDao.containerListed(eq("nodeId"));
+        expectLastCall();
+
         replay(mimeTypeManager, mediaIndexDao);
         MediaDaoImpl mediaDao = new MediaDaoImpl(configurationManager, mimeTypeManager, mediaIndexDao);
 
@@ -229,6 +257,9 @@ public class MediaDaoImplTest {
 
         expect(mediaIndexDao.get(eq("nodeId"))).andReturn(videoElement);
 
+        mediaIndexDao.containerListed(eq("nodeId"));
+        expectLastCall();
+
         replay(mimeTypeManager, mediaIndexDao);
         MediaDaoImpl mediaDao = new MediaDaoImpl(configurationManager, mimeTypeManager, mediaIndexDao);
 
@@ -255,6 +286,9 @@ public class MediaDaoImplTest {
         expect(mimeTypeManager.getMimeType(eq("video.unknown"))).andReturn(null).atLeastOnce();
         expect(mimeTypeManager.getMimeType(eq("video.srt"))).andReturn(MIME_TYPE_SUBTITLE).atLeastOnce();
 
+        mediaIndexDao.containerListed(eq("nodeId"));
+        expectLastCall();
+
         replay(mimeTypeManager, mediaIndexDao);
         MediaDaoImpl mediaDao = new MediaDaoImpl(configurationManager, mimeTypeManager, mediaIndexDao);
 
@@ -281,6 +315,22 @@ public class MediaDaoImplTest {
         verify(mimeTypeManager, mediaIndexDao);
     }
 
+    @Test
+    public void testGetContainerUpdateId() {
+        ConfigurationManager configurationManager = new ConfigurationManagerImpl(new TestConfigurationDao());
+        MimeTypeManager mimeTypeManager = createMock(MimeTypeManager.class);
+        MediaIndexDao mediaIndexDao = createMock(MediaIndexDao.class);
+
+        expect(mediaIndexDao.getUpdateId("nodeId")).andReturn(2L);
+
+        replay(mimeTypeManager, mediaIndexDao);
+        MediaDaoImpl mediaDao = new MediaDaoImpl(configurationManager, mimeTypeManager, mediaIndexDao);
+
+        assertEquals(2L, mediaDao.getContainerUpdateId("nodeId"));
+
+        verify(mimeTypeManager, mediaIndexDao);
+    }
+
     @Test
     public void testGetRootNodeChildrenNodesOfVideo() {
         ConfigurationManager configurationManager = new ConfigurationManagerImpl(new TestConfigurationDao());
@@ -298,4 +348,35 @@ public class MediaDaoImplTest {
 
         verify(mimeTypeManager, mediaIndexDao);
     }
+
+    @Test
+    public void testGetRootNodeChildrenRemoteContent() {
+        ConfigurationManager configurationManager = createMock(ConfigurationManager.class);
+        MimeTypeManager mimeTypeManager = createMock(MimeTypeManager.class);
+        MediaIndexDao mediaIndexDao = createMock(MediaIndexDao.class);
+
+        ConfigurationNode remoteNode = new ConfigurationNode("remoteId", "remote video", "http://localhost/videos/video.avi", true);
+        ConfigurationNode folderNode = new ConfigurationNode("folderId", "folder", System.getProperty("java.io.tmpdir"));
+        expect(configurationManager.getNodes(VIDEO)).andReturn(newArrayList(remoteNode, folderNode));
+        Capture<MediaIndexElement> remoteElement = newCapture();
+        mediaIndexDao.put(eq("remoteId"), capture(remoteElement));
+        expectLastCall();
+        Capture<MediaIndexElement> folderElement = newCapture();
+        mediaIndexDao.put(eq("folderId"), capture(folderElement));
+        expectLastCall();
+        expect(mimeTypeManager.getMimeType(eq("video.avi"))).andReturn(MimeType.valueOf("video/avi"));
+
+        replay(configurationManager, mimeTypeManager, mediaIndexDao);
+        MediaDaoImpl mediaDao = new MediaDaoImpl(configurationManager, mimeTypeManager, mediaIndexDao);
+
+        List<MediaNode> result = mediaDao.getRootNodeChildren(VIDEO);
+        assertEquals(2, result.size());
+        assertFalse(((ContentNode) result.get(0)).isLocalPath());
+        assertEquals("remote video", result.get(0).getName());
+        assertFalse(remoteElement.getValue().isLocalPath());
+        assertTrue(result.get(1) instanceof FolderNode);
+        assertTrue(folderElement.getValue().isLocalPath());
+
+        verify(configurationManager, mimeTypeManager, mediaIndexDao);
+    }
 }
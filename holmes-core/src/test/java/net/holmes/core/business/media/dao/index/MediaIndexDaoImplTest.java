@@ -17,12 +17,16 @@
 
 package net.holmes.core.business.media.dao.index;
 
+import com.google.common.eventbus.EventBus;
 import net.holmes.core.business.configuration.model.ConfigurationNode;
 import net.holmes.core.business.media.model.RootNode;
 import net.holmes.core.common.event.ConfigurationEvent;
+import net.holmes.core.common.event.MediaEvent;
 import org.junit.Test;
 
 import static net.holmes.core.common.event.ConfigurationEvent.EventType.*;
+import static net.holmes.core.common.event.MediaEvent.MediaEventType.UPDATE_CONTAINER;
+import static org.easymock.EasyMock.*;
 import static org.junit.Assert.*;
 
 public class MediaIndexDaoImplTest {
@@ -32,7 +36,7 @@ public class MediaIndexDaoImplTest {
      */
     @Test
     public void testAddToMediaIndex() {
-        MediaIndexDaoImpl mediaIndexDao = new MediaIndexDaoImpl();
+        MediaIndexDaoImpl mediaIndexDao = new MediaIndexDaoImpl(new EventBus());
 
         String uuid1 = mediaIndexDao.add(new MediaIndexElement("parentId", "mediaType", "mimeType", "path", "name", true, false));
         MediaIndexElement indexElement = mediaIndexDao.get(uuid1);
@@ -47,7 +51,7 @@ public class MediaIndexDaoImplTest {
 
     @Test
     public void testRemoveChildrenMediaIndex() {
-        MediaIndexDaoImpl mediaIndexDao = new MediaIndexDaoImpl();
+        MediaIndexDaoImpl mediaIndexDao = new MediaIndexDaoImpl(new EventBus());
 
         String uuid1 = mediaIndexDao.add(new MediaIndexElement("parentId", "mediaType", "mimeType", "path", "name", true, false));
         assertNotNull(mediaIndexDao.get(uuid1));
@@ -58,9 +62,71 @@ public class MediaIndexDaoImplTest {
         assertNull(mediaIndexDao.get(uuid2));
     }
 
+    @Test
+    public void testContainerUpdateId() {
+        EventBus eventBus = createMock(EventBus.class);
+
+        eventBus.post(isA(MediaEvent.class));
+        expectLastCall().times(2);
+
+        replay(eventBus);
+
+        MediaIndexDaoImpl mediaIndexDao = new MediaIndexDaoImpl(eventBus);
+        assertEquals(0L, mediaIndexDao.getUpdateId("parentId"));
+
+        // First listing does not update container
+        String uuid1 = mediaIndexDao.add(new MediaIndexElement("parentId", "mediaType", "mimeType", "path", "name", true, false));
+        mediaIndexDao.containerListed("parentId");
+        assertEquals(0L, mediaIndexDao.getUpdateId("parentId"));
+
+        // Same children listed again
+        mediaIndexDao.add(new MediaIndexElement("parentId", "mediaType", "mimeType", "path", "name", true, false));
+        mediaIndexDao.containerListed("parentId");
+        assertEquals(0L, mediaIndexDao.getUpdateId("parentId"));
+
+        // New children in listed container
+        mediaIndexDao.add(new MediaIndexElement("parentId", "mediaType", "mimeType", "path2", "name2", true, false));
+        mediaIndexDao.add(new MediaIndexElement("parentId", "mediaType", "mimeType", "path3", "name3", true, false));
+        assertEquals(0L, mediaIndexDao.getUpdateId("parentId"));
+        mediaIndexDao.containerListed("parentId");
+        assertEquals(1L, mediaIndexDao.getUpdateId("parentId"));
+
+        // Remove child element
+        mediaIndexDao.add(new MediaIndexElement(uuid1, "mediaType", "mimeType", "path", "name", true, false));
+        assertEquals(0L, mediaIndexDao.getUpdateId(uuid1));
+        mediaIndexDao.removeChildren(uuid1);
+        assertEquals(1L, mediaIndexDao.getUpdateId(uuid1));
+        assertEquals(1L, mediaIndexDao.getUpdateId("parentId"));
+
+        verify(eventBus);
+    }
+
+    @Test
+    public void testContainerUpdateEvent() {
+        EventBus eventBus = createMock(EventBus.class);
+
+        eventBus.post(isA(MediaEvent.class));
+        expectLastCall().andAnswer(() -> {
+            MediaEvent event = (MediaEvent) getCurrentArguments()[0];
+            assertEquals(UPDATE_CONTAINER, event.getType());
+            assertEquals(RootNode.VIDEO.getId(), event.getParameter());
+            return null;
+        }).times(2);
+
+        replay(eventBus);
+
+        MediaIndexDaoImpl mediaIndexDao = new MediaIndexDaoImpl(eventBus);
+        mediaIndexDao.handleConfigEvent(new ConfigurationEvent(ADD_FOLDER, new ConfigurationNode("id", "label", "path"), RootNode.VIDEO));
+        assertEquals(1L, mediaIndexDao.getUpdateId(RootNode.VIDEO.getId()));
+        mediaIndexDao.handleConfigEvent(new ConfigurationEvent(DELETE_FOLDER, new ConfigurationNode("id", "label", "path"), RootNode.VIDEO));
+        assertEquals(2L, mediaIndexDao.getUpdateId(RootNode.VIDEO.getId()));
+
+        verify(eventBus);
+    }
+
     @Test
     public void testCleanMediaIndexNonExistingParent() {
-        MediaIndexDaoImpl mediaIndexDao = new MediaIndexDaoImpl();
+        MediaIndexDaoImpl mediaIndexDao = new MediaIndexDaoImpl(new EventBus());
 
         String uuid1 = mediaIndexDao.add(new MediaIndexElement("parentId", "mediaType", "mimeType", "path", "name", true, false));
         assertNotNull(mediaIndexDao.get(uuid1));
@@ -70,7 +136,7 @@ public class MediaIndexDaoImplTest {
 
     @Test
     public void testCleanMediaIndexNonExistingFile() {
-        MediaIndexDaoImpl mediaIndexDao = new MediaIndexDaoImpl();
+        MediaIndexDaoImpl mediaIndexDao = new MediaIndexDaoImpl(new EventBus());
 
         String uuid1 = mediaIndexDao.add(new MediaIndexElement("1_VIDEOS", "mediaType", "mimeType", "path", "name", true, false));
         assertNotNull(mediaIndexDao.get(uuid1));
@@ -79,7 +145,7 @@ public class MediaIndexDaoImplTest {
     }
     @Test
     public void testHandleConfigEventAdd() {
-        MediaIndexDaoImpl mediaIndexDao = new MediaIndexDaoImpl();
+        MediaIndexDaoImpl mediaIndexDao = new MediaIndexDaoImpl(new EventBus());
 
         ConfigurationEvent configurationEvent = new ConfigurationEvent(ADD_FOLDER, new ConfigurationNode("id", "label", "path"), RootNode.VIDEO);
         mediaIndexDao.handleConfigEvent(configurationEvent);
@@ -87,7 +153,7 @@ public class MediaIndexDaoImplTest {
 
     @Test
     public void testHandleConfigEventUpdate() {
-        MediaIndexDaoImpl mediaIndexDao = new MediaIndexDaoImpl();
+        MediaIndexDaoImpl mediaIndexDao = new MediaIndexDaoImpl(new EventBus());
 
         ConfigurationEvent configurationEvent = new ConfigurationEvent(UPDATE_FOLDER, new ConfigurationNode("id", "label", "path"), RootNode.VIDEO);
         mediaIndexDao.handleConfigEvent(configurationEvent);
@@ -95,7 +161,7 @@ public class MediaIndexDaoImplTest {
 
     @Test
     public void testHandleConfigEventDelete() {
-        MediaIndexDaoImpl mediaIndexDao = new MediaIndexDaoImpl();
+        MediaIndexDaoImpl mediaIndexDao = new MediaIndexDaoImpl(new EventBus());
 
         ConfigurationEvent configurationEvent = new ConfigurationEvent(DELETE_FOLDER, new ConfigurationNode("id", "label", "path"), RootNode.VIDEO);
         mediaIndexDao.handleConfigEvent(configurationEvent);
@@ -103,7 +169,7 @@ public class MediaIndexDaoImplTest {
 
     @Test
     public void testHandleConfigEventUnknown() {
-        MediaIndexDaoImpl mediaIndexDao = new MediaIndexDaoImpl();
+        MediaIndexDaoImpl mediaIndexDao = new MediaIndexDaoImpl(new EventBus());
 
         ConfigurationEvent configurationEvent = new ConfigurationEvent(ConfigurationEvent.EventType.UNKNOWN, new ConfigurationNode("id", "label", "path"), RootNode.VIDEO);
         mediaIndexDao.handleConfigEvent(configurationEvent);
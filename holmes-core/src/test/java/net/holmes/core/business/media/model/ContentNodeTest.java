@@ -69,6 +69,22 @@ public class ContentNodeTest {
         assertEquals(node.getPath(), file.getAbsolutePath());
     }
 
+    /**
+     * Method: isLocalPath()
+     */
+    @Test
+    public void testRemoteContentNode() throws Exception {
+        File file = File.createTempFile(testName.getMethodName(), "avi");
+        file.deleteOnExit();
+        ContentNode node = new ContentNode("id", "parentId", "name", "http://localhost/video.avi", MimeType.valueOf("video/x-msvideo"));
+        assertFalse(node.isLocalPath());
+        assertEquals("http://localhost/video.avi", node.getPath());
+        assertNull(node.getSize());
+        assertNull(node.getModifiedDate());
+        assertTrue(buildContentNode(file).isLocalPath());
+        assertNotEquals(node, new ContentNode("id", "parentId", "name", "http://localhost/video2.avi", MimeType.valueOf("video/x-msvideo")));
+    }
+
     /**
      * Method: hashCode()
      */
@@ -18,6 +18,7 @@ package net.holmes.core.business.mimetype;
 
 import net.holmes.core.business.mimetype.dao.MimeTypeDaoImpl;
 import net.holmes.core.business.mimetype.model.MimeType;
+import net.holmes.core.business.mimetype.model.MimeTypeProfile;
 import org.junit.Test;
 
 import java.util.ArrayList;
@@ -59,4 +60,41 @@ public class MimeTypeManagerImplTest {
         assertFalse(mimeTypeManager.isMimeTypeCompliant(mimeType, newArrayList("video/*")));
         assertTrue(mimeTypeManager.isMimeTypeCompliant(mimeType, newArrayList("*/*")));
     }
+
+    @Test
+    public void testGetMimeTypeProfile() {
+        MimeTypeManager mimeTypeManager = new MimeTypeManagerImpl(new MimeTypeDaoImpl("/mimetypes.properties"));
+
+        MimeTypeProfile mimeTypeProfile = mimeTypeManager.getMimeTypeProfile(newArrayList("video/avi", "audio/mpeg"));
+        assertNotNull(mimeTypeProfile);
+        assertEquals(2, mimeTypeProfile.getMimeTypes().size());
+        assertSame(mimeTypeProfile, mimeTypeManager.getMimeTypeProfile(newArrayList("audio/mpeg", "video/avi", "audio/mpeg")));
+        assertNotSame(mimeTypeProfile, mimeTypeManager.getMimeTypeProfile(newArrayList("video/avi")));
+        assertSame(mimeTypeManager.getMimeTypeProfile(null), mimeTypeManager.getMimeTypeProfile(new ArrayList<>(0)));
+    }
+
+    @Test
+    public void testIsMimeTypeSupported() {
+        MimeTypeManager mimeTypeManager = new MimeTypeManagerImpl(new MimeTypeDaoImpl("/mimetypes.properties"));
+
+        MimeTypeProfile mimeTypeProfile = mimeTypeManager.getMimeTypeProfile(newArrayList("video/avi"));
+        assertTrue(mimeTypeManager.isMimeTypeSupported(MimeType.valueOf("video/avi"), mimeTypeProfile));
+        assertTrue(mimeTypeManager.isMimeTypeSupported(MimeType.valueOf("video/x-msvideo"), mimeTypeProfile));
+        assertFalse(mimeTypeManager.isMimeTypeSupported(MimeType.valueOf("audio/mpeg"), mimeTypeProfile));
+        assertFalse(mimeTypeManager.isMimeTypeSupported(MimeType.valueOf("video/unknown"), mimeTypeProfile));
+        assertTrue(mimeTypeManager.isMimeTypeSupported(MimeType.valueOf(""), mimeTypeProfile));
+        assertTrue(mimeTypeManager.isMimeTypeSupported(null, mimeTypeProfile));
+        assertTrue(mimeTypeManager.isMimeTypeSupported(MimeType.valueOf("audio/mpeg"), null));
+
+        mimeTypeProfile = mimeTypeManager.getMimeTypeProfile(newArrayList("audio/*"));
+        assertTrue(mimeTypeManager.isMimeTypeSupported(MimeType.valueOf("audio/mpeg"), mimeTypeProfile));
+        assertTrue(mimeTypeManager.isMimeTypeSupported(MimeType.valueOf("audio/unknown"), mimeTypeProfile));
+        assertFalse(mimeTypeManager.isMimeTypeSupported(MimeType.valueOf("video/avi"), mimeTypeProfile));
+
+        mimeTypeProfile = mimeTypeManager.getMimeTypeProfile(newArrayList("*/*"));
+        assertTrue(mimeTypeManager.isMimeTypeSupported(MimeType.valueOf("video/avi"), mimeTypeProfile));
+
+        mimeTypeProfile = mimeTypeManager.getMimeTypeProfile(new ArrayList<>(0));
+        assertTrue(mimeTypeManager.isMimeTypeSupported(MimeType.valueOf("image/jpeg"), mimeTypeProfile));
+    }
 }
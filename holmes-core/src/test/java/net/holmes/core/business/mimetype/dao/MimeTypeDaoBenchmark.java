@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2012-2015  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.holmes.core.business.mimetype.dao;
+
+import net.holmes.core.business.mimetype.model.MimeType;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+import static com.google.common.io.Files.getFileExtension;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Mime type dao benchmark: compiled extension trie versus properties lookup.
+ * <p>
+ * Run with: java -cp target/test-classes:[test classpath] net.holmes.core.business.mimetype.dao.MimeTypeDaoBenchmark
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MimeTypeDaoBenchmark {
+    private static final String[] FILE_NAMES = {"/media/movies/Some Movie (2015).avi", "/media/music/Artist - Song.MP3",
+            "/media/pictures/IMG_0001.JPG", "/media/movies/Some Movie (2015).srt", "/media/unknown/file.blabla",
+            "/media/unknown/README"};
+
+    private MimeTypeDao mimeTypeDao;
+    private Properties properties;
+
+    @Setup
+    public void setup() throws IOException {
+        mimeTypeDao = new MimeTypeDaoImpl("/mimetypes.properties");
+        properties = new Properties();
+        try (InputStream in = getClass().getResourceAsStream("/mimetypes.properties")) {
+            properties.load(in);
+        }
+    }
+
+    @Benchmark
+    public void compiledLookup(final Blackhole blackhole) {
+        for (String fileName : FILE_NAMES) {
+            blackhole.consume(mimeTypeDao.getMimeType(fileName));
+        }
+    }
+
+    @Benchmark
+    public void propertiesLookup(final Blackhole blackhole) {
+        // Previous implementation: extension substring, lower case copy, synchronized lookup and mime type parsing
+        for (String fileName : FILE_NAMES) {
+            blackhole.consume(MimeType.valueOf(properties.getProperty(getFileExtension(fileName).toLowerCase())));
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(MimeTypeDaoBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -21,6 +21,8 @@ import net.holmes.core.common.MediaType;
 import net.holmes.core.common.exception.HolmesRuntimeException;
 import org.junit.Test;
 
+import java.util.Collection;
+
 import static org.junit.Assert.*;
 
 public class MimeTypeDaoImplTest {
@@ -41,6 +43,33 @@ public class MimeTypeDaoImplTest {
         assertEquals("video/avi", mimeType.getMimeType());
     }
 
+    /**
+     * Test mime type lookup is case insensitive and returns shared instances.
+     */
+    @Test
+    public void testMimeTypeSharedInstance() {
+        MimeTypeDao mimeTypeDao = new MimeTypeDaoImpl("/mimetypes.properties");
+
+        MimeType mimeType = mimeTypeDao.getMimeType("movie.avi");
+        assertSame(mimeType, mimeTypeDao.getMimeType("/path/to/MOVIE.AVI"));
+        assertSame(mimeType, mimeTypeDao.getAliasMimeType(MimeType.valueOf("video/x-msvideo")));
+        assertSame(MimeType.MIME_TYPE_SUBTITLE, mimeTypeDao.getMimeType("movie.srt"));
+    }
+
+    /**
+     * Test file name without extension.
+     */
+    @Test
+    public void testNoExtension() {
+        MimeTypeDao mimeTypeDao = new MimeTypeDaoImpl("/mimetypes.properties");
+
+        assertNull(mimeTypeDao.getMimeType("avi"));
+        assertNull(mimeTypeDao.getMimeType("movie."));
+        assertNull(mimeTypeDao.getMimeType("/path.avi/movie"));
+        assertNull(mimeTypeDao.getMimeType("movie.xavi"));
+        assertNotNull(mimeTypeDao.getMimeType("/path/.avi"));
+    }
+
     /**
      * Test bad mime type.
      */
@@ -81,4 +110,14 @@ public class MimeTypeDaoImplTest {
         assertNull(aliasMimeType);
     }
 
+    @Test
+    public void testGetMimeTypes() {
+        MimeTypeDao mimeTypeDao = new MimeTypeDaoImpl("/mimetypes.properties");
+
+        Collection<String> mimeTypes = mimeTypeDao.getMimeTypes();
+        assertEquals(6, mimeTypes.size());
+        assertTrue(mimeTypes.contains("video/avi"));
+        assertTrue(mimeTypes.contains("video/x-msvideo"));
+        assertFalse(mimeTypes.contains("avi"));
+    }
 }
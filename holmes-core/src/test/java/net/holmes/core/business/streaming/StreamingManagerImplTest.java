@@ -18,6 +18,7 @@
 package net.holmes.core.business.streaming;
 
 import net.holmes.core.business.configuration.ConfigurationManager;
+import net.holmes.core.business.media.ContentPrefetcher;
 import net.holmes.core.business.media.model.AbstractNode;
 import net.holmes.core.business.media.model.ContentNode;
 import net.holmes.core.business.mimetype.model.MimeType;
@@ -34,6 +35,7 @@ import org.junit.Test;
 
 import java.io.File;
 import java.io.IOException;
+import java.net.InetAddress;
 
 import static net.holmes.core.business.streaming.event.StreamingEvent.StreamingEventType.*;
 import static net.holmes.core.business.streaming.session.SessionStatus.*;
@@ -50,17 +52,18 @@ public class StreamingManagerImplTest {
         DeviceStreamer upnpDeviceStreamer = createMock(DeviceStreamer.class);
         DeviceStreamer airplayDeviceStreamer = createMock(DeviceStreamer.class);
         ConfigurationManager configurationManager = createMock(ConfigurationManager.class);
+        ContentPrefetcher contentPrefetcher = createMock(ContentPrefetcher.class);
 
         deviceDao.addDevice(isA(UpnpDevice.class));
         expectLastCall().atLeastOnce();
         expect(configurationManager.getParameter(STREAMING_STATUS_UPDATE_DELAY_SECONDS)).andReturn(0).atLeastOnce();
 
-        replay(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        replay(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
 
-        StreamingManagerImpl streamingManager = new StreamingManagerImpl(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
-        streamingManager.addDevice(new UpnpDevice("id", "name", null, null, null));
+        StreamingManagerImpl streamingManager = new StreamingManagerImpl(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
+        streamingManager.addDevice(new UpnpDevice("id", "name", null, null, null, null));
 
-        verify(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        verify(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
     }
 
     @Test
@@ -70,17 +73,18 @@ public class StreamingManagerImplTest {
         DeviceStreamer upnpDeviceStreamer = createMock(DeviceStreamer.class);
         DeviceStreamer airplayDeviceStreamer = createMock(DeviceStreamer.class);
         ConfigurationManager configurationManager = createMock(ConfigurationManager.class);
+        ContentPrefetcher contentPrefetcher = createMock(ContentPrefetcher.class);
 
         deviceDao.addDevice(isA(AirplayDevice.class));
         expectLastCall().atLeastOnce();
         expect(configurationManager.getParameter(STREAMING_STATUS_UPDATE_DELAY_SECONDS)).andReturn(0).atLeastOnce();
 
-        replay(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        replay(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
 
-        StreamingManagerImpl streamingManager = new StreamingManagerImpl(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        StreamingManagerImpl streamingManager = new StreamingManagerImpl(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
         streamingManager.addDevice(new AirplayDevice("id", "name", null, 0, null));
 
-        verify(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        verify(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
     }
 
     @Test
@@ -90,18 +94,19 @@ public class StreamingManagerImplTest {
         DeviceStreamer upnpDeviceStreamer = createMock(DeviceStreamer.class);
         DeviceStreamer airplayDeviceStreamer = createMock(DeviceStreamer.class);
         ConfigurationManager configurationManager = createMock(ConfigurationManager.class);
+        ContentPrefetcher contentPrefetcher = createMock(ContentPrefetcher.class);
 
         expect(deviceDao.removeDevice("deviceId")).andReturn(true);
         sessionDao.removeDevice("deviceId");
         expectLastCall();
         expect(configurationManager.getParameter(STREAMING_STATUS_UPDATE_DELAY_SECONDS)).andReturn(0).atLeastOnce();
 
-        replay(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        replay(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
 
-        StreamingManagerImpl streamingManager = new StreamingManagerImpl(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        StreamingManagerImpl streamingManager = new StreamingManagerImpl(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
         streamingManager.removeDevice("deviceId");
 
-        verify(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        verify(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
     }
 
     @Test
@@ -111,16 +116,17 @@ public class StreamingManagerImplTest {
         DeviceStreamer upnpDeviceStreamer = createMock(DeviceStreamer.class);
         DeviceStreamer airplayDeviceStreamer = createMock(DeviceStreamer.class);
         ConfigurationManager configurationManager = createMock(ConfigurationManager.class);
+        ContentPrefetcher contentPrefetcher = createMock(ContentPrefetcher.class);
 
         expect(deviceDao.removeDevice("deviceId")).andReturn(false);
         expect(configurationManager.getParameter(STREAMING_STATUS_UPDATE_DELAY_SECONDS)).andReturn(0).atLeastOnce();
 
-        replay(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        replay(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
 
-        StreamingManagerImpl streamingManager = new StreamingManagerImpl(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        StreamingManagerImpl streamingManager = new StreamingManagerImpl(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
         streamingManager.removeDevice("deviceId");
 
-        verify(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        verify(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
     }
 
     @Test
@@ -130,16 +136,38 @@ public class StreamingManagerImplTest {
         DeviceStreamer upnpDeviceStreamer = createMock(DeviceStreamer.class);
         DeviceStreamer airplayDeviceStreamer = createMock(DeviceStreamer.class);
         ConfigurationManager configurationManager = createMock(ConfigurationManager.class);
+        ContentPrefetcher contentPrefetcher = createMock(ContentPrefetcher.class);
 
         expect(deviceDao.findDevices("hostAddress")).andReturn(null);
         expect(configurationManager.getParameter(STREAMING_STATUS_UPDATE_DELAY_SECONDS)).andReturn(0).atLeastOnce();
 
-        replay(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        replay(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
 
-        StreamingManagerImpl streamingManager = new StreamingManagerImpl(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        StreamingManagerImpl streamingManager = new StreamingManagerImpl(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
         streamingManager.findDevices("hostAddress");
 
-        verify(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        verify(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
+    }
+
+    @Test
+    public void testGetMimeTypeProfile() {
+        DeviceDao deviceDao = createMock(DeviceDao.class);
+        SessionDao sessionDao = createMock(SessionDao.class);
+        DeviceStreamer upnpDeviceStreamer = createMock(DeviceStreamer.class);
+        DeviceStreamer airplayDeviceStreamer = createMock(DeviceStreamer.class);
+        ConfigurationManager configurationManager = createMock(ConfigurationManager.class);
+        ContentPrefetcher contentPrefetcher = createMock(ContentPrefetcher.class);
+        InetAddress address = InetAddress.getLoopbackAddress();
+
+        expect(deviceDao.getMimeTypeProfile(address, true)).andReturn(null);
+        expect(configurationManager.getParameter(STREAMING_STATUS_UPDATE_DELAY_SECONDS)).andReturn(0).atLeastOnce();
+
+        replay(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
+
+        StreamingManagerImpl streamingManager = new StreamingManagerImpl(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
+        assertNull(streamingManager.getMimeTypeProfile(address, true));
+
+        verify(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
     }
 
     @Test
@@ -149,16 +177,17 @@ public class StreamingManagerImplTest {
         DeviceStreamer upnpDeviceStreamer = createMock(DeviceStreamer.class);
         DeviceStreamer airplayDeviceStreamer = createMock(DeviceStreamer.class);
         ConfigurationManager configurationManager = createMock(ConfigurationManager.class);
+        ContentPrefetcher contentPrefetcher = createMock(ContentPrefetcher.class);
 
         expect(deviceDao.getDevices()).andReturn(null);
         expect(configurationManager.getParameter(STREAMING_STATUS_UPDATE_DELAY_SECONDS)).andReturn(0).atLeastOnce();
 
-        replay(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        replay(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
 
-        StreamingManagerImpl streamingManager = new StreamingManagerImpl(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        StreamingManagerImpl streamingManager = new StreamingManagerImpl(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
         streamingManager.getDevices();
 
-        verify(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        verify(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
     }
 
     @Test
@@ -168,18 +197,19 @@ public class StreamingManagerImplTest {
         DeviceStreamer upnpDeviceStreamer = createMock(DeviceStreamer.class);
         DeviceStreamer airplayDeviceStreamer = createMock(DeviceStreamer.class);
         ConfigurationManager configurationManager = createMock(ConfigurationManager.class);
+        ContentPrefetcher contentPrefetcher = createMock(ContentPrefetcher.class);
 
         expect(deviceDao.getDevice("deviceId")).andReturn(null);
         expect(configurationManager.getParameter(STREAMING_STATUS_UPDATE_DELAY_SECONDS)).andReturn(0).atLeastOnce();
 
-        replay(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        replay(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
 
-        StreamingManagerImpl streamingManager = new StreamingManagerImpl(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        StreamingManagerImpl streamingManager = new StreamingManagerImpl(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
         Device device = streamingManager.getDevice("deviceId");
 
         assertNull(device);
 
-        verify(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        verify(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
     }
 
     @Test
@@ -189,16 +219,17 @@ public class StreamingManagerImplTest {
         DeviceStreamer upnpDeviceStreamer = createMock(DeviceStreamer.class);
         DeviceStreamer airplayDeviceStreamer = createMock(DeviceStreamer.class);
         ConfigurationManager configurationManager = createMock(ConfigurationManager.class);
+        ContentPrefetcher contentPrefetcher = createMock(ContentPrefetcher.class);
 
         expect(sessionDao.getSession("deviceId")).andReturn(null);
         expect(configurationManager.getParameter(STREAMING_STATUS_UPDATE_DELAY_SECONDS)).andReturn(0).atLeastOnce();
 
-        replay(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        replay(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
 
-        StreamingManagerImpl streamingManager = new StreamingManagerImpl(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        StreamingManagerImpl streamingManager = new StreamingManagerImpl(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
         streamingManager.getSession("deviceId");
 
-        verify(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        verify(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
     }
 
     @Test(expected = UnknownSessionException.class)
@@ -208,16 +239,17 @@ public class StreamingManagerImplTest {
         DeviceStreamer upnpDeviceStreamer = createMock(DeviceStreamer.class);
         DeviceStreamer airplayDeviceStreamer = createMock(DeviceStreamer.class);
         ConfigurationManager configurationManager = createMock(ConfigurationManager.class);
+        ContentPrefetcher contentPrefetcher = createMock(ContentPrefetcher.class);
 
         expect(sessionDao.getSession("deviceId")).andThrow(new UnknownSessionException("deviceId"));
         expect(configurationManager.getParameter(STREAMING_STATUS_UPDATE_DELAY_SECONDS)).andReturn(0).atLeastOnce();
 
-        replay(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        replay(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
 
-        StreamingManagerImpl streamingManager = new StreamingManagerImpl(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        StreamingManagerImpl streamingManager = new StreamingManagerImpl(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
         streamingManager.getSession("deviceId");
 
-        verify(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        verify(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
     }
 
     @Test
@@ -228,23 +260,26 @@ public class StreamingManagerImplTest {
         DeviceStreamer upnpDeviceStreamer = createMock(DeviceStreamer.class);
         DeviceStreamer airplayDeviceStreamer = createMock(DeviceStreamer.class);
         ConfigurationManager configurationManager = createMock(ConfigurationManager.class);
+        ContentPrefetcher contentPrefetcher = createMock(ContentPrefetcher.class);
 
-        expect(deviceDao.getDevice("deviceId")).andReturn(new UpnpDevice("id", "name", null, null, null));
+        expect(deviceDao.getDevice("deviceId")).andReturn(new UpnpDevice("id", "name", null, null, null, null));
         sessionDao.initSession("deviceId", "contentUrl", "contentName");
         expectLastCall();
         upnpDeviceStreamer.play(isA(UpnpDevice.class), eq("contentUrl"), isA(AbstractNode.class));
         expectLastCall();
+        contentPrefetcher.contentPlayed(isA(ContentNode.class));
+        expectLastCall();
         expect(configurationManager.getParameter(STREAMING_STATUS_UPDATE_DELAY_SECONDS)).andReturn(0).atLeastOnce();
 
-        replay(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        replay(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
 
         File file = File.createTempFile("contentNode", "avi");
         file.deleteOnExit();
 
-        StreamingManagerImpl streamingManager = new StreamingManagerImpl(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        StreamingManagerImpl streamingManager = new StreamingManagerImpl(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
         streamingManager.play("deviceId", "contentUrl", new ContentNode("contentNodeId", "parentNodeId", "contentName", file, MimeType.valueOf("video/avi")));
 
-        verify(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        verify(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
     }
 
     @Test
@@ -255,6 +290,7 @@ public class StreamingManagerImplTest {
         DeviceStreamer upnpDeviceStreamer = createMock(DeviceStreamer.class);
         DeviceStreamer airplayDeviceStreamer = createMock(DeviceStreamer.class);
         ConfigurationManager configurationManager = createMock(ConfigurationManager.class);
+        ContentPrefetcher contentPrefetcher = createMock(ContentPrefetcher.class);
 
         expect(deviceDao.getDevice("deviceId")).andReturn(new AirplayDevice("id", "name", null, 0, null));
         sessionDao.initSession("deviceId", "contentUrl", "contentName");
@@ -263,16 +299,18 @@ public class StreamingManagerImplTest {
 
         airplayDeviceStreamer.play(isA(AirplayDevice.class), eq("contentUrl"), isA(AbstractNode.class));
         expectLastCall();
+        contentPrefetcher.contentPlayed(isA(ContentNode.class));
+        expectLastCall();
 
-        replay(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        replay(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
 
         File file = File.createTempFile("contentNode", "avi");
         file.deleteOnExit();
 
-        StreamingManagerImpl streamingManager = new StreamingManagerImpl(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        StreamingManagerImpl streamingManager = new StreamingManagerImpl(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
         streamingManager.play("deviceId", "contentUrl", new ContentNode("contentNodeId", "parentNodeId", "contentName", file, MimeType.valueOf("video/avi")));
 
-        verify(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        verify(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
     }
 
     @Test(expected = IllegalArgumentException.class)
@@ -282,21 +320,22 @@ public class StreamingManagerImplTest {
         DeviceStreamer upnpDeviceStreamer = createMock(DeviceStreamer.class);
         DeviceStreamer airplayDeviceStreamer = createMock(DeviceStreamer.class);
         ConfigurationManager configurationManager = createMock(ConfigurationManager.class);
+        ContentPrefetcher contentPrefetcher = createMock(ContentPrefetcher.class);
 
         expect(deviceDao.getDevice("deviceId")).andReturn(new FakeDevice());
         sessionDao.initSession("deviceId", "contentUrl", "contentName");
         expectLastCall();
         expect(configurationManager.getParameter(STREAMING_STATUS_UPDATE_DELAY_SECONDS)).andReturn(0).atLeastOnce();
 
-        replay(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        replay(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
 
         File file = File.createTempFile("contentNode", "avi");
         file.deleteOnExit();
 
-        StreamingManagerImpl streamingManager = new StreamingManagerImpl(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        StreamingManagerImpl streamingManager = new StreamingManagerImpl(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
         streamingManager.play("deviceId", "contentUrl", new ContentNode("contentNodeId", "parentNodeId", "contentName", file, MimeType.valueOf("video/avi")));
 
-        verify(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        verify(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
     }
 
     @Test
@@ -307,18 +346,19 @@ public class StreamingManagerImplTest {
         DeviceStreamer upnpDeviceStreamer = createMock(DeviceStreamer.class);
         DeviceStreamer airplayDeviceStreamer = createMock(DeviceStreamer.class);
         ConfigurationManager configurationManager = createMock(ConfigurationManager.class);
+        ContentPrefetcher contentPrefetcher = createMock(ContentPrefetcher.class);
 
-        expect(deviceDao.getDevice("deviceId")).andReturn(new UpnpDevice("id", "name", null, null, null));
+        expect(deviceDao.getDevice("deviceId")).andReturn(new UpnpDevice("id", "name", null, null, null, null));
         upnpDeviceStreamer.stop(isA(UpnpDevice.class));
         expectLastCall();
         expect(configurationManager.getParameter(STREAMING_STATUS_UPDATE_DELAY_SECONDS)).andReturn(0).atLeastOnce();
 
-        replay(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        replay(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
 
-        StreamingManagerImpl streamingManager = new StreamingManagerImpl(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        StreamingManagerImpl streamingManager = new StreamingManagerImpl(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
         streamingManager.stop("deviceId");
 
-        verify(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        verify(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
     }
 
     @Test
@@ -329,18 +369,19 @@ public class StreamingManagerImplTest {
         DeviceStreamer upnpDeviceStreamer = createMock(DeviceStreamer.class);
         DeviceStreamer airplayDeviceStreamer = createMock(DeviceStreamer.class);
         ConfigurationManager configurationManager = createMock(ConfigurationManager.class);
+        ContentPrefetcher contentPrefetcher = createMock(ContentPrefetcher.class);
 
         expect(deviceDao.getDevice("deviceId")).andReturn(new AirplayDevice("id", "name", null, 0, null));
         airplayDeviceStreamer.stop(isA(AirplayDevice.class));
         expectLastCall();
         expect(configurationManager.getParameter(STREAMING_STATUS_UPDATE_DELAY_SECONDS)).andReturn(0).atLeastOnce();
 
-        replay(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        replay(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
 
-        StreamingManagerImpl streamingManager = new StreamingManagerImpl(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        StreamingManagerImpl streamingManager = new StreamingManagerImpl(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
         streamingManager.stop("deviceId");
 
-        verify(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        verify(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
     }
 
     @Test(expected = IllegalArgumentException.class)
@@ -350,16 +391,17 @@ public class StreamingManagerImplTest {
         DeviceStreamer upnpDeviceStreamer = createMock(DeviceStreamer.class);
         DeviceStreamer airplayDeviceStreamer = createMock(DeviceStreamer.class);
         ConfigurationManager configurationManager = createMock(ConfigurationManager.class);
+        ContentPrefetcher contentPrefetcher = createMock(ContentPrefetcher.class);
 
         expect(deviceDao.getDevice("deviceId")).andReturn(new FakeDevice());
         expect(configurationManager.getParameter(STREAMING_STATUS_UPDATE_DELAY_SECONDS)).andReturn(0).atLeastOnce();
 
-        replay(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        replay(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
 
-        StreamingManagerImpl streamingManager = new StreamingManagerImpl(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        StreamingManagerImpl streamingManager = new StreamingManagerImpl(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
         streamingManager.stop("deviceId");
 
-        verify(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        verify(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
     }
 
     @Test
@@ -370,18 +412,19 @@ public class StreamingManagerImplTest {
         DeviceStreamer upnpDeviceStreamer = createMock(DeviceStreamer.class);
         DeviceStreamer airplayDeviceStreamer = createMock(DeviceStreamer.class);
         ConfigurationManager configurationManager = createMock(ConfigurationManager.class);
+        ContentPrefetcher contentPrefetcher = createMock(ContentPrefetcher.class);
 
-        expect(deviceDao.getDevice("deviceId")).andReturn(new UpnpDevice("id", "name", null, null, null));
+        expect(deviceDao.getDevice("deviceId")).andReturn(new UpnpDevice("id", "name", null, null, null, null));
         upnpDeviceStreamer.pause(isA(UpnpDevice.class));
         expectLastCall();
         expect(configurationManager.getParameter(STREAMING_STATUS_UPDATE_DELAY_SECONDS)).andReturn(0).atLeastOnce();
 
-        replay(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        replay(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
 
-        StreamingManagerImpl streamingManager = new StreamingManagerImpl(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        StreamingManagerImpl streamingManager = new StreamingManagerImpl(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
         streamingManager.pause("deviceId");
 
-        verify(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        verify(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
     }
 
     @Test
@@ -392,18 +435,19 @@ public class StreamingManagerImplTest {
         DeviceStreamer upnpDeviceStreamer = createMock(DeviceStreamer.class);
         DeviceStreamer airplayDeviceStreamer = createMock(DeviceStreamer.class);
         ConfigurationManager configurationManager = createMock(ConfigurationManager.class);
+        ContentPrefetcher contentPrefetcher = createMock(ContentPrefetcher.class);
 
         expect(deviceDao.getDevice("deviceId")).andReturn(new AirplayDevice("id", "name", null, 0, null));
         airplayDeviceStreamer.pause(isA(AirplayDevice.class));
         expectLastCall();
         expect(configurationManager.getParameter(STREAMING_STATUS_UPDATE_DELAY_SECONDS)).andReturn(0).atLeastOnce();
 
-        replay(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        replay(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
 
-        StreamingManagerImpl streamingManager = new StreamingManagerImpl(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        StreamingManagerImpl streamingManager = new StreamingManagerImpl(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
         streamingManager.pause("deviceId");
 
-        verify(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        verify(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
     }
 
     @Test(expected = IllegalArgumentException.class)
@@ -413,16 +457,17 @@ public class StreamingManagerImplTest {
         DeviceStreamer upnpDeviceStreamer = createMock(DeviceStreamer.class);
         DeviceStreamer airplayDeviceStreamer = createMock(DeviceStreamer.class);
         ConfigurationManager configurationManager = createMock(ConfigurationManager.class);
+        ContentPrefetcher contentPrefetcher = createMock(ContentPrefetcher.class);
 
         expect(deviceDao.getDevice("deviceId")).andReturn(new FakeDevice());
         expect(configurationManager.getParameter(STREAMING_STATUS_UPDATE_DELAY_SECONDS)).andReturn(0).atLeastOnce();
 
-        replay(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        replay(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
 
-        StreamingManagerImpl streamingManager = new StreamingManagerImpl(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        StreamingManagerImpl streamingManager = new StreamingManagerImpl(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
         streamingManager.pause("deviceId");
 
-        verify(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        verify(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
     }
 
     @Test
@@ -433,18 +478,19 @@ public class StreamingManagerImplTest {
         DeviceStreamer upnpDeviceStreamer = createMock(DeviceStreamer.class);
         DeviceStreamer airplayDeviceStreamer = createMock(DeviceStreamer.class);
         ConfigurationManager configurationManager = createMock(ConfigurationManager.class);
+        ContentPrefetcher contentPrefetcher = createMock(ContentPrefetcher.class);
 
-        expect(deviceDao.getDevice("deviceId")).andReturn(new UpnpDevice("id", "name", null, null, null));
+        expect(deviceDao.getDevice("deviceId")).andReturn(new UpnpDevice("id", "name", null, null, null, null));
         upnpDeviceStreamer.resume(isA(UpnpDevice.class));
         expectLastCall();
         expect(configurationManager.getParameter(STREAMING_STATUS_UPDATE_DELAY_SECONDS)).andReturn(0).atLeastOnce();
 
-        replay(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        replay(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
 
-        StreamingManagerImpl streamingManager = new StreamingManagerImpl(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        StreamingManagerImpl streamingManager = new StreamingManagerImpl(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
         streamingManager.resume("deviceId");
 
-        verify(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        verify(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
     }
 
     @Test
@@ -455,18 +501,19 @@ public class StreamingManagerImplTest {
         DeviceStreamer upnpDeviceStreamer = createMock(DeviceStreamer.class);
         DeviceStreamer airplayDeviceStreamer = createMock(DeviceStreamer.class);
         ConfigurationManager configurationManager = createMock(ConfigurationManager.class);
+        ContentPrefetcher contentPrefetcher = createMock(ContentPrefetcher.class);
 
         expect(deviceDao.getDevice("deviceId")).andReturn(new AirplayDevice("id", "name", null, 0, null));
         airplayDeviceStreamer.resume(isA(AirplayDevice.class));
         expectLastCall();
         expect(configurationManager.getParameter(STREAMING_STATUS_UPDATE_DELAY_SECONDS)).andReturn(0).atLeastOnce();
 
-        replay(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        replay(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
 
-        StreamingManagerImpl streamingManager = new StreamingManagerImpl(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        StreamingManagerImpl streamingManager = new StreamingManagerImpl(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
         streamingManager.resume("deviceId");
 
-        verify(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        verify(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
     }
 
     @Test(expected = IllegalArgumentException.class)
@@ -476,16 +523,17 @@ public class StreamingManagerImplTest {
         DeviceStreamer upnpDeviceStreamer = createMock(DeviceStreamer.class);
         DeviceStreamer airplayDeviceStreamer = createMock(DeviceStreamer.class);
         ConfigurationManager configurationManager = createMock(ConfigurationManager.class);
+        ContentPrefetcher contentPrefetcher = createMock(ContentPrefetcher.class);
 
         expect(deviceDao.getDevice("deviceId")).andReturn(new FakeDevice());
         expect(configurationManager.getParameter(STREAMING_STATUS_UPDATE_DELAY_SECONDS)).andReturn(0).atLeastOnce();
 
-        replay(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        replay(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
 
-        StreamingManagerImpl streamingManager = new StreamingManagerImpl(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        StreamingManagerImpl streamingManager = new StreamingManagerImpl(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
         streamingManager.resume("deviceId");
 
-        verify(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        verify(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
     }
 
     @Test
@@ -495,15 +543,16 @@ public class StreamingManagerImplTest {
         DeviceStreamer upnpDeviceStreamer = createMock(DeviceStreamer.class);
         DeviceStreamer airplayDeviceStreamer = createMock(DeviceStreamer.class);
         ConfigurationManager configurationManager = createMock(ConfigurationManager.class);
+        ContentPrefetcher contentPrefetcher = createMock(ContentPrefetcher.class);
 
         expect(configurationManager.getParameter(STREAMING_STATUS_UPDATE_DELAY_SECONDS)).andReturn(0).atLeastOnce();
 
-        replay(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        replay(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
 
-        StreamingManagerImpl streamingManager = new StreamingManagerImpl(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        StreamingManagerImpl streamingManager = new StreamingManagerImpl(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
         streamingManager.handleStreamingEvent(new StreamingEvent(STATUS, "deviceId", "errorMessage"));
 
-        verify(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        verify(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
     }
 
     @Test
@@ -513,17 +562,18 @@ public class StreamingManagerImplTest {
         DeviceStreamer upnpDeviceStreamer = createMock(DeviceStreamer.class);
         DeviceStreamer airplayDeviceStreamer = createMock(DeviceStreamer.class);
         ConfigurationManager configurationManager = createMock(ConfigurationManager.class);
+        ContentPrefetcher contentPrefetcher = createMock(ContentPrefetcher.class);
 
         expect(configurationManager.getParameter(STREAMING_STATUS_UPDATE_DELAY_SECONDS)).andReturn(0).atLeastOnce();
         sessionDao.updateSessionStatus("deviceId", PLAYING);
         expectLastCall().andThrow(new UnknownSessionException("deviceId"));
 
-        replay(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        replay(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
 
-        StreamingManagerImpl streamingManager = new StreamingManagerImpl(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        StreamingManagerImpl streamingManager = new StreamingManagerImpl(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
         streamingManager.handleStreamingEvent(new StreamingEvent(PLAY, "deviceId", 0l, 0l));
 
-        verify(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        verify(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
     }
 
     @Test
@@ -533,15 +583,16 @@ public class StreamingManagerImplTest {
         DeviceStreamer upnpDeviceStreamer = createMock(DeviceStreamer.class);
         DeviceStreamer airplayDeviceStreamer = createMock(DeviceStreamer.class);
         ConfigurationManager configurationManager = createMock(ConfigurationManager.class);
+        ContentPrefetcher contentPrefetcher = createMock(ContentPrefetcher.class);
 
         expect(configurationManager.getParameter(STREAMING_STATUS_UPDATE_DELAY_SECONDS)).andReturn(0).atLeastOnce();
 
-        replay(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        replay(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
 
-        StreamingManagerImpl streamingManager = new StreamingManagerImpl(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        StreamingManagerImpl streamingManager = new StreamingManagerImpl(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
         streamingManager.handleStreamingEvent(new StreamingEvent(UNKNOWN, "deviceId", 0l, 0l));
 
-        verify(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        verify(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
     }
 
     @Test
@@ -551,17 +602,18 @@ public class StreamingManagerImplTest {
         DeviceStreamer upnpDeviceStreamer = createMock(DeviceStreamer.class);
         DeviceStreamer airplayDeviceStreamer = createMock(DeviceStreamer.class);
         ConfigurationManager configurationManager = createMock(ConfigurationManager.class);
+        ContentPrefetcher contentPrefetcher = createMock(ContentPrefetcher.class);
 
         expect(configurationManager.getParameter(STREAMING_STATUS_UPDATE_DELAY_SECONDS)).andReturn(0).atLeastOnce();
         sessionDao.updateSessionStatus("deviceId", PLAYING);
         expectLastCall();
 
-        replay(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        replay(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
 
-        StreamingManagerImpl streamingManager = new StreamingManagerImpl(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        StreamingManagerImpl streamingManager = new StreamingManagerImpl(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
         streamingManager.handleStreamingEvent(new StreamingEvent(PLAY, "deviceId", 0l, 0l));
 
-        verify(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        verify(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
     }
 
     @Test
@@ -571,17 +623,18 @@ public class StreamingManagerImplTest {
         DeviceStreamer upnpDeviceStreamer = createMock(DeviceStreamer.class);
         DeviceStreamer airplayDeviceStreamer = createMock(DeviceStreamer.class);
         ConfigurationManager configurationManager = createMock(ConfigurationManager.class);
+        ContentPrefetcher contentPrefetcher = createMock(ContentPrefetcher.class);
 
         expect(configurationManager.getParameter(STREAMING_STATUS_UPDATE_DELAY_SECONDS)).andReturn(0).atLeastOnce();
         sessionDao.updateSessionStatus("deviceId", PLAYING);
         expectLastCall();
 
-        replay(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        replay(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
 
-        StreamingManagerImpl streamingManager = new StreamingManagerImpl(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        StreamingManagerImpl streamingManager = new StreamingManagerImpl(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
         streamingManager.handleStreamingEvent(new StreamingEvent(RESUME, "deviceId", 0l, 0l));
 
-        verify(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        verify(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
     }
 
     @Test
@@ -591,17 +644,18 @@ public class StreamingManagerImplTest {
         DeviceStreamer upnpDeviceStreamer = createMock(DeviceStreamer.class);
         DeviceStreamer airplayDeviceStreamer = createMock(DeviceStreamer.class);
         ConfigurationManager configurationManager = createMock(ConfigurationManager.class);
+        ContentPrefetcher contentPrefetcher = createMock(ContentPrefetcher.class);
 
         expect(configurationManager.getParameter(STREAMING_STATUS_UPDATE_DELAY_SECONDS)).andReturn(0).atLeastOnce();
         sessionDao.updateSessionStatus("deviceId", WAITING);
         expectLastCall();
 
-        replay(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        replay(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
 
-        StreamingManagerImpl streamingManager = new StreamingManagerImpl(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        StreamingManagerImpl streamingManager = new StreamingManagerImpl(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
         streamingManager.handleStreamingEvent(new StreamingEvent(STOP, "deviceId", 0l, 0l));
 
-        verify(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        verify(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
     }
 
     @Test
@@ -611,17 +665,18 @@ public class StreamingManagerImplTest {
         DeviceStreamer upnpDeviceStreamer = createMock(DeviceStreamer.class);
         DeviceStreamer airplayDeviceStreamer = createMock(DeviceStreamer.class);
         ConfigurationManager configurationManager = createMock(ConfigurationManager.class);
+        ContentPrefetcher contentPrefetcher = createMock(ContentPrefetcher.class);
 
         expect(configurationManager.getParameter(STREAMING_STATUS_UPDATE_DELAY_SECONDS)).andReturn(0).atLeastOnce();
         sessionDao.updateSessionStatus("deviceId", PAUSED);
         expectLastCall();
 
-        replay(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        replay(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
 
-        StreamingManagerImpl streamingManager = new StreamingManagerImpl(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        StreamingManagerImpl streamingManager = new StreamingManagerImpl(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
         streamingManager.handleStreamingEvent(new StreamingEvent(PAUSE, "deviceId", 0l, 0l));
 
-        verify(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        verify(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
     }
 
     @Test
@@ -631,17 +686,18 @@ public class StreamingManagerImplTest {
         DeviceStreamer upnpDeviceStreamer = createMock(DeviceStreamer.class);
         DeviceStreamer airplayDeviceStreamer = createMock(DeviceStreamer.class);
         ConfigurationManager configurationManager = createMock(ConfigurationManager.class);
+        ContentPrefetcher contentPrefetcher = createMock(ContentPrefetcher.class);
 
         expect(configurationManager.getParameter(STREAMING_STATUS_UPDATE_DELAY_SECONDS)).andReturn(0).atLeastOnce();
         sessionDao.updateSessionPosition("deviceId", 0l, 0l);
         expectLastCall();
 
-        replay(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        replay(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
 
-        StreamingManagerImpl streamingManager = new StreamingManagerImpl(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        StreamingManagerImpl streamingManager = new StreamingManagerImpl(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
         streamingManager.handleStreamingEvent(new StreamingEvent(STATUS, "deviceId", 0l, 0l));
 
-        verify(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        verify(configurationManager, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, contentPrefetcher);
     }
 
     private class FakeDevice extends Device {
@@ -649,7 +705,7 @@ public class StreamingManagerImplTest {
          * Instantiates a new device
          */
         public FakeDevice() {
-            super("id", "name", null, null);
+            super("id", "name", null, null, null);
         }
 
         /**
@@ -17,11 +17,18 @@
 
 package net.holmes.core.business.streaming.device;
 
+import com.google.common.collect.ImmutableSet;
+import net.holmes.core.business.mimetype.MimeTypeManager;
+import net.holmes.core.business.mimetype.model.MimeTypeProfile;
 import org.junit.Test;
 
 import java.net.InetAddress;
+import java.util.BitSet;
 import java.util.Collection;
 
+import static com.google.common.collect.Lists.newArrayList;
+import static com.google.common.collect.Sets.newHashSet;
+import static net.holmes.core.business.mimetype.model.MimeType.MIME_TYPE_SUBTITLE;
 import static org.easymock.EasyMock.*;
 import static org.junit.Assert.*;
 
@@ -29,78 +36,153 @@ public class DeviceDaoImplTest {
 
     @Test
     public void testAddDevice() throws UnknownDeviceException {
+        MimeTypeManager mimeTypeManager = createMock(MimeTypeManager.class);
         Device device = createMock(Device.class);
 
         expect(device.getId()).andReturn("deviceId");
+        expect(device.getAddress()).andReturn(InetAddress.getLoopbackAddress()).atLeastOnce();
+        expect(device.getSupportedMimeTypes()).andReturn(null);
 
-        replay(device);
+        replay(mimeTypeManager, device);
 
-        DeviceDaoImpl deviceDao = new DeviceDaoImpl();
+        DeviceDaoImpl deviceDao = new DeviceDaoImpl(mimeTypeManager);
         deviceDao.addDevice(device);
         assertEquals(1, deviceDao.getDevices().size());
         assertNotNull(deviceDao.getDevice("deviceId"));
 
-        verify(device);
+        verify(mimeTypeManager, device);
     }
 
     @Test
     public void testRemoveDevice() throws UnknownDeviceException {
+        MimeTypeManager mimeTypeManager = createMock(MimeTypeManager.class);
         Device device = createMock(Device.class);
 
         expect(device.getId()).andReturn("deviceId");
+        expect(device.getAddress()).andReturn(InetAddress.getLoopbackAddress()).atLeastOnce();
+        expect(device.getSupportedMimeTypes()).andReturn(null);
         device.close();
         expectLastCall();
 
-        replay(device);
+        replay(mimeTypeManager, device);
 
-        DeviceDaoImpl deviceDao = new DeviceDaoImpl();
+        DeviceDaoImpl deviceDao = new DeviceDaoImpl(mimeTypeManager);
         deviceDao.addDevice(device);
         boolean removed = deviceDao.removeDevice("deviceId");
         assertTrue(removed);
         assertEquals(0, deviceDao.getDevices().size());
 
-        verify(device);
+        verify(mimeTypeManager, device);
     }
 
     @Test
     public void testRemoveUnknownDevice() throws UnknownDeviceException {
+        MimeTypeManager mimeTypeManager = createMock(MimeTypeManager.class);
         Device device = createMock(Device.class);
 
-        replay(device);
+        replay(mimeTypeManager, device);
 
-        DeviceDaoImpl deviceDao = new DeviceDaoImpl();
+        DeviceDaoImpl deviceDao = new DeviceDaoImpl(mimeTypeManager);
         boolean removed = deviceDao.removeDevice("deviceId");
         assertFalse(removed);
         assertEquals(0, deviceDao.getDevices().size());
 
-        verify(device);
+        verify(mimeTypeManager, device);
     }
 
     @Test(expected = UnknownDeviceException.class)
     public void testGetUnknownDevice() throws UnknownDeviceException {
-        DeviceDaoImpl deviceDao = new DeviceDaoImpl();
+        MimeTypeManager mimeTypeManager = createMock(MimeTypeManager.class);
+        DeviceDaoImpl deviceDao = new DeviceDaoImpl(mimeTypeManager);
         deviceDao.getDevice("deviceId");
     }
 
     @Test
     public void testFindDevice() {
+        MimeTypeManager mimeTypeManager = createMock(MimeTypeManager.class);
         Device device = createMock(Device.class);
         InetAddress address = createMock(InetAddress.class);
 
         expect(device.getId()).andReturn("deviceId");
-        expect(device.getAddress()).andReturn(address);
+        expect(device.getAddress()).andReturn(address).atLeastOnce();
+        expect(device.getSupportedMimeTypes()).andReturn(null);
         expect(address.getHostAddress()).andReturn("localhost");
 
-        replay(device, address);
+        replay(mimeTypeManager, device, address);
 
-        DeviceDaoImpl deviceDao = new DeviceDaoImpl();
+        DeviceDaoImpl deviceDao = new DeviceDaoImpl(mimeTypeManager);
         deviceDao.addDevice(device);
         Collection<Device> devices = deviceDao.findDevices("localhost");
 
         assertEquals(1, devices.size());
 
-        verify(device, address);
+        verify(mimeTypeManager, device, address);
+    }
+
+    @Test
+    public void testGetMimeTypeProfile() throws UnknownDeviceException {
+        MimeTypeManager mimeTypeManager = createMock(MimeTypeManager.class);
+        Device upnpDevice = createMock(Device.class);
+        Device airplayDevice = createMock(Device.class);
+        MimeTypeProfile profile = new MimeTypeProfile(ImmutableSet.of("video/avi"), new BitSet());
+        MimeTypeProfile subtitleProfile = new MimeTypeProfile(ImmutableSet.of("video/avi", MIME_TYPE_SUBTITLE.getMimeType()), new BitSet());
+        InetAddress address = InetAddress.getLoopbackAddress();
+
+        expect(upnpDevice.getId()).andReturn("upnpDeviceId");
+        expect(upnpDevice.getAddress()).andReturn(address).atLeastOnce();
+        expect(upnpDevice.getSupportedMimeTypes()).andReturn(newArrayList("video/avi")).atLeastOnce();
+        expect(airplayDevice.getId()).andReturn("airplayDeviceId");
+        expect(airplayDevice.getAddress()).andReturn(address).atLeastOnce();
+        expect(airplayDevice.getSupportedMimeTypes()).andReturn(null).atLeastOnce();
+        expect(mimeTypeManager.getMimeTypeProfile(eq(newHashSet("video/avi")))).andReturn(profile).times(2);
+        expect(mimeTypeManager.getMimeTypeProfile(eq(newHashSet("video/avi", MIME_TYPE_SUBTITLE.getMimeType())))).andReturn(subtitleProfile).times(2);
+        upnpDevice.close();
+        expectLastCall();
+
+        replay(mimeTypeManager, upnpDevice, airplayDevice);
+
+        DeviceDaoImpl deviceDao = new DeviceDaoImpl(mimeTypeManager);
+        assertNull(deviceDao.getMimeTypeProfile(address, false));
+
+        deviceDao.addDevice(upnpDevice);
+        deviceDao.addDevice(airplayDevice);
+        assertEquals(profile, deviceDao.getMimeTypeProfile(address, false));
+        assertEquals(subtitleProfile, deviceDao.getMimeTypeProfile(address, true));
+
+        deviceDao.removeDevice("upnpDeviceId");
+        assertNull(deviceDao.getMimeTypeProfile(address, false));
+        assertNull(deviceDao.getMimeTypeProfile(address, true));
+
+        verify(mimeTypeManager, upnpDevice, airplayDevice);
     }
-}
 
+    @Test
+    public void testReAddDeviceWithNewAddress() throws Exception {
+        MimeTypeManager mimeTypeManager = createMock(MimeTypeManager.class);
+        Device device = createMock(Device.class);
+        Device movedDevice = createMock(Device.class);
+        MimeTypeProfile profile = new MimeTypeProfile(ImmutableSet.of("video/avi"), new BitSet());
+        InetAddress oldAddress = InetAddress.getByName("10.0.0.1");
+        InetAddress newAddress = InetAddress.getByName("10.0.0.2");
+
+        expect(device.getId()).andReturn("deviceId");
+        expect(device.getAddress()).andReturn(oldAddress).atLeastOnce();
+        expect(device.getSupportedMimeTypes()).andReturn(newArrayList("video/avi")).atLeastOnce();
+        expect(movedDevice.getId()).andReturn("deviceId");
+        expect(movedDevice.getAddress()).andReturn(newAddress).atLeastOnce();
+        expect(movedDevice.getSupportedMimeTypes()).andReturn(newArrayList("video/avi")).atLeastOnce();
+        expect(mimeTypeManager.getMimeTypeProfile(anyObject())).andReturn(profile).atLeastOnce();
+
+        replay(mimeTypeManager, device, movedDevice);
 
+        DeviceDaoImpl deviceDao = new DeviceDaoImpl(mimeTypeManager);
+        deviceDao.addDevice(device);
+        assertNotNull(deviceDao.getMimeTypeProfile(oldAddress, false));
+
+        deviceDao.addDevice(movedDevice);
+        assertNull(deviceDao.getMimeTypeProfile(oldAddress, false));
+        assertNotNull(deviceDao.getMimeTypeProfile(newAddress, false));
+
+        verify(mimeTypeManager, device, movedDevice);
+    }
+}
@@ -28,7 +28,7 @@ public class UpnpDeviceTest {
 
     @Test
     public void testNoContentTypeDevice() {
-        UpnpDevice device = new UpnpDevice("id", "name", null, null, null);
+        UpnpDevice device = new UpnpDevice("id", "name", null, null, null, null);
         device.close();
         assertEquals("id", device.getId());
         assertEquals("name", device.getName());
@@ -44,7 +44,7 @@ public class UpnpDeviceTest {
     @Test
     public void testVideoContentTypeDevice() {
         List<String> supportedMimeTypes = newArrayList("video/avi");
-        UpnpDevice device = new UpnpDevice("id", "name", null, supportedMimeTypes, null);
+        UpnpDevice device = new UpnpDevice("id", "name", null, supportedMimeTypes, null, null);
         assertNotNull(device.getSupportedMimeTypes());
         assertNotNull(device.getType());
         assertTrue(device.isVideoSupported());
@@ -56,7 +56,7 @@ public class UpnpDeviceTest {
     @Test
     public void testAudioContentTypeDevice() {
         List<String> supportedMimeTypes = newArrayList("audio/mp3");
-        UpnpDevice device = new UpnpDevice("id", "name", null, supportedMimeTypes, null);
+        UpnpDevice device = new UpnpDevice("id", "name", null, supportedMimeTypes, null, null);
         assertNotNull(device.getSupportedMimeTypes());
         assertNotNull(device.getType());
         assertFalse(device.isVideoSupported());
@@ -68,7 +68,7 @@ public class UpnpDeviceTest {
     @Test
     public void testImageContentTypeDevice() {
         List<String> supportedMimeTypes = newArrayList("image/jpeg");
-        UpnpDevice device = new UpnpDevice("id", "name", null, supportedMimeTypes, null);
+        UpnpDevice device = new UpnpDevice("id", "name", null, supportedMimeTypes, null, null);
         assertNotNull(device.getSupportedMimeTypes());
         assertNotNull(device.getType());
         assertFalse(device.isVideoSupported());
@@ -80,7 +80,7 @@ public class UpnpDeviceTest {
     @Test
     public void testUnknownContentTypeDevice() {
         List<String> supportedMimeTypes = newArrayList("application/x-subrip");
-        UpnpDevice device = new UpnpDevice("id", "name", null, supportedMimeTypes, null);
+        UpnpDevice device = new UpnpDevice("id", "name", null, supportedMimeTypes, null, null);
         assertNotNull(device.getSupportedMimeTypes());
         assertNotNull(device.getType());
         assertFalse(device.isVideoSupported());
@@ -92,7 +92,7 @@ public class UpnpDeviceTest {
     @Test
     public void testAllContentTypeDevice() {
         List<String> supportedMimeTypes = newArrayList("*/*");
-        UpnpDevice device = new UpnpDevice("id", "name", null, supportedMimeTypes, null);
+        UpnpDevice device = new UpnpDevice("id", "name", null, supportedMimeTypes, null, null);
         assertNotNull(device.getSupportedMimeTypes());
         assertNotNull(device.getType());
         assertTrue(device.isVideoSupported());
@@ -180,4 +180,12 @@ public class FileUtilsTest {
         assertFalse(isValidDirectory(file));
     }
 
+
+    @Test
+    public void testIsRemoteUrl() {
+        assertTrue(isRemoteUrl("http://localhost/video.avi"));
+        assertTrue(isRemoteUrl("HTTPS://localhost/video.avi"));
+        assertFalse(isRemoteUrl("/home/user/http/video.avi"));
+        assertFalse(isRemoteUrl("ftp://localhost/video.avi"));
+    }
 }
@@ -52,6 +52,24 @@ public class UpnpUtilsTest {
         assertNotNull(mimeType);
     }
 
+    @Test
+    public void testGetDlnaContentFeatures() {
+        assertEquals("DLNA.ORG_OP=11;DLNA.ORG_CI=0;DLNA.ORG_FLAGS=01700000000000000000000000000000",
+                UpnpUtils.getDlnaContentFeatures(MimeType.valueOf("video/mp2t"), true));
+        assertEquals("DLNA.ORG_OP=01;DLNA.ORG_CI=0;DLNA.ORG_FLAGS=01700000000000000000000000000000",
+                UpnpUtils.getDlnaContentFeatures(MimeType.valueOf("video/mp2t"), false));
+        assertEquals("DLNA.ORG_OP=01;DLNA.ORG_CI=0;DLNA.ORG_FLAGS=01700000000000000000000000000000",
+                UpnpUtils.getDlnaContentFeatures(MimeType.valueOf("video/mp4"), true));
+        assertEquals("DLNA.ORG_OP=01;DLNA.ORG_CI=0;DLNA.ORG_FLAGS=00D00000000000000000000000000000",
+                UpnpUtils.getDlnaContentFeatures(MimeType.valueOf("image/png"), true));
+    }
+
+    @Test
+    public void testGetUpnpProtocolInfo() {
+        assertEquals("http-get:*:video/mp2t:DLNA.ORG_OP=11;DLNA.ORG_CI=0;DLNA.ORG_FLAGS=01700000000000000000000000000000",
+                UpnpUtils.getUpnpProtocolInfo(MimeType.valueOf("video/mp2t"), true).toString());
+    }
+
     @Test
     public void testGetConnectionManagerService() {
         LocalService<ConnectionManagerService> connectionManagerService = UpnpUtils.buildConnectionManagerService();
@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2012-2015  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.service.http;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static io.netty.handler.codec.http.HttpHeaders.Names.CONTENT_RANGE;
+import static io.netty.handler.codec.http.HttpResponseStatus.REQUESTED_RANGE_NOT_SATISFIABLE;
+import static org.junit.Assert.*;
+
+public class ByteRangeTest {
+
+    @Test
+    public void testClosedRange() throws HttpFileRequestException {
+        List<ByteRange> ranges = ByteRange.parse("bytes=0-499", 1000);
+        assertEquals(1, ranges.size());
+        assertEquals(0, ranges.get(0).getStart());
+        assertEquals(499, ranges.get(0).getEnd());
+        assertEquals(500, ranges.get(0).getLength());
+        assertEquals("bytes 0-499/1000", ranges.get(0).getContentRange(1000));
+    }
+
+    @Test
+    public void testClosedRangeBeyondLength() throws HttpFileRequestException {
+        List<ByteRange> ranges = ByteRange.parse("bytes=500-5000", 1000);
+        assertEquals(1, ranges.size());
+        assertEquals("bytes 500-999/1000", ranges.get(0).getContentRange(1000));
+    }
+
+    @Test
+    public void testOpenRange() throws HttpFileRequestException {
+        List<ByteRange> ranges = ByteRange.parse(" Bytes = 200-", 1000);
+        assertEquals(1, ranges.size());
+        assertEquals("bytes 200-999/1000", ranges.get(0).getContentRange(1000));
+    }
+
+    @Test
+    public void testSuffixRange() throws HttpFileRequestException {
+        List<ByteRange> ranges = ByteRange.parse("bytes=-300", 1000);
+        assertEquals(1, ranges.size());
+        assertEquals("bytes 700-999/1000", ranges.get(0).getContentRange(1000));
+    }
+
+    @Test
+    public void testSuffixRangeBeyondLength() throws HttpFileRequestException {
+        List<ByteRange> ranges = ByteRange.parse("bytes=-3000", 1000);
+        assertEquals(1, ranges.size());
+        assertEquals("bytes 0-999/1000", ranges.get(0).getContentRange(1000));
+    }
+
+    @Test
+    public void testMultipleRanges() throws HttpFileRequestException {
+        List<ByteRange> ranges = ByteRange.parse("bytes=500-599, 0-99,,-100", 1000);
+        assertEquals(3, ranges.size());
+        assertEquals("500-599", ranges.get(0).toString());
+        assertEquals("0-99", ranges.get(1).toString());
+        assertEquals("900-999", ranges.get(2).toString());
+    }
+
+    @Test
+    public void testCoalescedRanges() throws HttpFileRequestException {
+        List<ByteRange> ranges = ByteRange.parse("bytes=500-599,0-99,100-199,550-700", 1000);
+        assertEquals(2, ranges.size());
+        assertEquals("500-700", ranges.get(0).toString());
+        assertEquals("0-199", ranges.get(1).toString());
+    }
+
+    @Test
+    public void testUnsatisfiableRangeDropped() throws HttpFileRequestException {
+        List<ByteRange> ranges = ByteRange.parse("bytes=2000-3000,0-9", 1000);
+        assertEquals(1, ranges.size());
+        assertEquals("0-9", ranges.get(0).toString());
+    }
+
+    @Test
+    public void testUnsatisfiableRange() {
+        try {
+            ByteRange.parse("bytes=2000-", 1000);
+            fail();
+        } catch (HttpFileRequestException e) {
+            assertEquals(REQUESTED_RANGE_NOT_SATISFIABLE, e.getStatus());
+            assertEquals("bytes */1000", e.getHeaders().get(CONTENT_RANGE));
+        }
+    }
+
+    @Test
+    public void testUnsatisfiableSuffixRange() {
+        try {
+            ByteRange.parse("bytes=-0", 1000);
+            fail();
+        } catch (HttpFileRequestException e) {
+            assertEquals("bytes */1000", e.getHeaders().get(CONTENT_RANGE));
+        }
+    }
+
+    @Test(expected = HttpFileRequestException.class)
+    public void testInvalidUnit() throws HttpFileRequestException {
+        ByteRange.parse("items=0-1", 1000);
+    }
+
+    @Test(expected = HttpFileRequestException.class)
+    public void testInvalidRangeSpec() throws HttpFileRequestException {
+        ByteRange.parse("bytes=0-1,a-b", 1000);
+    }
+
+    @Test(expected = HttpFileRequestException.class)
+    public void testInvalidRangeOrder() throws HttpFileRequestException {
+        ByteRange.parse("bytes=10-1", 1000);
+    }
+
+    @Test(expected = HttpFileRequestException.class)
+    public void testEmptyRangeSpec() throws HttpFileRequestException {
+        ByteRange.parse("bytes=-", 1000);
+    }
+
+    @Test(expected = HttpFileRequestException.class)
+    public void testNoRangeSpec() throws HttpFileRequestException {
+        ByteRange.parse("bytes=,", 1000);
+    }
+
+    @Test(expected = HttpFileRequestException.class)
+    public void testTooManyRanges() throws HttpFileRequestException {
+        StringBuilder range = new StringBuilder("bytes=0-0");
+        for (int i = 1; i < 100; i++) {
+            range.append(',').append(i * 2).append('-').append(i * 2);
+        }
+        ByteRange.parse(range.toString(), 1000);
+    }
+
+    @Test(expected = HttpFileRequestException.class)
+    public void testNumberOverflow() throws HttpFileRequestException {
+        ByteRange.parse("bytes=99999999999999999999-", 1000);
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2012-2015  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.service.http;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.junit.Assert.*;
+
+public class HttpAccessLogTest {
+
+    @Test
+    public void testWriteEntries() throws IOException {
+        Path logFile = Files.createTempDirectory("holmes-access").resolve("log").resolve("access.log");
+        HttpAccessLog accessLog = new HttpAccessLog(logFile, 1024 * 1024, 2);
+        accessLog.log("127.0.0.1", System.currentTimeMillis(), "GET", "/content?id=1", "HTTP/1.1", 206, 100,
+                MILLISECONDS.toNanos(2), MILLISECONDS.toNanos(15), "content", "bytes=0-99");
+        accessLog.log("127.0.0.1", System.currentTimeMillis(), "GET", "/index.html", "HTTP/1.1", 200, 10, 0, 0, "static", null);
+        accessLog.close();
+
+        List<String> lines = Files.readAllLines(logFile, UTF_8);
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(0).startsWith("127.0.0.1 - - ["));
+        assertTrue(lines.get(0).endsWith("\"GET /content?id=1 HTTP/1.1\" 206 100 2 15 content \"bytes=0-99\""));
+        assertTrue(lines.get(1).endsWith("\"GET /index.html HTTP/1.1\" 200 10 0 0 static -"));
+        assertEquals(0, accessLog.getDroppedCount());
+    }
+
+    @Test
+    public void testRotation() throws IOException {
+        Path logFile = Files.createTempDirectory("holmes-access").resolve("access.log");
+        HttpAccessLog accessLog = new HttpAccessLog(logFile, 200, 2);
+        for (int i = 0; i < 10; i++) {
+            accessLog.log("127.0.0.1", System.currentTimeMillis(), "GET", "/content?id=" + i, "HTTP/1.1", 200, 100, 0, 0, "content", null);
+        }
+        accessLog.close();
+
+        assertEquals(logFile.resolveSibling("access.1.log"), accessLog.getRotatedFile(1));
+        assertTrue(Files.size(logFile) <= 200);
+        assertTrue(Files.exists(accessLog.getRotatedFile(1)));
+        assertTrue(Files.exists(accessLog.getRotatedFile(2)));
+        assertFalse(Files.exists(accessLog.getRotatedFile(3)));
+        List<String> lines = Files.readAllLines(logFile, UTF_8);
+        assertTrue(lines.get(lines.size() - 1).contains("/content?id=9 "));
+    }
+
+    @Test
+    public void testLogAfterClose() throws IOException {
+        Path logFile = Files.createTempDirectory("holmes-access").resolve("access.log");
+        HttpAccessLog accessLog = new HttpAccessLog(logFile, 1024, 1);
+        accessLog.close();
+        accessLog.log("127.0.0.1", System.currentTimeMillis(), "GET", "/", "HTTP/1.1", 200, 0, 0, 0, "static", null);
+        assertEquals(1, accessLog.getDroppedCount());
+        assertFalse(Files.exists(logFile));
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2012-2015  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.service.http;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.DefaultHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.util.ReferenceCountUtil;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static io.netty.buffer.Unpooled.wrappedBuffer;
+import static io.netty.handler.codec.http.HttpHeaders.Names.RANGE;
+import static io.netty.handler.codec.http.HttpMethod.GET;
+import static io.netty.handler.codec.http.HttpResponseStatus.*;
+import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
+import static io.netty.handler.codec.http.LastHttpContent.EMPTY_LAST_CONTENT;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.*;
+
+public class HttpAccessMonitorTest {
+
+    private static HttpAccessMonitor newMonitor(final HttpAccessLog accessLog) {
+        return new HttpAccessMonitor(new HttpRequestRouter(Collections.singletonList("/backend")), accessLog);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> getRoute(final HttpAccessMonitor monitor, final String route) {
+        return monitor.getRouteStatistics().get(route);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static long getHistogramValue(final Map<String, Object> route, final String histogram, final String value) {
+        return ((Map<String, Long>) route.get(histogram)).get(value);
+    }
+
+    private static void readOutbound(final EmbeddedChannel channel) {
+        Object msg;
+        while ((msg = channel.readOutbound()) != null) {
+            ReferenceCountUtil.release(msg);
+        }
+    }
+
+    @Test
+    public void testContentRangeRequest() throws IOException {
+        Path logFile = Files.createTempDirectory("holmes-access").resolve("access.log");
+        HttpAccessMonitor monitor = newMonitor(new HttpAccessLog(logFile, 1024 * 1024, 1));
+        EmbeddedChannel channel = new EmbeddedChannel(monitor.newAccessHandler());
+
+        FullHttpRequest request = new DefaultFullHttpRequest(HTTP_1_1, GET, "/content?id=1");
+        request.headers().set(RANGE, "bytes=0-99");
+        channel.writeInbound(request);
+        channel.writeOutbound(new DefaultHttpResponse(HTTP_1_1, PARTIAL_CONTENT), wrappedBuffer(new byte[60]), wrappedBuffer(new byte[40]),
+                EMPTY_LAST_CONTENT);
+        readOutbound(channel);
+        channel.finish();
+        monitor.shutdown();
+
+        Map<String, Object> content = getRoute(monitor, "content");
+        assertEquals(1L, content.get("requests"));
+        assertEquals(0L, content.get("errors"));
+        assertEquals(0L, content.get("aborted"));
+        assertEquals(100L, getHistogramValue(content, "bytesSent", "max"));
+        assertEquals(1L, getHistogramValue(content, "rangeSize", "count"));
+        assertEquals(0L, getRoute(monitor, "static").get("requests"));
+        assertEquals(1L, (long) monitor.getClientStatistics().get("-").get("requests"));
+        assertEquals(100L, (long) monitor.getClientStatistics().get("-").get("bytesSent"));
+
+        List<String> lines = Files.readAllLines(logFile, UTF_8);
+        assertEquals(1, lines.size());
+        assertTrue(lines.get(0).contains("\"GET /content?id=1 HTTP/1.1\" 206 100 "));
+        assertTrue(lines.get(0).endsWith(" content \"bytes=0-99\""));
+    }
+
+    @Test
+    public void testPipelinedRequests() {
+        HttpAccessMonitor monitor = newMonitor(null);
+        EmbeddedChannel channel = new EmbeddedChannel(monitor.newAccessHandler());
+
+        channel.writeInbound(new DefaultFullHttpRequest(HTTP_1_1, GET, "/backend/util/getVersion"));
+        channel.writeInbound(new DefaultFullHttpRequest(HTTP_1_1, GET, "/index.html"));
+        channel.writeOutbound(new DefaultFullHttpResponse(HTTP_1_1, NOT_FOUND, wrappedBuffer(new byte[3])));
+        channel.writeOutbound(new DefaultFullHttpResponse(HTTP_1_1, OK, wrappedBuffer(new byte[10])));
+        readOutbound(channel);
+        channel.finish();
+
+        Map<String, Object> backend = getRoute(monitor, "backend");
+        assertEquals(1L, backend.get("requests"));
+        assertEquals(1L, backend.get("errors"));
+        assertEquals(3L, getHistogramValue(backend, "bytesSent", "max"));
+        Map<String, Object> staticRoute = getRoute(monitor, "static");
+        assertEquals(1L, staticRoute.get("requests"));
+        assertEquals(0L, staticRoute.get("errors"));
+        assertEquals(10L, getHistogramValue(staticRoute, "bytesSent", "max"));
+        assertEquals(0L, getHistogramValue(staticRoute, "rangeSize", "count"));
+        assertEquals(0, monitor.getDroppedLogCount());
+    }
+
+    @Test
+    public void testAbortedRequest() {
+        HttpAccessMonitor monitor = newMonitor(null);
+        EmbeddedChannel channel = new EmbeddedChannel(monitor.newAccessHandler());
+
+        channel.writeInbound(new DefaultFullHttpRequest(HTTP_1_1, GET, "/content?id=1"));
+        channel.writeOutbound(new DefaultHttpResponse(HTTP_1_1, OK), wrappedBuffer(new byte[50]));
+        readOutbound(channel);
+        channel.finish();
+
+        Map<String, Object> content = getRoute(monitor, "content");
+        assertEquals(1L, content.get("requests"));
+        assertEquals(1L, content.get("aborted"));
+        assertEquals(50L, getHistogramValue(content, "bytesSent", "max"));
+    }
+}
@@ -0,0 +1,307 @@
+/*
+ * Copyright (C) 2012-2015  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.service.http;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpRequestDecoder;
+import io.netty.handler.codec.http.HttpResponseEncoder;
+import io.netty.handler.stream.ChunkedWriteHandler;
+import net.holmes.core.business.configuration.ConfigurationManager;
+import net.holmes.core.business.configuration.ConfigurationManagerImpl;
+import net.holmes.core.business.media.MediaManager;
+import net.holmes.core.business.mimetype.MimeTypeManager;
+import net.holmes.core.business.mimetype.model.MimeType;
+import net.holmes.core.test.TestConfigurationDao;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static io.netty.buffer.Unpooled.copiedBuffer;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static net.holmes.core.common.ConfigurationParameter.HTTP_SERVER_ZERO_COPY;
+import static net.holmes.core.service.http.HttpFileRequestHandlerTest.newHandler;
+import static org.easymock.EasyMock.*;
+import static org.junit.Assert.*;
+
+/**
+ * Conditional requests and cached static resources served through the HTTP file pipeline.
+ */
+public class HttpConditionalRequestTest {
+    private static final String CONTENT = "some content in page.html";
+
+    private File uiDirectory;
+    private File page;
+    private File script;
+    private ConfigurationManager configurationManager;
+    private MediaManager mediaManager;
+    private MimeTypeManager mimeTypeManager;
+    private EmbeddedChannel channel;
+
+    @Before
+    public void setUp() throws IOException {
+        uiDirectory = Files.createTempDirectory("ui").toFile();
+        page = new File(uiDirectory, "page.html");
+        try (Writer writer = new FileWriter(page)) {
+            writer.write(CONTENT);
+        }
+        page.setLastModified(1420070400000L);
+        script = new File(uiDirectory, "script.js");
+        try (Writer writer = new FileWriter(script)) {
+            for (int i = 0; i < 100; i++) {
+                writer.write("console.log('line " + i + "');\n");
+            }
+        }
+
+        configurationManager = new ConfigurationManagerImpl(new TestConfigurationDao());
+        configurationManager.setParameter(HTTP_SERVER_ZERO_COPY, false);
+        mediaManager = createMock(MediaManager.class);
+        mimeTypeManager = createMock(MimeTypeManager.class);
+        expect(mimeTypeManager.getMimeType("/page.html")).andReturn(MimeType.valueOf("text/html")).anyTimes();
+        expect(mimeTypeManager.getMimeType("/script.js")).andReturn(MimeType.valueOf("text/javascript")).anyTimes();
+        replay(mediaManager, mimeTypeManager);
+
+        channel = newChannel(new StaticResourceCache(mimeTypeManager, "nonExistingDirectory"));
+    }
+
+    @After
+    public void tearDown() {
+        channel.finish();
+        page.delete();
+        script.delete();
+        uiDirectory.delete();
+    }
+
+    @Test
+    public void testGet() {
+        Response response = request("GET", "");
+        assertEquals("HTTP/1.1 200 OK", response.statusLine);
+        assertEquals("\"14aa2cab000-19\"", response.headers.get("etag"));
+        assertEquals("Thu, 01 Jan 2015 00:00:00 GMT", response.headers.get("last-modified"));
+        assertEquals(CONTENT, response.body);
+    }
+
+    @Test
+    public void testIfNoneMatch() {
+        Response response = request("GET", "If-None-Match: \"other\", \"14aa2cab000-19\"\r\n");
+        assertEquals("HTTP/1.1 304 Not Modified", response.statusLine);
+        assertEquals("\"14aa2cab000-19\"", response.headers.get("etag"));
+        assertNull(response.headers.get("content-length"));
+        assertEquals("", response.body);
+    }
+
+    @Test
+    public void testIfNoneMatchWeak() {
+        Response response = request("GET", "If-None-Match: W/\"14aa2cab000-19\"\r\n");
+        assertEquals("HTTP/1.1 304 Not Modified", response.statusLine);
+    }
+
+    @Test
+    public void testIfNoneMatchAny() {
+        Response response = request("GET", "If-None-Match: *\r\n");
+        assertEquals("HTTP/1.1 304 Not Modified", response.statusLine);
+    }
+
+    @Test
+    public void testIfNoneMatchModified() {
+        Response response = request("GET", "If-None-Match: \"other\"\r\nIf-Modified-Since: Thu, 01 Jan 2015 00:00:00 GMT\r\n");
+        assertEquals("HTTP/1.1 200 OK", response.statusLine);
+        assertEquals(CONTENT, response.body);
+    }
+
+    @Test
+    public void testIfModifiedSince() {
+        Response response = request("GET", "If-Modified-Since: Thu, 01 Jan 2015 00:00:00 GMT\r\n");
+        assertEquals("HTTP/1.1 304 Not Modified", response.statusLine);
+        assertEquals("", response.body);
+    }
+
+    @Test
+    public void testIfModifiedSinceModified() {
+        Response response = request("GET", "If-Modified-Since: Wed, 31 Dec 2014 23:59:59 GMT\r\n");
+        assertEquals("HTTP/1.1 200 OK", response.statusLine);
+        assertEquals(CONTENT, response.body);
+    }
+
+    @Test
+    public void testIfModifiedSinceInvalidDate() {
+        Response response = request("GET", "If-Modified-Since: yesterday\r\n");
+        assertEquals("HTTP/1.1 200 OK", response.statusLine);
+    }
+
+    @Test
+    public void testHeadIfNoneMatch() {
+        Response response = request("HEAD", "If-None-Match: \"14aa2cab000-19\"\r\n");
+        assertEquals("HTTP/1.1 304 Not Modified", response.statusLine);
+    }
+
+    @Test
+    public void testIfRangeEntityTag() {
+        Response response = request("GET", "Range: bytes=5-11\r\nIf-Range: \"14aa2cab000-19\"\r\n");
+        assertEquals("HTTP/1.1 206 Partial Content", response.statusLine);
+        assertEquals("bytes 5-11/25", response.headers.get("content-range"));
+        assertEquals("content", response.body);
+    }
+
+    @Test
+    public void testIfRangeModifiedEntityTag() {
+        Response response = request("GET", "Range: bytes=5-11\r\nIf-Range: \"other\"\r\n");
+        assertEquals("HTTP/1.1 200 OK", response.statusLine);
+        assertEquals(CONTENT, response.body);
+    }
+
+    @Test
+    public void testIfRangeWeakEntityTag() {
+        Response response = request("GET", "Range: bytes=5-11\r\nIf-Range: W/\"14aa2cab000-19\"\r\n");
+        assertEquals("HTTP/1.1 200 OK", response.statusLine);
+    }
+
+    @Test
+    public void testCachedResourceGzip() {
+        channel = newChannel(new StaticResourceCache(mimeTypeManager, uiDirectory.getAbsolutePath()));
+        Response response = request("GET", "/script.js", "Accept-Encoding: deflate, gzip\r\n");
+        assertEquals("HTTP/1.1 200 OK", response.statusLine);
+        assertEquals("gzip", response.headers.get("content-encoding"));
+        assertEquals("Accept-Encoding", response.headers.get("vary"));
+        assertTrue(response.headers.get("etag").endsWith("-gzip\""));
+        assertTrue(Long.parseLong(response.headers.get("content-length")) < script.length());
+
+        // Same variant is not modified
+        Response notModified = request("GET", "/script.js", "Accept-Encoding: gzip\r\nIf-None-Match: " + response.headers.get("etag") + "\r\n");
+        assertEquals("HTTP/1.1 304 Not Modified", notModified.statusLine);
+        assertEquals("Accept-Encoding", notModified.headers.get("vary"));
+        assertNull(notModified.headers.get("content-encoding"));
+
+        // Other variant is modified
+        Response identity = request("GET", "/script.js", "If-None-Match: " + response.headers.get("etag") + "\r\n");
+        assertEquals("HTTP/1.1 200 OK", identity.statusLine);
+        assertNull(identity.headers.get("content-encoding"));
+        assertEquals(script.length(), identity.body.length());
+    }
+
+    @Test
+    public void testCachedResourceGzipRefused() {
+        channel = newChannel(new StaticResourceCache(mimeTypeManager, uiDirectory.getAbsolutePath()));
+        Response response = request("GET", "/script.js", "Accept-Encoding: gzip;q=0, deflate\r\n");
+        assertEquals("HTTP/1.1 200 OK", response.statusLine);
+        assertNull(response.headers.get("content-encoding"));
+        assertEquals(script.length(), response.body.length());
+    }
+
+    @Test
+    public void testCachedResourceRange() {
+        channel = newChannel(new StaticResourceCache(mimeTypeManager, uiDirectory.getAbsolutePath()));
+        Response response = request("GET", "/script.js", "Accept-Encoding: gzip\r\nRange: bytes=0-10\r\n");
+        assertEquals("HTTP/1.1 206 Partial Content", response.statusLine);
+        assertNull(response.headers.get("content-encoding"));
+        assertEquals("console.log", response.body);
+
+        // Cached content is still complete after a range request
+        response = request("GET", "/script.js", "");
+        assertEquals(script.length(), response.body.length());
+    }
+
+    @Test
+    public void testCachedResourceHead() {
+        channel = newChannel(new StaticResourceCache(mimeTypeManager, uiDirectory.getAbsolutePath()));
+        Response response = request("HEAD", "/page.html", "Accept-Encoding: gzip\r\n");
+        assertEquals("HTTP/1.1 200 OK", response.statusLine);
+        assertEquals("25", response.headers.get("content-length"));
+        assertNull(response.headers.get("vary"));
+        assertEquals("", response.body);
+    }
+
+    /**
+     * Build channel with HTTP file pipeline.
+     *
+     * @param staticResourceCache static resource cache
+     * @return channel
+     */
+    private EmbeddedChannel newChannel(final StaticResourceCache staticResourceCache) {
+        if (channel != null) {
+            channel.finish();
+        }
+        return new EmbeddedChannel(new HttpRequestDecoder(), new HttpObjectAggregator(65536), new HttpResponseEncoder(), new ChunkedWriteHandler(),
+                new HttpFileRequestDecoder(mimeTypeManager, staticResourceCache, new HttpRequestRouter(Collections.<String>emptyList()), uiDirectory.getAbsolutePath()),
+                new HttpContentRequestDecoder(mediaManager, new HttpContentDescriptorCache()),
+                newHandler(configurationManager));
+    }
+
+    /**
+     * Send request for page.html to channel and read response.
+     *
+     * @param method  request method
+     * @param headers additional request headers
+     * @return response
+     */
+    private Response request(final String method, final String headers) {
+        return request(method, "/page.html", headers);
+    }
+
+    /**
+     * Send request to channel and read response.
+     *
+     * @param method  request method
+     * @param path    request path
+     * @param headers additional request headers
+     * @return response
+     */
+    private Response request(final String method, final String path, final String headers) {
+        channel.writeInbound(copiedBuffer(method + " " + path + " HTTP/1.1\r\nHost: localhost\r\n" + headers + "\r\n", US_ASCII));
+        channel.runPendingTasks();
+
+        StringBuilder output = new StringBuilder();
+        Object message;
+        while ((message = channel.readOutbound()) != null) {
+            ByteBuf buffer = (ByteBuf) message;
+            output.append(buffer.toString(US_ASCII));
+            buffer.release();
+        }
+        return new Response(output.toString());
+    }
+
+    /**
+     * Raw HTTP response.
+     */
+    private static final class Response {
+        private final String statusLine;
+        private final Map<String, String> headers = new HashMap<>();
+        private final String body;
+
+        Response(final String raw) {
+            int headerEnd = raw.indexOf("\r\n\r\n");
+            String[] lines = raw.substring(0, headerEnd).split("\r\n");
+            statusLine = lines[0];
+            for (int i = 1; i < lines.length; i++) {
+                int separator = lines[i].indexOf(':');
+                headers.put(lines[i].substring(0, separator).toLowerCase(), lines[i].substring(separator + 1).trim());
+            }
+            body = raw.substring(headerEnd + 4);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2012-2015  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.service.http;
+
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.DefaultFileRegion;
+import io.netty.channel.FileRegion;
+import io.netty.channel.embedded.EmbeddedChannel;
+import net.holmes.core.business.configuration.ConfigurationManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static io.netty.buffer.Unpooled.buffer;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static net.holmes.core.common.ConfigurationParameter.HTTP_SERVER_IDLE_TIMEOUT_SECONDS;
+import static org.easymock.EasyMock.*;
+import static org.junit.Assert.*;
+
+public class HttpConnectionMonitorTest {
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("holmes", ".avi");
+        Files.write(file.toPath(), "content".getBytes(UTF_8));
+    }
+
+    @After
+    public void tearDown() {
+        assertTrue(file.delete());
+    }
+
+    @Test
+    public void testFileWrite() {
+        HttpConnectionMonitor monitor = newMonitor(300);
+        EmbeddedChannel channel = new EmbeddedChannel(monitor.newConnectionHandler());
+        assertEquals(1, monitor.getConnectionCount());
+
+        ChannelFuture future = channel.write(new DefaultFileRegion(file, 0, file.length()));
+        assertEquals(1, monitor.getOpenFileCount());
+
+        channel.flush();
+        assertTrue(future.isSuccess());
+        assertEquals(0, monitor.getOpenFileCount());
+        ((FileRegion) channel.readOutbound()).release();
+
+        channel.close();
+        assertEquals(0, monitor.getConnectionCount());
+    }
+
+    @Test
+    public void testFileWriteOnClosedConnection() {
+        HttpConnectionMonitor monitor = newMonitor(300);
+        EmbeddedChannel channel = new EmbeddedChannel(monitor.newConnectionHandler());
+
+        ChannelFuture future = channel.write(new DefaultFileRegion(file, 0, file.length()));
+        assertEquals(1, monitor.getOpenFileCount());
+
+        channel.close();
+        assertFalse(future.isSuccess());
+        assertEquals(0, monitor.getOpenFileCount());
+        assertEquals(0, monitor.getConnectionCount());
+    }
+
+    @Test
+    public void testBufferedBytes() {
+        HttpConnectionMonitor monitor = newMonitor(300);
+        EmbeddedChannel channel = new EmbeddedChannel(monitor.newConnectionHandler());
+
+        channel.write(buffer(1000).writeZero(1000));
+        assertEquals(1000, monitor.getBufferedBytes());
+
+        channel.flush();
+        assertEquals(0, monitor.getBufferedBytes());
+        assertTrue(channel.finish());
+    }
+
+    @Test
+    public void testIdleConnection() throws InterruptedException {
+        HttpConnectionMonitor monitor = newMonitor(1);
+        EmbeddedChannel channel = new EmbeddedChannel(monitor.newConnectionHandler());
+
+        MILLISECONDS.sleep(1100);
+        channel.runPendingTasks();
+        assertFalse(channel.isOpen());
+        assertEquals(0, monitor.getConnectionCount());
+    }
+
+    @Test
+    public void testIdleConnectionStreaming() throws InterruptedException {
+        HttpConnectionMonitor monitor = newMonitor(1);
+        EmbeddedChannel channel = new EmbeddedChannel(monitor.newConnectionHandler());
+
+        // File streaming started recently: connection is kept open
+        MILLISECONDS.sleep(600);
+        channel.write(new DefaultFileRegion(file, 0, file.length()));
+        MILLISECONDS.sleep(500);
+        channel.runPendingTasks();
+        assertTrue(channel.isOpen());
+
+        // No streaming progress since then: connection is closed and file released
+        MILLISECONDS.sleep(1100);
+        channel.runPendingTasks();
+        assertFalse(channel.isOpen());
+        assertEquals(0, monitor.getOpenFileCount());
+    }
+
+    private HttpConnectionMonitor newMonitor(final int idleTimeoutSeconds) {
+        ConfigurationManager configurationManager = createMock(ConfigurationManager.class);
+        expect(configurationManager.getParameter(HTTP_SERVER_IDLE_TIMEOUT_SECONDS)).andReturn(idleTimeoutSeconds);
+        replay(configurationManager);
+        HttpConnectionMonitor monitor = new HttpConnectionMonitor(configurationManager);
+        verify(configurationManager);
+        return monitor;
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2012-2015  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.service.http;
+
+import io.netty.buffer.ByteBuf;
+import net.holmes.core.business.configuration.ConfigurationManager;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static net.holmes.core.common.ConfigurationParameter.HTTP_SERVER_CONTENT_CACHE_MAX_FILE_SIZE;
+import static net.holmes.core.common.ConfigurationParameter.HTTP_SERVER_CONTENT_CACHE_SIZE;
+import static org.easymock.EasyMock.*;
+import static org.junit.Assert.*;
+
+public class HttpContentCacheTest {
+
+    @Test
+    public void testInjectedCache() throws IOException {
+        ConfigurationManager configurationManager = createMock(ConfigurationManager.class);
+        expect(configurationManager.getParameter(HTTP_SERVER_CONTENT_CACHE_SIZE)).andReturn(1);
+        expect(configurationManager.getParameter(HTTP_SERVER_CONTENT_CACHE_MAX_FILE_SIZE)).andReturn(1);
+        replay(configurationManager);
+
+        HttpContentCache cache = new HttpContentCache(configurationManager);
+        File file = createTestFile("picture");
+        ByteBuf content = cache.acquire(file, file.length(), file.lastModified());
+        assertNotNull(content);
+        content.release();
+        verify(configurationManager);
+    }
+
+    @Test
+    public void testAcquireHit() throws IOException {
+        HttpContentCache cache = new HttpContentCache(1024, 1024);
+        File file = createTestFile("picture");
+
+        ByteBuf content = cache.acquire(file, file.length(), file.lastModified());
+        assertEquals("picture", content.toString(US_ASCII));
+        ByteBuf cachedContent = cache.acquire(file, file.length(), file.lastModified());
+        assertSame(content, cachedContent);
+        assertEquals(3, content.refCnt());
+        content.release();
+        cachedContent.release();
+
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(0.5, cache.getHitRate(), 0);
+        assertEquals(7, cache.getSize());
+    }
+
+    @Test
+    public void testAcquireDisabled() throws IOException {
+        HttpContentCache cache = new HttpContentCache(0, 0);
+        File file = createTestFile("picture");
+
+        assertNull(cache.acquire(file, file.length(), file.lastModified()));
+        assertEquals(0, cache.getMissCount());
+        assertEquals(1.0, cache.getHitRate(), 0);
+    }
+
+    @Test
+    public void testAcquireLargeFile() throws IOException {
+        HttpContentCache cache = new HttpContentCache(1024, 4);
+        File file = createTestFile("picture");
+
+        assertNull(cache.acquire(file, file.length(), file.lastModified()));
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void testAcquireEmptyFile() throws IOException {
+        HttpContentCache cache = new HttpContentCache(1024, 1024);
+        File file = createTestFile("");
+
+        assertNull(cache.acquire(file, file.length(), file.lastModified()));
+    }
+
+    @Test
+    public void testAcquireMissingFile() {
+        HttpContentCache cache = new HttpContentCache(1024, 1024);
+
+        assertNull(cache.acquire(new File("missing_file"), 10, 0));
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void testAcquireModifiedFile() throws IOException {
+        HttpContentCache cache = new HttpContentCache(1024, 1024);
+        File file = createTestFile("picture");
+
+        ByteBuf content = cache.acquire(file, file.length(), file.lastModified());
+        content.release();
+        Files.write(file.toPath(), "subtitles".getBytes(US_ASCII));
+        ByteBuf modifiedContent = cache.acquire(file, file.length(), file.lastModified() + 1000);
+        assertEquals("subtitles", modifiedContent.toString(US_ASCII));
+        modifiedContent.release();
+
+        // Invalidated content is replaced
+        assertEquals(2, cache.getMissCount());
+        assertEquals(9, cache.getSize());
+    }
+
+    @Test
+    public void testEviction() throws IOException {
+        HttpContentCache cache = new HttpContentCache(16, 16);
+        File file1 = createTestFile("picture1");
+        File file2 = createTestFile("picture2");
+        File file3 = createTestFile("picture3");
+
+        ByteBuf content1 = cache.acquire(file1, file1.length(), file1.lastModified());
+        ByteBuf content2 = cache.acquire(file2, file2.length(), file2.lastModified());
+        content2.release();
+        ByteBuf content3 = cache.acquire(file3, file3.length(), file3.lastModified());
+        content3.release();
+
+        // Least recently used content is evicted, but remains readable until released by its last response
+        assertEquals(16, cache.getSize());
+        assertEquals(1, content1.refCnt());
+        assertEquals("picture1", content1.toString(US_ASCII));
+        content1.release();
+        assertEquals(0, content1.refCnt());
+        ByteBuf cachedContent3 = cache.acquire(file3, file3.length(), file3.lastModified());
+        assertSame(content3, cachedContent3);
+        cachedContent3.release();
+    }
+
+    private File createTestFile(final String content) throws IOException {
+        File file = File.createTempFile("content", ".jpg");
+        file.deleteOnExit();
+        Files.write(file.toPath(), content.getBytes(US_ASCII));
+        return file;
+    }
+}
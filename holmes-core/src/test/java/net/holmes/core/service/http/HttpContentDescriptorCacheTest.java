@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2012-2015  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.service.http;
+
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.FullHttpRequest;
+import net.holmes.core.business.configuration.model.ConfigurationNode;
+import net.holmes.core.business.media.model.ContentNode;
+import net.holmes.core.business.mimetype.model.MimeType;
+import net.holmes.core.common.event.ConfigurationEvent;
+import net.holmes.core.common.event.MediaEvent;
+import net.holmes.core.service.http.HttpContentDescriptorCache.ContentDescriptor;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static io.netty.handler.codec.http.HttpMethod.GET;
+import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
+import static net.holmes.core.common.event.ConfigurationEvent.EventType.*;
+import static net.holmes.core.common.event.MediaEvent.MediaEventType.SCAN_NODE;
+import static net.holmes.core.common.event.MediaEvent.MediaEventType.UPDATE_CONTAINER;
+import static org.junit.Assert.*;
+
+public class HttpContentDescriptorCacheTest {
+    private static final MimeType MIME_TYPE = MimeType.valueOf("video/x-msvideo");
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("video", ".avi");
+        file.deleteOnExit();
+        Files.write(file.toPath(), new byte[100]);
+    }
+
+    @Test
+    public void testGetCachedDescriptor() {
+        HttpContentDescriptorCache cache = new HttpContentDescriptorCache();
+        assertNull(cache.get("id"));
+        ContentDescriptor descriptor = cache.put("id", new ContentNode("id", "parentId", "name", file, MIME_TYPE));
+        assertSame(descriptor, cache.get("id"));
+        assertEquals(file, descriptor.getFile());
+        assertEquals(MIME_TYPE, descriptor.getMimeType());
+        assertEquals(HttpFileRequestHandler.getEntityTag(100, file.lastModified()), descriptor.getEntityTag());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void testGetModifiedFile() throws IOException {
+        HttpContentDescriptorCache cache = new HttpContentDescriptorCache();
+        cache.put("id", new ContentNode("id", "parentId", "name", file, MIME_TYPE));
+        Files.write(file.toPath(), new byte[200]);
+        assertNull(cache.get("id"));
+        assertEquals(0, cache.getHitCount());
+    }
+
+    @Test
+    public void testGetDeletedFile() {
+        HttpContentDescriptorCache cache = new HttpContentDescriptorCache();
+        cache.put("id", new ContentNode("id", "parentId", "name", file, MIME_TYPE));
+        assertTrue(file.delete());
+        assertNull(cache.get("id"));
+    }
+
+    @Test
+    public void testGetExpiredDescriptor() {
+        HttpContentDescriptorCache cache = new HttpContentDescriptorCache(16, 0);
+        cache.put("id", new ContentNode("id", "parentId", "name", file, MIME_TYPE));
+        assertNull(cache.get("id"));
+    }
+
+    @Test
+    public void testNewRequest() {
+        HttpContentDescriptorCache cache = new HttpContentDescriptorCache();
+        FullHttpRequest httpRequest = new DefaultFullHttpRequest(HTTP_1_1, GET, "/content?id=id");
+
+        HttpFileRequest request = cache.put("id", new ContentNode("id", "parentId", "name", file, MIME_TYPE)).newRequest(httpRequest);
+        assertTrue(request.isValidated());
+        assertEquals(file, request.getFile());
+        assertEquals(100, request.getFileLength());
+        assertEquals(file.lastModified(), request.getLastModified());
+        assertFalse(request.isStaticResource());
+
+        HttpFileRequest remoteRequest = cache.put("remoteId", new ContentNode("remoteId", "parentId", "name", "http://localhost/video.avi", MIME_TYPE))
+                .newRequest(httpRequest);
+        assertFalse(remoteRequest.isValidated());
+        assertEquals("http://localhost/video.avi", remoteRequest.getRemoteUrl());
+        assertNotNull(cache.get("remoteId"));
+    }
+
+    @Test
+    public void testHandleUpdateContainerEvent() {
+        HttpContentDescriptorCache cache = new HttpContentDescriptorCache();
+        cache.put("id", new ContentNode("id", "parentId", "name", file, MIME_TYPE));
+        cache.put("otherId", new ContentNode("otherId", "otherParentId", "name", file, MIME_TYPE));
+
+        cache.handleMediaEvent(new MediaEvent(SCAN_NODE, "parentId"));
+        assertNotNull(cache.get("id"));
+
+        cache.handleMediaEvent(new MediaEvent(UPDATE_CONTAINER, "parentId"));
+        assertNull(cache.get("id"));
+        assertNotNull(cache.get("otherId"));
+    }
+
+    @Test
+    public void testHandleConfigEvent() {
+        HttpContentDescriptorCache cache = new HttpContentDescriptorCache();
+        ConfigurationNode configNode = new ConfigurationNode("folderId", "label", "path");
+        cache.put("id", new ContentNode("id", "parentId", "name", file, MIME_TYPE));
+
+        cache.handleConfigEvent(new ConfigurationEvent(ADD_FOLDER, configNode, null));
+        assertNotNull(cache.get("id"));
+
+        cache.handleConfigEvent(new ConfigurationEvent(UPDATE_FOLDER, configNode, null));
+        assertNull(cache.get("id"));
+
+        cache.put("id", new ContentNode("id", "parentId", "name", file, MIME_TYPE));
+        cache.handleConfigEvent(new ConfigurationEvent(DELETE_FOLDER, configNode, null));
+        assertNull(cache.get("id"));
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2012-2015  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.service.http;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.FullHttpRequest;
+import net.holmes.core.business.media.MediaManager;
+import net.holmes.core.business.media.model.ContentNode;
+import net.holmes.core.business.mimetype.model.MimeType;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static io.netty.handler.codec.http.HttpMethod.GET;
+import static io.netty.handler.codec.http.HttpMethod.HEAD;
+import static org.easymock.EasyMock.*;
+import static org.junit.Assert.*;
+
+public class HttpContentRequestDecoderTest {
+
+    @Test
+    public void testDecodeContentFile() {
+        FullHttpRequest request = createMock(FullHttpRequest.class);
+        ChannelHandlerContext context = createMock(ChannelHandlerContext.class);
+        MediaManager mediaManager = createMock(MediaManager.class);
+        List<Object> out = new ArrayList<>();
+
+        expect(request.getMethod()).andReturn(GET).anyTimes();
+        ContentNode contentNode = new ContentNode("id", "parentId", "name", new File("file"), MimeType.valueOf("video/x-msvideo"));
+        expect(mediaManager.getNode("1234")).andReturn(Optional.of(contentNode)).atLeastOnce();
+
+        replay(context, request, mediaManager);
+        HttpContentRequestDecoder decoder = new HttpContentRequestDecoder(mediaManager, new HttpContentDescriptorCache());
+        decoder.decode(context, new HttpContentRequest(request, "1234"), out);
+        assertEquals(out.size(), 1);
+        assertEquals(out.get(0).getClass(), HttpFileRequest.class);
+        HttpFileRequest fileRequest = (HttpFileRequest) out.get(0);
+        assertNotNull(fileRequest.getFile());
+        assertNotNull(fileRequest.getMimeType());
+        assertNotNull(fileRequest.getHttpMessage());
+        verify(context, request, mediaManager);
+    }
+
+    @Test
+    public void testDecodeRemoteContent() {
+        FullHttpRequest request = createMock(FullHttpRequest.class);
+        ChannelHandlerContext context = createMock(ChannelHandlerContext.class);
+        MediaManager mediaManager = createMock(MediaManager.class);
+        List<Object> out = new ArrayList<>();
+
+        expect(request.getMethod()).andReturn(GET).anyTimes();
+        ContentNode contentNode = new ContentNode("id", "parentId", "name", "http://localhost/video.avi", MimeType.valueOf("video/x-msvideo"));
+        expect(mediaManager.getNode("1234")).andReturn(Optional.of(contentNode)).atLeastOnce();
+
+        replay(context, request, mediaManager);
+        HttpContentRequestDecoder decoder = new HttpContentRequestDecoder(mediaManager, new HttpContentDescriptorCache());
+        decoder.decode(context, new HttpContentRequest(request, "1234"), out);
+        assertEquals(out.size(), 1);
+        HttpFileRequest fileRequest = (HttpFileRequest) out.get(0);
+        assertNull(fileRequest.getFile());
+        assertEquals("http://localhost/video.avi", fileRequest.getRemoteUrl());
+        assertFalse(fileRequest.isStaticResource());
+        assertNotNull(fileRequest.getMimeType());
+        verify(context, request, mediaManager);
+    }
+
+    @Test
+    public void testDecodeCachedContentFile() throws Exception {
+        File file = File.createTempFile("video", ".avi");
+        file.deleteOnExit();
+
+        FullHttpRequest request = createMock(FullHttpRequest.class);
+        ChannelHandlerContext context = createMock(ChannelHandlerContext.class);
+        MediaManager mediaManager = createMock(MediaManager.class);
+        List<Object> out = new ArrayList<>();
+
+        expect(request.getMethod()).andReturn(GET).anyTimes();
+        ContentNode contentNode = new ContentNode("id", "parentId", "name", file, MimeType.valueOf("video/x-msvideo"));
+        expect(mediaManager.getNode("1234")).andReturn(Optional.of(contentNode)).once();
+
+        replay(context, request, mediaManager);
+        HttpContentRequestDecoder decoder = new HttpContentRequestDecoder(mediaManager, new HttpContentDescriptorCache());
+        decoder.decode(context, new HttpContentRequest(request, "1234"), out);
+        decoder.decode(context, new HttpContentRequest(request, "1234"), out);
+        assertEquals(out.size(), 2);
+        HttpFileRequest fileRequest = (HttpFileRequest) out.get(1);
+        assertTrue(fileRequest.isValidated());
+        assertEquals(file, fileRequest.getFile());
+        assertEquals(contentNode.getModifiedDate().longValue(), fileRequest.getLastModified());
+        verify(context, request, mediaManager);
+    }
+
+    @Test
+    public void testDecodeModifiedContentFile() throws Exception {
+        File file = File.createTempFile("video", ".avi");
+        file.deleteOnExit();
+
+        FullHttpRequest request = createMock(FullHttpRequest.class);
+        ChannelHandlerContext context = createMock(ChannelHandlerContext.class);
+        MediaManager mediaManager = createMock(MediaManager.class);
+        List<Object> out = new ArrayList<>();
+
+        expect(request.getMethod()).andReturn(GET).anyTimes();
+        ContentNode contentNode = new ContentNode("id", "parentId", "name", file, MimeType.valueOf("video/x-msvideo"));
+        expect(mediaManager.getNode("1234")).andReturn(Optional.of(contentNode)).times(2);
+
+        replay(context, request, mediaManager);
+        HttpContentRequestDecoder decoder = new HttpContentRequestDecoder(mediaManager, new HttpContentDescriptorCache());
+        decoder.decode(context, new HttpContentRequest(request, "1234"), out);
+        // Modified file is resolved again from media index
+        assertTrue(file.setLastModified(file.lastModified() - 10000));
+        decoder.decode(context, new HttpContentRequest(request, "1234"), out);
+        assertEquals(out.size(), 2);
+        verify(context, request, mediaManager);
+    }
+
+    @Test
+    public void testDecodeHeadContentFile() throws Exception {
+        File file = File.createTempFile("video", ".avi");
+        file.deleteOnExit();
+
+        FullHttpRequest request = createMock(FullHttpRequest.class);
+        ChannelHandlerContext context = createMock(ChannelHandlerContext.class);
+        MediaManager mediaManager = createMock(MediaManager.class);
+        List<Object> out = new ArrayList<>();
+
+        expect(request.getMethod()).andReturn(HEAD).atLeastOnce();
+        ContentNode contentNode = new ContentNode("id", "parentId", "name", file, MimeType.valueOf("video/x-msvideo"));
+        expect(mediaManager.getNode("1234")).andReturn(Optional.of(contentNode)).atLeastOnce();
+
+        replay(context, request, mediaManager);
+        HttpContentRequestDecoder decoder = new HttpContentRequestDecoder(mediaManager, new HttpContentDescriptorCache());
+        decoder.decode(context, new HttpContentRequest(request, "1234"), out);
+        assertEquals(out.size(), 1);
+        HttpFileRequest fileRequest = (HttpFileRequest) out.get(0);
+        assertTrue(fileRequest.isHeadRequest());
+        assertEquals(contentNode.getSize().longValue(), fileRequest.getFileLength());
+        assertEquals(contentNode.getModifiedDate().longValue(), fileRequest.getLastModified());
+        verify(context, request, mediaManager);
+    }
+
+    @Test
+    public void testDecodeUnknownContent() {
+        FullHttpRequest request = createMock(FullHttpRequest.class);
+        ChannelHandlerContext context = createMock(ChannelHandlerContext.class);
+        MediaManager mediaManager = createMock(MediaManager.class);
+        List<Object> out = new ArrayList<>();
+
+        expect(request.retain()).andReturn(request).atLeastOnce();
+        expect(mediaManager.getNode("")).andReturn(Optional.empty()).atLeastOnce();
+
+        replay(context, request, mediaManager);
+        HttpContentRequestDecoder decoder = new HttpContentRequestDecoder(mediaManager, new HttpContentDescriptorCache());
+        decoder.decode(context, new HttpContentRequest(request, ""), out);
+        assertEquals(out.size(), 1);
+        assertEquals(out.get(0), request);
+        verify(context, request, mediaManager);
+    }
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright (C) 2012-2015  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.service.http;
+
+import net.holmes.core.business.configuration.ConfigurationManager;
+import net.holmes.core.service.http.HttpFileChannelCache.CachedFileChannel;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static net.holmes.core.common.ConfigurationParameter.HTTP_SERVER_DISK_CACHE_FOLDERS;
+import static net.holmes.core.common.ConfigurationParameter.HTTP_SERVER_DISK_CACHE_SIZE;
+import static org.easymock.EasyMock.*;
+import static org.junit.Assert.*;
+
+public class HttpDiskCacheTest {
+    private static final long MB = 1024 * 1024;
+
+    private Path networkFolder;
+    private Path cacheDirectory;
+    private File file;
+    private byte[] content;
+
+    @Before
+    public void setUp() throws IOException {
+        networkFolder = Files.createTempDirectory("network");
+        cacheDirectory = Files.createTempDirectory("disk-cache");
+        file = networkFolder.resolve("video.avi").toFile();
+        content = newContent((int) (2 * MB + MB / 2), 1);
+        Files.write(file.toPath(), content);
+    }
+
+    @Test
+    public void testInjectedCache() throws IOException {
+        ConfigurationManager configurationManager = createMock(ConfigurationManager.class);
+        expect(configurationManager.getParameter(HTTP_SERVER_DISK_CACHE_SIZE)).andReturn(16);
+        expect(configurationManager.getParameter(HTTP_SERVER_DISK_CACHE_FOLDERS)).andReturn(" " + networkFolder + " ");
+        replay(configurationManager);
+
+        HttpDiskCache diskCache = new HttpDiskCache(configurationManager, cacheDirectory.getParent().toString());
+        assertNotNull(diskCache.open(file.getAbsolutePath(), file.length(), file.lastModified()));
+        verify(configurationManager);
+    }
+
+    @Test
+    public void testOpenOutsideCachedFolders() {
+        HttpDiskCache diskCache = newDiskCache(16 * MB);
+        assertNull(diskCache.open(networkFolder + "_other" + File.separator + "video.avi", 10, 0));
+        assertNull(diskCache.open(new File("video.avi").getAbsolutePath(), 10, 0));
+        assertNotNull(diskCache.open(networkFolder.resolve("movies").resolve("video.avi").toString(), 10, 0));
+    }
+
+    @Test
+    public void testOpenDisabled() {
+        HttpDiskCache diskCache = new HttpDiskCache(cacheDirectory, 0, Collections.singletonList(networkFolder.toString()));
+        assertNull(diskCache.open(file.getAbsolutePath(), file.length(), file.lastModified()));
+    }
+
+    @Test
+    public void testReadThrough() throws IOException {
+        HttpDiskCache diskCache = newDiskCache(16 * MB);
+        CachedFileChannel fileChannel = new HttpFileChannelCache(16, 30, null, diskCache).acquire(file);
+        assertFalse(fileChannel.isZeroCopyCapable());
+
+        // Range overlapping two blocks, then whole file
+        assertArrayEquals(Arrays.copyOfRange(content, (int) MB - 10, (int) MB + 10), read(fileChannel, MB - 10, 20));
+        assertArrayEquals(content, read(fileChannel, 0, content.length));
+        fileChannel.release();
+
+        // Blocks read by first range are read from memory by second range
+        assertEquals(0, diskCache.getHitCount());
+        assertEquals(3, diskCache.getMissCount());
+        assertEquals(content.length, diskCache.getSize());
+        assertEquals(3, listBlocks().size());
+    }
+
+    @Test
+    public void testReadCachedBlocksAfterRestart() throws IOException {
+        HttpDiskCache diskCache = newDiskCache(16 * MB);
+        CachedFileChannel fileChannel = new HttpFileChannelCache(16, 30, null, diskCache).acquire(file);
+        read(fileChannel, 0, content.length);
+        fileChannel.release();
+
+        // Network file content changes without changing its attributes: content is served from cache
+        long lastModified = file.lastModified();
+        Files.write(file.toPath(), newContent(content.length, 3));
+        assertTrue(file.setLastModified(lastModified));
+        Files.createFile(cacheDirectory.resolve("partial.tmp"));
+
+        HttpDiskCache restartedDiskCache = newDiskCache(16 * MB);
+        assertEquals(content.length, restartedDiskCache.getSize());
+        assertFalse(Files.exists(cacheDirectory.resolve("partial.tmp")));
+        fileChannel = new HttpFileChannelCache(16, 30, null, restartedDiskCache).acquire(file);
+        assertArrayEquals(content, read(fileChannel, 0, content.length));
+        fileChannel.release();
+        assertEquals(3, restartedDiskCache.getHitCount());
+        assertEquals(0, restartedDiskCache.getMissCount());
+    }
+
+    @Test
+    public void testReadModifiedFile() throws IOException {
+        HttpDiskCache diskCache = newDiskCache(16 * MB);
+        CachedFileChannel fileChannel = new HttpFileChannelCache(16, 30, null, diskCache).acquire(file);
+        read(fileChannel, 0, content.length);
+        fileChannel.release();
+
+        byte[] modifiedContent = newContent((int) MB, 5);
+        Files.write(file.toPath(), modifiedContent);
+        fileChannel = new HttpFileChannelCache(16, 30, null, diskCache).acquire(file);
+        assertArrayEquals(modifiedContent, read(fileChannel, 0, modifiedContent.length));
+        fileChannel.release();
+        assertEquals(0, diskCache.getHitCount());
+        assertEquals(4, diskCache.getMissCount());
+    }
+
+    @Test
+    public void testEviction() throws IOException {
+        HttpDiskCache diskCache = newDiskCache(2 * MB);
+        CachedFileChannel fileChannel = new HttpFileChannelCache(16, 30, null, diskCache).acquire(file);
+        assertArrayEquals(content, read(fileChannel, 0, content.length));
+        fileChannel.release();
+
+        // First block is evicted
+        assertEquals(MB + MB / 2, diskCache.getSize());
+        assertEquals(2, listBlocks().size());
+        for (Path block : listBlocks()) {
+            assertFalse(block.getFileName().toString().endsWith("-0.blk"));
+        }
+    }
+
+    @Test
+    public void testConcurrentReaders() throws Exception {
+        HttpDiskCache diskCache = newDiskCache(16 * MB);
+        final CachedFileChannel fileChannel = new HttpFileChannelCache(16, 30, null, diskCache).acquire(file);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            // Readers of the same shared channel read different parts of file in small chunks
+            List<Future<byte[]>> results = new ArrayList<>();
+            for (int reader = 0; reader < 4; reader++) {
+                final int start = (int) (reader * MB / 2);
+                results.add(executor.submit(() -> {
+                    byte[] bytes = new byte[(int) MB];
+                    for (int offset = 0; offset < bytes.length; offset += 64 * 1024) {
+                        System.arraycopy(read(fileChannel, start + offset, 64 * 1024), 0, bytes, offset, 64 * 1024);
+                    }
+                    return bytes;
+                }));
+            }
+            for (int reader = 0; reader < 4; reader++) {
+                int start = (int) (reader * MB / 2);
+                assertArrayEquals(Arrays.copyOfRange(content, start, start + (int) MB), results.get(reader).get());
+            }
+        } finally {
+            executor.shutdown();
+            fileChannel.release();
+        }
+
+        // Each block is read from network once
+        assertEquals(3, diskCache.getMissCount());
+    }
+
+    @Test(expected = IOException.class)
+    public void testReadBeyondEnd() throws IOException {
+        HttpDiskCache diskCache = newDiskCache(16 * MB);
+        CachedFileChannel fileChannel = new HttpFileChannelCache(16, 30, null, diskCache).acquire(file);
+        try {
+            read(fileChannel, content.length - 10, 20);
+        } finally {
+            fileChannel.release();
+        }
+    }
+
+    private HttpDiskCache newDiskCache(final long maximumSize) {
+        return new HttpDiskCache(cacheDirectory, maximumSize, Collections.singletonList(networkFolder.toString()));
+    }
+
+    private List<Path> listBlocks() throws IOException {
+        List<Path> blocks = new ArrayList<>();
+        try (DirectoryStream<Path> directoryStream = Files.newDirectoryStream(cacheDirectory, "*.blk")) {
+            for (Path block : directoryStream) {
+                blocks.add(block);
+            }
+        }
+        return blocks;
+    }
+
+    private static byte[] read(final CachedFileChannel fileChannel, final long position, final int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        fileChannel.readFully(buffer, position);
+        return buffer.array();
+    }
+
+    private static byte[] newContent(final int length, final int step) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) (i * step);
+        }
+        return bytes;
+    }
+}
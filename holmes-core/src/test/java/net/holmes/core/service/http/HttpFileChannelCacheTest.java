@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2012-2015  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.service.http;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.DefaultFileRegion;
+import io.netty.handler.stream.ChunkedInput;
+import net.holmes.core.business.configuration.ConfigurationManager;
+import net.holmes.core.service.http.HttpFileChannelCache.CachedFileChannel;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+
+import static io.netty.buffer.UnpooledByteBufAllocator.DEFAULT;
+import static java.nio.channels.Channels.newChannel;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static net.holmes.core.common.ConfigurationParameter.HTTP_SERVER_FILE_CHANNEL_CACHE_SIZE;
+import static net.holmes.core.common.ConfigurationParameter.HTTP_SERVER_FILE_CHANNEL_IDLE_SECONDS;
+import static net.holmes.core.common.ConfigurationParameter.HTTP_SERVER_FILE_THREADS;
+import static org.easymock.EasyMock.*;
+import static org.junit.Assert.*;
+
+public class HttpFileChannelCacheTest {
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("holmes", ".avi");
+        Files.write(file.toPath(), "some content".getBytes(UTF_8));
+    }
+
+    @After
+    public void tearDown() {
+        assertTrue(file.delete());
+    }
+
+    @Test
+    public void testAcquireShared() throws IOException {
+        HttpFileChannelCache cache = new HttpFileChannelCache(16, 30);
+        CachedFileChannel first = cache.acquire(file);
+        CachedFileChannel second = cache.acquire(file);
+
+        assertSame(first, second);
+        assertEquals(1, cache.getOpenChannelCount());
+        assertEquals(3, first.refCnt());
+
+        first.release();
+        second.release();
+        assertEquals(1, first.refCnt());
+    }
+
+    @Test
+    public void testAcquireModifiedFile() throws IOException {
+        HttpFileChannelCache cache = new HttpFileChannelCache(16, 30);
+        CachedFileChannel first = cache.acquire(file);
+
+        Files.write(file.toPath(), "some other content".getBytes(UTF_8));
+        assertTrue(file.setLastModified(file.lastModified() + 2000));
+        CachedFileChannel second = cache.acquire(file);
+
+        assertNotSame(first, second);
+        assertEquals(1, cache.getOpenChannelCount());
+        // Outdated channel is closed when released by its last user
+        assertEquals(1, first.refCnt());
+        first.release();
+        assertEquals(0, first.refCnt());
+        second.release();
+    }
+
+    @Test
+    public void testMaximumSize() throws IOException {
+        File otherFile = File.createTempFile("holmes", ".avi");
+        try {
+            HttpFileChannelCache cache = new HttpFileChannelCache(1, 30);
+            CachedFileChannel first = cache.acquire(file);
+            first.release();
+            cache.acquire(otherFile).release();
+
+            assertEquals(1, cache.getOpenChannelCount());
+            assertEquals(0, first.refCnt());
+        } finally {
+            assertTrue(otherFile.delete());
+        }
+    }
+
+    @Test
+    public void testIdleChannel() throws IOException, InterruptedException {
+        HttpFileChannelCache cache = new HttpFileChannelCache(16, 1);
+        CachedFileChannel fileChannel = cache.acquire(file);
+        fileChannel.release();
+
+        MILLISECONDS.sleep(1100);
+        cache.cleanUp();
+        assertEquals(0, cache.getOpenChannelCount());
+        assertEquals(0, fileChannel.refCnt());
+    }
+
+    @Test
+    public void testFileRegion() throws IOException {
+        HttpFileChannelCache cache = new HttpFileChannelCache(16, 30);
+        CachedFileChannel fileChannel = cache.acquire(file);
+        DefaultFileRegion region = fileChannel.newFileRegion(5, 7);
+        fileChannel.release();
+        assertEquals(2, fileChannel.refCnt());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(7, region.transferTo(newChannel(out), 0));
+        assertEquals("content", out.toString("UTF-8"));
+
+        // Releasing region releases channel reference without closing shared channel
+        region.release();
+        assertEquals(1, fileChannel.refCnt());
+    }
+
+    @Test
+    public void testChunkedInput() throws Exception {
+        ChannelHandlerContext context = createMock(ChannelHandlerContext.class);
+        expect(context.alloc()).andReturn(DEFAULT).atLeastOnce();
+        replay(context);
+
+        HttpFileChannelCache cache = new HttpFileChannelCache(16, 30);
+        CachedFileChannel fileChannel = cache.acquire(file);
+        ChunkedInput<ByteBuf> input = fileChannel.newChunkedInput(5, 7, 4);
+        fileChannel.release();
+
+        StringBuilder content = new StringBuilder();
+        while (!input.isEndOfInput()) {
+            ByteBuf chunk = input.readChunk(context);
+            content.append(chunk.toString(UTF_8));
+            chunk.release();
+        }
+        assertEquals("content", content.toString());
+        assertNull(input.readChunk(context));
+
+        input.close();
+        input.close();
+        assertEquals(1, fileChannel.refCnt());
+        verify(context);
+    }
+
+    @Test
+    public void testInjectedCache() throws IOException {
+        ConfigurationManager configurationManager = createMock(ConfigurationManager.class);
+        expect(configurationManager.getParameter(HTTP_SERVER_FILE_THREADS)).andReturn(1);
+        expect(configurationManager.getParameter(HTTP_SERVER_FILE_CHANNEL_CACHE_SIZE)).andReturn(16);
+        expect(configurationManager.getParameter(HTTP_SERVER_FILE_CHANNEL_IDLE_SECONDS)).andReturn(30).atLeastOnce();
+        replay(configurationManager);
+
+        HttpFileExecutorGroup httpFileExecutorGroup = new HttpFileExecutorGroup(configurationManager);
+        try {
+            HttpFileChannelCache cache = new HttpFileChannelCache(configurationManager, httpFileExecutorGroup,
+                    new HttpFileReadAhead(0, 2, 0, httpFileExecutorGroup.getExecutorGroup()), new HttpDiskCache(null, 0, Collections.<String>emptyList()));
+            cache.acquire(file).release();
+            assertEquals(1, cache.getOpenChannelCount());
+        } finally {
+            httpFileExecutorGroup.shutdownGracefully();
+        }
+        verify(configurationManager);
+    }
+
+    @Test
+    public void testInjectedCacheWithoutIdleDelay() throws IOException {
+        ConfigurationManager configurationManager = createMock(ConfigurationManager.class);
+        expect(configurationManager.getParameter(HTTP_SERVER_FILE_THREADS)).andReturn(1);
+        expect(configurationManager.getParameter(HTTP_SERVER_FILE_CHANNEL_CACHE_SIZE)).andReturn(16);
+        expect(configurationManager.getParameter(HTTP_SERVER_FILE_CHANNEL_IDLE_SECONDS)).andReturn(0).atLeastOnce();
+        replay(configurationManager);
+
+        HttpFileExecutorGroup httpFileExecutorGroup = new HttpFileExecutorGroup(configurationManager);
+        try {
+            HttpFileChannelCache cache = new HttpFileChannelCache(configurationManager, httpFileExecutorGroup,
+                    new HttpFileReadAhead(0, 2, 0, httpFileExecutorGroup.getExecutorGroup()), new HttpDiskCache(null, 0, Collections.<String>emptyList()));
+            cache.acquire(file).release();
+            assertEquals(0, cache.getOpenChannelCount());
+        } finally {
+            httpFileExecutorGroup.shutdownGracefully();
+        }
+        verify(configurationManager);
+    }
+}
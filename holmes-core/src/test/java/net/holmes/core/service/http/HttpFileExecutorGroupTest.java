@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2012-2015  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.service.http;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import net.holmes.core.business.configuration.ConfigurationManager;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static net.holmes.core.common.ConfigurationParameter.HTTP_SERVER_FILE_THREADS;
+import static org.easymock.EasyMock.*;
+import static org.junit.Assert.*;
+
+public class HttpFileExecutorGroupTest {
+
+    @Test
+    public void testBlockingHandlers() throws Exception {
+        ConfigurationManager configurationManager = createMock(ConfigurationManager.class);
+        expect(configurationManager.getParameter(HTTP_SERVER_FILE_THREADS)).andReturn(2);
+        replay(configurationManager);
+
+        HttpFileExecutorGroup httpFileExecutorGroup = new HttpFileExecutorGroup(configurationManager);
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicReference<String> handlerThread = new AtomicReference<>();
+        try {
+            // Embedded channel pipeline ends with its own inbound handler: blocking handlers are added first
+            EmbeddedChannel channel = new EmbeddedChannel(new ChannelInboundHandlerAdapter());
+            channel.pipeline().addFirst(httpFileExecutorGroup.getExecutorGroup(), new ChannelInboundHandlerAdapter() {
+                @Override
+                public void channelRead(final ChannelHandlerContext context, final Object msg) throws InterruptedException {
+                    handlerThread.set(Thread.currentThread().getName());
+                    blocked.countDown();
+                    release.await(5, SECONDS);
+                    MILLISECONDS.sleep(10);
+                }
+            }).addFirst(httpFileExecutorGroup.getExecutorGroup(), httpFileExecutorGroup.getBlockingTimeHandler());
+
+            // Blocking handler does not block channel event loop
+            channel.writeInbound("first");
+            channel.writeInbound("second");
+            assertTrue(blocked.await(5, SECONDS));
+            assertTrue(handlerThread.get().startsWith("holmes-http-file"));
+            assertTrue(httpFileExecutorGroup.getQueueDepth() > 0);
+            assertEquals(0, httpFileExecutorGroup.getBlockingCount());
+
+            // Release blocking handler
+            release.countDown();
+            long timeout = System.currentTimeMillis() + 5000;
+            while (httpFileExecutorGroup.getBlockingCount() < 2 && System.currentTimeMillis() < timeout) {
+                MILLISECONDS.sleep(10);
+            }
+            assertEquals(2, httpFileExecutorGroup.getBlockingCount());
+            assertEquals(0, httpFileExecutorGroup.getQueueDepth());
+            assertTrue(httpFileExecutorGroup.getMaxBlockingTime() >= MILLISECONDS.toNanos(10));
+            assertTrue(httpFileExecutorGroup.getBlockingTime() >= httpFileExecutorGroup.getMaxBlockingTime());
+        } finally {
+            release.countDown();
+            httpFileExecutorGroup.shutdownGracefully();
+        }
+        verify(configurationManager);
+    }
+
+    @Test
+    public void testEventLoopTime() {
+        ConfigurationManager configurationManager = createMock(ConfigurationManager.class);
+        expect(configurationManager.getParameter(HTTP_SERVER_FILE_THREADS)).andReturn(1);
+        replay(configurationManager);
+
+        HttpFileExecutorGroup httpFileExecutorGroup = new HttpFileExecutorGroup(configurationManager);
+        try {
+            EmbeddedChannel channel = new EmbeddedChannel(httpFileExecutorGroup.getEventLoopTimeHandler(), new ChannelInboundHandlerAdapter() {
+                @Override
+                public void channelRead(final ChannelHandlerContext context, final Object msg) throws InterruptedException {
+                    MILLISECONDS.sleep(10);
+                }
+            });
+
+            // Time spent in handlers on event loop is recorded apart from executor group time
+            channel.writeInbound("request");
+            assertEquals(1, httpFileExecutorGroup.getEventLoopCount());
+            assertTrue(httpFileExecutorGroup.getMaxEventLoopTime() >= MILLISECONDS.toNanos(10));
+            assertEquals(httpFileExecutorGroup.getMaxEventLoopTime(), httpFileExecutorGroup.getEventLoopTime());
+            assertEquals(0, httpFileExecutorGroup.getBlockingCount());
+        } finally {
+            httpFileExecutorGroup.shutdownGracefully();
+        }
+        verify(configurationManager);
+    }
+}
@@ -0,0 +1,269 @@
+/*
+ * Copyright (C) 2012-2015  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.service.http;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.stream.ChunkedInput;
+import io.netty.util.concurrent.DefaultEventExecutorGroup;
+import net.holmes.core.service.http.HttpFileChannelCache.CachedFileChannel;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+import static java.nio.file.StandardOpenOption.READ;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Http file read-ahead benchmark: chunked file streaming with and without read-ahead, on a simulated spinning disk.
+ * <p>
+ * 4 concurrent streams read their own file through chunked inputs, each benchmark operation reading a 1 MB segment.
+ * Reads go through a throttled file channel simulating a single disk head: reads are serialized, and each read
+ * not following previous one costs a seek, on top of transfer time.
+ * </p>
+ * <p>
+ * Run with: java -cp target/test-classes:[test classpath] net.holmes.core.service.http.HttpFileReadAheadBenchmark
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(4)
+@Fork(1)
+public class HttpFileReadAheadBenchmark {
+    private static final int FILE_SIZE = 64 * 1024 * 1024;
+    private static final int SEGMENT_SIZE = 1024 * 1024;
+    private static final int CHUNK_SIZE = 8192;
+    private static final long SEEK_NANOS = 4_000_000;
+    private static final long BYTES_PER_SECOND = 100L * 1024 * 1024;
+
+    @Param({"true", "false"})
+    private boolean readAhead;
+
+    private SimulatedDisk disk;
+    private DefaultEventExecutorGroup executorGroup;
+    private HttpFileReadAhead fileReadAhead;
+
+    @Setup
+    public void setup() {
+        disk = new SimulatedDisk();
+        executorGroup = new DefaultEventExecutorGroup(4);
+        fileReadAhead = new HttpFileReadAhead(readAhead ? 2 * 1024 * 1024 : 0, 2, 64L * 1024 * 1024, executorGroup);
+    }
+
+    @TearDown
+    public void tearDown() {
+        executorGroup.shutdownGracefully().syncUninterruptibly();
+    }
+
+    @Benchmark
+    public long readSegment(final Stream stream) throws Exception {
+        ChunkedInput<ByteBuf> input = stream.fileChannel.newChunkedInput(stream.offset, SEGMENT_SIZE, CHUNK_SIZE);
+        long read = 0;
+        try {
+            while (!input.isEndOfInput()) {
+                ByteBuf chunk = input.readChunk(stream.context);
+                read += chunk.readableBytes();
+                chunk.release();
+            }
+        } finally {
+            input.close();
+        }
+        stream.offset = (stream.offset + SEGMENT_SIZE) % FILE_SIZE;
+        return read;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(HttpFileReadAheadBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    /**
+     * Stream reading its own file: without ChunkedWriteHandler in pipeline, read-ahead inputs wait for blocks.
+     */
+    @State(Scope.Thread)
+    public static class Stream {
+        private File file;
+        private CachedFileChannel fileChannel;
+        private ChannelHandlerContext context;
+        private long offset;
+
+        @Setup
+        public void setup(final HttpFileReadAheadBenchmark benchmark) throws IOException {
+            file = File.createTempFile("benchmark", ".avi");
+            file.deleteOnExit();
+            try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+                randomAccessFile.setLength(FILE_SIZE);
+            }
+            FileChannel channel = new ThrottledFileChannel(FileChannel.open(file.toPath(), READ), benchmark.disk);
+            fileChannel = new CachedFileChannel(file.getAbsolutePath(), channel, FILE_SIZE, file.lastModified(), benchmark.fileReadAhead, null);
+            context = new EmbeddedChannel(new ChannelInboundHandlerAdapter()).pipeline().firstContext();
+        }
+
+        @TearDown
+        public void tearDown() {
+            fileChannel.release();
+        }
+    }
+
+    /**
+     * Simulated spinning disk: single head, fixed seek time and transfer rate.
+     */
+    private static final class SimulatedDisk {
+        private Object lastFile;
+        private long lastPosition = -1;
+
+        /**
+         * Wait for a read, holding disk head.
+         *
+         * @param file     read file
+         * @param position read position
+         * @param length   read length
+         * @throws InterruptedIOException indicates that thread has been interrupted
+         */
+        synchronized void read(final Object file, final long position, final int length) throws InterruptedIOException {
+            long nanos = SECONDS.toNanos(length) / BYTES_PER_SECOND;
+            if (file != lastFile || position != lastPosition) {
+                nanos += SEEK_NANOS;
+            }
+            lastFile = file;
+            lastPosition = position + length;
+            try {
+                NANOSECONDS.sleep(nanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+        }
+    }
+
+    /**
+     * File channel throttling positional reads through simulated disk. Other operations are not used by benchmark.
+     */
+    private static final class ThrottledFileChannel extends FileChannel {
+        private final FileChannel channel;
+        private final SimulatedDisk disk;
+
+        ThrottledFileChannel(final FileChannel channel, final SimulatedDisk disk) {
+            this.channel = channel;
+            this.disk = disk;
+        }
+
+        @Override
+        public int read(final ByteBuffer dst, final long position) throws IOException {
+            disk.read(this, position, dst.remaining());
+            return channel.read(dst, position);
+        }
+
+        @Override
+        public int read(final ByteBuffer dst) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long read(final ByteBuffer[] dsts, final int offset, final int length) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int write(final ByteBuffer src) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long write(final ByteBuffer[] srcs, final int offset, final int length) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long position() throws IOException {
+            return channel.position();
+        }
+
+        @Override
+        public FileChannel position(final long newPosition) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long size() throws IOException {
+            return channel.size();
+        }
+
+        @Override
+        public FileChannel truncate(final long size) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void force(final boolean metaData) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long transferTo(final long position, final long count, final WritableByteChannel target) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long transferFrom(final ReadableByteChannel src, final long position, final long count) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int write(final ByteBuffer src, final long position) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public MappedByteBuffer map(final MapMode mode, final long position, final long size) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public FileLock lock(final long position, final long size, final boolean shared) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public FileLock tryLock(final long position, final long size, final boolean shared) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        protected void implCloseChannel() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright (C) 2012-2015  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.service.http;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.stream.ChunkedInput;
+import io.netty.handler.stream.ChunkedWriteHandler;
+import io.netty.util.concurrent.DefaultEventExecutorGroup;
+import io.netty.util.concurrent.ImmediateEventExecutor;
+import net.holmes.core.service.http.HttpFileChannelCache.CachedFileChannel;
+import net.holmes.core.service.http.HttpFileChannelCache.SharedChunkedFile;
+import net.holmes.core.service.http.HttpFileReadAhead.ReadAheadChunkedFile;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.*;
+
+public class HttpFileReadAheadTest {
+    private File file;
+    private byte[] content;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("holmes", ".avi");
+        content = new byte[100];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) i;
+        }
+        Files.write(file.toPath(), content);
+    }
+
+    @After
+    public void tearDown() {
+        assertTrue(file.delete());
+    }
+
+    @Test
+    public void testSequentialRead() throws Exception {
+        HttpFileReadAhead readAhead = new HttpFileReadAhead(16, 2, 64, ImmediateEventExecutor.INSTANCE);
+        CachedFileChannel fileChannel = new HttpFileChannelCache(16, 30, readAhead).acquire(file);
+        ChunkedInput<ByteBuf> input = fileChannel.newChunkedInput(0, 100, 8);
+        fileChannel.release();
+        assertTrue(input instanceof ReadAheadChunkedFile);
+
+        assertArrayEquals(content, readAll(input, newContext()));
+        assertEquals(7, readAhead.getReadCount());
+        assertEquals(100, readAhead.getReadBytes());
+        assertEquals(0, readAhead.getUsedBufferCount());
+
+        input.close();
+        input.close();
+        assertEquals(1, fileChannel.refCnt());
+    }
+
+    @Test
+    public void testShortRead() throws Exception {
+        HttpFileReadAhead readAhead = new HttpFileReadAhead(16, 2, 64, ImmediateEventExecutor.INSTANCE);
+        CachedFileChannel fileChannel = new HttpFileChannelCache(16, 30, readAhead).acquire(file);
+        try {
+            // Single chunk
+            assertTrue(fileChannel.newChunkedInput(50, 8, 8) instanceof SharedChunkedFile);
+
+            // Short random range
+            ChunkedInput<ByteBuf> input = fileChannel.newChunkedInput(50, 10, 8);
+            assertTrue(input instanceof SharedChunkedFile);
+            readAll(input, newContext());
+            input.close();
+
+            // Short range following previous one
+            input = fileChannel.newChunkedInput(60, 10, 8);
+            assertTrue(input instanceof ReadAheadChunkedFile);
+            byte[] chunks = readAll(input, newContext());
+            input.close();
+            assertEquals(10, chunks.length);
+            assertEquals(60, chunks[0]);
+            assertEquals(1, readAhead.getReadCount());
+        } finally {
+            fileChannel.release();
+        }
+    }
+
+    @Test
+    public void testReadAheadDisabled() throws Exception {
+        HttpFileReadAhead readAhead = new HttpFileReadAhead(0, 2, 64, ImmediateEventExecutor.INSTANCE);
+        CachedFileChannel fileChannel = new HttpFileChannelCache(16, 30, readAhead).acquire(file);
+        ChunkedInput<ByteBuf> input = fileChannel.newChunkedInput(0, 100, 8);
+        fileChannel.release();
+        assertTrue(input instanceof SharedChunkedFile);
+        input.close();
+    }
+
+    @Test
+    public void testBufferPoolExhausted() throws Exception {
+        HttpFileReadAhead readAhead = new HttpFileReadAhead(16, 2, 16, ImmediateEventExecutor.INSTANCE);
+        CachedFileChannel fileChannel = new HttpFileChannelCache(16, 30, readAhead).acquire(file);
+        ChunkedInput<ByteBuf> first = fileChannel.newChunkedInput(0, 100, 8);
+        ChunkedInput<ByteBuf> second = fileChannel.newChunkedInput(0, 100, 8);
+        fileChannel.release();
+        ChannelHandlerContext context = newContext();
+
+        // First stream holds the only buffer, second one reads chunks synchronously
+        first.readChunk(context).release();
+        assertEquals(1, readAhead.getUsedBufferCount());
+        assertArrayEquals(content, readAll(second, context));
+        assertEquals(1, readAhead.getReadCount());
+
+        first.close();
+        second.close();
+        assertEquals(0, readAhead.getUsedBufferCount());
+        assertEquals(1, fileChannel.refCnt());
+    }
+
+    @Test
+    public void testCloseReleasesBuffers() throws Exception {
+        HttpFileReadAhead readAhead = new HttpFileReadAhead(16, 4, 64, ImmediateEventExecutor.INSTANCE);
+        CachedFileChannel fileChannel = new HttpFileChannelCache(16, 30, readAhead).acquire(file);
+        ChunkedInput<ByteBuf> input = fileChannel.newChunkedInput(0, 100, 8);
+        fileChannel.release();
+
+        input.readChunk(newContext()).release();
+        assertEquals(4, readAhead.getUsedBufferCount());
+        input.close();
+        assertEquals(0, readAhead.getUsedBufferCount());
+        assertEquals(1, fileChannel.refCnt());
+        assertEquals(8, fileChannel.getReadPosition());
+    }
+
+    @Test(expected = IOException.class)
+    public void testReadFailure() throws Exception {
+        HttpFileReadAhead readAhead = new HttpFileReadAhead(16, 2, 64, ImmediateEventExecutor.INSTANCE);
+        CachedFileChannel fileChannel = new HttpFileChannelCache(16, 30, readAhead).acquire(file);
+        ChunkedInput<ByteBuf> input = fileChannel.newChunkedInput(0, 100, 8);
+        fileChannel.release();
+
+        // File is truncated while it is streamed
+        try (RandomAccessFile truncatedFile = new RandomAccessFile(file, "rw")) {
+            truncatedFile.setLength(10);
+        }
+        try {
+            readAll(input, newContext());
+        } finally {
+            input.close();
+            assertEquals(0, readAhead.getUsedBufferCount());
+        }
+    }
+
+    @Test
+    public void testSuspendedTransfer() throws Exception {
+        DefaultEventExecutorGroup executorGroup = new DefaultEventExecutorGroup(1);
+        try {
+            HttpFileReadAhead readAhead = new HttpFileReadAhead(16, 2, 64, executorGroup);
+            CachedFileChannel fileChannel = new HttpFileChannelCache(16, 30, readAhead).acquire(file);
+            ChunkedInput<ByteBuf> input = fileChannel.newChunkedInput(0, 100, 8);
+            fileChannel.release();
+
+            // Transfer is suspended while blocks are read, then resumed by block reads
+            EmbeddedChannel channel = new EmbeddedChannel(new ChunkedWriteHandler());
+            ChannelFuture future = channel.writeAndFlush(input);
+            long deadline = System.nanoTime() + SECONDS.toNanos(5);
+            while (!future.isDone() && System.nanoTime() < deadline) {
+                MILLISECONDS.sleep(1);
+                channel.runPendingTasks();
+            }
+            assertTrue(future.isSuccess());
+
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            ByteBuf chunk;
+            while ((chunk = (ByteBuf) channel.readOutbound()) != null) {
+                chunk.readBytes(output, chunk.readableBytes());
+                chunk.release();
+            }
+            assertArrayEquals(content, output.toByteArray());
+            assertEquals(0, readAhead.getUsedBufferCount());
+            assertEquals(1, fileChannel.refCnt());
+            channel.finish();
+        } finally {
+            executorGroup.shutdownGracefully();
+        }
+    }
+
+    private static ChannelHandlerContext newContext() {
+        return new EmbeddedChannel(new ChannelInboundHandlerAdapter()).pipeline().firstContext();
+    }
+
+    private static byte[] readAll(final ChunkedInput<ByteBuf> input, final ChannelHandlerContext context) throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        while (!input.isEndOfInput()) {
+            ByteBuf chunk = input.readChunk(context);
+            chunk.readBytes(output, chunk.readableBytes());
+            chunk.release();
+        }
+        assertNull(input.readChunk(context));
+        return output.toByteArray();
+    }
+}
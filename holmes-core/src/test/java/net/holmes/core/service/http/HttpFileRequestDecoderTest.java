@@ -19,16 +19,15 @@ package net.holmes.core.service.http;
 
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.http.FullHttpRequest;
-import net.holmes.core.business.media.MediaManager;
-import net.holmes.core.business.media.model.ContentNode;
 import net.holmes.core.business.mimetype.MimeTypeManager;
 import net.holmes.core.business.mimetype.model.MimeType;
 import org.junit.Test;
 
 import java.io.File;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.Optional;
 
 import static io.netty.handler.codec.http.HttpMethod.*;
 import static org.easymock.EasyMock.*;
@@ -40,7 +39,6 @@ public class HttpFileRequestDecoderTest {
     public void testDecodeUiFile() throws Exception {
         FullHttpRequest request = createMock(FullHttpRequest.class);
         ChannelHandlerContext context = createMock(ChannelHandlerContext.class);
-        MediaManager mediaManager = createMock(MediaManager.class);
         MimeTypeManager mimeTypeManager = createMock(MimeTypeManager.class);
         List<Object> out = new ArrayList<>();
 
@@ -48,8 +46,8 @@ public class HttpFileRequestDecoderTest {
         expect(request.getUri()).andReturn("/index.html").atLeastOnce();
         expect(mimeTypeManager.getMimeType("/index.html")).andReturn(MimeType.valueOf("text/html")).atLeastOnce();
 
-        replay(context, request, mediaManager, mimeTypeManager);
-        HttpFileRequestDecoder decoder = new HttpFileRequestDecoder(mediaManager, mimeTypeManager, System.getProperty("java.io.tmpdir"));
+        replay(context, request, mimeTypeManager);
+        HttpFileRequestDecoder decoder = new HttpFileRequestDecoder(mimeTypeManager, newEmptyCache(), newRouter(), System.getProperty("java.io.tmpdir"));
         decoder.decode(context, request, out);
         assertEquals(out.size(), 1);
         assertEquals(out.get(0).getClass(), HttpFileRequest.class);
@@ -57,14 +55,13 @@ public class HttpFileRequestDecoderTest {
         assertNotNull(fileRequest.getFile());
         assertNotNull(fileRequest.getMimeType());
         assertNotNull(fileRequest.getHttpMessage());
-        verify(context, request, mediaManager, mimeTypeManager);
+        verify(context, request, mimeTypeManager);
     }
 
     @Test
     public void testDecodeUiFileEmpty() throws Exception {
         FullHttpRequest request = createMock(FullHttpRequest.class);
         ChannelHandlerContext context = createMock(ChannelHandlerContext.class);
-        MediaManager mediaManager = createMock(MediaManager.class);
         MimeTypeManager mimeTypeManager = createMock(MimeTypeManager.class);
         List<Object> out = new ArrayList<>();
 
@@ -72,19 +69,18 @@ public class HttpFileRequestDecoderTest {
         expect(request.getUri()).andReturn("/").atLeastOnce();
         expect(mimeTypeManager.getMimeType("/index.html")).andReturn(MimeType.valueOf("text/html")).atLeastOnce();
 
-        replay(context, request, mediaManager, mimeTypeManager);
-        HttpFileRequestDecoder decoder = new HttpFileRequestDecoder(mediaManager, mimeTypeManager, System.getProperty("java.io.tmpdir"));
+        replay(context, request, mimeTypeManager);
+        HttpFileRequestDecoder decoder = new HttpFileRequestDecoder(mimeTypeManager, newEmptyCache(), newRouter(), System.getProperty("java.io.tmpdir"));
         decoder.decode(context, request, out);
         assertEquals(out.size(), 1);
         assertEquals(out.get(0).getClass(), HttpFileRequest.class);
-        verify(context, request, mediaManager, mimeTypeManager);
+        verify(context, request, mimeTypeManager);
     }
 
     @Test
     public void testDecodeUiFileNoMimeType() throws Exception {
         FullHttpRequest request = createMock(FullHttpRequest.class);
         ChannelHandlerContext context = createMock(ChannelHandlerContext.class);
-        MediaManager mediaManager = createMock(MediaManager.class);
         MimeTypeManager mimeTypeManager = createMock(MimeTypeManager.class);
         List<Object> out = new ArrayList<>();
 
@@ -93,84 +89,77 @@ public class HttpFileRequestDecoderTest {
         expect(request.retain()).andReturn(request).atLeastOnce();
         expect(mimeTypeManager.getMimeType("/index.html1")).andReturn(null).atLeastOnce();
 
-        replay(context, request, mediaManager, mimeTypeManager);
-        HttpFileRequestDecoder decoder = new HttpFileRequestDecoder(mediaManager, mimeTypeManager, System.getProperty("java.io.tmpdir"));
+        replay(context, request, mimeTypeManager);
+        HttpFileRequestDecoder decoder = new HttpFileRequestDecoder(mimeTypeManager, newEmptyCache(), newRouter(), System.getProperty("java.io.tmpdir"));
         decoder.decode(context, request, out);
         assertEquals(out.size(), 1);
         assertEquals(out.get(0), request);
-        verify(context, request, mediaManager, mimeTypeManager);
+        verify(context, request, mimeTypeManager);
     }
 
     @Test
     public void testDecodePostMessage() throws Exception {
         FullHttpRequest request = createMock(FullHttpRequest.class);
         ChannelHandlerContext context = createMock(ChannelHandlerContext.class);
-        MediaManager mediaManager = createMock(MediaManager.class);
         MimeTypeManager mimeTypeManager = createMock(MimeTypeManager.class);
         List<Object> out = new ArrayList<>();
 
         expect(request.getMethod()).andReturn(POST).atLeastOnce();
         expect(request.retain()).andReturn(request).atLeastOnce();
 
-        replay(context, request, mediaManager, mimeTypeManager);
-        HttpFileRequestDecoder decoder = new HttpFileRequestDecoder(mediaManager, mimeTypeManager, System.getProperty("java.io.tmpdir"));
+        replay(context, request, mimeTypeManager);
+        HttpFileRequestDecoder decoder = new HttpFileRequestDecoder(mimeTypeManager, newEmptyCache(), newRouter(), System.getProperty("java.io.tmpdir"));
         decoder.decode(context, request, out);
         assertEquals(out.size(), 1);
         assertEquals(out.get(0), request);
-        verify(context, request, mediaManager, mimeTypeManager);
+        verify(context, request, mimeTypeManager);
     }
 
     @Test
     public void testDecodeContentFile() {
         FullHttpRequest request = createMock(FullHttpRequest.class);
         ChannelHandlerContext context = createMock(ChannelHandlerContext.class);
-        MediaManager mediaManager = createMock(MediaManager.class);
         MimeTypeManager mimeTypeManager = createMock(MimeTypeManager.class);
         List<Object> out = new ArrayList<>();
 
         expect(request.getMethod()).andReturn(GET).atLeastOnce();
         expect(request.getUri()).andReturn("/content?id=1234").atLeastOnce();
-        ContentNode contentNode = new ContentNode("id", "parentId", "name", new File("file"), MimeType.valueOf("video/x-msvideo"));
-        expect(mediaManager.getNode("1234")).andReturn(Optional.of(contentNode)).atLeastOnce();
+        expect(request.retain()).andReturn(request).atLeastOnce();
 
-        replay(context, request, mediaManager, mimeTypeManager);
-        HttpFileRequestDecoder decoder = new HttpFileRequestDecoder(mediaManager, mimeTypeManager, System.getProperty("java.io.tmpdir"));
+        // Content is not resolved on event loop
+        replay(context, request, mimeTypeManager);
+        HttpFileRequestDecoder decoder = new HttpFileRequestDecoder(mimeTypeManager, newEmptyCache(), newRouter(), System.getProperty("java.io.tmpdir"));
         decoder.decode(context, request, out);
         assertEquals(out.size(), 1);
-        assertEquals(out.get(0).getClass(), HttpFileRequest.class);
-        HttpFileRequest fileRequest = (HttpFileRequest) out.get(0);
-        assertNotNull(fileRequest.getFile());
-        assertNotNull(fileRequest.getMimeType());
-        assertNotNull(fileRequest.getHttpMessage());
-        verify(context, request, mediaManager, mimeTypeManager);
+        HttpContentRequest contentRequest = (HttpContentRequest) out.get(0);
+        assertEquals("1234", contentRequest.getContentId());
+        assertSame(request, contentRequest.getHttpRequest());
+        verify(context, request, mimeTypeManager);
     }
 
     @Test
     public void testDecodeContentFileEmptyContentId() {
         FullHttpRequest request = createMock(FullHttpRequest.class);
         ChannelHandlerContext context = createMock(ChannelHandlerContext.class);
-        MediaManager mediaManager = createMock(MediaManager.class);
         MimeTypeManager mimeTypeManager = createMock(MimeTypeManager.class);
         List<Object> out = new ArrayList<>();
 
         expect(request.getMethod()).andReturn(GET).atLeastOnce();
         expect(request.getUri()).andReturn("/content?id=").atLeastOnce();
         expect(request.retain()).andReturn(request).atLeastOnce();
-        expect(mediaManager.getNode("")).andReturn(Optional.empty()).atLeastOnce();
 
-        replay(context, request, mediaManager, mimeTypeManager);
-        HttpFileRequestDecoder decoder = new HttpFileRequestDecoder(mediaManager, mimeTypeManager, System.getProperty("java.io.tmpdir"));
+        replay(context, request, mimeTypeManager);
+        HttpFileRequestDecoder decoder = new HttpFileRequestDecoder(mimeTypeManager, newEmptyCache(), newRouter(), System.getProperty("java.io.tmpdir"));
         decoder.decode(context, request, out);
         assertEquals(out.size(), 1);
-        assertEquals(out.get(0), request);
-        verify(context, request, mediaManager, mimeTypeManager);
+        assertEquals("", ((HttpContentRequest) out.get(0)).getContentId());
+        verify(context, request, mimeTypeManager);
     }
 
     @Test
     public void testDecodeContentFileNullContentId() {
         FullHttpRequest request = createMock(FullHttpRequest.class);
         ChannelHandlerContext context = createMock(ChannelHandlerContext.class);
-        MediaManager mediaManager = createMock(MediaManager.class);
         MimeTypeManager mimeTypeManager = createMock(MimeTypeManager.class);
         List<Object> out = new ArrayList<>();
 
@@ -179,11 +168,49 @@ public class HttpFileRequestDecoderTest {
         expect(request.retain()).andReturn(request).atLeastOnce();
         expect(mimeTypeManager.getMimeType("/content")).andReturn(null).atLeastOnce();
 
-        replay(context, request, mediaManager, mimeTypeManager);
-        HttpFileRequestDecoder decoder = new HttpFileRequestDecoder(mediaManager, mimeTypeManager, System.getProperty("java.io.tmpdir"));
+        replay(context, request, mimeTypeManager);
+        HttpFileRequestDecoder decoder = new HttpFileRequestDecoder(mimeTypeManager, newEmptyCache(), newRouter(), System.getProperty("java.io.tmpdir"));
         decoder.decode(context, request, out);
         assertEquals(out.size(), 1);
         assertEquals(out.get(0), request);
-        verify(context, request, mediaManager, mimeTypeManager);
+        verify(context, request, mimeTypeManager);
+    }
+
+    @Test
+    public void testDecodeCachedUiFile() throws Exception {
+        File uiDirectory = Files.createTempDirectory("ui").toFile();
+        File indexHtml = new File(uiDirectory, "index.html");
+        Files.write(indexHtml.toPath(), "<html></html>".getBytes());
+        indexHtml.deleteOnExit();
+        uiDirectory.deleteOnExit();
+
+        FullHttpRequest request = createMock(FullHttpRequest.class);
+        ChannelHandlerContext context = createMock(ChannelHandlerContext.class);
+        MimeTypeManager mimeTypeManager = createMock(MimeTypeManager.class);
+        List<Object> out = new ArrayList<>();
+
+        expect(request.getMethod()).andReturn(GET).atLeastOnce();
+        expect(request.getUri()).andReturn("/").atLeastOnce();
+        expect(mimeTypeManager.getMimeType("/index.html")).andReturn(MimeType.valueOf("text/html")).atLeastOnce();
+
+        replay(context, request, mimeTypeManager);
+        StaticResourceCache staticResourceCache = new StaticResourceCache(mimeTypeManager, uiDirectory.getAbsolutePath());
+        HttpFileRequestDecoder decoder = new HttpFileRequestDecoder(mimeTypeManager, staticResourceCache, newRouter(), uiDirectory.getAbsolutePath());
+        decoder.decode(context, request, out);
+        assertEquals(out.size(), 1);
+        HttpFileRequest fileRequest = (HttpFileRequest) out.get(0);
+        assertNotNull(fileRequest.getCachedResource());
+        assertEquals(indexHtml, fileRequest.getFile());
+        assertTrue(fileRequest.isStaticResource());
+        assertEquals(13, fileRequest.getFileLength());
+        verify(context, request, mimeTypeManager);
+    }
+
+    private StaticResourceCache newEmptyCache() {
+        return new StaticResourceCache(createMock(MimeTypeManager.class), "nonExistingDirectory");
+    }
+
+    private HttpRequestRouter newRouter() {
+        return new HttpRequestRouter(Collections.singletonList("/backend"));
     }
 }
@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) 2012-2015  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.service.http;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.MessageToMessageDecoder;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpRequestDecoder;
+import io.netty.handler.codec.http.HttpResponseEncoder;
+import io.netty.handler.stream.ChunkedWriteHandler;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import net.holmes.core.business.configuration.ConfigurationManager;
+import net.holmes.core.business.configuration.ConfigurationManagerImpl;
+import net.holmes.core.business.mimetype.model.MimeType;
+import net.holmes.core.test.TestConfigurationDao;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static net.holmes.core.common.ConfigurationParameter.HTTP_SERVER_ZERO_COPY;
+import static net.holmes.core.service.http.HttpFileRequest.newContentRequest;
+import static net.holmes.core.service.http.HttpFileRequestHandlerTest.newHandler;
+
+/**
+ * Http file request handler benchmark: zero-copy file region versus chunked file streaming.
+ * <p>
+ * 8 concurrent clients download a media file from a loopback server. Besides JMH throughput, each iteration prints
+ * the CPU time spent by server event loop threads for each Gbit sent.
+ * </p>
+ * <p>
+ * Run with: java -cp target/test-classes:[test classpath] net.holmes.core.service.http.HttpFileRequestHandlerBenchmark
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(8)
+@Fork(1)
+public class HttpFileRequestHandlerBenchmark {
+    private static final int FILE_SIZE = 64 * 1024 * 1024;
+    private static final String SERVER_THREAD_PREFIX = "benchmarkHttpServer";
+
+    @Param({"true", "false"})
+    private boolean zeroCopy;
+
+    private final AtomicLong sentBytes = new AtomicLong();
+    private final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+    private File mediaFile;
+    private EventLoopGroup serverGroup;
+    private Channel serverChannel;
+    private byte[] request;
+    private long serverCpuTime;
+
+    @Setup
+    public void setup() throws IOException {
+        mediaFile = File.createTempFile("benchmark", ".avi");
+        mediaFile.deleteOnExit();
+        try (RandomAccessFile file = new RandomAccessFile(mediaFile, "rw")) {
+            file.setLength(FILE_SIZE);
+        }
+
+        ConfigurationManager configurationManager = new ConfigurationManagerImpl(new TestConfigurationDao());
+        configurationManager.setParameter(HTTP_SERVER_ZERO_COPY, zeroCopy);
+        final MimeType mimeType = MimeType.valueOf("video/avi");
+
+        serverGroup = new NioEventLoopGroup(0, new DefaultThreadFactory(SERVER_THREAD_PREFIX));
+        serverChannel = new ServerBootstrap().group(serverGroup)
+                .channel(NioServerSocketChannel.class)
+                .childHandler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(final SocketChannel channel) {
+                        channel.pipeline().addLast(new HttpRequestDecoder())
+                                .addLast(new HttpObjectAggregator(65536))
+                                .addLast(new HttpResponseEncoder())
+                                .addLast(new ChunkedWriteHandler())
+                                .addLast(new MessageToMessageDecoder<FullHttpRequest>() {
+                                    @Override
+                                    protected void decode(final ChannelHandlerContext context, final FullHttpRequest msg, final List<Object> out) {
+                                        out.add(newContentRequest(msg, mediaFile, mimeType));
+                                    }
+                                })
+                                .addLast(newHandler(configurationManager));
+                    }
+                })
+                .bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0)).syncUninterruptibly().channel();
+
+        request = ("GET /media HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n").getBytes(US_ASCII);
+    }
+
+    @TearDown
+    public void tearDown() {
+        serverChannel.close().syncUninterruptibly();
+        serverGroup.shutdownGracefully().syncUninterruptibly();
+    }
+
+    @Setup(Level.Iteration)
+    public void startIteration() {
+        sentBytes.set(0);
+        serverCpuTime = getServerCpuTime();
+    }
+
+    @TearDown(Level.Iteration)
+    public void endIteration() {
+        double cpuSeconds = (getServerCpuTime() - serverCpuTime) / 1e9;
+        double gbits = sentBytes.get() * 8 / 1e9;
+        System.out.printf("%n[zeroCopy=%s] server CPU: %.3f s per Gbit (%.1f Gbit sent)%n", zeroCopy, cpuSeconds / gbits, gbits);
+    }
+
+    @Benchmark
+    public long download() throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), ((InetSocketAddress) serverChannel.localAddress()).getPort())) {
+            socket.getOutputStream().write(request);
+            InputStream in = socket.getInputStream();
+            byte[] buffer = new byte[65536];
+            long received = 0;
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                received += read;
+            }
+            sentBytes.addAndGet(received);
+            return received;
+        }
+    }
+
+    /**
+     * Get CPU time consumed by server event loop threads.
+     *
+     * @return CPU time in nanoseconds
+     */
+    private long getServerCpuTime() {
+        long cpuTime = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().startsWith(SERVER_THREAD_PREFIX)) {
+                cpuTime += Math.max(threadBean.getThreadCpuTime(thread.getId()), 0);
+            }
+        }
+        return cpuTime;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(HttpFileRequestHandlerBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -17,26 +17,64 @@
 
 package net.holmes.core.service.http;
 
-import io.netty.channel.Channel;
-import io.netty.channel.ChannelHandlerContext;
-import io.netty.channel.DefaultChannelPromise;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.*;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.MessageToMessageDecoder;
 import io.netty.handler.codec.http.*;
-import io.netty.handler.stream.ChunkedFile;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.handler.traffic.AbstractTrafficShapingHandler;
+import io.netty.handler.traffic.ChannelTrafficShapingHandler;
+import io.netty.util.concurrent.DefaultEventExecutorGroup;
+import io.netty.util.concurrent.EventExecutorGroup;
+import io.netty.util.concurrent.ImmediateEventExecutor;
 import net.holmes.core.business.configuration.ConfigurationManager;
+import net.holmes.core.business.media.ContentPrefetcher;
+import net.holmes.core.business.media.ContentPrefetcherImpl;
 import net.holmes.core.business.mimetype.model.MimeType;
+import net.holmes.core.service.http.HttpFileChannelCache.SharedChunkedFile;
+import net.holmes.core.service.http.seek.TimeSeekIndexStore;
+import org.easymock.Capture;
+import org.easymock.CaptureType;
 import org.junit.Test;
 
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
-
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.text.SimpleDateFormat;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
 import static io.netty.handler.codec.http.HttpHeaders.Names.*;
 import static io.netty.handler.codec.http.HttpHeaders.Values.CLOSE;
-import static io.netty.handler.codec.http.HttpResponseStatus.NOT_FOUND;
+import static io.netty.handler.codec.http.HttpMethod.GET;
+import static io.netty.handler.codec.http.HttpMethod.HEAD;
+import static io.netty.handler.codec.http.HttpResponseStatus.*;
 import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static net.holmes.core.common.ConfigurationParameter.HTTP_SERVER_CACHE_SECOND;
+import static net.holmes.core.common.ConfigurationParameter.HTTP_SERVER_ZERO_COPY;
+import static net.holmes.core.service.http.HttpFileRequest.newContentRequest;
+import static net.holmes.core.service.http.HttpFileRequest.newRemoteContentRequest;
+import static net.holmes.core.service.http.HttpFileRequest.newStaticResourceRequest;
+import static net.holmes.core.service.http.HttpFileRequest.newValidatedContentRequest;
+import static net.holmes.core.service.http.HttpFileRequestHandler.getEntityTag;
+import static net.holmes.core.test.TestVideoFiles.createTransportStream;
 import static org.easymock.EasyMock.*;
+import static org.junit.Assert.*;
 
 public class HttpFileRequestHandlerTest {
 
@@ -54,16 +92,18 @@ public class HttpFileRequestHandlerTest {
         Channel channel = createMock(Channel.class);
 
         expect(configurationManager.getParameter(HTTP_SERVER_CACHE_SECOND)).andReturn(60);
+        expect(configurationManager.getParameter(HTTP_SERVER_ZERO_COPY)).andReturn(false);
         expect(httpRequest.headers()).andReturn(headers).atLeastOnce();
+        expect(httpRequest.getMethod()).andReturn(GET).atLeastOnce();
         expect(httpRequest.getProtocolVersion()).andReturn(HTTP_1_1).atLeastOnce();
         expect(context.write(isA(HttpResponse.class))).andReturn(new DefaultChannelPromise(channel)).atLeastOnce();
-        expect(context.write(isA(ChunkedFile.class))).andReturn(new DefaultChannelPromise(channel)).atLeastOnce();
+        expect(context.write(isA(SharedChunkedFile.class))).andReturn(new DefaultChannelPromise(channel)).atLeastOnce();
         expect(context.writeAndFlush(isA(LastHttpContent.class))).andReturn(new DefaultChannelPromise(channel)).atLeastOnce();
 
-        HttpFileRequest request = new HttpFileRequest(httpRequest, new File(indexHtml.getAbsolutePath()), MimeType.valueOf("text/html"), false);
+        HttpFileRequest request = newContentRequest(httpRequest, new File(indexHtml.getAbsolutePath()), MimeType.valueOf("text/html"));
 
         replay(context, httpRequest, channel, configurationManager);
-        HttpFileRequestHandler handler = new HttpFileRequestHandler(configurationManager);
+        HttpFileRequestHandler handler = newHandler(configurationManager);
         handler.channelRead0(context, request);
         verify(context, httpRequest, channel, configurationManager);
     }
@@ -82,20 +122,202 @@ public class HttpFileRequestHandlerTest {
         Channel channel = createMock(Channel.class);
 
         expect(configurationManager.getParameter(HTTP_SERVER_CACHE_SECOND)).andReturn(0);
+        expect(configurationManager.getParameter(HTTP_SERVER_ZERO_COPY)).andReturn(false);
         expect(httpRequest.headers()).andReturn(headers).atLeastOnce();
+        expect(httpRequest.getMethod()).andReturn(GET).atLeastOnce();
         expect(httpRequest.getProtocolVersion()).andReturn(HTTP_1_1).atLeastOnce();
         expect(context.write(isA(HttpResponse.class))).andReturn(new DefaultChannelPromise(channel)).atLeastOnce();
-        expect(context.write(isA(ChunkedFile.class))).andReturn(new DefaultChannelPromise(channel)).atLeastOnce();
+        expect(context.write(isA(SharedChunkedFile.class))).andReturn(new DefaultChannelPromise(channel)).atLeastOnce();
         expect(context.writeAndFlush(isA(LastHttpContent.class))).andReturn(new DefaultChannelPromise(channel)).atLeastOnce();
 
-        HttpFileRequest request = new HttpFileRequest(httpRequest, new File(indexHtml.getAbsolutePath()), MimeType.valueOf("text/html"), true);
+        HttpFileRequest request = newStaticResourceRequest(httpRequest, new File(indexHtml.getAbsolutePath()), MimeType.valueOf("text/html"));
 
         replay(context, httpRequest, channel, configurationManager);
-        HttpFileRequestHandler handler = new HttpFileRequestHandler(configurationManager);
+        HttpFileRequestHandler handler = newHandler(configurationManager);
         handler.channelRead0(context, request);
         verify(context, httpRequest, channel, configurationManager);
     }
 
+    @Test
+    public void testFileRequestHandlerZeroCopy() throws Exception {
+        File indexHtml = File.createTempFile("index", ".html");
+        indexHtml.deleteOnExit();
+
+        HttpHeaders headers = new DefaultHttpHeaders();
+        headers.add(HOST, "localhost");
+
+        ConfigurationManager configurationManager = createMock(ConfigurationManager.class);
+        ChannelHandlerContext context = createMock(ChannelHandlerContext.class);
+        ChannelPipeline pipeline = createMock(ChannelPipeline.class);
+        FullHttpRequest httpRequest = createMock(FullHttpRequest.class);
+        Channel channel = createMock(Channel.class);
+
+        expect(configurationManager.getParameter(HTTP_SERVER_CACHE_SECOND)).andReturn(60);
+        expect(configurationManager.getParameter(HTTP_SERVER_ZERO_COPY)).andReturn(true);
+        expect(httpRequest.headers()).andReturn(headers).atLeastOnce();
+        expect(httpRequest.getMethod()).andReturn(GET).atLeastOnce();
+        expect(httpRequest.getProtocolVersion()).andReturn(HTTP_1_1).atLeastOnce();
+        expect(context.pipeline()).andReturn(pipeline).atLeastOnce();
+        expect(pipeline.get(SslHandler.class)).andReturn(null);
+        expect(pipeline.get(HttpContentEncoder.class)).andReturn(null);
+        expect(pipeline.get(AbstractTrafficShapingHandler.class)).andReturn(null);
+        expect(context.write(isA(HttpResponse.class))).andReturn(new DefaultChannelPromise(channel)).atLeastOnce();
+        expect(context.write(isA(DefaultFileRegion.class))).andReturn(new DefaultChannelPromise(channel)).atLeastOnce();
+        expect(context.writeAndFlush(isA(LastHttpContent.class))).andReturn(new DefaultChannelPromise(channel)).atLeastOnce();
+
+        HttpFileRequest request = newContentRequest(httpRequest, new File(indexHtml.getAbsolutePath()), MimeType.valueOf("text/html"));
+
+        replay(context, pipeline, httpRequest, channel, configurationManager);
+        HttpFileRequestHandler handler = newHandler(configurationManager);
+        handler.channelRead0(context, request);
+        verify(context, pipeline, httpRequest, channel, configurationManager);
+    }
+
+    @Test
+    public void testFileRequestHandlerZeroCopyWithContentEncoder() throws Exception {
+        File indexHtml = File.createTempFile("index", ".html");
+        indexHtml.deleteOnExit();
+
+        HttpHeaders headers = new DefaultHttpHeaders();
+        headers.add(HOST, "localhost");
+
+        ConfigurationManager configurationManager = createMock(ConfigurationManager.class);
+        ChannelHandlerContext context = createMock(ChannelHandlerContext.class);
+        ChannelPipeline pipeline = createMock(ChannelPipeline.class);
+        FullHttpRequest httpRequest = createMock(FullHttpRequest.class);
+        Channel channel = createMock(Channel.class);
+
+        expect(configurationManager.getParameter(HTTP_SERVER_CACHE_SECOND)).andReturn(60);
+        expect(configurationManager.getParameter(HTTP_SERVER_ZERO_COPY)).andReturn(true);
+        expect(httpRequest.headers()).andReturn(headers).atLeastOnce();
+        expect(httpRequest.getMethod()).andReturn(GET).atLeastOnce();
+        expect(httpRequest.getProtocolVersion()).andReturn(HTTP_1_1).atLeastOnce();
+        expect(context.pipeline()).andReturn(pipeline).atLeastOnce();
+        expect(pipeline.get(SslHandler.class)).andReturn(null);
+        expect(pipeline.get(HttpContentEncoder.class)).andReturn(new HttpContentCompressor());
+        expect(context.write(isA(HttpResponse.class))).andReturn(new DefaultChannelPromise(channel)).atLeastOnce();
+        expect(context.write(isA(SharedChunkedFile.class))).andReturn(new DefaultChannelPromise(channel)).atLeastOnce();
+        expect(context.writeAndFlush(isA(LastHttpContent.class))).andReturn(new DefaultChannelPromise(channel)).atLeastOnce();
+
+        HttpFileRequest request = newContentRequest(httpRequest, new File(indexHtml.getAbsolutePath()), MimeType.valueOf("text/html"));
+
+        replay(context, pipeline, httpRequest, channel, configurationManager);
+        HttpFileRequestHandler handler = newHandler(configurationManager);
+        handler.channelRead0(context, request);
+        verify(context, pipeline, httpRequest, channel, configurationManager);
+    }
+
+    @Test
+    public void testFileRequestHandlerTrafficShapingNoZeroCopy() throws Exception {
+        File indexHtml = File.createTempFile("index", ".html");
+        indexHtml.deleteOnExit();
+
+        HttpHeaders headers = new DefaultHttpHeaders();
+        headers.add(HOST, "localhost");
+
+        ConfigurationManager configurationManager = createMock(ConfigurationManager.class);
+        ChannelHandlerContext context = createMock(ChannelHandlerContext.class);
+        ChannelPipeline pipeline = createMock(ChannelPipeline.class);
+        FullHttpRequest httpRequest = createMock(FullHttpRequest.class);
+        Channel channel = createMock(Channel.class);
+
+        expect(configurationManager.getParameter(HTTP_SERVER_CACHE_SECOND)).andReturn(60);
+        expect(configurationManager.getParameter(HTTP_SERVER_ZERO_COPY)).andReturn(true);
+        expect(httpRequest.headers()).andReturn(headers).atLeastOnce();
+        expect(httpRequest.getMethod()).andReturn(GET).atLeastOnce();
+        expect(httpRequest.getProtocolVersion()).andReturn(HTTP_1_1).atLeastOnce();
+        expect(context.pipeline()).andReturn(pipeline).atLeastOnce();
+        expect(pipeline.get(SslHandler.class)).andReturn(null);
+        expect(pipeline.get(HttpContentEncoder.class)).andReturn(null);
+        expect(pipeline.get(AbstractTrafficShapingHandler.class)).andReturn(new ChannelTrafficShapingHandler(1000));
+        expect(context.write(isA(HttpResponse.class))).andReturn(new DefaultChannelPromise(channel)).atLeastOnce();
+        expect(context.write(isA(SharedChunkedFile.class))).andReturn(new DefaultChannelPromise(channel)).atLeastOnce();
+        expect(context.writeAndFlush(isA(LastHttpContent.class))).andReturn(new DefaultChannelPromise(channel)).atLeastOnce();
+
+        HttpFileRequest request = newContentRequest(httpRequest, new File(indexHtml.getAbsolutePath()), MimeType.valueOf("text/html"));
+
+        replay(context, pipeline, httpRequest, channel, configurationManager);
+        HttpFileRequestHandler handler = newHandler(configurationManager);
+        handler.channelRead0(context, request);
+        verify(context, pipeline, httpRequest, channel, configurationManager);
+    }
+
+    @Test
+    public void testFileRequestHandlerHead() throws Exception {
+        File video = File.createTempFile("video", ".avi");
+        video.deleteOnExit();
+
+        HttpHeaders headers = new DefaultHttpHeaders();
+        headers.add(HOST, "localhost");
+        headers.add(RANGE, "bytes=5-");
+        headers.add("getcontentFeatures.dlna.org", "1");
+
+        ConfigurationManager configurationManager = createMock(ConfigurationManager.class);
+        ChannelHandlerContext context = createMock(ChannelHandlerContext.class);
+        FullHttpRequest httpRequest = createMock(FullHttpRequest.class);
+        Channel channel = createMock(Channel.class);
+        Capture<HttpResponse> response = newCapture();
+
+        expect(configurationManager.getParameter(HTTP_SERVER_CACHE_SECOND)).andReturn(60);
+        expect(configurationManager.getParameter(HTTP_SERVER_ZERO_COPY)).andReturn(true);
+        expect(httpRequest.headers()).andReturn(headers).atLeastOnce();
+        expect(httpRequest.getMethod()).andReturn(HEAD).atLeastOnce();
+        expect(httpRequest.getProtocolVersion()).andReturn(HTTP_1_1).atLeastOnce();
+        expect(context.write(capture(response))).andReturn(new DefaultChannelPromise(channel));
+        expect(context.writeAndFlush(isA(LastHttpContent.class))).andReturn(new DefaultChannelPromise(channel)).atLeastOnce();
+
+        HttpFileRequest request = newValidatedContentRequest(httpRequest, video, MimeType.valueOf("video/avi"), 1234, 0, getEntityTag(1234, 0));
+
+        replay(context, httpRequest, channel, configurationManager);
+        HttpFileRequestHandler handler = newHandler(configurationManager);
+        handler.channelRead0(context, request);
+        verify(context, httpRequest, channel, configurationManager);
+
+        HttpHeaders responseHeaders = response.getValue().headers();
+        assertEquals(OK, response.getValue().getStatus());
+        assertEquals("1234", responseHeaders.get(CONTENT_LENGTH));
+        assertEquals("video/avi", responseHeaders.get(CONTENT_TYPE));
+        assertEquals("bytes", responseHeaders.get(ACCEPT_RANGES));
+        assertEquals("Thu, 01 Jan 1970 00:00:00 GMT", responseHeaders.get(LAST_MODIFIED));
+        assertEquals("Streaming", responseHeaders.get("transferMode.dlna.org"));
+        assertEquals("DLNA.ORG_OP=01;DLNA.ORG_CI=0;DLNA.ORG_FLAGS=01700000000000000000000000000000", responseHeaders.get("contentFeatures.dlna.org"));
+    }
+
+    @Test
+    public void testFileRequestHandlerHeadImage() throws Exception {
+        File image = File.createTempFile("image", ".jpg");
+        image.deleteOnExit();
+
+        HttpHeaders headers = new DefaultHttpHeaders();
+        headers.add(HOST, "localhost");
+
+        ConfigurationManager configurationManager = createMock(ConfigurationManager.class);
+        ChannelHandlerContext context = createMock(ChannelHandlerContext.class);
+        FullHttpRequest httpRequest = createMock(FullHttpRequest.class);
+        Channel channel = createMock(Channel.class);
+        Capture<HttpResponse> response = newCapture();
+
+        expect(configurationManager.getParameter(HTTP_SERVER_CACHE_SECOND)).andReturn(60);
+        expect(configurationManager.getParameter(HTTP_SERVER_ZERO_COPY)).andReturn(true);
+        expect(httpRequest.headers()).andReturn(headers).atLeastOnce();
+        expect(httpRequest.getMethod()).andReturn(HEAD).atLeastOnce();
+        expect(httpRequest.getProtocolVersion()).andReturn(HTTP_1_1).atLeastOnce();
+        expect(context.write(capture(response))).andReturn(new DefaultChannelPromise(channel));
+        expect(context.writeAndFlush(isA(LastHttpContent.class))).andReturn(new DefaultChannelPromise(channel)).atLeastOnce();
+
+        HttpFileRequest request = newContentRequest(httpRequest, image, MimeType.valueOf("image/jpeg"));
+
+        replay(context, httpRequest, channel, configurationManager);
+        HttpFileRequestHandler handler = newHandler(configurationManager);
+        handler.channelRead0(context, request);
+        verify(context, httpRequest, channel, configurationManager);
+
+        HttpHeaders responseHeaders = response.getValue().headers();
+        assertEquals("0", responseHeaders.get(CONTENT_LENGTH));
+        assertEquals("Interactive", responseHeaders.get("transferMode.dlna.org"));
+        assertNull(responseHeaders.get("contentFeatures.dlna.org"));
+    }
+
     @Test(expected = HttpFileRequestException.class)
     public void testFileRequestHandlerInvalidFile() throws Exception {
         HttpHeaders headers = new DefaultHttpHeaders();
@@ -105,13 +327,14 @@ public class HttpFileRequestHandlerTest {
         ChannelHandlerContext context = createMock(ChannelHandlerContext.class);
         FullHttpRequest httpRequest = createMock(FullHttpRequest.class);
 
-        HttpFileRequest request = new HttpFileRequest(httpRequest, new File("invalidFile"), MimeType.valueOf("text/html"), false);
+        HttpFileRequest request = newContentRequest(httpRequest, new File("invalidFile"), MimeType.valueOf("text/html"));
 
         expect(configurationManager.getParameter(HTTP_SERVER_CACHE_SECOND)).andReturn(60);
+        expect(configurationManager.getParameter(HTTP_SERVER_ZERO_COPY)).andReturn(false);
 
         replay(context, httpRequest, configurationManager);
         try {
-            HttpFileRequestHandler handler = new HttpFileRequestHandler(configurationManager);
+            HttpFileRequestHandler handler = newHandler(configurationManager);
             handler.channelRead0(context, request);
         } finally {
             verify(context, httpRequest, configurationManager);
@@ -137,20 +360,258 @@ public class HttpFileRequestHandlerTest {
         Channel channel = createMock(Channel.class);
 
         expect(configurationManager.getParameter(HTTP_SERVER_CACHE_SECOND)).andReturn(60);
+        expect(configurationManager.getParameter(HTTP_SERVER_ZERO_COPY)).andReturn(false);
         expect(httpRequest.headers()).andReturn(headers).atLeastOnce();
+        expect(httpRequest.getMethod()).andReturn(GET).atLeastOnce();
         expect(httpRequest.getProtocolVersion()).andReturn(HTTP_1_1).atLeastOnce();
         expect(context.write(isA(HttpResponse.class))).andReturn(new DefaultChannelPromise(channel)).atLeastOnce();
-        expect(context.write(isA(ChunkedFile.class))).andReturn(new DefaultChannelPromise(channel)).atLeastOnce();
+        expect(context.write(isA(SharedChunkedFile.class))).andReturn(new DefaultChannelPromise(channel)).atLeastOnce();
         expect(context.writeAndFlush(isA(LastHttpContent.class))).andReturn(new DefaultChannelPromise(channel)).atLeastOnce();
 
-        HttpFileRequest request = new HttpFileRequest(httpRequest, new File(indexHtml.getAbsolutePath()), MimeType.valueOf("text/html"), false);
+        HttpFileRequest request = newContentRequest(httpRequest, new File(indexHtml.getAbsolutePath()), MimeType.valueOf("text/html"));
 
         replay(context, httpRequest, channel, configurationManager);
-        HttpFileRequestHandler handler = new HttpFileRequestHandler(configurationManager);
+        HttpFileRequestHandler handler = newHandler(configurationManager);
         handler.channelRead0(context, request);
         verify(context, httpRequest, channel, configurationManager);
     }
 
+    @Test
+    public void testFileRequestHandlerWithClosedRange() throws Exception {
+        File indexHtml = createTestFile("some content in index.html");
+
+        HttpHeaders headers = new DefaultHttpHeaders();
+        headers.add(HOST, "localhost");
+        headers.add(RANGE, "bytes=5-11");
+
+        ConfigurationManager configurationManager = createMock(ConfigurationManager.class);
+        ChannelHandlerContext context = createMock(ChannelHandlerContext.class);
+        FullHttpRequest httpRequest = createMock(FullHttpRequest.class);
+        Channel channel = createMock(Channel.class);
+        Capture<Object> writes = newCapture(CaptureType.ALL);
+
+        expect(configurationManager.getParameter(HTTP_SERVER_CACHE_SECOND)).andReturn(60);
+        expect(configurationManager.getParameter(HTTP_SERVER_ZERO_COPY)).andReturn(false);
+        expect(httpRequest.headers()).andReturn(headers).atLeastOnce();
+        expect(httpRequest.getMethod()).andReturn(GET).atLeastOnce();
+        expect(httpRequest.getProtocolVersion()).andReturn(HTTP_1_1).atLeastOnce();
+        expect(context.write(capture(writes))).andReturn(new DefaultChannelPromise(channel)).times(2);
+        expect(context.writeAndFlush(isA(LastHttpContent.class))).andReturn(new DefaultChannelPromise(channel)).atLeastOnce();
+
+        HttpFileRequest request = newContentRequest(httpRequest, indexHtml, MimeType.valueOf("text/html"));
+
+        replay(context, httpRequest, channel, configurationManager);
+        HttpFileRequestHandler handler = newHandler(configurationManager);
+        handler.channelRead0(context, request);
+        verify(context, httpRequest, channel, configurationManager);
+
+        HttpResponse response = (HttpResponse) writes.getValues().get(0);
+        assertEquals(PARTIAL_CONTENT, response.getStatus());
+        assertEquals("bytes 5-11/26", response.headers().get(CONTENT_RANGE));
+        assertEquals("7", response.headers().get(CONTENT_LENGTH));
+        SharedChunkedFile content = (SharedChunkedFile) writes.getValues().get(1);
+        assertEquals(5, content.startOffset());
+        assertEquals(12, content.endOffset());
+    }
+
+    @Test
+    public void testFileRequestHandlerWithCachedContent() throws Exception {
+        File indexHtml = createTestFile("some content in index.html");
+
+        HttpHeaders headers = new DefaultHttpHeaders();
+        headers.add(HOST, "localhost");
+        headers.add(RANGE, "bytes=5-11");
+
+        ConfigurationManager configurationManager = createMock(ConfigurationManager.class);
+        ChannelHandlerContext context = createMock(ChannelHandlerContext.class);
+        FullHttpRequest httpRequest = createMock(FullHttpRequest.class);
+        Channel channel = createMock(Channel.class);
+        Capture<Object> writes = newCapture(CaptureType.ALL);
+
+        expect(configurationManager.getParameter(HTTP_SERVER_CACHE_SECOND)).andReturn(60);
+        expect(configurationManager.getParameter(HTTP_SERVER_ZERO_COPY)).andReturn(false);
+        expect(httpRequest.headers()).andReturn(headers).atLeastOnce();
+        expect(httpRequest.getMethod()).andReturn(GET).atLeastOnce();
+        expect(httpRequest.getProtocolVersion()).andReturn(HTTP_1_1).atLeastOnce();
+        expect(context.write(capture(writes))).andReturn(new DefaultChannelPromise(channel)).times(2);
+        expect(context.writeAndFlush(isA(LastHttpContent.class))).andReturn(new DefaultChannelPromise(channel)).atLeastOnce();
+
+        HttpFileRequest request = newContentRequest(httpRequest, indexHtml, MimeType.valueOf("text/html"));
+
+        replay(context, httpRequest, channel, configurationManager);
+        HttpContentCache contentCache = new HttpContentCache(1024, 1024);
+        HttpFileRequestHandler handler = newHandler(configurationManager, new TimeSeekIndexStore(false, null, null), new ContentPrefetcherImpl(null, 0, 0, null), contentCache);
+        handler.channelRead0(context, request);
+        verify(context, httpRequest, channel, configurationManager);
+
+        HttpResponse response = (HttpResponse) writes.getValues().get(0);
+        assertEquals(PARTIAL_CONTENT, response.getStatus());
+        assertEquals("bytes 5-11/26", response.headers().get(CONTENT_RANGE));
+        assertEquals("7", response.headers().get(CONTENT_LENGTH));
+
+        // Range is a slice of cached content, holding its own reference
+        ByteBuf content = (ByteBuf) writes.getValues().get(1);
+        assertEquals("content", content.toString(US_ASCII));
+        assertEquals(1, contentCache.getMissCount());
+        assertEquals(26, contentCache.getSize());
+        assertEquals(2, content.refCnt());
+        content.release();
+    }
+
+    @Test
+    public void testFileRequestHandlerContentPrefetch() throws Exception {
+        File indexHtml = createTestFile("some content in index.html");
+
+        HttpHeaders headers = new DefaultHttpHeaders();
+        headers.add(HOST, "localhost");
+        headers.add(RANGE, "bytes=5-11");
+
+        ConfigurationManager configurationManager = createMock(ConfigurationManager.class);
+        ChannelHandlerContext context = createMock(ChannelHandlerContext.class);
+        FullHttpRequest httpRequest = createMock(FullHttpRequest.class);
+        Channel channel = createMock(Channel.class);
+        ContentPrefetcher contentPrefetcher = createMock(ContentPrefetcher.class);
+        DefaultChannelPromise lastContentPromise = new DefaultChannelPromise(channel, ImmediateEventExecutor.INSTANCE);
+
+        expect(configurationManager.getParameter(HTTP_SERVER_CACHE_SECOND)).andReturn(60);
+        expect(configurationManager.getParameter(HTTP_SERVER_ZERO_COPY)).andReturn(false);
+        expect(httpRequest.headers()).andReturn(headers).atLeastOnce();
+        expect(httpRequest.getMethod()).andReturn(GET).atLeastOnce();
+        expect(httpRequest.getProtocolVersion()).andReturn(HTTP_1_1).atLeastOnce();
+        expect(context.write(isA(HttpResponse.class))).andReturn(new DefaultChannelPromise(channel));
+        expect(context.write(isA(SharedChunkedFile.class))).andReturn(new DefaultChannelPromise(channel));
+        expect(context.writeAndFlush(isA(LastHttpContent.class))).andReturn(lastContentPromise);
+        contentPrefetcher.contentStreamed(indexHtml, 5, 12, 26);
+        expectLastCall();
+
+        HttpFileRequest request = newContentRequest(httpRequest, indexHtml, MimeType.valueOf("text/html"));
+
+        replay(context, httpRequest, channel, configurationManager, contentPrefetcher);
+        HttpFileRequestHandler handler = newHandler(configurationManager, new TimeSeekIndexStore(false, null, null), contentPrefetcher, new HttpContentCache(0, 0));
+        handler.channelRead0(context, request);
+
+        // Streamed section is notified once content is written out
+        lastContentPromise.setSuccess();
+        verify(context, httpRequest, channel, configurationManager, contentPrefetcher);
+    }
+
+    @Test
+    public void testFileRequestHandlerWithMultipleRanges() throws Exception {
+        File indexHtml = createTestFile("some content in index.html");
+
+        HttpHeaders headers = new DefaultHttpHeaders();
+        headers.add(HOST, "localhost");
+        headers.add(RANGE, "bytes=0-3,-4");
+
+        ConfigurationManager configurationManager = createMock(ConfigurationManager.class);
+        ChannelHandlerContext context = createMock(ChannelHandlerContext.class);
+        FullHttpRequest httpRequest = createMock(FullHttpRequest.class);
+        Channel channel = createMock(Channel.class);
+        Capture<Object> writes = newCapture(CaptureType.ALL);
+
+        expect(configurationManager.getParameter(HTTP_SERVER_CACHE_SECOND)).andReturn(60);
+        expect(configurationManager.getParameter(HTTP_SERVER_ZERO_COPY)).andReturn(false);
+        expect(httpRequest.headers()).andReturn(headers).atLeastOnce();
+        expect(httpRequest.getMethod()).andReturn(GET).atLeastOnce();
+        expect(httpRequest.getProtocolVersion()).andReturn(HTTP_1_1).atLeastOnce();
+        expect(context.write(capture(writes))).andReturn(new DefaultChannelPromise(channel)).times(6);
+        expect(context.writeAndFlush(isA(LastHttpContent.class))).andReturn(new DefaultChannelPromise(channel)).atLeastOnce();
+
+        HttpFileRequest request = newContentRequest(httpRequest, indexHtml, MimeType.valueOf("text/html"));
+
+        replay(context, httpRequest, channel, configurationManager);
+        HttpFileRequestHandler handler = newHandler(configurationManager);
+        handler.channelRead0(context, request);
+        verify(context, httpRequest, channel, configurationManager);
+
+        List<Object> values = writes.getValues();
+        HttpResponse response = (HttpResponse) values.get(0);
+        assertEquals(PARTIAL_CONTENT, response.getStatus());
+        assertTrue(response.headers().get(CONTENT_TYPE).startsWith("multipart/byteranges; boundary="));
+        String boundary = response.headers().get(CONTENT_TYPE).substring("multipart/byteranges; boundary=".length());
+
+        // Check parts and content length
+        String firstPart = ((ByteBuf) values.get(1)).toString(US_ASCII);
+        String secondPart = ((ByteBuf) values.get(3)).toString(US_ASCII);
+        String closing = ((ByteBuf) values.get(5)).toString(US_ASCII);
+        assertEquals("\r\n--" + boundary + "\r\nContent-Type: text/html\r\nContent-Range: bytes 0-3/26\r\n\r\n", firstPart);
+        assertEquals("\r\n--" + boundary + "\r\nContent-Type: text/html\r\nContent-Range: bytes 22-25/26\r\n\r\n", secondPart);
+        assertEquals("\r\n--" + boundary + "--\r\n", closing);
+        assertEquals(firstPart.length() + 4 + secondPart.length() + 4 + closing.length(), HttpHeaders.getContentLength(response));
+        assertEquals(22, ((SharedChunkedFile) values.get(4)).startOffset());
+    }
+
+    @Test
+    public void testFileRequestHandlerWithIfRange() throws Exception {
+        File indexHtml = createTestFile("some content in index.html");
+        SimpleDateFormat dateFormat = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+        dateFormat.setTimeZone(TimeZone.getTimeZone("GMT"));
+
+        HttpHeaders headers = new DefaultHttpHeaders();
+        headers.add(HOST, "localhost");
+        headers.add(RANGE, "bytes=5-11");
+        headers.add(IF_RANGE, dateFormat.format(new Date(indexHtml.lastModified())));
+
+        ConfigurationManager configurationManager = createMock(ConfigurationManager.class);
+        ChannelHandlerContext context = createMock(ChannelHandlerContext.class);
+        FullHttpRequest httpRequest = createMock(FullHttpRequest.class);
+        Channel channel = createMock(Channel.class);
+        Capture<HttpResponse> response = newCapture();
+
+        expect(configurationManager.getParameter(HTTP_SERVER_CACHE_SECOND)).andReturn(60);
+        expect(configurationManager.getParameter(HTTP_SERVER_ZERO_COPY)).andReturn(false);
+        expect(httpRequest.headers()).andReturn(headers).atLeastOnce();
+        expect(httpRequest.getMethod()).andReturn(GET).atLeastOnce();
+        expect(httpRequest.getProtocolVersion()).andReturn(HTTP_1_1).atLeastOnce();
+        expect(context.write(capture(response))).andReturn(new DefaultChannelPromise(channel));
+        expect(context.write(isA(SharedChunkedFile.class))).andReturn(new DefaultChannelPromise(channel));
+        expect(context.writeAndFlush(isA(LastHttpContent.class))).andReturn(new DefaultChannelPromise(channel)).atLeastOnce();
+
+        HttpFileRequest request = newContentRequest(httpRequest, indexHtml, MimeType.valueOf("text/html"));
+
+        replay(context, httpRequest, channel, configurationManager);
+        HttpFileRequestHandler handler = newHandler(configurationManager);
+        handler.channelRead0(context, request);
+        verify(context, httpRequest, channel, configurationManager);
+
+        assertEquals(PARTIAL_CONTENT, response.getValue().getStatus());
+    }
+
+    @Test
+    public void testFileRequestHandlerWithModifiedIfRange() throws Exception {
+        File indexHtml = createTestFile("some content in index.html");
+
+        HttpHeaders headers = new DefaultHttpHeaders();
+        headers.add(HOST, "localhost");
+        headers.add(RANGE, "bytes=5-11");
+        headers.add(IF_RANGE, "Thu, 01 Jan 2015 00:00:00 GMT");
+
+        ConfigurationManager configurationManager = createMock(ConfigurationManager.class);
+        ChannelHandlerContext context = createMock(ChannelHandlerContext.class);
+        FullHttpRequest httpRequest = createMock(FullHttpRequest.class);
+        Channel channel = createMock(Channel.class);
+        Capture<HttpResponse> response = newCapture();
+
+        expect(configurationManager.getParameter(HTTP_SERVER_CACHE_SECOND)).andReturn(60);
+        expect(configurationManager.getParameter(HTTP_SERVER_ZERO_COPY)).andReturn(false);
+        expect(httpRequest.headers()).andReturn(headers).atLeastOnce();
+        expect(httpRequest.getMethod()).andReturn(GET).atLeastOnce();
+        expect(httpRequest.getProtocolVersion()).andReturn(HTTP_1_1).atLeastOnce();
+        expect(context.write(capture(response))).andReturn(new DefaultChannelPromise(channel));
+        expect(context.write(isA(SharedChunkedFile.class))).andReturn(new DefaultChannelPromise(channel));
+        expect(context.writeAndFlush(isA(LastHttpContent.class))).andReturn(new DefaultChannelPromise(channel)).atLeastOnce();
+
+        HttpFileRequest request = newContentRequest(httpRequest, indexHtml, MimeType.valueOf("text/html"));
+
+        replay(context, httpRequest, channel, configurationManager);
+        HttpFileRequestHandler handler = newHandler(configurationManager);
+        handler.channelRead0(context, request);
+        verify(context, httpRequest, channel, configurationManager);
+
+        assertEquals(OK, response.getValue().getStatus());
+        assertEquals("26", response.getValue().headers().get(CONTENT_LENGTH));
+    }
+
     @Test(expected = HttpFileRequestException.class)
     public void testFileRequestHandlerWithEmptyOffset() throws Exception {
         File indexHtml = File.createTempFile("index", ".html");
@@ -165,19 +626,132 @@ public class HttpFileRequestHandlerTest {
         FullHttpRequest httpRequest = createMock(FullHttpRequest.class);
 
         expect(configurationManager.getParameter(HTTP_SERVER_CACHE_SECOND)).andReturn(60);
+        expect(configurationManager.getParameter(HTTP_SERVER_ZERO_COPY)).andReturn(false);
         expect(httpRequest.headers()).andReturn(headers).atLeastOnce();
+        expect(httpRequest.getMethod()).andReturn(GET).atLeastOnce();
 
-        HttpFileRequest request = new HttpFileRequest(httpRequest, new File(indexHtml.getAbsolutePath()), MimeType.valueOf("text/html"), true);
+        HttpFileRequest request = newStaticResourceRequest(httpRequest, new File(indexHtml.getAbsolutePath()), MimeType.valueOf("text/html"));
 
         replay(context, httpRequest, configurationManager);
         try {
-            HttpFileRequestHandler handler = new HttpFileRequestHandler(configurationManager);
+            HttpFileRequestHandler handler = newHandler(configurationManager);
             handler.channelRead0(context, request);
         } finally {
             verify(context, httpRequest, configurationManager);
         }
     }
 
+    @Test
+    public void testFileRequestHandlerTimeSeek() throws Exception {
+        File video = createTransportStream();
+        MimeType mimeType = MimeType.valueOf("video/mp2t");
+        TimeSeekIndexStore timeSeekIndexStore = new TimeSeekIndexStore(true, Files.createTempDirectory("seek-index"), directExecutor());
+        timeSeekIndexStore.getIndex(video, mimeType, video.length(), video.lastModified());
+
+        HttpHeaders headers = new DefaultHttpHeaders();
+        headers.add(HOST, "localhost");
+        headers.add("TimeSeekRange.dlna.org", "npt=20-");
+        headers.add("getcontentFeatures.dlna.org", "1");
+
+        ConfigurationManager configurationManager = createMock(ConfigurationManager.class);
+        ChannelHandlerContext context = createMock(ChannelHandlerContext.class);
+        FullHttpRequest httpRequest = createMock(FullHttpRequest.class);
+        Channel channel = createMock(Channel.class);
+        Capture<Object> writes = newCapture(CaptureType.ALL);
+
+        expect(configurationManager.getParameter(HTTP_SERVER_CACHE_SECOND)).andReturn(60);
+        expect(configurationManager.getParameter(HTTP_SERVER_ZERO_COPY)).andReturn(false);
+        expect(httpRequest.headers()).andReturn(headers).atLeastOnce();
+        expect(httpRequest.getMethod()).andReturn(GET).atLeastOnce();
+        expect(httpRequest.getProtocolVersion()).andReturn(HTTP_1_1).atLeastOnce();
+        expect(context.write(capture(writes))).andReturn(new DefaultChannelPromise(channel)).times(2);
+        expect(context.writeAndFlush(isA(LastHttpContent.class))).andReturn(new DefaultChannelPromise(channel)).atLeastOnce();
+
+        HttpFileRequest request = newValidatedContentRequest(httpRequest, video, mimeType, video.length(), video.lastModified(),
+                getEntityTag(video.length(), video.lastModified()));
+
+        replay(context, httpRequest, channel, configurationManager);
+        HttpFileRequestHandler handler = newHandler(configurationManager, timeSeekIndexStore, new ContentPrefetcherImpl(null, 0, 0, null), new HttpContentCache(0, 0));
+        handler.channelRead0(context, request);
+        verify(context, httpRequest, channel, configurationManager);
+
+        // Time seek is answered with 200 status and byte range starting on key frame preceding requested time
+        HttpResponse response = (HttpResponse) writes.getValues().get(0);
+        assertEquals(OK, response.getStatus());
+        assertEquals("npt=14.000-59.900/59.900 bytes=263200-1127999/1128000", response.headers().get("TimeSeekRange.dlna.org"));
+        assertEquals("864800", response.headers().get(CONTENT_LENGTH));
+        assertNull(response.headers().get(CONTENT_RANGE));
+        assertEquals("DLNA.ORG_OP=11;DLNA.ORG_CI=0;DLNA.ORG_FLAGS=01700000000000000000000000000000", response.headers().get("contentFeatures.dlna.org"));
+        SharedChunkedFile content = (SharedChunkedFile) writes.getValues().get(1);
+        assertEquals(263200, content.startOffset());
+        assertEquals(1128000, content.endOffset());
+    }
+
+    @Test
+    public void testFileRequestHandlerTimeSeekNotSupported() throws Exception {
+        File video = File.createTempFile("video", ".avi");
+        video.deleteOnExit();
+
+        HttpHeaders headers = new DefaultHttpHeaders();
+        headers.add(HOST, "localhost");
+        headers.add("TimeSeekRange.dlna.org", "npt=3.5-");
+
+        ConfigurationManager configurationManager = createMock(ConfigurationManager.class);
+        ChannelHandlerContext context = createMock(ChannelHandlerContext.class);
+        FullHttpRequest httpRequest = createMock(FullHttpRequest.class);
+
+        expect(configurationManager.getParameter(HTTP_SERVER_CACHE_SECOND)).andReturn(60);
+        expect(configurationManager.getParameter(HTTP_SERVER_ZERO_COPY)).andReturn(false);
+        expect(httpRequest.headers()).andReturn(headers).atLeastOnce();
+        expect(httpRequest.getMethod()).andReturn(GET).atLeastOnce();
+
+        HttpFileRequest request = newContentRequest(httpRequest, video, MimeType.valueOf("video/avi"));
+
+        replay(context, httpRequest, configurationManager);
+        try {
+            HttpFileRequestHandler handler = newHandler(configurationManager, new TimeSeekIndexStore(true, Files.createTempDirectory("seek-index"), directExecutor()),
+                    new ContentPrefetcherImpl(null, 0, 0, null), new HttpContentCache(0, 0));
+            handler.channelRead0(context, request);
+            fail("Time seek is not supported");
+        } catch (HttpFileRequestException e) {
+            assertEquals(NOT_ACCEPTABLE, e.getStatus());
+        }
+        verify(context, httpRequest, configurationManager);
+    }
+
+    @Test
+    public void testFileRequestHandlerTimeSeekIndexPending() throws Exception {
+        File video = createTransportStream();
+
+        HttpHeaders headers = new DefaultHttpHeaders();
+        headers.add(HOST, "localhost");
+        headers.add("TimeSeekRange.dlna.org", "npt=20-");
+
+        ConfigurationManager configurationManager = createMock(ConfigurationManager.class);
+        ChannelHandlerContext context = createMock(ChannelHandlerContext.class);
+        FullHttpRequest httpRequest = createMock(FullHttpRequest.class);
+
+        expect(configurationManager.getParameter(HTTP_SERVER_CACHE_SECOND)).andReturn(60);
+        expect(configurationManager.getParameter(HTTP_SERVER_ZERO_COPY)).andReturn(false);
+        expect(httpRequest.headers()).andReturn(headers).atLeastOnce();
+        expect(httpRequest.getMethod()).andReturn(GET).atLeastOnce();
+
+        HttpFileRequest request = newContentRequest(httpRequest, video, MimeType.valueOf("video/mp2t"));
+
+        replay(context, httpRequest, configurationManager);
+        try {
+            // Index build is never run
+            HttpFileRequestHandler handler = newHandler(configurationManager, new TimeSeekIndexStore(true, Files.createTempDirectory("seek-index"), command -> {
+            }), new ContentPrefetcherImpl(null, 0, 0, null), new HttpContentCache(0, 0));
+            handler.channelRead0(context, request);
+            fail("Time seek index is pending");
+        } catch (HttpFileRequestException e) {
+            assertEquals(SERVICE_UNAVAILABLE, e.getStatus());
+            assertEquals("2", e.getHeaders().get(RETRY_AFTER));
+        }
+        verify(context, httpRequest, configurationManager);
+    }
+
     @Test(expected = HttpFileRequestException.class)
     public void testFileRequestHandlerWithBadOffset() throws Exception {
         File indexHtml = File.createTempFile("index", ".html");
@@ -192,13 +766,15 @@ public class HttpFileRequestHandlerTest {
         FullHttpRequest httpRequest = createMock(FullHttpRequest.class);
 
         expect(configurationManager.getParameter(HTTP_SERVER_CACHE_SECOND)).andReturn(60);
+        expect(configurationManager.getParameter(HTTP_SERVER_ZERO_COPY)).andReturn(false);
         expect(httpRequest.headers()).andReturn(headers).atLeastOnce();
+        expect(httpRequest.getMethod()).andReturn(GET).atLeastOnce();
 
-        HttpFileRequest request = new HttpFileRequest(httpRequest, new File(indexHtml.getAbsolutePath()), MimeType.valueOf("text/html"), true);
+        HttpFileRequest request = newStaticResourceRequest(httpRequest, new File(indexHtml.getAbsolutePath()), MimeType.valueOf("text/html"));
 
         replay(context, httpRequest, configurationManager);
         try {
-            HttpFileRequestHandler handler = new HttpFileRequestHandler(configurationManager);
+            HttpFileRequestHandler handler = newHandler(configurationManager);
             handler.channelRead0(context, request);
         } finally {
             verify(context, httpRequest, configurationManager);
@@ -220,15 +796,17 @@ public class HttpFileRequestHandlerTest {
         Channel channel = createMock(Channel.class);
 
         expect(configurationManager.getParameter(HTTP_SERVER_CACHE_SECOND)).andReturn(60);
+        expect(configurationManager.getParameter(HTTP_SERVER_ZERO_COPY)).andReturn(false);
         expect(httpRequest.headers()).andReturn(headers).atLeastOnce();
+        expect(httpRequest.getMethod()).andReturn(GET).atLeastOnce();
         expect(context.write(isA(HttpResponse.class))).andReturn(new DefaultChannelPromise(channel)).atLeastOnce();
-        expect(context.write(isA(ChunkedFile.class))).andReturn(new DefaultChannelPromise(channel)).atLeastOnce();
+        expect(context.write(isA(SharedChunkedFile.class))).andReturn(new DefaultChannelPromise(channel)).atLeastOnce();
         expect(context.writeAndFlush(isA(LastHttpContent.class))).andReturn(new DefaultChannelPromise(channel)).atLeastOnce();
 
-        HttpFileRequest request = new HttpFileRequest(httpRequest, new File(indexHtml.getAbsolutePath()), MimeType.valueOf("text/html"), true);
+        HttpFileRequest request = newStaticResourceRequest(httpRequest, new File(indexHtml.getAbsolutePath()), MimeType.valueOf("text/html"));
 
         replay(context, httpRequest, channel, configurationManager);
-        HttpFileRequestHandler handler = new HttpFileRequestHandler(configurationManager);
+        HttpFileRequestHandler handler = newHandler(configurationManager);
         handler.channelRead0(context, request);
         verify(context, httpRequest, channel, configurationManager);
     }
@@ -240,11 +818,12 @@ public class HttpFileRequestHandlerTest {
         Channel channel = createMock(Channel.class);
 
         expect(configurationManager.getParameter(HTTP_SERVER_CACHE_SECOND)).andReturn(60);
+        expect(configurationManager.getParameter(HTTP_SERVER_ZERO_COPY)).andReturn(false);
         expect(context.channel()).andReturn(channel).atLeastOnce();
         expect(channel.isActive()).andReturn(true).atLeastOnce();
         expect(channel.writeAndFlush(isA(Object.class))).andReturn(new DefaultChannelPromise(channel)).atLeastOnce();
         replay(context, channel, configurationManager);
-        new HttpFileRequestHandler(configurationManager).exceptionCaught(context, new HttpFileRequestException("message", NOT_FOUND));
+        newHandler(configurationManager).exceptionCaught(context, new HttpFileRequestException("message", NOT_FOUND));
         verify(context, channel, configurationManager);
     }
 
@@ -255,11 +834,12 @@ public class HttpFileRequestHandlerTest {
         Channel channel = createMock(Channel.class);
 
         expect(configurationManager.getParameter(HTTP_SERVER_CACHE_SECOND)).andReturn(60);
+        expect(configurationManager.getParameter(HTTP_SERVER_ZERO_COPY)).andReturn(false);
         expect(context.channel()).andReturn(channel).atLeastOnce();
         expect(channel.isActive()).andReturn(true).atLeastOnce();
         expect(channel.writeAndFlush(isA(Object.class))).andReturn(new DefaultChannelPromise(channel)).atLeastOnce();
         replay(context, channel, configurationManager);
-        new HttpFileRequestHandler(configurationManager).exceptionCaught(context, new IOException());
+        newHandler(configurationManager).exceptionCaught(context, new IOException());
         verify(context, channel, configurationManager);
     }
 
@@ -270,10 +850,169 @@ public class HttpFileRequestHandlerTest {
         Channel channel = createMock(Channel.class);
 
         expect(configurationManager.getParameter(HTTP_SERVER_CACHE_SECOND)).andReturn(60);
+        expect(configurationManager.getParameter(HTTP_SERVER_ZERO_COPY)).andReturn(false);
         expect(context.channel()).andReturn(channel).atLeastOnce();
         expect(channel.isActive()).andReturn(false).atLeastOnce();
         replay(context, channel, configurationManager);
-        new HttpFileRequestHandler(configurationManager).exceptionCaught(context, new HttpFileRequestException("message", NOT_FOUND));
+        newHandler(configurationManager).exceptionCaught(context, new HttpFileRequestException("message", NOT_FOUND));
         verify(context, channel, configurationManager);
     }
+
+    @Test
+    public void testExceptionCaughtWithHeaders() throws Exception {
+        ConfigurationManager configurationManager = createMock(ConfigurationManager.class);
+        ChannelHandlerContext context = createMock(ChannelHandlerContext.class);
+        Channel channel = createMock(Channel.class);
+        Capture<FullHttpResponse> response = newCapture();
+        HttpHeaders headers = new DefaultHttpHeaders();
+        headers.add(CONTENT_RANGE, "bytes */26");
+
+        expect(configurationManager.getParameter(HTTP_SERVER_CACHE_SECOND)).andReturn(60);
+        expect(configurationManager.getParameter(HTTP_SERVER_ZERO_COPY)).andReturn(false);
+        expect(context.channel()).andReturn(channel).atLeastOnce();
+        expect(channel.isActive()).andReturn(true).atLeastOnce();
+        expect(channel.writeAndFlush(capture(response))).andReturn(new DefaultChannelPromise(channel)).atLeastOnce();
+        replay(context, channel, configurationManager);
+        newHandler(configurationManager).exceptionCaught(context, new HttpFileRequestException("message", REQUESTED_RANGE_NOT_SATISFIABLE, headers));
+        verify(context, channel, configurationManager);
+
+        assertEquals(REQUESTED_RANGE_NOT_SATISFIABLE, response.getValue().getStatus());
+        assertEquals("bytes */26", response.getValue().headers().get(CONTENT_RANGE));
+        response.getValue().release();
+    }
+
+    @Test
+    public void testFileRequestHandlerRemoteContentPipelined() throws Exception {
+        final File indexHtml = createTestFile("<html/>");
+        final ConfigurationManager configurationManager = createMock(ConfigurationManager.class);
+        expect(configurationManager.getParameter(HTTP_SERVER_CACHE_SECOND)).andReturn(60).anyTimes();
+        expect(configurationManager.getParameter(HTTP_SERVER_ZERO_COPY)).andReturn(false).anyTimes();
+        replay(configurationManager);
+
+        NioEventLoopGroup eventLoopGroup = new NioEventLoopGroup(2);
+        final EventExecutorGroup fileGroup = new DefaultEventExecutorGroup(1);
+        final HttpRemoteContentProxy remoteContentProxy = new HttpRemoteContentProxy(new HttpDiskCache(null, 0, Collections.<String>emptyList()), 1, 60,
+                new DefaultEventExecutorGroup(1));
+        try {
+            // Slow origin, without modification date nor entity tag
+            Channel originChannel = new ServerBootstrap().group(eventLoopGroup).channel(NioServerSocketChannel.class)
+                    .childHandler(new ChannelInitializer<SocketChannel>() {
+                        @Override
+                        protected void initChannel(final SocketChannel channel) {
+                            channel.pipeline().addLast(new HttpServerCodec(), new HttpObjectAggregator(65536), new SimpleChannelInboundHandler<FullHttpRequest>() {
+                                @Override
+                                protected void channelRead0(final ChannelHandlerContext context, final FullHttpRequest request) {
+                                    final FullHttpResponse response = new DefaultFullHttpResponse(HTTP_1_1, OK);
+                                    HttpHeaders.setContentLength(response, 1000);
+                                    context.executor().schedule(new Runnable() {
+                                        @Override
+                                        public void run() {
+                                            context.writeAndFlush(response);
+                                        }
+                                    }, 200, MILLISECONDS);
+                                }
+                            });
+                        }
+                    }).bind("127.0.0.1", 0).sync().channel();
+            final String originUrl = "http://127.0.0.1:" + ((InetSocketAddress) originChannel.localAddress()).getPort() + "/video.avi";
+
+            // Server answering a remote content and a local file
+            Channel serverChannel = new ServerBootstrap().group(eventLoopGroup).channel(NioServerSocketChannel.class)
+                    .childHandler(new ChannelInitializer<SocketChannel>() {
+                        @Override
+                        protected void initChannel(final SocketChannel channel) {
+                            channel.pipeline().addLast(new HttpServerCodec(), new HttpObjectAggregator(65536), new MessageToMessageDecoder<FullHttpRequest>() {
+                                @Override
+                                protected void decode(final ChannelHandlerContext context, final FullHttpRequest request, final List<Object> out) {
+                                    out.add("/remote".equals(request.getUri()) ? newRemoteContentRequest(request, originUrl, MimeType.valueOf("video/avi"))
+                                            : newContentRequest(request, indexHtml, MimeType.valueOf("text/html")));
+                                }
+                            });
+                            channel.pipeline().addLast(fileGroup, newHandler(configurationManager, remoteContentProxy));
+                        }
+                    }).bind("127.0.0.1", 0).sync().channel();
+
+            String responses;
+            try (Socket socket = new Socket("127.0.0.1", ((InetSocketAddress) serverChannel.localAddress()).getPort())) {
+                socket.setSoTimeout(10000);
+                socket.getOutputStream().write(("HEAD /remote HTTP/1.1\r\nHost: localhost\r\nIf-Modified-Since: Thu, 01 Jan 2099 00:00:00 GMT\r\n\r\n"
+                        + "HEAD /local HTTP/1.1\r\nHost: localhost\r\n\r\n").getBytes(US_ASCII));
+                responses = readHeaders(socket.getInputStream(), 2);
+            }
+
+            // Remote content is answered first, without date validators
+            String[] headers = responses.split("\r\n\r\n");
+            assertTrue(headers[0].startsWith("HTTP/1.1 200 OK"));
+            assertTrue(headers[0].contains(CONTENT_LENGTH + ": 1000"));
+            assertFalse(headers[0].contains(LAST_MODIFIED));
+            assertFalse(headers[0].contains(ETAG));
+            assertTrue(headers[1].startsWith("HTTP/1.1 200 OK"));
+            assertTrue(headers[1].contains(CONTENT_TYPE + ": text/html"));
+        } finally {
+            remoteContentProxy.shutdownGracefully();
+            fileGroup.shutdownGracefully();
+            eventLoopGroup.shutdownGracefully();
+        }
+        verify(configurationManager);
+    }
+
+    /**
+     * Build a HTTP file request handler serving local files, without time seek, prefetch nor content cache.
+     *
+     * @param configurationManager configuration manager
+     * @return HTTP file request handler
+     */
+    static HttpFileRequestHandler newHandler(final ConfigurationManager configurationManager) {
+        return newHandler(configurationManager, new TimeSeekIndexStore(false, null, null), new ContentPrefetcherImpl(null, 0, 0, null),
+                new HttpContentCache(0, 0));
+    }
+
+    /**
+     * Build a HTTP file request handler serving local files.
+     *
+     * @param configurationManager configuration manager
+     * @param timeSeekIndexStore   time seek index store
+     * @param contentPrefetcher    content prefetcher
+     * @param contentCache         content cache
+     * @return HTTP file request handler
+     */
+    static HttpFileRequestHandler newHandler(final ConfigurationManager configurationManager, final TimeSeekIndexStore timeSeekIndexStore,
+                                             final ContentPrefetcher contentPrefetcher, final HttpContentCache contentCache) {
+        return new HttpFileRequestHandler(configurationManager, new HttpFileChannelCache(16, 30), timeSeekIndexStore, contentPrefetcher,
+                contentCache, null);
+    }
+
+    /**
+     * Build a HTTP file request handler serving local files and remote contents, without time seek, prefetch nor content cache.
+     *
+     * @param configurationManager configuration manager
+     * @param remoteContentProxy   remote content proxy
+     * @return HTTP file request handler
+     */
+    static HttpFileRequestHandler newHandler(final ConfigurationManager configurationManager, final HttpRemoteContentProxy remoteContentProxy) {
+        return new HttpFileRequestHandler(configurationManager, new HttpFileChannelCache(16, 30), new TimeSeekIndexStore(false, null, null),
+                new ContentPrefetcherImpl(null, 0, 0, null), new HttpContentCache(0, 0), remoteContentProxy);
+    }
+
+    private static String readHeaders(final InputStream input, final int count) throws IOException {
+        StringBuilder headers = new StringBuilder();
+        int found = 0;
+        int read;
+        while (found < count && (read = input.read()) >= 0) {
+            headers.append((char) read);
+            if (headers.length() >= 4 && headers.lastIndexOf("\r\n\r\n") == headers.length() - 4) {
+                found++;
+            }
+        }
+        return headers.toString();
+    }
+
+    private File createTestFile(final String content) throws IOException {
+        File file = File.createTempFile("index", ".html");
+        file.deleteOnExit();
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
+            writer.write(content);
+        }
+        return file;
+    }
 }
@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2012-2015  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.service.http;
+
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class HttpHistogramTest {
+
+    @Test
+    public void testEmptyHistogram() {
+        HttpHistogram histogram = new HttpHistogram();
+        Map<String, Long> summary = histogram.getSummary();
+        assertEquals(0L, (long) summary.get("count"));
+        assertEquals(0L, (long) summary.get("mean"));
+        assertEquals(0L, (long) summary.get("p99"));
+    }
+
+    @Test
+    public void testBuckets() {
+        assertEquals(0, HttpHistogram.getBucket(0));
+        assertEquals(1, HttpHistogram.getBucket(1));
+        assertEquals(2, HttpHistogram.getBucket(3));
+        assertEquals(3, HttpHistogram.getBucket(4));
+        assertEquals(63, HttpHistogram.getBucket(Long.MAX_VALUE));
+        assertEquals(3, HttpHistogram.getUpperBound(2));
+        assertEquals(Long.MAX_VALUE, HttpHistogram.getUpperBound(63));
+    }
+
+    @Test
+    public void testPercentiles() {
+        HttpHistogram histogram = new HttpHistogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i);
+        }
+        histogram.record(-1);
+        assertEquals(101, histogram.getCount());
+        assertEquals(5050, histogram.getSum());
+        assertEquals(100, histogram.getMax());
+
+        // Percentiles are bucket upper bounds, at most twice the exact value
+        long median = histogram.getPercentile(0.5);
+        assertTrue(median >= 50 && median <= 100);
+        assertEquals(100, histogram.getPercentile(0.99));
+        assertEquals(0, histogram.getPercentile(0));
+
+        Map<String, Long> summary = histogram.getSummary();
+        assertEquals(101L, (long) summary.get("count"));
+        assertEquals(50L, (long) summary.get("mean"));
+        assertEquals(100L, (long) summary.get("max"));
+    }
+
+    @Test
+    public void testConcurrentRecords() throws InterruptedException {
+        final HttpHistogram histogram = new HttpHistogram();
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        for (int thread = 0; thread < 4; thread++) {
+            final int value = thread + 1;
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < 10000; i++) {
+                        histogram.record(value);
+                    }
+                }
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(40000, histogram.getCount());
+        assertEquals(100000, histogram.getSum());
+        assertEquals(4, histogram.getMax());
+    }
+}
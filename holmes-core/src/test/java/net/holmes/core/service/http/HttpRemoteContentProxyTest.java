@@ -0,0 +1,296 @@
+/*
+ * Copyright (C) 2012-2015  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.service.http;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.*;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.http.*;
+import io.netty.handler.stream.ChunkedWriteHandler;
+import io.netty.util.concurrent.DefaultEventExecutorGroup;
+import io.netty.util.concurrent.Future;
+import net.holmes.core.service.http.HttpRemoteContentProxy.RemoteContent;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static io.netty.buffer.Unpooled.wrappedBuffer;
+import static io.netty.handler.codec.http.HttpHeaders.Names.*;
+import static io.netty.handler.codec.http.HttpResponseStatus.*;
+import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
+import static org.junit.Assert.*;
+
+public class HttpRemoteContentProxyTest {
+    private static final int MB = 1024 * 1024;
+    private static final long MODIFIED_DATE = 1400000000000L;
+    private static final Pattern PATTERN_RANGE = Pattern.compile("bytes=(\\d+)-(\\d+)");
+
+    private final AtomicInteger originGets = new AtomicInteger();
+    private final AtomicInteger originConnections = new AtomicInteger();
+    private NioEventLoopGroup originGroup;
+    private String originUrl;
+    private byte[] content;
+    private byte[] smallContent;
+    private Path cacheDirectory;
+
+    @Before
+    public void setUp() throws Exception {
+        content = new byte[2 * MB + MB / 2];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) (i * 31 + i / 255);
+        }
+        smallContent = Arrays.copyOf(content, 1000);
+        cacheDirectory = Files.createTempDirectory("disk-cache");
+
+        // Local stand-in origin server
+        originGroup = new NioEventLoopGroup(1);
+        Channel serverChannel = new ServerBootstrap().group(originGroup).channel(NioServerSocketChannel.class)
+                .childHandler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(final SocketChannel channel) {
+                        originConnections.incrementAndGet();
+                        channel.pipeline().addLast(new HttpServerCodec(), new HttpObjectAggregator(65536), new OriginHandler());
+                    }
+                }).bind("127.0.0.1", 0).sync().channel();
+        originUrl = "http://127.0.0.1:" + ((InetSocketAddress) serverChannel.localAddress()).getPort();
+    }
+
+    @After
+    public void tearDown() {
+        originGroup.shutdownGracefully();
+    }
+
+    @Test
+    public void testGetContent() throws Exception {
+        HttpRemoteContentProxy proxy = newProxy(0, 4);
+        try {
+            RemoteContent remoteContent = getContent(proxy, originUrl + "/video.avi");
+            assertEquals(content.length, remoteContent.getLength());
+            assertEquals(MODIFIED_DATE, remoteContent.getLastModified());
+            assertNotNull(remoteContent.getEntityTag());
+
+            // Attributes are reused, without waiting for origin
+            assertTrue(proxy.getContent(originUrl + "/video.avi").isDone());
+            assertSame(remoteContent, getContent(proxy, originUrl + "/video.avi"));
+            assertEquals(1, proxy.getOriginRequestCount());
+        } finally {
+            proxy.shutdownGracefully();
+        }
+    }
+
+    @Test
+    public void testGetContentRedirected() throws Exception {
+        HttpRemoteContentProxy proxy = newProxy(0, 4);
+        try {
+            RemoteContent remoteContent = getContent(proxy, originUrl + "/redirect");
+            assertEquals(content.length, remoteContent.getLength());
+            assertArrayEquals(content, read(proxy, remoteContent, 0, content.length));
+        } finally {
+            proxy.shutdownGracefully();
+        }
+    }
+
+    @Test
+    public void testGetContentNotFound() {
+        HttpRemoteContentProxy proxy = newProxy(0, 4);
+        try {
+            getContent(proxy, originUrl + "/missing.avi");
+            fail("Content is not found");
+        } catch (HttpFileRequestException e) {
+            assertEquals(NOT_FOUND, e.getStatus());
+        } finally {
+            proxy.shutdownGracefully();
+        }
+    }
+
+    @Test
+    public void testGetContentUnreachable() {
+        HttpRemoteContentProxy proxy = newProxy(0, 4);
+        try {
+            getContent(proxy, "http://127.0.0.1:1/video.avi");
+            fail("Origin is unreachable");
+        } catch (HttpFileRequestException e) {
+            assertEquals(BAD_GATEWAY, e.getStatus());
+        } finally {
+            proxy.shutdownGracefully();
+        }
+    }
+
+    @Test
+    public void testReadRange() throws Exception {
+        HttpRemoteContentProxy proxy = newProxy(0, 4);
+        try {
+            RemoteContent remoteContent = getContent(proxy, originUrl + "/video.avi");
+            int offset = MB - 100;
+            assertArrayEquals(Arrays.copyOfRange(content, offset, offset + 200), read(proxy, remoteContent, offset, 200));
+            assertEquals(2, originGets.get());
+            assertEquals(2 * MB, proxy.getOriginBytes());
+        } finally {
+            proxy.shutdownGracefully();
+        }
+    }
+
+    @Test
+    public void testPooledConnections() throws Exception {
+        HttpRemoteContentProxy proxy = newProxy(0, 1);
+        try {
+            RemoteContent remoteContent = getContent(proxy, originUrl + "/video.avi");
+            assertArrayEquals(content, read(proxy, remoteContent, 0, content.length));
+            assertEquals(4, proxy.getOriginRequestCount());
+            assertEquals(1, proxy.getOriginConnectionCount());
+            assertEquals(1, originConnections.get());
+        } finally {
+            proxy.shutdownGracefully();
+        }
+    }
+
+    @Test
+    public void testDiskCache() throws Exception {
+        HttpRemoteContentProxy proxy = newProxy(16 * MB, 4);
+        try {
+            RemoteContent remoteContent = getContent(proxy, originUrl + "/video.avi");
+            assertArrayEquals(content, read(proxy, remoteContent, 0, content.length));
+            assertArrayEquals(content, read(proxy, remoteContent, 0, content.length));
+            assertEquals(3, originGets.get());
+        } finally {
+            proxy.shutdownGracefully();
+        }
+
+        // Blocks are shared with a new proxy
+        HttpRemoteContentProxy newProxy = newProxy(16 * MB, 4);
+        try {
+            RemoteContent remoteContent = getContent(newProxy, originUrl + "/video.avi");
+            assertArrayEquals(Arrays.copyOfRange(content, 2 * MB, content.length), read(newProxy, remoteContent, 2 * MB, content.length - 2 * MB));
+            assertEquals(3, originGets.get());
+            assertEquals(0, newProxy.getOriginBytes());
+        } finally {
+            newProxy.shutdownGracefully();
+        }
+    }
+
+    @Test
+    public void testOriginWithoutRangeSupport() throws Exception {
+        HttpRemoteContentProxy proxy = newProxy(0, 4);
+        try {
+            RemoteContent remoteContent = getContent(proxy, originUrl + "/norange.avi");
+            assertEquals(smallContent.length, remoteContent.getLength());
+            assertEquals(0, remoteContent.getLastModified());
+            assertNull(remoteContent.getEntityTag());
+            assertArrayEquals(Arrays.copyOfRange(smallContent, 100, 300), read(proxy, remoteContent, 100, 200));
+        } finally {
+            proxy.shutdownGracefully();
+        }
+    }
+
+    private HttpRemoteContentProxy newProxy(final long diskCacheSize, final int maxConnections) {
+        HttpDiskCache diskCache = new HttpDiskCache(cacheDirectory, diskCacheSize, Collections.<String>emptyList());
+        return new HttpRemoteContentProxy(diskCache, maxConnections, 60, new DefaultEventExecutorGroup(2));
+    }
+
+    private static RemoteContent getContent(final HttpRemoteContentProxy proxy, final String url) throws HttpFileRequestException {
+        Future<RemoteContent> future = proxy.getContent(url).awaitUninterruptibly();
+        if (future.cause() instanceof HttpFileRequestException) {
+            throw (HttpFileRequestException) future.cause();
+        }
+        assertTrue(future.isSuccess());
+        return future.getNow();
+    }
+
+    private static byte[] read(final HttpRemoteContentProxy proxy, final RemoteContent remoteContent, final long offset, final int count)
+            throws InterruptedException {
+        EmbeddedChannel channel = new EmbeddedChannel(new ChunkedWriteHandler());
+        channel.writeAndFlush(proxy.newChunkedInput(remoteContent, offset, count, 8192));
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        long timeout = System.currentTimeMillis() + 10000;
+        while (output.size() < count && System.currentTimeMillis() < timeout) {
+            channel.runPendingTasks();
+            ByteBuf chunk;
+            while ((chunk = (ByteBuf) channel.readOutbound()) != null) {
+                byte[] bytes = new byte[chunk.readableBytes()];
+                chunk.readBytes(bytes);
+                chunk.release();
+                output.write(bytes, 0, bytes.length);
+            }
+            Thread.sleep(5);
+        }
+        channel.finish();
+        return output.toByteArray();
+    }
+
+    /**
+     * Origin serving a content with range support, a small content without range support, a redirection and errors.
+     */
+    private final class OriginHandler extends SimpleChannelInboundHandler<FullHttpRequest> {
+
+        @Override
+        protected void channelRead0(final ChannelHandlerContext context, final FullHttpRequest request) {
+            FullHttpResponse response;
+            boolean head = HttpMethod.HEAD.equals(request.getMethod());
+            if ("/redirect".equals(request.getUri())) {
+                response = new DefaultFullHttpResponse(HTTP_1_1, FOUND);
+                response.headers().set(LOCATION, "/video.avi");
+            } else if ("/video.avi".equals(request.getUri())) {
+                Matcher matcher = PATTERN_RANGE.matcher(String.valueOf(request.headers().get(RANGE)));
+                if (head || !matcher.matches()) {
+                    response = newContentResponse(OK, content, 0, content.length, head);
+                } else {
+                    int start = Integer.parseInt(matcher.group(1));
+                    int end = Math.min(Integer.parseInt(matcher.group(2)), content.length - 1);
+                    response = newContentResponse(PARTIAL_CONTENT, content, start, end - start + 1, false);
+                    response.headers().set(CONTENT_RANGE, "bytes " + start + "-" + end + "/" + content.length);
+                }
+                HttpHeaders.setDateHeader(response, LAST_MODIFIED, new Date(MODIFIED_DATE));
+                response.headers().set(ETAG, "\"video\"");
+            } else if ("/norange.avi".equals(request.getUri())) {
+                response = newContentResponse(OK, smallContent, 0, smallContent.length, head);
+            } else {
+                response = new DefaultFullHttpResponse(HTTP_1_1, NOT_FOUND);
+            }
+            if (!head && !response.headers().contains(CONTENT_LENGTH)) {
+                HttpHeaders.setContentLength(response, 0);
+            }
+            if (HttpMethod.GET.equals(request.getMethod())) {
+                originGets.incrementAndGet();
+            }
+            context.writeAndFlush(response);
+        }
+
+        private FullHttpResponse newContentResponse(final HttpResponseStatus status, final byte[] bytes, final int offset, final int length,
+                                                    final boolean head) {
+            FullHttpResponse response = head ? new DefaultFullHttpResponse(HTTP_1_1, status)
+                    : new DefaultFullHttpResponse(HTTP_1_1, status, wrappedBuffer(bytes, offset, length));
+            HttpHeaders.setContentLength(response, head ? bytes.length : length);
+            return response;
+        }
+    }
+}
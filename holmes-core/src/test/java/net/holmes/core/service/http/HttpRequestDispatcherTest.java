@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2012-2015  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.service.http;
+
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.LastHttpContent;
+import net.holmes.core.business.mimetype.model.MimeType;
+import net.holmes.core.service.http.StaticResourceCache.StaticResource;
+import net.holmes.core.service.http.StaticResourceCache.Variant;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static io.netty.handler.codec.http.HttpMethod.GET;
+import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
+import static java.util.Arrays.asList;
+import static net.holmes.core.service.http.HttpFileRequest.newCachedResourceRequest;
+import static net.holmes.core.service.http.HttpFileRequest.newContentRequest;
+import static org.junit.Assert.*;
+
+public class HttpRequestDispatcherTest {
+
+    @Test
+    public void testDispatchCachedResource() {
+        List<String> handlers = new ArrayList<>();
+        EmbeddedChannel channel = newChannel(handlers);
+
+        StaticResource resource = new StaticResource(new File("index.html"), MimeType.valueOf("text/html"), 0L, new Variant(new byte[0], "\"etag\"", null), null);
+        channel.writeInbound(newCachedResourceRequest(newHttpRequest(), resource));
+
+        assertEquals(asList("static"), handlers);
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testDispatchFileRequest() {
+        List<String> handlers = new ArrayList<>();
+        EmbeddedChannel channel = newChannel(handlers);
+
+        channel.writeInbound(newContentRequest(newHttpRequest(), new File("video.avi"), MimeType.valueOf("video/x-msvideo")));
+
+        assertEquals(asList("file"), handlers);
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testDispatchContentRequest() {
+        List<String> handlers = new ArrayList<>();
+        EmbeddedChannel channel = newChannel(handlers);
+
+        DefaultFullHttpRequest request = newHttpRequest();
+        channel.writeInbound(new HttpContentRequest(request, "1234"));
+
+        assertEquals(asList("file"), handlers);
+        assertEquals(0, request.refCnt());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testDispatchOtherRequest() {
+        List<String> handlers = new ArrayList<>();
+        EmbeddedChannel channel = newChannel(handlers);
+
+        channel.writeInbound(newHttpRequest());
+
+        assertEquals(asList("rest"), handlers);
+        assertTrue(channel.finish());
+    }
+
+    @Test
+    public void testDispatchPipelinedRequests() {
+        List<String> handlers = new ArrayList<>();
+        EmbeddedChannel channel = newChannel(handlers);
+
+        // Second request follows first one while its response is pending
+        channel.writeInbound(newHttpRequest());
+        channel.writeInbound(newHttpRequest());
+        assertEquals(asList("rest", "file", "rest"), handlers);
+
+        // Both responses complete: next request is dispatched directly
+        channel.writeOutbound(LastHttpContent.EMPTY_LAST_CONTENT);
+        channel.writeOutbound(LastHttpContent.EMPTY_LAST_CONTENT);
+        handlers.clear();
+        channel.writeInbound(newHttpRequest());
+        assertEquals(asList("rest"), handlers);
+        assertTrue(channel.finish());
+    }
+
+    private static EmbeddedChannel newChannel(final List<String> handlers) {
+        ChannelHandler staticRequestHandler = new RecordingHandler("static", handlers);
+        ChannelHandler fileRequestHandler = new RecordingHandler("file", handlers);
+        return new EmbeddedChannel(new HttpRequestDispatcher(staticRequestHandler, fileRequestHandler), staticRequestHandler, fileRequestHandler,
+                new RecordingHandler("rest", handlers));
+    }
+
+    private static DefaultFullHttpRequest newHttpRequest() {
+        return new DefaultFullHttpRequest(HTTP_1_1, GET, "/");
+    }
+
+    /**
+     * Handler recording messages it receives, consuming file and content requests as file request handlers do.
+     */
+    private static final class RecordingHandler extends ChannelInboundHandlerAdapter {
+        private final String name;
+        private final List<String> handlers;
+
+        RecordingHandler(final String name, final List<String> handlers) {
+            this.name = name;
+            this.handlers = handlers;
+        }
+
+        @Override
+        public void channelRead(final ChannelHandlerContext context, final Object msg) {
+            handlers.add(name);
+            if (msg instanceof HttpContentRequest) {
+                ((HttpContentRequest) msg).release();
+            } else if (!(msg instanceof HttpFileRequest)) {
+                context.fireChannelRead(msg);
+            }
+        }
+    }
+}
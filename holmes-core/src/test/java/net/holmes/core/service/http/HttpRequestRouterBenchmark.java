@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2012-2015  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.service.http;
+
+import io.netty.handler.codec.http.QueryStringDecoder;
+import net.holmes.core.common.WebApplication;
+import net.holmes.core.service.http.HttpRequestRouter.Route;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Collections;
+import java.util.List;
+
+import static io.netty.handler.codec.http.QueryStringDecoder.decodeComponent;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static net.holmes.core.common.Constants.HTTP_CONTENT_ID;
+import static net.holmes.core.common.Constants.HTTP_CONTENT_REQUEST_PATH;
+import static net.holmes.core.service.http.HttpRequestRouter.RouteType.CONTENT;
+
+/**
+ * Http request routing benchmark: compiled path router compared to previous dispatch
+ * (query string decoding, path prefix check, trailing slashes removal by regular expression and web application lookup).
+ * <p>
+ * Run with: java -cp target/test-classes:[test classpath] net.holmes.core.service.http.HttpRequestRouterBenchmark
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HttpRequestRouterBenchmark {
+
+    @Param({"/content?id=2f3c1b8e-5a7d-4c1e-9b2a-0d6e8f4a1c3b", "/admin/", "/admin/js/app.js", "/backend/util/getVersion"})
+    private String uri;
+
+    private HttpRequestRouter router;
+
+    @Setup
+    public void setup() {
+        router = new HttpRequestRouter(Collections.singletonList("/backend"));
+    }
+
+    @Benchmark
+    public Object routerDispatch() {
+        int queryStart = uri.indexOf('?');
+        String path = decodeComponent(queryStart < 0 ? uri : uri.substring(0, queryStart), UTF_8);
+        Route route = router.route(path);
+        if (route.getType() == CONTENT && queryStart >= 0) {
+            return new QueryStringDecoder(uri).parameters().get(HTTP_CONTENT_ID.toString());
+        }
+        return route.getWelcomeFile() != null ? route.getWelcomeFile() : path;
+    }
+
+    @Benchmark
+    public Object legacyDispatch() {
+        QueryStringDecoder requestDecoder = new QueryStringDecoder(uri);
+        List<String> contentId = requestDecoder.parameters().get(HTTP_CONTENT_ID.toString());
+        if (requestDecoder.path().startsWith(HTTP_CONTENT_REQUEST_PATH.toString()) && contentId != null) {
+            return contentId;
+        }
+        String fileName = requestDecoder.path().replaceAll("/+$", "");
+        WebApplication webApplication = WebApplication.findByPath(fileName);
+        return webApplication != null ? fileName + webApplication.getWelcomeFile() : fileName;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(HttpRequestRouterBenchmark.class.getSimpleName()).build()).run();
+    }
+}
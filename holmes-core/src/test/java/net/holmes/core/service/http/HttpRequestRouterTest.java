@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2012-2015  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.service.http;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import net.holmes.core.service.http.HttpRequestRouter.Route;
+import org.junit.Test;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import java.util.Arrays;
+
+import static net.holmes.core.service.http.HttpRequestRouter.RouteType.*;
+import static org.junit.Assert.*;
+
+public class HttpRequestRouterTest {
+
+    private final HttpRequestRouter router = new HttpRequestRouter(Arrays.asList("/backend", "/api/v1"));
+
+    @Test
+    public void testContentRoute() {
+        assertEquals(CONTENT, router.route("/content").getType());
+        assertEquals(CONTENT, router.route("/content/").getType());
+        assertEquals(CONTENT, router.route("/content/video.avi").getType());
+        assertEquals(STATIC, router.route("/contents").getType());
+        assertEquals(STATIC, router.route("/con").getType());
+    }
+
+    @Test
+    public void testRestRoute() {
+        assertEquals(REST, router.route("/backend").getType());
+        assertEquals(REST, router.route("/backend/util/getVersion").getType());
+        assertEquals(REST, router.route("//backend//videoFolders/").getType());
+        assertEquals(REST, router.route("/api/v1/status").getType());
+        assertEquals(STATIC, router.route("/api").getType());
+        assertEquals(STATIC, router.route("/api/v2/status").getType());
+        assertEquals(STATIC, router.route("/backends").getType());
+    }
+
+    @Test
+    public void testWebApplicationRoute() {
+        assertEquals("/index.html", router.route("").getWelcomeFile());
+        assertEquals("/index.html", router.route("/").getWelcomeFile());
+        assertEquals("/admin/index.html", router.route("/admin").getWelcomeFile());
+        assertEquals("/admin/index.html", router.route("/admin/").getWelcomeFile());
+        assertEquals("/play/index.html", router.route("/play").getWelcomeFile());
+        assertEquals(STATIC, router.route("/play").getType());
+    }
+
+    @Test
+    public void testStaticRoute() {
+        Route route = router.route("/admin/js/app.js");
+        assertEquals(STATIC, route.getType());
+        assertNull(route.getWelcomeFile());
+        assertNull(router.route("/favicon.ico").getWelcomeFile());
+        assertSame(route, router.route("/other/path"));
+    }
+
+    @Test
+    public void testInjectedRouter() {
+        Injector injector = Guice.createInjector(new AbstractModule() {
+            @Override
+            protected void configure() {
+                bind(TestResource.class);
+            }
+        });
+        HttpRequestRouter injectedRouter = injector.getInstance(HttpRequestRouter.class);
+        assertEquals(REST, injectedRouter.route("/test/resource").getType());
+        assertEquals(STATIC, injectedRouter.route("/backend/util").getType());
+        assertSame(injectedRouter, injector.getInstance(HttpRequestRouter.class));
+    }
+
+    @Path("/test")
+    public static class TestResource {
+        @GET
+        public String get() {
+            return "test";
+        }
+    }
+}
@@ -18,9 +18,11 @@
 package net.holmes.core.service.http;
 
 import com.google.inject.Injector;
+import io.netty.util.concurrent.GlobalEventExecutor;
 import net.holmes.core.business.configuration.ConfigurationManager;
 import org.junit.Test;
 
+import java.util.Collections;
 import java.util.HashMap;
 
 import static net.holmes.core.common.ConfigurationParameter.*;
@@ -36,11 +38,49 @@ public class HttpServiceTest {
         expect(configurationManager.getParameter(HTTP_SERVER_PORT)).andReturn(8080).atLeastOnce();
         expect(configurationManager.getParameter(HTTP_SERVER_BOSS_THREADS)).andReturn(0).atLeastOnce();
         expect(configurationManager.getParameter(HTTP_SERVER_WORKER_THREADS)).andReturn(0).atLeastOnce();
+        expect(configurationManager.getParameter(HTTP_SERVER_FILE_THREADS)).andReturn(1).atLeastOnce();
+        expect(configurationManager.getParameter(HTTP_SERVER_IDLE_TIMEOUT_SECONDS)).andReturn(300).atLeastOnce();
+        expect(configurationManager.getParameter(HTTP_SERVER_WRITE_BUFFER_HIGH_WATER_MARK)).andReturn(65536).atLeastOnce();
+        expect(configurationManager.getParameter(HTTP_SERVER_WRITE_BUFFER_LOW_WATER_MARK)).andReturn(32768).atLeastOnce();
+        expect(configurationManager.getParameter(HTTP_SERVER_NATIVE_TRANSPORT)).andReturn(false).atLeastOnce();
         expect(injector.getBindings()).andReturn(new HashMap<>(0)).atLeastOnce();
 
         replay(injector, configurationManager);
         try {
-            HttpService httpService = new HttpService(injector, configurationManager);
+            HttpService httpService = new HttpService(injector, configurationManager, new HttpFileExecutorGroup(configurationManager),
+                    new HttpConnectionMonitor(configurationManager), new HttpTrafficShaper(null, null, 0, 0, 1),
+                    new HttpRemoteContentProxy(new HttpDiskCache(null, 0, Collections.<String>emptyList()), 1, 60, GlobalEventExecutor.INSTANCE),
+                    new HttpAccessMonitor(new HttpRequestRouter(Collections.<String>emptyList()), null));
+            httpService.start();
+            httpService.stop();
+        } finally {
+            verify(injector, configurationManager);
+        }
+    }
+
+    @Test
+    public void testHttpServerNativeTransport() {
+        Injector injector = createMock(Injector.class);
+        ConfigurationManager configurationManager = createMock(ConfigurationManager.class);
+
+        expect(configurationManager.getParameter(HTTP_SERVER_PORT)).andReturn(8080).atLeastOnce();
+        expect(configurationManager.getParameter(HTTP_SERVER_BOSS_THREADS)).andReturn(0).atLeastOnce();
+        expect(configurationManager.getParameter(HTTP_SERVER_WORKER_THREADS)).andReturn(0).atLeastOnce();
+        expect(configurationManager.getParameter(HTTP_SERVER_FILE_THREADS)).andReturn(1).atLeastOnce();
+        expect(configurationManager.getParameter(HTTP_SERVER_IDLE_TIMEOUT_SECONDS)).andReturn(300).atLeastOnce();
+        expect(configurationManager.getParameter(HTTP_SERVER_WRITE_BUFFER_HIGH_WATER_MARK)).andReturn(65536).atLeastOnce();
+        expect(configurationManager.getParameter(HTTP_SERVER_WRITE_BUFFER_LOW_WATER_MARK)).andReturn(32768).atLeastOnce();
+        expect(configurationManager.getParameter(HTTP_SERVER_NATIVE_TRANSPORT)).andReturn(true).atLeastOnce();
+        expect(configurationManager.getParameter(HTTP_SERVER_TCP_CORK)).andReturn(true).anyTimes();
+        expect(configurationManager.getParameter(HTTP_SERVER_TCP_NOTSENT_LOWAT)).andReturn(16384).anyTimes();
+        expect(injector.getBindings()).andReturn(new HashMap<>(0)).atLeastOnce();
+
+        replay(injector, configurationManager);
+        try {
+            HttpService httpService = new HttpService(injector, configurationManager, new HttpFileExecutorGroup(configurationManager),
+                    new HttpConnectionMonitor(configurationManager), new HttpTrafficShaper(null, null, 0, 0, 1),
+                    new HttpRemoteContentProxy(new HttpDiskCache(null, 0, Collections.<String>emptyList()), 1, 60, GlobalEventExecutor.INSTANCE),
+                    new HttpAccessMonitor(new HttpRequestRouter(Collections.<String>emptyList()), null));
             httpService.start();
             httpService.stop();
         } finally {
@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2012-2015  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.service.http;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.DefaultChannelPromise;
+import io.netty.util.concurrent.DefaultEventExecutorGroup;
+import io.netty.util.concurrent.ImmediateEventExecutor;
+import net.holmes.core.business.streaming.StreamingManager;
+import net.holmes.core.business.streaming.device.Device;
+import net.holmes.core.business.streaming.session.StreamingSession;
+import net.holmes.core.service.http.HttpTrafficShaper.ClientTraffic;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.Collections;
+
+import static java.util.Collections.singletonList;
+import static net.holmes.core.business.streaming.session.SessionStatus.PLAYING;
+import static org.easymock.EasyMock.*;
+import static org.junit.Assert.*;
+
+public class HttpTrafficShaperTest {
+
+    @Test
+    public void testDisabled() {
+        assertFalse(new HttpTrafficShaper(null, null, 0, 0, 4).isEnabled());
+        assertTrue(new HttpTrafficShaper(null, null, 5000, 0, 4).isEnabled());
+        assertTrue(new HttpTrafficShaper(null, null, 0, 5000, 4).isEnabled());
+    }
+
+    @Test
+    public void testComputeWriteLimitsSaturated() {
+        long[] limits = HttpTrafficShaper.computeWriteLimits(5000, 0, new int[]{4, 1}, new long[]{0, 0}, new long[]{0, 0});
+        assertArrayEquals(new long[]{4000, 1000}, limits);
+    }
+
+    @Test
+    public void testComputeWriteLimitsUnusedShare() {
+        // Second client only uses 100 bytes per second: first client gets unused bandwidth
+        long[] limits = HttpTrafficShaper.computeWriteLimits(5000, 0, new int[]{4, 1}, new long[]{4000, 1000}, new long[]{4000, 100});
+        assertArrayEquals(new long[]{4750, 250}, limits);
+    }
+
+    @Test
+    public void testComputeWriteLimitsAllDemandsMet() {
+        long[] limits = HttpTrafficShaper.computeWriteLimits(5000, 0, new int[]{4, 1}, new long[]{4000, 1000}, new long[]{100, 100});
+        assertArrayEquals(new long[]{4000, 1000}, limits);
+    }
+
+    @Test
+    public void testComputeWriteLimitsClientLimit() {
+        assertArrayEquals(new long[]{2000, 2000},
+                HttpTrafficShaper.computeWriteLimits(0, 2000, new int[]{4, 1}, new long[]{0, 0}, new long[]{0, 0}));
+        assertArrayEquals(new long[]{1500, 1500},
+                HttpTrafficShaper.computeWriteLimits(5000, 1500, new int[]{1, 1}, new long[]{0, 0}, new long[]{0, 0}));
+    }
+
+    @Test
+    public void testClientHandlers() throws Exception {
+        StreamingManager streamingManager = createMock(StreamingManager.class);
+        Device device = createMock(Device.class);
+        StreamingSession session = new StreamingSession("content", "url");
+        session.setStatus(PLAYING);
+
+        expect(streamingManager.findDevices("10.0.0.1")).andReturn(singletonList(device)).atLeastOnce();
+        expect(streamingManager.findDevices("10.0.0.2")).andReturn(Collections.<Device>emptyList()).atLeastOnce();
+        expect(device.getId()).andReturn("tv").atLeastOnce();
+        expect(streamingManager.getSession("tv")).andReturn(session).atLeastOnce();
+
+        Channel tvChannel = createMock(Channel.class);
+        Channel otherTvChannel = createMock(Channel.class);
+        Channel phoneChannel = createMock(Channel.class);
+        ChannelPromise phoneCloseFuture = expectChannel(phoneChannel, "10.0.0.2");
+        expectChannel(tvChannel, "10.0.0.1");
+        expectChannel(otherTvChannel, "10.0.0.1");
+
+        replay(streamingManager, device, tvChannel, otherTvChannel, phoneChannel);
+        DefaultEventExecutorGroup executor = new DefaultEventExecutorGroup(1);
+        try {
+            HttpTrafficShaper shaper = new HttpTrafficShaper(streamingManager, executor, 5000, 0, 4);
+            ChannelHandler tvHandler = shaper.getClientHandler(tvChannel);
+            assertSame(tvHandler, shaper.getClientHandler(otherTvChannel));
+            assertNotSame(tvHandler, shaper.getClientHandler(phoneChannel));
+
+            // Streaming client has a higher share
+            assertEquals(2, shaper.getClients().size());
+            for (ClientTraffic client : shaper.getClients()) {
+                assertEquals(client.getAddress().equals("10.0.0.1"), client.isStreaming());
+                assertEquals(client.isStreaming() ? 4000 : 1000, client.getWriteLimit());
+                assertEquals(0, client.getWrittenBytes());
+            }
+
+            // Remaining client gets whole bandwidth
+            phoneCloseFuture.setSuccess();
+            assertEquals(1, shaper.getClients().size());
+            assertEquals(5000, shaper.getClients().get(0).getWriteLimit());
+        } finally {
+            executor.shutdownGracefully();
+        }
+        verify(streamingManager, device, tvChannel, otherTvChannel, phoneChannel);
+    }
+
+    private ChannelPromise expectChannel(final Channel channel, final String address) {
+        ChannelPromise closeFuture = new DefaultChannelPromise(channel, ImmediateEventExecutor.INSTANCE);
+        expect(channel.remoteAddress()).andReturn(new InetSocketAddress(address, 12345)).atLeastOnce();
+        expect(channel.closeFuture()).andReturn(closeFuture).atLeastOnce();
+        return closeFuture;
+    }
+}
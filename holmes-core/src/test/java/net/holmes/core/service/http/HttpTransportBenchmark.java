@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2012-2015  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.service.http;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.codec.MessageToMessageDecoder;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpRequestDecoder;
+import io.netty.handler.codec.http.HttpResponseEncoder;
+import io.netty.handler.stream.ChunkedWriteHandler;
+import net.holmes.core.business.configuration.ConfigurationManager;
+import net.holmes.core.business.configuration.ConfigurationManagerImpl;
+import net.holmes.core.business.mimetype.model.MimeType;
+import net.holmes.core.test.TestConfigurationDao;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static net.holmes.core.service.http.HttpFileRequest.newContentRequest;
+import static net.holmes.core.service.http.HttpFileRequestHandlerTest.newHandler;
+
+/**
+ * Http transport benchmark: native epoll transport versus NIO transport.
+ * <p>
+ * 16 concurrent clients open a connection to a loopback server for each download, so that both connection setup
+ * (small files) and bulk transfer (large files) are measured. When native transport is not available, EPOLL runs
+ * fall back to NIO transport: the transport actually used is printed on setup.
+ * </p>
+ * <p>
+ * Run with: java -cp target/test-classes:[test classpath] net.holmes.core.service.http.HttpTransportBenchmark
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(16)
+@Fork(1)
+public class HttpTransportBenchmark {
+
+    @Param({"EPOLL", "NIO"})
+    private HttpTransport requestedTransport;
+
+    @Param({"16384", "16777216"})
+    private int fileSize;
+
+    private File mediaFile;
+    private EventLoopGroup bossGroup;
+    private EventLoopGroup workerGroup;
+    private int port;
+    private byte[] request;
+
+    @Setup
+    public void setup() throws IOException {
+        mediaFile = File.createTempFile("benchmark", ".avi");
+        mediaFile.deleteOnExit();
+        try (RandomAccessFile file = new RandomAccessFile(mediaFile, "rw")) {
+            file.setLength(fileSize);
+        }
+
+        final ConfigurationManager configurationManager = new ConfigurationManagerImpl(new TestConfigurationDao());
+        final MimeType mimeType = MimeType.valueOf("video/avi");
+        HttpTransport transport = HttpTransport.select(requestedTransport == HttpTransport.EPOLL);
+        System.out.printf("%n[requestedTransport=%s] using %s transport%n", requestedTransport, transport);
+
+        bossGroup = transport.newEventLoopGroup(0);
+        workerGroup = transport.newEventLoopGroup(0);
+        ServerBootstrap serverBootstrap = new ServerBootstrap().group(bossGroup, workerGroup)
+                .channel(transport.getServerChannelClass())
+                .childHandler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(final SocketChannel channel) {
+                        channel.pipeline().addLast(new HttpRequestDecoder())
+                                .addLast(new HttpObjectAggregator(65536))
+                                .addLast(new HttpResponseEncoder())
+                                .addLast(new ChunkedWriteHandler())
+                                .addLast(new MessageToMessageDecoder<FullHttpRequest>() {
+                                    @Override
+                                    protected void decode(final ChannelHandlerContext context, final FullHttpRequest msg, final List<Object> out) {
+                                        out.add(newContentRequest(msg, mediaFile, mimeType));
+                                    }
+                                })
+                                .addLast(newHandler(configurationManager));
+                    }
+                });
+        transport.configure(serverBootstrap, configurationManager);
+
+        // Bind first server socket on an ephemeral port, then other ones on the same port
+        port = ((InetSocketAddress) serverBootstrap.bind(InetAddress.getLoopbackAddress(), 0).syncUninterruptibly().channel().localAddress()).getPort();
+        for (int i = 1; i < transport.getBindCount(bossGroup); i++) {
+            serverBootstrap.bind(InetAddress.getLoopbackAddress(), port).syncUninterruptibly();
+        }
+
+        request = ("GET /media HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n").getBytes(US_ASCII);
+    }
+
+    @TearDown
+    public void tearDown() {
+        bossGroup.shutdownGracefully().syncUninterruptibly();
+        workerGroup.shutdownGracefully().syncUninterruptibly();
+    }
+
+    @Benchmark
+    public long download() throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            socket.getOutputStream().write(request);
+            InputStream in = socket.getInputStream();
+            byte[] buffer = new byte[65536];
+            long received = 0;
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                received += read;
+            }
+            return received;
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(HttpTransportBenchmark.class.getSimpleName()).build()).run();
+    }
+}
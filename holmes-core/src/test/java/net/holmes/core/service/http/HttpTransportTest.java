@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2012-2015  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.service.http;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import net.holmes.core.business.configuration.ConfigurationManager;
+import org.junit.Test;
+
+import static io.netty.channel.epoll.EpollChannelOption.*;
+import static net.holmes.core.common.ConfigurationParameter.HTTP_SERVER_TCP_CORK;
+import static net.holmes.core.common.ConfigurationParameter.HTTP_SERVER_TCP_NOTSENT_LOWAT;
+import static org.easymock.EasyMock.*;
+import static org.junit.Assert.*;
+
+public class HttpTransportTest {
+
+    @Test
+    public void testSelectNio() {
+        assertEquals(HttpTransport.NIO, HttpTransport.select(false));
+    }
+
+    @Test
+    public void testNioTransport() {
+        EventLoopGroup group = HttpTransport.NIO.newEventLoopGroup(2);
+        try {
+            assertEquals(NioServerSocketChannel.class, HttpTransport.NIO.getServerChannelClass());
+            assertEquals(1, HttpTransport.NIO.getBindCount(group));
+        } finally {
+            group.shutdownGracefully();
+        }
+    }
+
+    @Test
+    public void testEpollTransportConfiguration() {
+        ConfigurationManager configurationManager = createMock(ConfigurationManager.class);
+        expect(configurationManager.getParameter(HTTP_SERVER_TCP_CORK)).andReturn(true);
+        expect(configurationManager.getParameter(HTTP_SERVER_TCP_NOTSENT_LOWAT)).andReturn(16384);
+        replay(configurationManager);
+
+        ServerBootstrap serverBootstrap = new ServerBootstrap();
+        HttpTransport.EPOLL.configure(serverBootstrap, configurationManager);
+
+        assertEquals(EpollServerSocketChannel.class, HttpTransport.EPOLL.getServerChannelClass());
+        assertTrue(serverBootstrap.toString().contains(SO_REUSEPORT.toString()));
+        assertTrue(serverBootstrap.toString().contains(TCP_CORK.toString()));
+        assertTrue(serverBootstrap.toString().contains(TCP_NOTSENT_LOWAT.toString()));
+        verify(configurationManager);
+    }
+}
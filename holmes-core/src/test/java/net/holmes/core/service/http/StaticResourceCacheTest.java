@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2012-2015  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.service.http;
+
+import net.holmes.core.business.mimetype.MimeTypeManager;
+import net.holmes.core.business.mimetype.model.MimeType;
+import net.holmes.core.service.http.StaticResourceCache.StaticResource;
+import net.holmes.core.service.http.StaticResourceCache.Variant;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.zip.GZIPInputStream;
+
+import static com.google.common.io.ByteStreams.toByteArray;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.easymock.EasyMock.*;
+import static org.junit.Assert.*;
+
+public class StaticResourceCacheTest {
+    private File uiDirectory;
+    private MimeTypeManager mimeTypeManager;
+
+    @Before
+    public void setUp() throws IOException {
+        uiDirectory = Files.createTempDirectory("ui").toFile();
+        new File(uiDirectory, "admin/js").mkdirs();
+        StringBuilder script = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            script.append("console.log('line ").append(i).append("');\n");
+        }
+        Files.write(new File(uiDirectory, "index.html").toPath(), "<html></html>".getBytes(UTF_8));
+        Files.write(new File(uiDirectory, "admin/index.html").toPath(), "<html>admin</html>".getBytes(UTF_8));
+        Files.write(new File(uiDirectory, "admin/js/app.js").toPath(), script.toString().getBytes(UTF_8));
+        Files.write(new File(uiDirectory, "admin/unknown.xyz").toPath(), "unknown".getBytes(UTF_8));
+
+        mimeTypeManager = createMock(MimeTypeManager.class);
+        expect(mimeTypeManager.getMimeType("/index.html")).andReturn(MimeType.valueOf("text/html"));
+        expect(mimeTypeManager.getMimeType("/admin/index.html")).andReturn(MimeType.valueOf("text/html"));
+        expect(mimeTypeManager.getMimeType("/admin/js/app.js")).andReturn(MimeType.valueOf("text/javascript"));
+        expect(mimeTypeManager.getMimeType("/admin/unknown.xyz")).andReturn(null);
+        replay(mimeTypeManager);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        verify(mimeTypeManager);
+        for (String path : new String[]{"admin/unknown.xyz", "admin/js/app.js", "admin/js", "admin/index.html", "admin", "index.html", ""}) {
+            Files.deleteIfExists(new File(uiDirectory, path).toPath());
+        }
+    }
+
+    @Test
+    public void testCachedResources() {
+        StaticResourceCache cache = new StaticResourceCache(mimeTypeManager, uiDirectory.getAbsolutePath());
+
+        StaticResource resource = cache.get("/admin/index.html");
+        assertNotNull(resource);
+        assertEquals(new File(uiDirectory, "admin/index.html").getAbsolutePath(), resource.getFile().getAbsolutePath());
+        assertEquals("text/html", resource.getMimeType().getMimeType());
+        assertEquals(resource.getFile().lastModified(), resource.getLastModified());
+        assertEquals("<html>admin</html>", resource.getVariant(false).getContent(0, 18).toString(UTF_8));
+        assertNotNull(cache.get("/index.html"));
+        assertNotNull(cache.get("/admin/js/app.js"));
+        assertNull(cache.get("/admin/unknown.xyz"));
+        assertNull(cache.get("/admin/js"));
+        assertNull(cache.get("/unknown.html"));
+    }
+
+    @Test
+    public void testWelcomeFiles() {
+        StaticResourceCache cache = new StaticResourceCache(mimeTypeManager, uiDirectory.getAbsolutePath());
+
+        assertSame(cache.get("/index.html"), cache.get(""));
+        assertSame(cache.get("/admin/index.html"), cache.get("/admin"));
+        assertNull(cache.get("/play"));
+    }
+
+    @Test
+    public void testGzipVariant() throws IOException {
+        StaticResourceCache cache = new StaticResourceCache(mimeTypeManager, uiDirectory.getAbsolutePath());
+
+        StaticResource script = cache.get("/admin/js/app.js");
+        assertTrue(script.isCompressed());
+        Variant identity = script.getVariant(false);
+        Variant gzip = script.getVariant(true);
+        assertNull(identity.getContentEncoding());
+        assertEquals("gzip", gzip.getContentEncoding());
+        assertTrue(gzip.getLength() < identity.getLength());
+        assertNotEquals(identity.getEntityTag(), gzip.getEntityTag());
+        assertTrue(identity.getEntityTag().startsWith("\"") && identity.getEntityTag().endsWith("\""));
+
+        // Gzip variant decompresses to identity content
+        byte[] compressed = new byte[(int) gzip.getLength()];
+        gzip.getContent(0, gzip.getLength()).getBytes(0, compressed);
+        byte[] uncompressed = toByteArray(new GZIPInputStream(new ByteArrayInputStream(compressed)));
+        assertEquals(identity.getContent(0, identity.getLength()).toString(UTF_8), new String(uncompressed, UTF_8));
+
+        // Small resource is not compressed
+        StaticResource index = cache.get("/index.html");
+        assertFalse(index.isCompressed());
+        assertSame(index.getVariant(false), index.getVariant(true));
+    }
+
+    @Test
+    public void testContentSliceIsNotReleased() {
+        StaticResourceCache cache = new StaticResourceCache(mimeTypeManager, uiDirectory.getAbsolutePath());
+
+        Variant variant = cache.get("/index.html").getVariant(false);
+        variant.getContent(0, variant.getLength()).release();
+        assertEquals("<html></html>", variant.getContent(0, variant.getLength()).toString(UTF_8));
+    }
+
+    @Test
+    public void testNonExistingDirectory() {
+        reset(mimeTypeManager);
+        replay(mimeTypeManager);
+        StaticResourceCache cache = new StaticResourceCache(mimeTypeManager, new File(uiDirectory, "none").getAbsolutePath());
+        assertNull(cache.get(""));
+    }
+}
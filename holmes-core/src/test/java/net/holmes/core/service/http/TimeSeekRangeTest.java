@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2012-2015  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.service.http;
+
+import net.holmes.core.service.http.seek.TimeSeekIndex;
+import org.junit.Test;
+
+import static io.netty.handler.codec.http.HttpResponseStatus.BAD_REQUEST;
+import static io.netty.handler.codec.http.HttpResponseStatus.REQUESTED_RANGE_NOT_SATISFIABLE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class TimeSeekRangeTest {
+    private static final TimeSeekIndex INDEX = new TimeSeekIndex(10000, new long[]{0, 2000, 4000, 6000}, new long[]{100, 2000, 4000, 6000});
+
+    @Test
+    public void testOpenRange() throws HttpFileRequestException {
+        TimeSeekRange range = TimeSeekRange.parse("npt=4.5-", INDEX, 10000);
+        assertEquals(4000, range.getStartTime());
+        assertEquals(10000, range.getEndTime());
+        assertEquals(4000, range.getByteRange().getStart());
+        assertEquals(9999, range.getByteRange().getEnd());
+        assertEquals("npt=4.000-10.000/10.000 bytes=4000-9999/10000", range.getHeaderValue(10000));
+    }
+
+    @Test
+    public void testClosedRange() throws HttpFileRequestException {
+        TimeSeekRange range = TimeSeekRange.parse("NPT = 00:00:02.25 - 0:00:04", INDEX, 10000);
+        assertEquals(2000, range.getStartTime());
+        assertEquals(4000, range.getEndTime());
+        assertEquals(2000, range.getByteRange().getStart());
+        assertEquals(5999, range.getByteRange().getEnd());
+        assertEquals("2.000-4.000", range.toString());
+    }
+
+    @Test
+    public void testRangeFromStart() throws HttpFileRequestException {
+        // First seek point follows container headers: range starts at file start
+        TimeSeekRange range = TimeSeekRange.parse("npt=0-1.5", INDEX, 10000);
+        assertEquals(0, range.getStartTime());
+        assertEquals(1500, range.getEndTime());
+        assertEquals(0, range.getByteRange().getStart());
+        assertEquals(1999, range.getByteRange().getEnd());
+    }
+
+    @Test
+    public void testInvalidRanges() {
+        assertInvalid("bytes=0-100", BAD_REQUEST);
+        assertInvalid("npt=now-", BAD_REQUEST);
+        assertInvalid("npt=5-4", BAD_REQUEST);
+        assertInvalid("npt=0:61:00-", BAD_REQUEST);
+        assertInvalid("npt=10-", REQUESTED_RANGE_NOT_SATISFIABLE);
+        assertInvalid("npt=99999999999999999999-", BAD_REQUEST);
+    }
+
+    private static void assertInvalid(final String header, final io.netty.handler.codec.http.HttpResponseStatus status) {
+        try {
+            TimeSeekRange.parse(header, INDEX, 10000);
+            fail("Invalid range accepted: " + header);
+        } catch (HttpFileRequestException e) {
+            assertEquals(status, e.getStatus());
+        }
+    }
+}
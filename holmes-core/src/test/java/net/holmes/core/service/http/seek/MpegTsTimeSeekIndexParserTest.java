@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2012-2015  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.service.http.seek;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+
+import static java.nio.file.StandardOpenOption.READ;
+import static net.holmes.core.test.TestVideoFiles.*;
+import static org.junit.Assert.*;
+
+public class MpegTsTimeSeekIndexParserTest {
+
+    @Test
+    public void testParseTransportStream() throws IOException {
+        // Samples every 1394 packets (256 KB), first PCR found at next tenth packet
+        try (FileChannel channel = FileChannel.open(writeTempFile(newTransportStream(188, 0, TS_LENGTH / 188, 0)).toPath(), READ)) {
+            TimeSeekIndex index = new MpegTsTimeSeekIndexParser().parse(channel);
+            assertNotNull(index);
+            assertEquals(TS_DURATION, index.getDuration());
+            assertArrayEquals(TS_SEEK_TIMES, times(index));
+            assertArrayEquals(TS_SEEK_OFFSETS, offsets(index));
+        }
+    }
+
+    @Test
+    public void testParseM2tsWithPcrWrap() throws IOException {
+        // PCR wraps around after first sample
+        long firstPcr = (1L << 33) - 90 * 5000;
+        try (FileChannel channel = FileChannel.open(writeTempFile(newTransportStream(192, 4, 3000, firstPcr)).toPath(), READ)) {
+            TimeSeekIndex index = new MpegTsTimeSeekIndexParser().parse(channel);
+            assertNotNull(index);
+            assertEquals(29900, index.getDuration());
+            assertArrayEquals(new long[]{0, 13700, 27300}, times(index));
+            assertArrayEquals(new long[]{0, 1370 * 192, 2730 * 192}, offsets(index));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testParseNotTransportStream() throws IOException {
+        try (FileChannel channel = FileChannel.open(writeTempFile(new byte[1000]).toPath(), READ)) {
+            new MpegTsTimeSeekIndexParser().parse(channel);
+        }
+    }
+
+    static File writeTempFile(final byte[] content) throws IOException {
+        File file = File.createTempFile("video", ".tmp");
+        file.deleteOnExit();
+        Files.write(file.toPath(), content);
+        return file;
+    }
+
+    static long[] times(final TimeSeekIndex index) {
+        long[] times = new long[index.size()];
+        for (int i = 0; i < times.length; i++) {
+            times[i] = index.getTime(i);
+        }
+        return times;
+    }
+
+    static long[] offsets(final TimeSeekIndex index) {
+        long[] offsets = new long[index.size()];
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = index.getOffset(i);
+        }
+        return offsets;
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2012-2015  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.service.http.seek;
+
+import net.holmes.core.business.configuration.ConfigurationManager;
+import net.holmes.core.business.mimetype.model.MimeType;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static net.holmes.core.common.ConfigurationParameter.HTTP_SERVER_TIME_SEEK;
+import static net.holmes.core.test.TestVideoFiles.*;
+import static org.easymock.EasyMock.*;
+import static org.junit.Assert.*;
+
+public class TimeSeekIndexStoreTest {
+    private static final MimeType MIME_TYPE_TS = MimeType.valueOf("video/mp2t");
+
+    @Test
+    public void testGetIndex() throws IOException {
+        File video = createTransportStream();
+        Path indexDirectory = Files.createTempDirectory("seek-index");
+        CountingExecutor executor = new CountingExecutor();
+
+        // Index is built in background on first request
+        TimeSeekIndexStore store = new TimeSeekIndexStore(true, indexDirectory, executor);
+        assertNull(store.getIndex(video, MIME_TYPE_TS, video.length(), video.lastModified()));
+        assertEquals(1, executor.count.get());
+        TimeSeekIndex index = store.getIndex(video, MIME_TYPE_TS, video.length(), video.lastModified());
+        assertNotNull(index);
+        assertEquals(TS_DURATION, index.getDuration());
+        assertEquals(TS_SEEK_OFFSETS[1], index.getOffset(1));
+        assertEquals(1, executor.count.get());
+
+        // Index is persisted
+        TimeSeekIndexStore otherStore = new TimeSeekIndexStore(true, indexDirectory, executor);
+        index = otherStore.getIndex(video, MIME_TYPE_TS, video.length(), video.lastModified());
+        assertNotNull(index);
+        assertEquals(TS_SEEK_TIMES.length, index.size());
+        assertEquals(1, executor.count.get());
+
+        // Index is rebuilt when video is modified
+        assertTrue(video.setLastModified(video.lastModified() - 10000));
+        assertNull(otherStore.getIndex(video, MIME_TYPE_TS, video.length(), video.lastModified()));
+        assertEquals(2, executor.count.get());
+        assertNotNull(otherStore.getIndex(video, MIME_TYPE_TS, video.length(), video.lastModified()));
+    }
+
+    @Test
+    public void testGetIndexInvalidVideo() throws IOException {
+        File video = File.createTempFile("video", ".ts");
+        video.deleteOnExit();
+        Files.write(video.toPath(), new byte[1000]);
+        MimeType mimeType = MIME_TYPE_TS;
+        CountingExecutor executor = new CountingExecutor();
+
+        // Video is parsed only once
+        TimeSeekIndexStore store = new TimeSeekIndexStore(true, Files.createTempDirectory("seek-index"), executor);
+        assertNull(store.getIndex(video, mimeType, video.length(), video.lastModified()));
+        assertNull(store.getIndex(video, mimeType, video.length(), video.lastModified()));
+        assertEquals(1, executor.count.get());
+    }
+
+    @Test
+    public void testGetIndexNotIndexable() throws IOException {
+        File video = createTransportStream();
+        CountingExecutor executor = new CountingExecutor();
+        TimeSeekIndexStore store = new TimeSeekIndexStore(true, Files.createTempDirectory("seek-index"), executor);
+        assertNull(store.getIndex(video, MimeType.valueOf("video/avi"), video.length(), video.lastModified()));
+        assertNull(store.getIndex(video, MimeType.valueOf("video/mp4"), video.length(), video.lastModified()));
+        assertNull(store.getIndex(video, MimeType.valueOf("audio/mp4"), video.length(), video.lastModified()));
+        assertFalse(store.isTimeSeekSupported(MimeType.valueOf("video/mp4")));
+        assertTrue(store.isTimeSeekSupported(MIME_TYPE_TS));
+        assertEquals(0, executor.count.get());
+    }
+
+    @Test
+    public void testGetIndexDisabled() throws IOException {
+        ConfigurationManager configurationManager = createMock(ConfigurationManager.class);
+        expect(configurationManager.getParameter(HTTP_SERVER_TIME_SEEK)).andReturn(false);
+        replay(configurationManager);
+
+        File video = createTransportStream();
+        TimeSeekIndexStore store = new TimeSeekIndexStore(configurationManager, Files.createTempDirectory("holmes").toString());
+        assertNull(store.getIndex(video, MIME_TYPE_TS, video.length(), video.lastModified()));
+        assertFalse(store.isTimeSeekSupported(MIME_TYPE_TS));
+        verify(configurationManager);
+    }
+
+    /**
+     * Executor running tasks in caller thread and counting them.
+     */
+    private static final class CountingExecutor implements Executor {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public void execute(final Runnable command) {
+            count.incrementAndGet();
+            command.run();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2012-2015  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.service.http.seek;
+
+import org.junit.Test;
+
+import java.io.*;
+
+import static org.junit.Assert.*;
+
+public class TimeSeekIndexTest {
+
+    @Test
+    public void testFloorAndHigher() {
+        TimeSeekIndex index = new TimeSeekIndex(10000, new long[]{0, 2000, 4000, 6000}, new long[]{100, 200, 300, 400});
+        assertEquals(0, index.floor(0));
+        assertEquals(0, index.floor(1999));
+        assertEquals(1, index.floor(2000));
+        assertEquals(3, index.floor(9000));
+        assertEquals(1, index.higher(0));
+        assertEquals(2, index.higher(2000));
+        assertEquals(2, index.higher(2001));
+        assertEquals(4, index.higher(6000));
+    }
+
+    @Test
+    public void testFloorBeforeFirstPoint() {
+        TimeSeekIndex index = new TimeSeekIndex(10000, new long[]{500, 2000}, new long[]{100, 200});
+        assertEquals(0, index.floor(0));
+        assertEquals(0, index.higher(0));
+    }
+
+    @Test
+    public void testReadWrite() throws IOException {
+        TimeSeekIndex index = new TimeSeekIndex(10000, new long[]{0, 2000, 4000}, new long[]{100, 200, 300});
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        index.writeTo(new DataOutputStream(output));
+
+        TimeSeekIndex readIndex = TimeSeekIndex.readFrom(new DataInputStream(new ByteArrayInputStream(output.toByteArray())));
+        assertEquals(10000, readIndex.getDuration());
+        assertEquals(3, readIndex.size());
+        assertEquals(4000, readIndex.getTime(2));
+        assertEquals(300, readIndex.getOffset(2));
+        assertNotNull(readIndex.toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEmptyIndex() {
+        new TimeSeekIndex(0, new long[0], new long[0]);
+    }
+}
@@ -27,17 +27,21 @@ import net.holmes.core.business.media.model.FolderNode;
 import net.holmes.core.business.media.model.MediaNode;
 import net.holmes.core.business.mimetype.model.MimeType;
 import net.holmes.core.business.streaming.StreamingManager;
-import net.holmes.core.business.streaming.airplay.device.AirplayDevice;
-import net.holmes.core.business.streaming.upnp.device.UpnpDevice;
+import net.holmes.core.common.event.MediaEvent;
+import org.easymock.Capture;
+import org.easymock.CaptureType;
 import org.fourthline.cling.model.message.Connection;
 import org.fourthline.cling.model.profile.RemoteClientInfo;
 import org.fourthline.cling.support.contentdirectory.ContentDirectoryException;
+import org.fourthline.cling.support.contentdirectory.DIDLParser;
 import org.fourthline.cling.support.model.BrowseFlag;
 import org.fourthline.cling.support.model.BrowseResult;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TestName;
 
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
 import java.io.File;
 import java.io.IOException;
 import java.net.InetAddress;
@@ -47,8 +51,12 @@ import java.util.Optional;
 
 import static com.google.common.collect.Lists.newArrayList;
 import static net.holmes.core.business.media.model.RootNode.VIDEO;
+import static net.holmes.core.common.ConfigurationParameter.HTTP_SERVER_TIME_SEEK;
 import static net.holmes.core.common.ConfigurationParameter.UPNP_ADD_SUBTITLE;
+import static net.holmes.core.common.event.MediaEvent.MediaEventType.SCAN_NODE;
+import static net.holmes.core.common.event.MediaEvent.MediaEventType.UPDATE_CONTAINER;
 import static org.easymock.EasyMock.*;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 
 public class ContentDirectoryServiceTest {
@@ -72,30 +80,30 @@ public class ContentDirectoryServiceTest {
         RemoteClientInfo remoteClientInfo = createMock(RemoteClientInfo.class);
         Connection connection = createMock(Connection.class);
         InetAddress inetAddress = createMock(InetAddress.class);
-        UpnpDevice upnpDevice = createMock(UpnpDevice.class);
-        AirplayDevice airplayDevice = createMock(AirplayDevice.class);
 
         ContentDirectoryService contentDirectoryService = new ContentDirectoryService();
         contentDirectoryService.setConfigurationManager(configurationManager);
         contentDirectoryService.setMediaManager(mediaManager);
         contentDirectoryService.setStreamingManager(streamingManager);
+        contentDirectoryService.setDidlFragmentCache(new DidlFragmentCache(new DIDLParser(), 10));
 
         expect(remoteClientInfo.getConnection()).andReturn(connection);
         expect(remoteClientInfo.getRemoteAddress()).andReturn(inetAddress);
-        expect(inetAddress.getHostAddress()).andReturn("localhost");
-        expect(streamingManager.findDevices(eq("localhost"))).andReturn(newArrayList(upnpDevice, airplayDevice));
-        expect(upnpDevice.getSupportedMimeTypes()).andReturn(newArrayList("video/avi"));
         expect(mediaManager.getNode(eq("0"))).andReturn(Optional.of(new FolderNode("0", "-1", "root")));
+        expect(mediaManager.getContainerUpdateId(eq("0"))).andReturn(3L);
         List<MediaNode> rootChildren = Lists.newArrayList(new FolderNode(VIDEO.getId(), VIDEO.getParentId(), VIDEO.name()));
         expect(mediaManager.searchChildNodes(isA(MediaSearchRequest.class))).andReturn(rootChildren);
         expect(configurationManager.getParameter(UPNP_ADD_SUBTITLE)).andReturn(true);
+        expect(streamingManager.getMimeTypeProfile(eq(inetAddress), eq(true))).andReturn(null);
 
-        replay(mediaManager, streamingManager, remoteClientInfo, connection, inetAddress, upnpDevice, airplayDevice, configurationManager);
+        expect(configurationManager.getParameter(HTTP_SERVER_TIME_SEEK)).andReturn(true);
+
+        replay(mediaManager, streamingManager, remoteClientInfo, connection, inetAddress, configurationManager);
 
         BrowseResult result = contentDirectoryService.browse("0", BrowseFlag.METADATA, 0, 100, remoteClientInfo);
         assertNotNull(result);
 
-        verify(mediaManager, streamingManager, remoteClientInfo, connection, inetAddress, upnpDevice, airplayDevice, configurationManager);
+        verify(mediaManager, streamingManager, remoteClientInfo, connection, inetAddress, configurationManager);
     }
 
     @Test
@@ -106,30 +114,30 @@ public class ContentDirectoryServiceTest {
         RemoteClientInfo remoteClientInfo = createMock(RemoteClientInfo.class);
         Connection connection = createMock(Connection.class);
         InetAddress inetAddress = createMock(InetAddress.class);
-        UpnpDevice upnpDevice = createMock(UpnpDevice.class);
-        AirplayDevice airplayDevice = createMock(AirplayDevice.class);
 
         ContentDirectoryService contentDirectoryService = new ContentDirectoryService();
         contentDirectoryService.setConfigurationManager(configurationManager);
         contentDirectoryService.setMediaManager(mediaManager);
         contentDirectoryService.setStreamingManager(streamingManager);
+        contentDirectoryService.setDidlFragmentCache(new DidlFragmentCache(new DIDLParser(), 10));
 
         expect(remoteClientInfo.getConnection()).andReturn(connection);
         expect(remoteClientInfo.getRemoteAddress()).andReturn(inetAddress);
-        expect(inetAddress.getHostAddress()).andReturn("localhost");
-        expect(streamingManager.findDevices(eq("localhost"))).andReturn(newArrayList(upnpDevice, airplayDevice));
-        expect(upnpDevice.getSupportedMimeTypes()).andReturn(newArrayList("video/avi"));
         expect(mediaManager.getNode(eq("0"))).andReturn(Optional.of(new FolderNode("0", "-1", "root")));
+        expect(mediaManager.getContainerUpdateId(eq("0"))).andReturn(3L);
         List<MediaNode> rootChildren = Lists.newArrayList(new FolderNode(VIDEO.getId(), VIDEO.getParentId(), VIDEO.name()));
         expect(mediaManager.searchChildNodes(isA(MediaSearchRequest.class))).andReturn(rootChildren);
         expect(configurationManager.getParameter(UPNP_ADD_SUBTITLE)).andReturn(false);
+        expect(streamingManager.getMimeTypeProfile(eq(inetAddress), eq(false))).andReturn(null);
+
+        expect(configurationManager.getParameter(HTTP_SERVER_TIME_SEEK)).andReturn(true);
 
-        replay(mediaManager, streamingManager, remoteClientInfo, connection, inetAddress, upnpDevice, airplayDevice, configurationManager);
+        replay(mediaManager, streamingManager, remoteClientInfo, connection, inetAddress, configurationManager);
 
         BrowseResult result = contentDirectoryService.browse("0", BrowseFlag.METADATA, 0, 100, remoteClientInfo);
         assertNotNull(result);
 
-        verify(mediaManager, streamingManager, remoteClientInfo, connection, inetAddress, upnpDevice, airplayDevice, configurationManager);
+        verify(mediaManager, streamingManager, remoteClientInfo, connection, inetAddress, configurationManager);
     }
 
     @Test
@@ -143,12 +151,16 @@ public class ContentDirectoryServiceTest {
         contentDirectoryService.setConfigurationManager(configurationManager);
         contentDirectoryService.setMediaManager(mediaManager);
         contentDirectoryService.setStreamingManager(streamingManager);
+        contentDirectoryService.setDidlFragmentCache(new DidlFragmentCache(new DIDLParser(), 10));
 
         expect(remoteClientInfo.getConnection()).andReturn(null);
         expect(mediaManager.getNode(eq("0"))).andReturn(Optional.of(new FolderNode("0", "-1", "root")));
+        expect(mediaManager.getContainerUpdateId(eq("0"))).andReturn(3L);
         List<MediaNode> rootChildren = Lists.newArrayList(new FolderNode(VIDEO.getId(), VIDEO.getParentId(), VIDEO.name()));
         expect(mediaManager.searchChildNodes(isA(MediaSearchRequest.class))).andReturn(rootChildren);
 
+        expect(configurationManager.getParameter(HTTP_SERVER_TIME_SEEK)).andReturn(true);
+
         replay(mediaManager, streamingManager, remoteClientInfo, configurationManager);
 
         BrowseResult result = contentDirectoryService.browse("0", BrowseFlag.METADATA, 0, 100, remoteClientInfo);
@@ -168,6 +180,7 @@ public class ContentDirectoryServiceTest {
         contentDirectoryService.setConfigurationManager(configurationManager);
         contentDirectoryService.setMediaManager(mediaManager);
         contentDirectoryService.setStreamingManager(streamingManager);
+        contentDirectoryService.setDidlFragmentCache(new DidlFragmentCache(new DIDLParser(), 10));
 
         expect(mediaManager.getNode(eq("0"))).andReturn(Optional.empty());
 
@@ -192,9 +205,13 @@ public class ContentDirectoryServiceTest {
         contentDirectoryService.setConfigurationManager(configurationManager);
         contentDirectoryService.setMediaManager(mediaManager);
         contentDirectoryService.setStreamingManager(streamingManager);
+        contentDirectoryService.setDidlFragmentCache(new DidlFragmentCache(new DIDLParser(), 10));
 
         expect(remoteClientInfo.getConnection()).andReturn(null);
         expect(mediaManager.getNode(eq("0"))).andReturn(Optional.of(new FolderNode("0", "-1", "root")));
+        expect(mediaManager.getContainerUpdateId(eq("0"))).andReturn(3L);
+
+        expect(configurationManager.getParameter(HTTP_SERVER_TIME_SEEK)).andReturn(true);
 
         replay(mediaManager, streamingManager, remoteClientInfo, configurationManager);
 
@@ -215,9 +232,11 @@ public class ContentDirectoryServiceTest {
         contentDirectoryService.setConfigurationManager(configurationManager);
         contentDirectoryService.setMediaManager(mediaManager);
         contentDirectoryService.setStreamingManager(streamingManager);
+        contentDirectoryService.setDidlFragmentCache(new DidlFragmentCache(new DIDLParser(), 10));
 
         expect(remoteClientInfo.getConnection()).andReturn(null);
         expect(mediaManager.getNode(eq("0"))).andReturn(Optional.of(new FolderNode("0", "-1", "root")));
+        expect(mediaManager.getContainerUpdateId(eq("0"))).andReturn(3L);
         expect(mediaManager.getNodeUrl(isA(AbstractNode.class))).andReturn("url");
 
         List<MediaNode> children = new ArrayList<>();
@@ -228,11 +247,45 @@ public class ContentDirectoryServiceTest {
         children.add(dummyNode);
         expect(mediaManager.searchChildNodes(isA(MediaSearchRequest.class))).andReturn(children).atLeastOnce();
 
+        expect(configurationManager.getParameter(HTTP_SERVER_TIME_SEEK)).andReturn(true);
+
         replay(mediaManager, streamingManager, remoteClientInfo, dummyNode, configurationManager);
 
         BrowseResult result = contentDirectoryService.browse("0", BrowseFlag.DIRECT_CHILDREN, 0, 6, remoteClientInfo);
         assertNotNull(result);
+        assertEquals(3L, result.getContainerUpdateIDLong());
 
         verify(mediaManager, streamingManager, remoteClientInfo, dummyNode, configurationManager);
     }
+
+    @Test
+    public void testHandleMediaEvent() {
+        MediaManager mediaManager = createMock(MediaManager.class);
+        PropertyChangeListener propertyChangeListener = createMock(PropertyChangeListener.class);
+
+        ContentDirectoryService contentDirectoryService = new ContentDirectoryService();
+        contentDirectoryService.setMediaManager(mediaManager);
+        contentDirectoryService.getPropertyChangeSupport().addPropertyChangeListener(propertyChangeListener);
+
+        expect(mediaManager.getContainerUpdateId(eq("1"))).andReturn(5L);
+        expect(mediaManager.getContainerUpdateId(eq("2"))).andReturn(1L);
+        Capture<PropertyChangeEvent> events = newCapture(CaptureType.ALL);
+        propertyChangeListener.propertyChange(capture(events));
+        expectLastCall().times(2);
+
+        replay(mediaManager, propertyChangeListener);
+
+        contentDirectoryService.handleMediaEvent(new MediaEvent(UPDATE_CONTAINER, "1"));
+        contentDirectoryService.handleMediaEvent(new MediaEvent(UPDATE_CONTAINER, "2"));
+        contentDirectoryService.handleMediaEvent(new MediaEvent(SCAN_NODE, "3"));
+        assertEquals(newArrayList("1", "5", "2", "1"), contentDirectoryService.getContainerUpdateIDs());
+        assertEquals(2L, contentDirectoryService.getSystemUpdateID().getValue().longValue());
+        assertEquals(2, events.getValues().size());
+        for (PropertyChangeEvent event : events.getValues()) {
+            assertEquals("SystemUpdateID,ContainerUpdateIDs", event.getPropertyName());
+        }
+        assertEquals(2L, events.getValues().get(1).getNewValue());
+
+        verify(mediaManager, propertyChangeListener);
+    }
 }
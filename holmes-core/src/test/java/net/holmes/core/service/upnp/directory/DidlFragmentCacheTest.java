@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2012-2015  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.holmes.core.service.upnp.directory;
+
+import net.holmes.core.business.configuration.ConfigurationManager;
+import net.holmes.core.business.media.model.FolderNode;
+import net.holmes.core.service.upnp.directory.DidlFragmentCache.DidlFragment;
+import org.fourthline.cling.support.contentdirectory.ContentDirectoryException;
+import org.fourthline.cling.support.contentdirectory.DIDLParser;
+import org.fourthline.cling.support.model.DIDLContent;
+import org.fourthline.cling.support.model.Res;
+import org.fourthline.cling.support.model.item.Item;
+import org.fourthline.cling.support.model.item.Movie;
+import org.junit.Test;
+
+import static net.holmes.core.common.ConfigurationParameter.UPNP_DIDL_CACHE_SIZE;
+import static net.holmes.core.service.upnp.directory.DidlFragmentCache.getHostEnd;
+import static net.holmes.core.service.upnp.directory.DidlFragmentCache.getTemplatedUrl;
+import static org.easymock.EasyMock.*;
+import static org.junit.Assert.*;
+
+public class DidlFragmentCacheTest {
+
+    @Test
+    public void testDidlFragmentCache() {
+        ConfigurationManager configurationManager = createMock(ConfigurationManager.class);
+
+        expect(configurationManager.getParameter(UPNP_DIDL_CACHE_SIZE)).andReturn(10);
+
+        replay(configurationManager);
+
+        DidlFragmentCache didlFragmentCache = new DidlFragmentCache(configurationManager);
+        assertTrue(didlFragmentCache.getDocumentStart().contains("<DIDL-Lite"));
+        assertTrue(didlFragmentCache.getDocumentEnd().startsWith("</"));
+
+        verify(configurationManager);
+    }
+
+    @Test
+    public void testGetHostEnd() {
+        assertEquals("http://192.168.1.1:8085".length(), getHostEnd("http://192.168.1.1:8085/content?id=1"));
+        assertEquals("http://192.168.1.1:8085".length(), getHostEnd("http://192.168.1.1:8085"));
+        assertEquals(0, getHostEnd("/content?id=1"));
+    }
+
+    @Test
+    public void testPutFragment() throws ContentDirectoryException {
+        DidlFragmentCache didlFragmentCache = new DidlFragmentCache(new ResDIDLParser(), 10);
+        FolderNode node = new FolderNode("id", "parentId", "name");
+        node.setModifiedDate(1L);
+
+        assertNull(didlFragmentCache.getFragment("parentId", node, -1));
+
+        String url = "http://192.168.1.1:8085/content?id=id";
+        Item item = new Movie("id", "parentId", "name", null, new Res((org.seamless.util.MimeType) null, 0L, getTemplatedUrl(url, getHostEnd(url))));
+        DidlFragment fragment = didlFragmentCache.putFragment("parentId", node, -1, item);
+        assertSame(fragment, didlFragmentCache.getFragment("parentId", node, -1));
+
+        // Host is replaced on rendering
+        StringBuilder content = new StringBuilder();
+        fragment.appendTo(content, url, getHostEnd(url));
+        assertEquals("<item>" + url + "</item>", content.toString());
+
+        String otherUrl = "http://10.0.0.1:8085/content?id=id";
+        content = new StringBuilder();
+        fragment.appendTo(content, otherUrl, getHostEnd(otherUrl));
+        assertEquals("<item>" + otherUrl + "</item>", content.toString());
+
+        // Fragment is outdated when node changes
+        assertNull(didlFragmentCache.getFragment("otherParentId", node, -1));
+        assertNull(didlFragmentCache.getFragment("parentId", node, 2));
+        node.setModifiedDate(2L);
+        assertNull(didlFragmentCache.getFragment("parentId", node, -1));
+    }
+
+    @Test
+    public void testEviction() throws ContentDirectoryException {
+        DidlFragmentCache didlFragmentCache = new DidlFragmentCache(new ResDIDLParser(), 1);
+        FolderNode node1 = new FolderNode("id1", "parentId", "name1");
+        FolderNode node2 = new FolderNode("id2", "parentId", "name2");
+
+        didlFragmentCache.putFragment("parentId", node1, -1, new Movie("id1", "parentId", "name1", null, new Res((org.seamless.util.MimeType) null, 0L, "url1")));
+        didlFragmentCache.putFragment("parentId", node2, -1, new Movie("id2", "parentId", "name2", null, new Res((org.seamless.util.MimeType) null, 0L, "url2")));
+
+        assertNull(didlFragmentCache.getFragment("parentId", node1, -1));
+        assertNotNull(didlFragmentCache.getFragment("parentId", node2, -1));
+    }
+
+    @Test(expected = ContentDirectoryException.class)
+    public void testPutFragmentError() throws ContentDirectoryException {
+        DidlFragmentCache didlFragmentCache = new DidlFragmentCache(new DIDLParser() {
+            private boolean generated;
+
+            @Override
+            public String generate(final DIDLContent content) throws Exception {
+                if (generated) {
+                    throw new Exception("error");
+                }
+                generated = true;
+                return super.generate(content);
+            }
+        }, 10);
+        FolderNode node = new FolderNode("id", "parentId", "name");
+        didlFragmentCache.putFragment("parentId", node, -1, new Movie("id", "parentId", "name", null, new Res((org.seamless.util.MimeType) null, 0L, "url")));
+    }
+
+    /**
+     * DIDL parser rendering items as their first resource url.
+     */
+    private static class ResDIDLParser extends DIDLParser {
+        @Override
+        public String generate(final DIDLContent content) throws Exception {
+            StringBuilder document = new StringBuilder("<DIDL-Lite xmlns=\"urn:schemas-upnp-org:metadata-1-0/DIDL-Lite/\">");
+            for (Item item : content.getItems()) {
+                document.append("<item>").append(item.getFirstResource().getValue()).append("</item>");
+            }
+            return document.append("</DIDL-Lite>").toString();
+        }
+    }
+}
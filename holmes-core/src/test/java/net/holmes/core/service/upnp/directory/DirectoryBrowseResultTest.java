@@ -22,6 +22,7 @@ import net.holmes.core.business.media.model.FolderNode;
 import net.holmes.core.business.mimetype.model.MimeType;
 import org.fourthline.cling.support.contentdirectory.ContentDirectoryException;
 import org.fourthline.cling.support.contentdirectory.DIDLParser;
+import org.fourthline.cling.support.model.BrowseResult;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TestName;
@@ -38,11 +39,12 @@ public class DirectoryBrowseResultTest {
 
     @Test
     public void testDirectoryBrowseResult() {
-        DirectoryBrowseResult directoryBrowseResult = new DirectoryBrowseResult(0, 1);
+        DirectoryBrowseResult directoryBrowseResult = new DirectoryBrowseResult(0, 1, new DidlFragmentCache(new DIDLParser(), 10), false);
         assertEquals(directoryBrowseResult.getFirstResult(), 0);
         assertEquals(directoryBrowseResult.getTotalCount(), 0);
         assertEquals(directoryBrowseResult.getItemCount(), 0);
         assertNotNull(directoryBrowseResult.getDidl());
+        assertFalse(directoryBrowseResult.getDidl().contains("<item"));
     }
 
     @Test
@@ -52,10 +54,10 @@ public class DirectoryBrowseResultTest {
         MimeType mimeType = MimeType.valueOf("video/x-msvideo");
         ContentNode node = new ContentNode("id", "1", "name", file, mimeType);
 
-        DirectoryBrowseResult directoryBrowseResult = new DirectoryBrowseResult(0, 1);
+        DirectoryBrowseResult directoryBrowseResult = new DirectoryBrowseResult(0, 1, new DidlFragmentCache(new DIDLParser(), 10), false);
         directoryBrowseResult.addItem("1", node, "http://google.com");
         assertEquals(directoryBrowseResult.getItemCount(), 1);
-        assertEquals(directoryBrowseResult.getDidl().getCount(), 1);
+        assertTrue(directoryBrowseResult.getDidl().contains("<item id=\"id\""));
     }
 
     @Test
@@ -66,10 +68,10 @@ public class DirectoryBrowseResultTest {
         ContentNode node = new ContentNode("id", "1", "name", file, mimeType);
         node.setIconUrl("http://google.com");
 
-        DirectoryBrowseResult directoryBrowseResult = new DirectoryBrowseResult(0, 1);
+        DirectoryBrowseResult directoryBrowseResult = new DirectoryBrowseResult(0, 1, new DidlFragmentCache(new DIDLParser(), 10), false);
         directoryBrowseResult.addItem("1", node, "http://google.com");
         assertEquals(directoryBrowseResult.getItemCount(), 1);
-        assertEquals(directoryBrowseResult.getDidl().getCount(), 1);
+        assertTrue(directoryBrowseResult.getDidl().contains("<item id=\"id\""));
     }
 
     @Test
@@ -79,10 +81,10 @@ public class DirectoryBrowseResultTest {
         MimeType mimeType = MimeType.valueOf("image/jpeg");
         ContentNode node = new ContentNode("id", "1", "name", file, mimeType);
 
-        DirectoryBrowseResult directoryBrowseResult = new DirectoryBrowseResult(0, 1);
+        DirectoryBrowseResult directoryBrowseResult = new DirectoryBrowseResult(0, 1, new DidlFragmentCache(new DIDLParser(), 10), false);
         directoryBrowseResult.addItem("1", node, "http://google.com");
         assertEquals(directoryBrowseResult.getItemCount(), 1);
-        assertEquals(directoryBrowseResult.getDidl().getCount(), 1);
+        assertTrue(directoryBrowseResult.getDidl().contains("<item id=\"id\""));
     }
 
     @Test
@@ -92,10 +94,10 @@ public class DirectoryBrowseResultTest {
         MimeType mimeType = MimeType.valueOf("application/x-subrip");
         ContentNode node = new ContentNode("id", "1", "name", file, mimeType);
 
-        DirectoryBrowseResult directoryBrowseResult = new DirectoryBrowseResult(0, 1);
+        DirectoryBrowseResult directoryBrowseResult = new DirectoryBrowseResult(0, 1, new DidlFragmentCache(new DIDLParser(), 10), false);
         directoryBrowseResult.addItem("1", node, "http://google.com");
         assertEquals(directoryBrowseResult.getItemCount(), 1);
-        assertEquals(directoryBrowseResult.getDidl().getCount(), 1);
+        assertTrue(directoryBrowseResult.getDidl().contains("<item id=\"id\""));
     }
 
     @Test
@@ -105,10 +107,10 @@ public class DirectoryBrowseResultTest {
         MimeType mimeType = MimeType.valueOf("application/bad-subrip");
         ContentNode node = new ContentNode("id", "1", "name", file, mimeType);
 
-        DirectoryBrowseResult directoryBrowseResult = new DirectoryBrowseResult(0, 1);
+        DirectoryBrowseResult directoryBrowseResult = new DirectoryBrowseResult(0, 1, new DidlFragmentCache(new DIDLParser(), 10), false);
         directoryBrowseResult.addItem("1", node, "http://google.com");
         assertEquals(directoryBrowseResult.getItemCount(), 0);
-        assertEquals(directoryBrowseResult.getDidl().getCount(), 0);
+        assertFalse(directoryBrowseResult.getDidl().contains("<item"));
     }
 
     @Test
@@ -118,10 +120,10 @@ public class DirectoryBrowseResultTest {
         MimeType mimeType = MimeType.valueOf("application/ogg");
         ContentNode node = new ContentNode("id", "1", "name", file, mimeType);
 
-        DirectoryBrowseResult directoryBrowseResult = new DirectoryBrowseResult(0, 1);
+        DirectoryBrowseResult directoryBrowseResult = new DirectoryBrowseResult(0, 1, new DidlFragmentCache(new DIDLParser(), 10), false);
         directoryBrowseResult.addItem("1", node, "http://google.com");
         assertEquals(directoryBrowseResult.getItemCount(), 1);
-        assertEquals(directoryBrowseResult.getDidl().getCount(), 1);
+        assertTrue(directoryBrowseResult.getDidl().contains("<item id=\"id\""));
     }
 
     @Test
@@ -131,10 +133,10 @@ public class DirectoryBrowseResultTest {
         MimeType mimeType = MimeType.valueOf("bad-type/bad-subtype");
         ContentNode node = new ContentNode("id", "1", "name", file, mimeType);
 
-        DirectoryBrowseResult directoryBrowseResult = new DirectoryBrowseResult(0, 1);
+        DirectoryBrowseResult directoryBrowseResult = new DirectoryBrowseResult(0, 1, new DidlFragmentCache(new DIDLParser(), 10), false);
         directoryBrowseResult.addItem("1", node, "http://google.com");
         assertEquals(directoryBrowseResult.getItemCount(), 0);
-        assertEquals(directoryBrowseResult.getDidl().getCount(), 0);
+        assertFalse(directoryBrowseResult.getDidl().contains("<item"));
     }
 
     @Test(expected = ContentDirectoryException.class)
@@ -145,17 +147,17 @@ public class DirectoryBrowseResultTest {
         ContentNode node = new ContentNode("id", "1", "name", file, mimeType);
         node.setIconUrl("\\bad_url");
 
-        DirectoryBrowseResult directoryBrowseResult = new DirectoryBrowseResult(0, 1);
+        DirectoryBrowseResult directoryBrowseResult = new DirectoryBrowseResult(0, 1, new DidlFragmentCache(new DIDLParser(), 10), false);
         directoryBrowseResult.addItem("1", node, "http://google.com");
     }
 
     @Test
     public void testAddContainer() throws ContentDirectoryException {
         FolderNode node = new FolderNode("id", "parentId", "name");
-        DirectoryBrowseResult directoryBrowseResult = new DirectoryBrowseResult(0, 1);
+        DirectoryBrowseResult directoryBrowseResult = new DirectoryBrowseResult(0, 1, new DidlFragmentCache(new DIDLParser(), 10), false);
         directoryBrowseResult.addContainer("1", node, 1);
         assertEquals(directoryBrowseResult.getItemCount(), 1);
-        assertEquals(directoryBrowseResult.getDidl().getCount(), 1);
+        assertTrue(directoryBrowseResult.getDidl().contains("<container id=\"id\""));
     }
 
     @Test
@@ -166,20 +168,24 @@ public class DirectoryBrowseResultTest {
         ContentNode node = new ContentNode("id", "1", "name", file, mimeType);
         node.setIconUrl("http://google.com");
 
-        DirectoryBrowseResult directoryBrowseResult = new DirectoryBrowseResult(0, 1);
+        DirectoryBrowseResult directoryBrowseResult = new DirectoryBrowseResult(0, 1, new DidlFragmentCache(new DIDLParser(), 10), false);
         assertTrue(directoryBrowseResult.acceptNode());
         assertEquals(directoryBrowseResult.getTotalCount(), 1);
         directoryBrowseResult.addItem("1", node, "http://google.com");
         assertEquals(directoryBrowseResult.getItemCount(), 1);
-        assertEquals(directoryBrowseResult.getDidl().getCount(), 1);
+        assertTrue(directoryBrowseResult.getDidl().contains("<item id=\"id\""));
 
         assertFalse(directoryBrowseResult.acceptNode());
         assertEquals(directoryBrowseResult.getTotalCount(), 2);
     }
 
-    @Test(expected = ContentDirectoryException.class)
-    public void testBuildResultWithNoParser() throws ContentDirectoryException {
-        new DirectoryBrowseResult(0, 0).buildBrowseResult(null);
+    @Test
+    public void testBuildEmptyResult() {
+        BrowseResult browseResult = new DirectoryBrowseResult(0, 0, new DidlFragmentCache(new DIDLParser(), 10), false).buildBrowseResult(0);
+        assertNotNull(browseResult);
+        assertTrue(browseResult.getResult().contains("DIDL-Lite"));
+        assertFalse(browseResult.getResult().contains("<container"));
+        assertEquals(0, browseResult.getCountLong());
     }
 
     @Test
@@ -190,15 +196,15 @@ public class DirectoryBrowseResultTest {
         ContentNode node = new ContentNode("id", "1", "name", file, mimeType);
         node.setIconUrl("http://google.com");
 
-        DirectoryBrowseResult directoryBrowseResult = new DirectoryBrowseResult(0, 0);
+        DirectoryBrowseResult directoryBrowseResult = new DirectoryBrowseResult(0, 0, new DidlFragmentCache(new DIDLParser(), 10), false);
         assertTrue(directoryBrowseResult.acceptNode());
         assertEquals(directoryBrowseResult.getTotalCount(), 1);
         assertEquals(directoryBrowseResult.getResultCount(), 0);
         directoryBrowseResult.addItem("1", node, "http://google.com");
         assertEquals(directoryBrowseResult.getItemCount(), 1);
         assertEquals(directoryBrowseResult.getResultCount(), 1);
-        assertEquals(directoryBrowseResult.getDidl().getCount(), 1);
-        assertNotNull(directoryBrowseResult.buildBrowseResult(new DIDLParser()));
+        assertTrue(directoryBrowseResult.getDidl().contains("<item id=\"id\""));
+        assertNotNull(directoryBrowseResult.buildBrowseResult(0));
 
         assertTrue(directoryBrowseResult.acceptNode());
         assertEquals(directoryBrowseResult.getTotalCount(), 2);
@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2012-2015  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+
+/**
+ * Synthetic video files for time seek tests.
+ */
+public final class TestVideoFiles {
+    /**
+     * Transport stream seek point times: PCR sampled every 1394 packets (256 KB), found at next tenth packet.
+     */
+    public static final long[] TS_SEEK_TIMES = {0, 14000, 27900, 41900, 55800};
+    /**
+     * Transport stream seek point offsets.
+     */
+    public static final long[] TS_SEEK_OFFSETS = {0, 1400 * 188, 2790 * 188, 4190 * 188, 5580 * 188};
+    /**
+     * Transport stream duration.
+     */
+    public static final long TS_DURATION = 59900;
+    /**
+     * Transport stream length.
+     */
+    public static final int TS_LENGTH = 6000 * 188;
+
+    private TestVideoFiles() {
+    }
+
+    /**
+     * Create a MPEG transport stream file of 188 bytes packets.
+     *
+     * @return transport stream file
+     * @throws IOException if file cannot be written
+     */
+    public static File createTransportStream() throws IOException {
+        File file = File.createTempFile("video", ".ts");
+        file.deleteOnExit();
+        Files.write(file.toPath(), newTransportStream(188, 0, TS_LENGTH / 188, 0));
+        return file;
+    }
+
+    /**
+     * Build a transport stream where every tenth packet carries a PCR, packets being 10 ms apart.
+     *
+     * @param packetSize  packet size
+     * @param prefixSize  size of packet prefix preceding sync byte
+     * @param packetCount number of packets
+     * @param firstPcr    PCR of first packet (90 kHz)
+     * @return transport stream content
+     */
+    public static byte[] newTransportStream(final int packetSize, final int prefixSize, final int packetCount, final long firstPcr) {
+        ByteBuffer buffer = ByteBuffer.allocate(packetSize * packetCount);
+        for (int i = 0; i < packetCount; i++) {
+            int position = i * packetSize + prefixSize;
+            buffer.put(position, (byte) 0x47);
+            buffer.put(position + 1, (byte) 0x01);
+            if (i % 10 == 0) {
+                // Adaptation field with PCR, on PID 0x100
+                long pcr = (firstPcr + i * 900L) % (1L << 33);
+                buffer.put(position + 2, (byte) 0x00);
+                buffer.put(position + 3, (byte) 0x30);
+                buffer.put(position + 4, (byte) 7);
+                buffer.put(position + 5, (byte) 0x10);
+                buffer.put(position + 6, (byte) (pcr >> 25));
+                buffer.put(position + 7, (byte) (pcr >> 17));
+                buffer.put(position + 8, (byte) (pcr >> 9));
+                buffer.put(position + 9, (byte) (pcr >> 1));
+                buffer.put(position + 10, (byte) (pcr << 7));
+            } else {
+                // Payload only, on PID 0x101
+                buffer.put(position + 2, (byte) 0x01);
+                buffer.put(position + 3, (byte) 0x10);
+            }
+        }
+        return buffer.array();
+    }
+}